@@ -17,25 +17,26 @@
 
 package org.apache.dkv.storage;
 
+import com.google.common.base.Preconditions;
 import java.io.Closeable;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import org.apache.dkv.storage.aggregate.Aggregator;
 import org.apache.dkv.storage.bean.KeyValuePair;
+import org.apache.dkv.storage.bean.KeyValuePair.OperationType;
 import org.apache.dkv.storage.bytes.Bytes;
-import org.apache.dkv.storage.compact.Compactor;
+import org.apache.dkv.storage.cache.RowCache;
 import org.apache.dkv.storage.compact.DefaultCompactor;
 import org.apache.dkv.storage.config.Config;
 import org.apache.dkv.storage.disk.DiskStorage;
 import org.apache.dkv.storage.flush.DefaultFlusher;
 import org.apache.dkv.storage.iterator.Iterator;
-import org.apache.dkv.storage.iterator.MultiIterator;
-import org.apache.dkv.storage.iterator.ScanIterator;
-import org.apache.dkv.storage.iterator.SeekIterator;
+import org.apache.dkv.storage.iterator.ScanFilter;
 import org.apache.dkv.storage.memory.MemStore;
+import org.apache.dkv.storage.scheduler.BackgroundScheduler;
+import org.apache.dkv.storage.snapshot.Snapshot;
+import org.apache.dkv.storage.snapshot.SnapshotManager;
 
 /**
  * Distributed key-value database
@@ -46,7 +47,16 @@ public final class DKV implements Closeable {
     
     private DiskStorage diskStorage;
     
-    private AtomicLong sequenceId;
+    private StorageReader reader;
+    
+    // null if row cache is disabled
+    private RowCache rowCache;
+    
+    private WriteSequencer sequencer;
+    
+    private BackgroundScheduler scheduler;
+    
+    private final SnapshotManager snapshotManager = new SnapshotManager();
     
     private final Config config;
 
@@ -80,70 +90,186 @@ public final class DKV implements Closeable {
         assert config != null;
         
         // initialize the disk store
-        diskStorage = new DiskStorage(config.getDataDir(), config.getMaxDiskFiles());
-        diskStorage.open();
-        // TODO initialize the max sequence id here.
-        this.sequenceId = new AtomicLong(0);
+        // each database has its own buffer pool and read threads, which are stopped when it's closed
+        diskStorage = new DiskStorage(config);
+        diskStorage.open(config.getTableOpenThreads());
+        // new writes continue after the largest sequence id of SSTable files
+        this.sequencer = new WriteSequencer(diskStorage.getMaxSequenceId());
         
-        // initialize the MemStore
-        ExecutorService pool = Executors.newFixedThreadPool(config.getMaxThreadPoolSize());
-        this.memStore = new MemStore(config, new DefaultFlusher(diskStorage), pool);
+        // initialize the compactor and background jobs
+        this.scheduler = new BackgroundScheduler(config, new DefaultCompactor(diskStorage, config.getMaxDiskFiles(), config.getCompactionFilter(), snapshotManager,
+                config.getMergeOperator()));
         
-        // initialize the compactor
-        Compactor compactor = new DefaultCompactor(diskStorage);
-        pool.submit(compactor);
+        // initialize the MemStore
+        this.memStore = new MemStore(config, new DefaultFlusher(diskStorage, config.getMergeOperator(), snapshotManager), scheduler.getFlushPool());
+        this.reader = new StorageReader(memStore, diskStorage, config.getMergeOperator());
+        if (config.getRowCacheSize() > 0) {
+            this.rowCache = new RowCache(config.getRowCacheSize());
+        }
         
+        // SSTable files left by last run may need to compact
+        scheduler.maybeScheduleCompaction();
         return this;
     }
     
     public void put(final byte[] key, final byte[] value) throws IOException {
-        memStore.add(KeyValuePair.createPut(key, value, sequenceId.incrementAndGet()));
+        write(key, value, OperationType.Put);
     }
     
     public void delete(final byte[] key) throws IOException {
-        memStore.add(KeyValuePair.createDelete(key, sequenceId.incrementAndGet()));
+        write(key, Bytes.EMPTY_BYTES, OperationType.Delete);
+    }
+    
+    /**
+     * write an operand of the key without reading it, e.g. an increment of counter. The operands are resolved by
+     * the merge operator of config when the key is read.
+     * @param key byte array of key
+     * @param operand operand of merge operator
+     * @throws IOException IO Exception
+     */
+    public void merge(final byte[] key, final byte[] operand) throws IOException {
+        Preconditions.checkState(null != config.getMergeOperator(), "Merge operator is not configured.");
+        write(key, operand, OperationType.Merge);
+    }
+    
+    /**
+     * delete all keys in range [start, stop) by a single range tombstone, no matter how many keys are in it. The
+     * deleted keys are dropped by compaction, and the SSTable files covered by the range are dropped without
+     * being read.
+     * @param start start of range, empty means min infinity
+     * @param stop stop of range, which is excluded, empty means max infinity
+     * @throws IOException IO Exception
+     */
+    public void deleteRange(final byte[] start, final byte[] stop) throws IOException {
+        Preconditions.checkArgument(0 == stop.length || Bytes.compare(start, stop) < 0, "Invalid range: [%s, %s)", Bytes.toHex(start), Bytes.toHex(stop));
+        write(start, stop, OperationType.DeleteRange);
+    }
+    
+    private void write(final byte[] key, final byte[] value, final OperationType operationType) throws IOException {
+        // writes don't wait for each other, the WAL sync and MemStore insert of concurrent writes overlap
+        long writeSequenceId = sequencer.assign();
+        try {
+            memStore.add(KeyValuePair.create(key, value, operationType, writeSequenceId));
+            invalidateRowCache(key, operationType, writeSequenceId);
+        } finally {
+            // publish the sequence id after the key value pair is readable, a failed write is published as well,
+            // otherwise the writes after it would never be visible
+            sequencer.publish(writeSequenceId);
+        }
+    }
+    
+    private void invalidateRowCache(final byte[] key, final OperationType operationType, final long writeSequenceId) {
+        if (null == rowCache) {
+            return;
+        }
+        // the keys deleted by range aren't known, so the whole cache is dropped
+        if (OperationType.DeleteRange == operationType) {
+            rowCache.invalidateAll(writeSequenceId);
+        } else {
+            rowCache.invalidate(key, writeSequenceId);
+        }
+    }
+
+    /**
+     * get a point-in-time snapshot of database, close it after use.
+     * @return snapshot
+     */
+    public Snapshot getSnapshot() {
+        return snapshotManager.acquire(sequencer.getVisibleSequenceId());
     }
 
     /**
-     * get specific key
+     * get specific key, hot keys are served by the row cache if it's configured
      * @param key byte array of key
      * @return key value pair
      * @throws IOException IO Exception
      */
     public KeyValuePair get(final byte[] key) throws IOException {
-        Iterator<KeyValuePair> it = scan(key, Bytes.EMPTY_BYTES);
-        if (it.hasNext()) {
-            KeyValuePair keyValuePair = it.next();
-            if (Bytes.compare(keyValuePair.getKey(), key) == 0) {
-                return keyValuePair;
-            }
+        if (null == rowCache) {
+            return get(key, sequencer.getVisibleSequenceId());
+        }
+        KeyValuePair cached = rowCache.get(key);
+        if (null != cached) {
+            return cached.getOperationType() == OperationType.Put ? cached : null;
         }
-        return null;
+        long readSequenceId = sequencer.getVisibleSequenceId();
+        KeyValuePair result = get(key, readSequenceId);
+        // cache missing key as a delete key value pair
+        rowCache.put(null != result ? result : KeyValuePair.createDelete(key, readSequenceId), readSequenceId);
+        return result;
     }
 
     /**
-     * Scan database
+     * get specific key from snapshot
+     * @param key byte array of key
+     * @param snapshot snapshot to read
+     * @return key value pair
+     * @throws IOException IO Exception
+     */
+    public KeyValuePair get(final byte[] key, final Snapshot snapshot) throws IOException {
+        return get(key, snapshot.getSequenceId());
+    }
+    
+    private KeyValuePair get(final byte[] key, final long maxSequenceId) throws IOException {
+        return reader.get(key, maxSequenceId);
+    }
+
+    /**
+     * get keys in batch, the keys are sorted and deduplicated, and each data block is read once no matter how many
+     * keys are in it.
+     * @param keys byte arrays of keys
+     * @return key value pairs in the order of keys, null if the key doesn't exist
+     * @throws IOException IO Exception
+     */
+    public List<KeyValuePair> multiGet(final List<byte[]> keys) throws IOException {
+        return reader.multiGet(keys, sequencer.getVisibleSequenceId());
+    }
+
+    /**
+     * get keys in batch from snapshot
+     * @param keys byte arrays of keys
+     * @param snapshot snapshot to read
+     * @return key value pairs in the order of keys, null if the key doesn't exist
+     * @throws IOException IO Exception
+     */
+    public List<KeyValuePair> multiGet(final List<byte[]> keys, final Snapshot snapshot) throws IOException {
+        return reader.multiGet(keys, snapshot.getSequenceId());
+    }
+    
+    /**
+     * Scan database, close the iterator if it's not traversed to the end.
      * @param start start point
      * @param stop stop point
      * @return iterator to traverse database
      * @throws IOException IO Exception
      */
     public Iterator<KeyValuePair> scan(final byte[] start, final byte[] stop) throws IOException {
-        List<SeekIterator<KeyValuePair>> iterators = new ArrayList<>();
-        iterators.add(memStore.iterator());
-        iterators.add(diskStorage.iterator());
+        return reader.scan(start, stop, sequencer.getVisibleSequenceId(), null);
+    }
 
-        MultiIterator multiIterator = new MultiIterator(iterators);
-        
-        // with start being EMPTY_BYTES means min infinity, will skip to seek
-        if (Bytes.compare(start, Bytes.EMPTY_BYTES) != 0) {
-            multiIterator.seekTo(KeyValuePair.createDelete(start, sequenceId.get()));
-        }
-        KeyValuePair stopKv = null;
-        if (Bytes.compare(stop, Bytes.EMPTY_BYTES) != 0) {
-            stopKv = KeyValuePair.createDelete(stop, Long.MAX_VALUE);
-        }
-        return new ScanIterator(stopKv, multiIterator);
+    /**
+     * Scan snapshot of database
+     * @param start start point
+     * @param stop stop point
+     * @param snapshot snapshot to read
+     * @return iterator to traverse snapshot
+     * @throws IOException IO Exception
+     */
+    public Iterator<KeyValuePair> scan(final byte[] start, final byte[] stop, final Snapshot snapshot) throws IOException {
+        return reader.scan(start, stop, snapshot.getSequenceId(), null);
+    }
+    
+    /**
+     * Scan database with filter, the keys rejected by filter are skipped inside the iterator. The filter is
+     * evaluated on the encoded key value pairs of data blocks, so only the accepted ones are copied.
+     * @param start start point
+     * @param stop stop point
+     * @param filter filter evaluated on the newest visible version of each key
+     * @return iterator to traverse the accepted key value pairs
+     * @throws IOException IO Exception
+     */
+    public Iterator<KeyValuePair> scan(final byte[] start, final byte[] stop, final ScanFilter filter) throws IOException {
+        return reader.scan(start, stop, sequencer.getVisibleSequenceId(), filter);
     }
 
     /**
@@ -155,9 +281,74 @@ public final class DKV implements Closeable {
         return scan(Bytes.EMPTY_BYTES, Bytes.EMPTY_BYTES);
     }
 
+    /**
+     * Aggregate the key value pairs in range [start, stop) while scanning, no key value pair is returned to caller.
+     * The scan stops early once the aggregator is done. The aggregator reads the values in the data blocks, so
+     * they're not copied.
+     * @param start start point
+     * @param stop stop point
+     * @param filter filter evaluated before aggregating, null means aggregate all key value pairs
+     * @param aggregator aggregator, e.g. {@link org.apache.dkv.storage.aggregate.CountAggregator}
+     * @param <T> type of aggregate result
+     * @return aggregate result
+     * @throws IOException IO Exception
+     */
+    public <T> T aggregate(final byte[] start, final byte[] stop, final ScanFilter filter, final Aggregator<T> aggregator) throws IOException {
+        return reader.aggregate(start, stop, sequencer.getVisibleSequenceId(), filter, aggregator);
+    }
+
+    /**
+     * Scan database backward, keys in [start, stop) are returned in descending order. Close the iterator if
+     * it's not traversed to the end.
+     * @param start start point, the smallest key to return
+     * @param stop stop point, the keys less than it are returned
+     * @return iterator to traverse database backward
+     * @throws IOException IO Exception
+     */
+    public Iterator<KeyValuePair> reverseScan(final byte[] start, final byte[] stop) throws IOException {
+        return reader.reverseScan(start, stop, sequencer.getVisibleSequenceId());
+    }
+
+    /**
+     * Scan snapshot of database backward
+     * @param start start point, the smallest key to return
+     * @param stop stop point, the keys less than it are returned
+     * @param snapshot snapshot to read
+     * @return iterator to traverse snapshot backward
+     * @throws IOException IO Exception
+     */
+    public Iterator<KeyValuePair> reverseScan(final byte[] start, final byte[] stop, final Snapshot snapshot) throws IOException {
+        return reader.reverseScan(start, stop, snapshot.getSequenceId());
+    }
+    
+    /**
+     * Scan all keys starting with the prefix, the SSTable files and blocks which have no key with the prefix are
+     * skipped if prefix extractor is configured.
+     * @param prefix prefix of keys
+     * @return iterator to traverse keys with the prefix
+     * @throws IOException IO Exception
+     */
+    public Iterator<KeyValuePair> scanPrefix(final byte[] prefix) throws IOException {
+        return reader.scanPrefix(prefix, sequencer.getVisibleSequenceId());
+    }
+    
+    /**
+     * Scan database in parallel, the range [start, stop) is split into sub-ranges by the block boundaries of
+     * SSTable files and the samples of MemStore, and sub-ranges are scanned by fork-join workers concurrently.
+     * The stream reads a snapshot of database, close the stream after use to release it.
+     * @param start start point
+     * @param stop stop point
+     * @return parallel stream of key value pairs
+     * @throws IOException IO Exception
+     */
+    public Stream<KeyValuePair> parallelScan(final byte[] start, final byte[] stop) throws IOException {
+        return reader.parallelScan(start, stop, getSnapshot());
+    }
+    
     @Override
     public void close() throws IOException {
         memStore.close();
+        scheduler.close();
         diskStorage.close();
     }
 }
@@ -0,0 +1,229 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dkv.storage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+import org.apache.dkv.storage.aggregate.Aggregator;
+import org.apache.dkv.storage.bean.KeyValuePair;
+import org.apache.dkv.storage.bean.KeyValuePair.OperationType;
+import org.apache.dkv.storage.bean.RangeTombstones;
+import org.apache.dkv.storage.bytes.Bytes;
+import org.apache.dkv.storage.disk.DiskStorage;
+import org.apache.dkv.storage.iterator.Iterator;
+import org.apache.dkv.storage.iterator.MultiIterator;
+import org.apache.dkv.storage.iterator.RangeSpliterator;
+import org.apache.dkv.storage.iterator.ScanFilter;
+import org.apache.dkv.storage.iterator.ScanIterator;
+import org.apache.dkv.storage.iterator.SeekIterator;
+import org.apache.dkv.storage.memory.MemStore;
+import org.apache.dkv.storage.merge.MergeOperator;
+import org.apache.dkv.storage.snapshot.Snapshot;
+
+/**
+ * read path of database, builds the iterators over MemStore and SSTable files for a sequence id. The range
+ * tombstones visible to the sequence id are read before the iterators are created, and the keys they cover are
+ * skipped by the scan iterator, which also resolves merge operands.
+ */
+final class StorageReader {
+    
+    // take one key from every MEMSTORE_SAMPLE_INTERVAL key value pairs of MemStore to split parallel scan
+    private static final int MEMSTORE_SAMPLE_INTERVAL = 1024;
+    
+    // sub-ranges of parallel scan for each worker of the common fork-join pool
+    private static final int RANGES_PER_WORKER = 4;
+    
+    private final MemStore memStore;
+    
+    private final DiskStorage diskStorage;
+    
+    // null if merge is not supported
+    private final MergeOperator mergeOperator;
+    
+    StorageReader(final MemStore memStore, final DiskStorage diskStorage, final MergeOperator mergeOperator) {
+        this.memStore = memStore;
+        this.diskStorage = diskStorage;
+        this.mergeOperator = mergeOperator;
+    }
+    
+    ScanIterator scan(final byte[] start, final byte[] stop, final long maxSequenceId, final ScanFilter filter) throws IOException {
+        RangeTombstones tombstones = getRangeTombstones(start, stop, maxSequenceId);
+        // the SSTable files out of the range are skipped, and the filter runs in their data blocks unless a newer
+        // merge operand may need the value of a rejected put
+        ScanFilter diskFilter = null == mergeOperator ? filter : null;
+        SeekIterator<KeyValuePair> diskIterator = diskStorage.rangeIterator(start, stop, maxSequenceId, diskFilter);
+        return scan(createMultiIterator(memStore.iterator(), diskIterator), start, stop, maxSequenceId, filter, tombstones);
+    }
+    
+    private ScanIterator scan(final MultiIterator multiIterator, final byte[] start, final byte[] stop, final long maxSequenceId, final ScanFilter filter,
+                              final RangeTombstones tombstones) throws IOException {
+        // with start being EMPTY_BYTES means min infinity, will skip to seek
+        if (Bytes.compare(start, Bytes.EMPTY_BYTES) != 0) {
+            multiIterator.seekTo(KeyValuePair.createSeekKey(start, maxSequenceId));
+        }
+        KeyValuePair stopKv = null;
+        if (Bytes.compare(stop, Bytes.EMPTY_BYTES) != 0) {
+            stopKv = KeyValuePair.createDelete(stop, Long.MAX_VALUE);
+        }
+        return new ScanIterator(stopKv, multiIterator, maxSequenceId, false, filter, tombstones, mergeOperator);
+    }
+    
+    Iterator<KeyValuePair> reverseScan(final byte[] start, final byte[] stop, final long maxSequenceId) throws IOException {
+        RangeTombstones tombstones = getRangeTombstones(start, stop, maxSequenceId);
+        MultiIterator multiIterator = createMultiIterator(memStore.iterator(), diskStorage.rangeIterator(start, stop));
+        
+        // with stop being EMPTY_BYTES means max infinity
+        if (Bytes.compare(stop, Bytes.EMPTY_BYTES) != 0) {
+            // the smallest key value pair of stop key, all key value pairs before it have smaller keys
+            multiIterator.seekForPrev(KeyValuePair.createDelete(stop, Long.MAX_VALUE));
+        } else {
+            multiIterator.seekToLast();
+        }
+        KeyValuePair startKv = null;
+        if (Bytes.compare(start, Bytes.EMPTY_BYTES) != 0) {
+            startKv = KeyValuePair.createDelete(start, Long.MAX_VALUE);
+        }
+        return new ScanIterator(startKv, multiIterator, maxSequenceId, true, null, tombstones, mergeOperator);
+    }
+    
+    KeyValuePair get(final byte[] key, final long maxSequenceId) throws IOException {
+        // only the SSTable files which may contain the key are read, and the scan stops right after the key, since
+        // the key followed by a zero byte is the smallest key greater than it
+        byte[] stop = Arrays.copyOf(key, key.length + 1);
+        RangeTombstones tombstones = getRangeTombstones(key, stop, maxSequenceId);
+        try (Iterator<KeyValuePair> it = scan(createMultiIterator(memStore.iterator(), diskStorage.keyIterator(key)), key, stop, maxSequenceId, null, tombstones)) {
+            if (it.hasNext()) {
+                return it.next();
+            }
+        }
+        return null;
+    }
+    
+    Iterator<KeyValuePair> scanPrefix(final byte[] prefix, final long maxSequenceId) throws IOException {
+        RangeTombstones tombstones = getRangeTombstones(prefix, Bytes.prefixEnd(prefix), maxSequenceId);
+        return scan(createMultiIterator(memStore.iterator(), diskStorage.prefixIterator(prefix)), prefix, Bytes.prefixEnd(prefix), maxSequenceId, null, tombstones);
+    }
+    
+    Stream<KeyValuePair> parallelScan(final byte[] start, final byte[] stop, final Snapshot snapshot) throws IOException {
+        List<byte[]> splitKeys;
+        try {
+            splitKeys = diskStorage.getSplitKeys(start, stop);
+        } catch (IOException | RuntimeException e) {
+            snapshot.close();
+            throw e;
+        }
+        splitKeys.addAll(memStore.sampleKeys(start, stop, MEMSTORE_SAMPLE_INTERVAL));
+        // a few ranges per worker balance the load without opening an iterator for every block
+        int maxRanges = ForkJoinPool.getCommonPoolParallelism() * RANGES_PER_WORKER;
+        RangeSpliterator spliterator = new RangeSpliterator(start, stop, splitKeys, maxRanges, (subStart, subStop) -> scan(subStart, subStop, snapshot.getSequenceId(), null));
+        // stream runs all close handlers even if one of them fails, so the snapshot is always released
+        return spliterator.parallelStream().onClose(snapshot::close);
+    }
+    
+    <T> T aggregate(final byte[] start, final byte[] stop, final long maxSequenceId, final ScanFilter filter, final Aggregator<T> aggregator) throws IOException {
+        try (ScanIterator it = scan(start, stop, maxSequenceId, filter)) {
+            while (!aggregator.isDone() && it.hasNext()) {
+                // the values are aggregated in the data blocks without being copied
+                aggregator.add(it.nextView());
+            }
+        }
+        return aggregator.getResult();
+    }
+    
+    List<KeyValuePair> multiGet(final List<byte[]> keys, final long maxSequenceId) throws IOException {
+        // sort and deduplicate keys, MemStore resolves the keys written recently, the others are read from disk
+        NavigableMap<byte[], KeyValuePair> found = new TreeMap<>(Bytes::compare);
+        List<KeyValuePair> diskTargets = new ArrayList<>();
+        for (byte[] key : keys) {
+            found.put(key, null);
+        }
+        RangeTombstones tombstones = getRangeTombstones(found.navigableKeySet(), maxSequenceId);
+        for (byte[] key : found.keySet()) {
+            KeyValuePair target = KeyValuePair.createSeekKey(key, maxSequenceId);
+            KeyValuePair keyValuePair = memStore.get(target);
+            if (null == keyValuePair) {
+                diskTargets.add(target);
+            } else {
+                found.put(key, keyValuePair);
+            }
+        }
+        if (!diskTargets.isEmpty()) {
+            KeyValuePair[] diskResult = diskStorage.multiGet(diskTargets);
+            for (int i = 0; i < diskResult.length; i++) {
+                found.put(diskTargets.get(i).getKey(), diskResult[i]);
+            }
+        }
+        for (Map.Entry<byte[], KeyValuePair> entry : found.entrySet()) {
+            // merge operands are resolved with the older versions by reading the key
+            if (null != entry.getValue() && OperationType.Merge == entry.getValue().getOperationType()) {
+                entry.setValue(get(entry.getKey(), maxSequenceId));
+            }
+        }
+        List<KeyValuePair> result = new ArrayList<>(keys.size());
+        for (byte[] key : keys) {
+            result.add(filterDeleted(found.get(key), tombstones));
+        }
+        return result;
+    }
+    
+    private static KeyValuePair filterDeleted(final KeyValuePair keyValuePair, final RangeTombstones tombstones) {
+        return null != keyValuePair && keyValuePair.getOperationType() == OperationType.Put && !tombstones.isDeleted(keyValuePair) ? keyValuePair : null;
+    }
+    
+    // range tombstones visible to the sequence id, MemStore is read before SSTable files for the same reason as
+    // iterators, and they must be read before the iterators, otherwise the iterators may read the keys which are
+    // dropped with the tombstones by a compaction in between
+    private RangeTombstones getRangeTombstones(final byte[] start, final byte[] stop, final long maxSequenceId) throws IOException {
+        RangeTombstones result = new RangeTombstones();
+        addRangeTombstones(result, memStore.getRangeTombstones(start, stop), maxSequenceId);
+        addRangeTombstones(result, diskStorage.getRangeTombstones(start, stop), maxSequenceId);
+        return result;
+    }
+    
+    private RangeTombstones getRangeTombstones(final NavigableSet<byte[]> keys, final long maxSequenceId) throws IOException {
+        if (keys.isEmpty()) {
+            return new RangeTombstones();
+        }
+        return getRangeTombstones(keys.first(), Arrays.copyOf(keys.last(), keys.last().length + 1), maxSequenceId);
+    }
+    
+    private static void addRangeTombstones(final RangeTombstones rangeTombstones, final List<KeyValuePair> tombstones, final long maxSequenceId) {
+        for (KeyValuePair each : tombstones) {
+            if (each.getSequenceId() <= maxSequenceId) {
+                rangeTombstones.add(each);
+            }
+        }
+    }
+    
+    // the MemStore iterator is created before the disk iterator, so a key value pair flushed in between is still
+    // visible in the MemStore iterator, arguments are evaluated from left to right
+    private MultiIterator createMultiIterator(final SeekIterator<KeyValuePair> memStoreIterator, final SeekIterator<KeyValuePair> diskIterator) throws IOException {
+        List<SeekIterator<KeyValuePair>> iterators = new ArrayList<>();
+        iterators.add(memStoreIterator);
+        iterators.add(diskIterator);
+        return new MultiIterator(iterators);
+    }
+}
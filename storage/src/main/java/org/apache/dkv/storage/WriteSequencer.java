@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dkv.storage;
+
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * sequence ids of writes. The sequence ids are assigned without lock, so writes run concurrently, and a sequence
+ * id becomes visible to readers only after all writes with smaller sequence ids are done, so a snapshot never misses
+ * a key value pair whose sequence id is less than or equal to the sequence id of snapshot.
+ */
+final class WriteSequencer {
+    
+    // the largest assigned sequence id
+    private final AtomicLong lastSequenceId;
+    
+    // writes which are done before some writes with smaller sequence ids, guarded by this
+    private final Queue<Long> pending = new PriorityQueue<>();
+    
+    private volatile long visibleSequenceId;
+    
+    WriteSequencer(final long sequenceId) {
+        lastSequenceId = new AtomicLong(sequenceId);
+        visibleSequenceId = sequenceId;
+    }
+    
+    /**
+     * assign the sequence id of a write, publish it after the write is done, whether it succeeds or not.
+     * @return sequence id
+     */
+    long assign() {
+        return lastSequenceId.incrementAndGet();
+    }
+    
+    /**
+     * mark the write of the sequence id done, and make the continuous done sequence ids visible.
+     * @param sequenceId sequence id assigned by {@link #assign()}
+     */
+    synchronized void publish(final long sequenceId) {
+        pending.add(sequenceId);
+        long result = visibleSequenceId;
+        while (!pending.isEmpty() && pending.peek() == result + 1) {
+            result = pending.poll();
+        }
+        visibleSequenceId = result;
+    }
+    
+    /**
+     * get the largest sequence id that all writes up to it are done.
+     * @return sequence id
+     */
+    long getVisibleSequenceId() {
+        return visibleSequenceId;
+    }
+}
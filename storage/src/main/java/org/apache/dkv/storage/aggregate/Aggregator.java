@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dkv.storage.aggregate;
+
+import org.apache.dkv.storage.bean.KeyValueView;
+
+/**
+ * aggregate key value pairs while scanning, the key value pairs are folded into the aggregator one by one in the
+ * order of scan, so no intermediate collection is created. The values are views of the data blocks, read them by
+ * {@link KeyValueView#getValueSlice()} to avoid copying.
+ * @param <T> type of aggregate result
+ */
+public interface Aggregator<T> {
+
+    /**
+     * add a key value pair into the aggregation.
+     * @param keyValuePair key value pair returned by scan, which is valid only during the call
+     */
+    void add(KeyValueView keyValuePair);
+
+    /**
+     * whether the result can not change anymore, the scan stops early if it's done.
+     * @return true if the aggregation is done
+     */
+    default boolean isDone() {
+        return false;
+    }
+
+    /**
+     * get the aggregate result.
+     * @return aggregate result
+     */
+    T getResult();
+}
@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dkv.storage.aggregate;
+
+import org.apache.dkv.storage.bean.KeyValueView;
+
+/**
+ * find the max key, scan returns keys in ascending order, so the last key is the max key.
+ */
+public final class MaxKeyAggregator implements Aggregator<byte[]> {
+    
+    private byte[] maxKey;
+    
+    @Override
+    public void add(final KeyValueView keyValuePair) {
+        maxKey = keyValuePair.getKey();
+    }
+
+    /**
+     * get the max key.
+     * @return max key, null if no key is scanned
+     */
+    @Override
+    public byte[] getResult() {
+        return maxKey;
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dkv.storage.bean;
+
+import java.io.IOException;
+import lombok.Getter;
+import org.apache.dkv.storage.bean.KeyValuePair.OperationType;
+import org.apache.dkv.storage.bytes.ByteSlice;
+import org.apache.dkv.storage.bytes.Bytes;
+
+/**
+ * key value pair encoded in a data block, the header is decoded in place, and key and value stay in the block
+ * bytes until {@link #toKeyValuePair()}. The view is valid as long as the block bytes aren't reused.
+ */
+public final class EncodedKeyValue implements KeyValueView {
+
+    // the header of a record in varint format is three varints, each of which takes at least one byte
+    private static final int MIN_VARINT_HEADER_SIZE = 3;
+
+    private final ByteSlice slice;
+
+    // offset of the encoded key value pair in slice
+    private final int offset;
+
+    private int keyOffset;
+
+    private int keyLength;
+
+    private int valueOffset;
+
+    private int valueLength;
+
+    @Getter
+    private OperationType operationType;
+
+    @Getter
+    private long sequenceId;
+
+    private EncodedKeyValue(final ByteSlice slice, final int offset) {
+        this.slice = slice;
+        this.offset = offset;
+    }
+
+    /**
+     * decode the header of key value pair encoded in the format, key and value are not copied.
+     * @param slice view of bytes
+     * @param offset offset of key value pair in the view
+     * @param formatVersion {@link KeyValuePair#FIXED_LENGTH_FORMAT} or {@link KeyValuePair#VARINT_FORMAT}
+     * @return view of key value pair
+     * @throws IOException if the format is unknown or the bytes are truncated
+     */
+    public static EncodedKeyValue decode(final ByteSlice slice, final int offset, final int formatVersion) throws IOException {
+        EncodedKeyValue result = new EncodedKeyValue(slice, offset);
+        switch (formatVersion) {
+            case KeyValuePair.FIXED_LENGTH_FORMAT:
+                result.decodeFixedLength();
+                break;
+            case KeyValuePair.VARINT_FORMAT:
+                result.decodeVarint();
+                break;
+            default:
+                throw new IOException("Unknown format version: " + formatVersion);
+        }
+        if (result.valueOffset + result.valueLength > slice.getLength()) {
+            throw new IOException("Truncated key value pair. offset: " + offset + ", len: " + slice.getLength());
+        }
+        return result;
+    }
+
+    private void decodeVarint() throws IOException {
+        if (offset + MIN_VARINT_HEADER_SIZE > slice.getLength()) {
+            throw new IOException("Invalid offset or len. offset: " + offset + ", len: " + slice.getLength());
+        }
+        int pos = offset;
+        keyLength = (int) slice.getVarint(pos);
+        pos += Bytes.varintSize(keyLength);
+        valueLength = (int) slice.getVarint(pos);
+        pos += Bytes.varintSize(valueLength);
+        long packedSequenceId = slice.getVarint(pos);
+        pos += Bytes.varintSize(packedSequenceId);
+        operationType = OperationType.convertCodeToOperationType((byte) (packedSequenceId & KeyValuePair.OP_MASK));
+        sequenceId = packedSequenceId >>> KeyValuePair.OP_BITS;
+        keyOffset = pos;
+        valueOffset = keyOffset + keyLength;
+    }
+
+    private void decodeFixedLength() throws IOException {
+        if (offset + KeyValuePair.RAW_KEY_LEN_SIZE + KeyValuePair.VAL_LEN_SIZE >= slice.getLength()) {
+            throw new IOException("Invalid offset or len. offset: " + offset + ", len: " + slice.getLength());
+        }
+        // raw key is key, operation type and sequence id
+        int pos = offset;
+        final int rawKeyLength = slice.getInt(pos);
+        pos += KeyValuePair.RAW_KEY_LEN_SIZE;
+        valueLength = slice.getInt(pos);
+        pos += KeyValuePair.VAL_LEN_SIZE;
+        keyOffset = pos;
+        keyLength = rawKeyLength - KeyValuePair.OP_SIZE - KeyValuePair.SEQ_ID_SIZE;
+        pos += keyLength;
+        operationType = OperationType.convertCodeToOperationType(slice.get(pos));
+        pos += KeyValuePair.OP_SIZE;
+        sequenceId = slice.getLong(pos);
+        valueOffset = pos + KeyValuePair.SEQ_ID_SIZE;
+    }
+
+    /**
+     * get the size of encoded key value pair.
+     * @return size in bytes
+     */
+    public int getSize() {
+        return valueOffset + valueLength - offset;
+    }
+
+    @Override
+    public ByteSlice getKeySlice() {
+        return slice.slice(keyOffset, keyLength);
+    }
+
+    @Override
+    public ByteSlice getValueSlice() {
+        return slice.slice(valueOffset, valueLength);
+    }
+
+    @Override
+    public byte[] getKey() {
+        return getKeySlice().toBytes();
+    }
+
+    @Override
+    public byte[] getValue() {
+        return getValueSlice().toBytes();
+    }
+
+    /**
+     * compare the key with the given key in place.
+     * @param key key to compare
+     * @return negative, zero or positive if the key is less than, equals to or greater than the given key
+     */
+    public int compareKey(final byte[] key) {
+        return Bytes.compare(slice.getArray(), slice.getOffset() + keyOffset, keyLength, key, 0, key.length);
+    }
+
+    /**
+     * compare with a key value pair in the order of {@link KeyValuePair#compareTo(KeyValuePair)} in place.
+     * @param keyValuePair key value pair to compare
+     * @return negative, zero or positive if this is ordered before, the same as or after the key value pair
+     */
+    public int compareTo(final KeyValuePair keyValuePair) {
+        int ret = compareKey(keyValuePair.getKey());
+        if (ret != 0) {
+            return ret;
+        }
+        if (sequenceId != keyValuePair.getSequenceId()) {
+            return sequenceId > keyValuePair.getSequenceId() ? -1 : 1;
+        }
+        return Byte.compare(keyValuePair.getOperationType().getCode(), operationType.getCode());
+    }
+
+    /**
+     * copy key and value into a key value pair.
+     * @return key value pair
+     */
+    public KeyValuePair toKeyValuePair() {
+        return KeyValuePair.create(getKey(), getValue(), operationType, sequenceId);
+    }
+
+    /**
+     * copy the key into a key value pair, the value stays a view of the block bytes until it's read, which saves
+     * copying the values that are skipped.
+     * @return key value pair, see {@link KeyValuePair#materialize()}
+     */
+    public KeyValuePair toKeyValuePairWithValueView() {
+        return KeyValuePair.createWithValueView(getKey(), getValueSlice(), operationType, sequenceId);
+    }
+}
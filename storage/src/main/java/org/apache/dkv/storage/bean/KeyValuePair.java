@@ -19,13 +19,25 @@ package org.apache.dkv.storage.bean;
 
 import com.google.common.base.Preconditions;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Comparator;
+import lombok.AccessLevel;
 import lombok.Getter;
+import org.apache.dkv.storage.bytes.ByteSlice;
 import org.apache.dkv.storage.bytes.Bytes;
-import org.apache.dkv.storage.bytes.BytesBuilder;
 
 @Getter
-public final class KeyValuePair implements Comparable<KeyValuePair> {
+public final class KeyValuePair implements Comparable<KeyValuePair>, KeyValueView {
+
+    // key value pairs are encoded with fixed length lengths and sequence id
+    public static final int FIXED_LENGTH_FORMAT = 1;
+
+    // key value pairs are encoded with varint lengths, and the operation type is packed into the low bits of the
+    // varint sequence id
+    public static final int VARINT_FORMAT = 2;
+
+    // format to write, both formats are readable
+    public static final int CURRENT_FORMAT = VARINT_FORMAT;
 
     public static final int RAW_KEY_LEN_SIZE = 4;
 
@@ -35,17 +47,32 @@ public final class KeyValuePair implements Comparable<KeyValuePair> {
 
     public static final int SEQ_ID_SIZE = 8;
 
+    // bits of operation type in the varint sequence id, so the sequence id must be less than 2^61
+    static final int OP_BITS = 3;
+
+    static final long OP_MASK = (1L << OP_BITS) - 1;
+
     private final byte[] key;
 
+    // null if the value is a view of encoded bytes
+    @Getter(AccessLevel.NONE)
     private final byte[] value;
 
+    // view of the value in the bytes of a data block, null if the value is owned
+    @Getter(AccessLevel.NONE)
+    private final ByteSlice encodedValue;
+
     private final OperationType operationType;
 
     private final long sequenceId;
 
     public enum OperationType {
         Put((byte) 0),
-        Delete((byte) 1);
+        Delete((byte) 1),
+        // range tombstone, the key is the start key and the value is the stop key which is excluded
+        DeleteRange((byte) 2),
+        // operand of merge operator, resolved with the older versions when the key is read
+        Merge((byte) 3);
 
         private final byte code;
 
@@ -59,6 +86,10 @@ public final class KeyValuePair implements Comparable<KeyValuePair> {
                     return Put;
                 case 1:
                     return Delete;
+                case 2:
+                    return DeleteRange;
+                case 3:
+                    return Merge;
                 default:
                     throw new IllegalArgumentException("Unknown code: " + code);
             }
@@ -69,19 +100,24 @@ public final class KeyValuePair implements Comparable<KeyValuePair> {
         }
     }
 
-    private KeyValuePair(final byte[] key, final byte[] value, final OperationType operationType, final long sequenceId) {
+    private KeyValuePair(final byte[] key, final byte[] value, final ByteSlice encodedValue, final OperationType operationType, final long sequenceId) {
         assert key != null;
-        assert value != null;
+        assert value != null || encodedValue != null;
         assert operationType != null;
         assert sequenceId >= 0;
         this.key = key;
         this.value = value;
+        this.encodedValue = encodedValue;
         this.operationType = operationType;
         this.sequenceId = sequenceId;
     }
 
     public static KeyValuePair create(final byte[] key, final byte[] value, final OperationType operationType, final long sequenceId) {
-        return new KeyValuePair(key, value, operationType, sequenceId);
+        return new KeyValuePair(key, value, null, operationType, sequenceId);
+    }
+
+    static KeyValuePair createWithValueView(final byte[] key, final ByteSlice encodedValue, final OperationType operationType, final long sequenceId) {
+        return new KeyValuePair(key, null, encodedValue, operationType, sequenceId);
     }
 
     public static KeyValuePair createPut(final byte[] key, final byte[] value, final long sequenceId) {
@@ -92,34 +128,86 @@ public final class KeyValuePair implements Comparable<KeyValuePair> {
         return KeyValuePair.create(key, Bytes.EMPTY_BYTES, OperationType.Delete, sequenceId);
     }
 
+    public static KeyValuePair createDeleteRange(final byte[] start, final byte[] stop, final long sequenceId) {
+        return KeyValuePair.create(start, stop, OperationType.DeleteRange, sequenceId);
+    }
+
+    /**
+     * create the key value pair to seek to the newest version of key visible to the sequence id, merge has the
+     * largest operation code, so it's ordered before all versions of the key whose sequence id isn't larger.
+     * @param key key to seek
+     * @param maxSequenceId versions with larger sequence id are skipped
+     * @return key value pair to seek
+     */
+    public static KeyValuePair createSeekKey(final byte[] key, final long maxSequenceId) {
+        return KeyValuePair.create(key, Bytes.EMPTY_BYTES, OperationType.Merge, maxSequenceId);
+    }
+
     private int getRawKeyLen() {
         return key.length + OP_SIZE + SEQ_ID_SIZE;
     }
 
+    /**
+     * get value, it's copied on each call if the value is a view of a data block, see {@link #materialize()}.
+     * @return byte array of value
+     */
+    @Override
+    public byte[] getValue() {
+        return null == value ? encodedValue.toBytes() : value;
+    }
+
+    @Override
+    public ByteSlice getKeySlice() {
+        return ByteSlice.wrap(key);
+    }
+
+    @Override
+    public ByteSlice getValueSlice() {
+        return null == value ? encodedValue : ByteSlice.wrap(value);
+    }
+
+    private int getValueLength() {
+        return null == value ? encodedValue.getLength() : value.length;
+    }
+
+    /**
+     * get the key value pair which owns its value, the value of a key value pair read from a data block is a view
+     * of the block until it's materialized.
+     * @return this if the value is owned, otherwise a copy
+     */
+    public KeyValuePair materialize() {
+        return null == value ? create(key, encodedValue.toBytes(), operationType, sequenceId) : this;
+    }
+
+    private long getPackedSequenceId() {
+        return sequenceId << OP_BITS | operationType.getCode();
+    }
+
+    /**
+     * serialize key value pair in {@link #CURRENT_FORMAT}, which is varint key length, varint value length, varint
+     * sequence id with operation type in the low bits, key and value.
+     * @return byte array represent key value pair.
+     */
     public byte[] toBytes() {
-        BytesBuilder builder = new BytesBuilder(getSerializeSize());
-        // Encode raw key length
-        int rawKeyLen = getRawKeyLen();
-        byte[] rawKeyLenBytes = Bytes.toBytes(rawKeyLen);
-        builder.append(rawKeyLenBytes);
-        
-        // Encode value length.
-        byte[] valLen = Bytes.toBytes(value.length);
-        builder.append(valLen);
-        
-        // Encode key
-        builder.append(key);
-        
-        // Encode Op
-        builder.append(new byte[] {operationType.getCode()});
-        
-        // Encode sequenceId
-        byte[] seqIdBytes = Bytes.toBytes(sequenceId);
-        builder.append(seqIdBytes);
-
-        // Encode value
-        builder.append(value);
-        return builder.getBuffer();
+        ByteBuffer buffer = ByteBuffer.allocate(getSerializeSize());
+        writeTo(buffer);
+        return buffer.array();
+    }
+
+    /**
+     * serialize key value pair in {@link #CURRENT_FORMAT} at the position of buffer, no temporary array is created.
+     * @param buffer buffer with at least {@link #getSerializeSize()} remaining bytes
+     */
+    public void writeTo(final ByteBuffer buffer) {
+        Bytes.putVarint(buffer, key.length);
+        Bytes.putVarint(buffer, getValueLength());
+        Bytes.putVarint(buffer, getPackedSequenceId());
+        buffer.put(key);
+        if (null == value) {
+            buffer.put(encodedValue.getArray(), encodedValue.getOffset(), encodedValue.getLength());
+        } else {
+            buffer.put(value);
+        }
     }
 
     @Override
@@ -158,48 +246,57 @@ public final class KeyValuePair implements Comparable<KeyValuePair> {
     }
 
     public int getSerializeSize() {
-        return RAW_KEY_LEN_SIZE + VAL_LEN_SIZE + getRawKeyLen() + value.length;
+        return getSerializeSize(CURRENT_FORMAT);
+    }
+
+    /**
+     * get the size of key value pair encoded in the format.
+     * @param formatVersion {@link #FIXED_LENGTH_FORMAT} or {@link #VARINT_FORMAT}
+     * @return size in bytes
+     */
+    public int getSerializeSize(final int formatVersion) {
+        if (FIXED_LENGTH_FORMAT == formatVersion) {
+            return RAW_KEY_LEN_SIZE + VAL_LEN_SIZE + getRawKeyLen() + getValueLength();
+        }
+        return Bytes.varintSize(key.length) + Bytes.varintSize(getValueLength()) + Bytes.varintSize(getPackedSequenceId()) + key.length + getValueLength();
     }
 
     @Override
     public String toString() {
-        return "key=" + Bytes.toHex(this.key) + "/op=" + operationType + "/sequenceId=" + this.sequenceId + "/value=" + Bytes.toHex(this.value);
+        return "key=" + Bytes.toHex(this.key) + "/op=" + operationType + "/sequenceId=" + this.sequenceId + "/value=" + getValueSlice();
     }
 
-    public static KeyValuePair parseFrom(final byte[] bytes, final int offset) throws IOException {
-        Preconditions.checkNotNull(bytes, "buff is null");
-        if (offset + RAW_KEY_LEN_SIZE + VAL_LEN_SIZE >= bytes.length) {
-            throw new IOException("Invalid offset or len. offset: " + offset + ", len: " + bytes.length);
-        }
-        // Decode raw key length
-        int pos = offset;
-        final int rawKeyLen = Bytes.toInt(Bytes.slice(bytes, pos, RAW_KEY_LEN_SIZE));
-        pos += RAW_KEY_LEN_SIZE;
-
-        // Decode value length
-        final int valLen = Bytes.toInt(Bytes.slice(bytes, pos, VAL_LEN_SIZE));
-        pos += VAL_LEN_SIZE;
-
-        // Decode key
-        int keyLen = rawKeyLen - OP_SIZE - SEQ_ID_SIZE;
-        final byte[] key = Bytes.slice(bytes, pos, keyLen);
-        pos += keyLen;
-
-        // Decode Op
-        OperationType operationType = OperationType.convertCodeToOperationType(bytes[pos]);
-        pos += 1;
+    public static KeyValuePair parseFrom(final byte[] bytes) throws IOException {
+        return parseFrom(bytes, 0);
+    }
 
-        // Decode sequenceId
-        long sequenceId = Bytes.toLong(Bytes.slice(bytes, pos, SEQ_ID_SIZE));
-        pos += SEQ_ID_SIZE;
+    public static KeyValuePair parseFrom(final byte[] bytes, final int offset) throws IOException {
+        return parseFrom(bytes, offset, CURRENT_FORMAT);
+    }
 
-        // Decode value.
-        byte[] val = Bytes.slice(bytes, pos, valLen);
-        return create(key, val, operationType, sequenceId);
+    /**
+     * parse key value pair encoded in the format.
+     * @param bytes byte array
+     * @param offset offset of key value pair
+     * @param formatVersion {@link #FIXED_LENGTH_FORMAT} or {@link #VARINT_FORMAT}
+     * @return key value pair
+     * @throws IOException if the format is unknown or the bytes are truncated
+     */
+    public static KeyValuePair parseFrom(final byte[] bytes, final int offset, final int formatVersion) throws IOException {
+        Preconditions.checkNotNull(bytes, "buff is null");
+        return parseFrom(ByteSlice.wrap(bytes), offset, formatVersion);
     }
 
-    public static KeyValuePair parseFrom(final byte[] bytes) throws IOException {
-        return parseFrom(bytes, 0);
+    /**
+     * parse key value pair from a view of bytes, only key and value are copied.
+     * @param slice view of bytes
+     * @param offset offset of key value pair in the view
+     * @param formatVersion {@link #FIXED_LENGTH_FORMAT} or {@link #VARINT_FORMAT}
+     * @return key value pair
+     * @throws IOException if the format is unknown or the bytes are truncated
+     */
+    public static KeyValuePair parseFrom(final ByteSlice slice, final int offset, final int formatVersion) throws IOException {
+        return EncodedKeyValue.decode(slice, offset, formatVersion).toKeyValuePair();
     }
 
     private static class KeyValueComparator implements Comparator<KeyValuePair> {
@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dkv.storage.bean;
+
+import org.apache.dkv.storage.bean.KeyValuePair.OperationType;
+import org.apache.dkv.storage.bytes.ByteSlice;
+
+/**
+ * read-only view of a key value pair, the key and value may be slices of an encoded data block. Read them by the
+ * slices to avoid copying, {@link #getKey()} and {@link #getValue()} copy the bytes of an encoded view.
+ */
+public interface KeyValueView {
+
+    /**
+     * get the key without copying it.
+     * @return view of key
+     */
+    ByteSlice getKeySlice();
+
+    /**
+     * get the value without copying it.
+     * @return view of value
+     */
+    ByteSlice getValueSlice();
+
+    /**
+     * get key.
+     * @return byte array of key
+     */
+    byte[] getKey();
+
+    /**
+     * get value.
+     * @return byte array of value
+     */
+    byte[] getValue();
+
+    /**
+     * get operation type.
+     * @return operation type
+     */
+    OperationType getOperationType();
+
+    /**
+     * get sequence id.
+     * @return sequence id
+     */
+    long getSequenceId();
+}
@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dkv.storage.bean;
+
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import org.apache.dkv.storage.bytes.Bytes;
+
+/**
+ * range tombstones created by {@link KeyValuePair#createDeleteRange(byte[], byte[], long)}. The ranges are split
+ * into non-overlapping fragments, and each fragment keeps the largest sequence id of the tombstones covering it,
+ * so checking a key is a single lookup no matter how many tombstones overlap.
+ */
+public final class RangeTombstones {
+    
+    // start key of fragment to the largest sequence id covering it, 0 means the fragment isn't covered, each
+    // fragment ends at the start key of the next one
+    private final NavigableMap<byte[], Long> fragments = new TreeMap<>(Bytes::compare);
+    
+    /**
+     * add a range tombstone.
+     * @param tombstone range tombstone
+     */
+    public void add(final KeyValuePair tombstone) {
+        assert KeyValuePair.OperationType.DeleteRange == tombstone.getOperationType();
+        byte[] start = tombstone.getKey();
+        byte[] stop = tombstone.getValue();
+        // split the fragments at both ends of range, the stop key first, so it inherits the fragment before
+        // the tombstone is added, empty stop means the range has no upper limit
+        if (0 != stop.length) {
+            fragments.put(stop, getSequenceId(stop));
+        }
+        fragments.put(start, getSequenceId(start));
+        NavigableMap<byte[], Long> covered = 0 == stop.length ? fragments.tailMap(start, true) : fragments.subMap(start, true, stop, false);
+        for (Map.Entry<byte[], Long> entry : covered.entrySet()) {
+            entry.setValue(Math.max(entry.getValue(), tombstone.getSequenceId()));
+        }
+    }
+    
+    public boolean isEmpty() {
+        return fragments.isEmpty();
+    }
+    
+    /**
+     * get the largest sequence id of range tombstones covering the key.
+     * @param key key to check
+     * @return sequence id, 0 if no range tombstone covers the key
+     */
+    public long getSequenceId(final byte[] key) {
+        Map.Entry<byte[], Long> entry = fragments.floorEntry(key);
+        return null == entry ? 0 : entry.getValue();
+    }
+    
+    /**
+     * get the smallest sequence id of range tombstones covering the keys in range [start, last].
+     * @param start the smallest key of range
+     * @param last the largest key of range, which is included
+     * @return sequence id, 0 if some key in the range isn't covered
+     */
+    public long getMinSequenceId(final byte[] start, final byte[] last) {
+        long result = getSequenceId(start);
+        for (long each : fragments.subMap(start, false, last, true).values()) {
+            result = Math.min(result, each);
+        }
+        return result;
+    }
+    
+    /**
+     * is the key value pair deleted by a newer range tombstone.
+     * @param keyValuePair key value pair to check
+     * @return true if it's covered by a range tombstone with larger sequence id
+     */
+    public boolean isDeleted(final KeyValuePair keyValuePair) {
+        return getSequenceId(keyValuePair.getKey()) > keyValuePair.getSequenceId();
+    }
+    
+    /**
+     * is the range of tombstone overlaps with the range [start, stop).
+     * @param tombstone range tombstone
+     * @param start start of range, empty means no lower limit
+     * @param stop stop of range, which is excluded, empty means no upper limit
+     * @return true if the tombstone may cover keys in the range
+     */
+    public static boolean overlaps(final KeyValuePair tombstone, final byte[] start, final byte[] stop) {
+        return overlaps(tombstone.getKey(), tombstone.getValue(), start, stop);
+    }
+    
+    /**
+     * is the range [tombstoneStart, tombstoneStop) of tombstones overlaps with the range [start, stop).
+     * @param tombstoneStart start of tombstones
+     * @param tombstoneStop stop of tombstones, which is excluded, empty means no upper limit
+     * @param start start of range, empty means no lower limit
+     * @param stop stop of range, which is excluded, empty means no upper limit
+     * @return true if the tombstones may cover keys in the range
+     */
+    public static boolean overlaps(final byte[] tombstoneStart, final byte[] tombstoneStop, final byte[] start, final byte[] stop) {
+        return (0 == tombstoneStop.length || Bytes.compare(start, tombstoneStop) < 0) && (0 == stop.length || Bytes.compare(tombstoneStart, stop) < 0);
+    }
+}
@@ -18,15 +18,20 @@
 package org.apache.dkv.storage.block;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.zip.CRC32;
 import java.util.zip.Checksum;
 import lombok.Data;
+import org.apache.dkv.storage.bean.EncodedKeyValue;
 import org.apache.dkv.storage.bean.KeyValuePair;
 import org.apache.dkv.storage.bloom.BloomFilter;
+import org.apache.dkv.storage.bloom.PrefixExtractor;
+import org.apache.dkv.storage.bytes.BufferPool;
+import org.apache.dkv.storage.bytes.ByteSlice;
 import org.apache.dkv.storage.bytes.Bytes;
-import org.apache.dkv.storage.bytes.BytesBuilder;
 
 /**
  * build and parse DataBlock.
@@ -42,32 +47,59 @@ public final class DataBlock {
     public static final int BLOOM_FILTER_HASH_COUNT = 3;
     
     public static final int BLOOM_FILTER_BITS_PER_KEY = 10;
+    
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
 
     private int totalSize;
     
+    // appended key value pairs, the key value pairs of a parsed block are decoded on demand
     private List<KeyValuePair> keyValuePairs;
     
+    // views of the encoded key value pairs of a parsed block, null if the block is built by appending
+    private final List<EncodedKeyValue> entries;
+    
     private final BloomFilter bloomFilter;
     
     private Checksum crc32;
     
     private KeyValuePair lastKv;
     
+    // encoded block of appended key value pairs, the count is reserved at the head, it grows as needed and is
+    // reused after reset
+    private ByteBuffer buffer;
+    
+    // pool of the block buffer, null if the block buffer is not pooled
+    private final BufferPool bufferPool;
+    
     public DataBlock() {
+        this((BufferPool) null);
+    }
+
+    /**
+     * create data block to append key value pairs.
+     * @param bufferPool pool to get the block buffer from, call {@link #release()} to return it after use. null
+     *                   means the block buffer is not pooled.
+     */
+    public DataBlock(final BufferPool bufferPool) {
         totalSize = 0;
         keyValuePairs = new ArrayList<>();
         bloomFilter = new BloomFilter(BLOOM_FILTER_HASH_COUNT, BLOOM_FILTER_BITS_PER_KEY);
         crc32 = new CRC32();
+        entries = null;
+        this.bufferPool = bufferPool;
+        buffer = ByteBuffer.wrap(null == bufferPool ? new byte[INITIAL_BUFFER_SIZE] : bufferPool.acquire(INITIAL_BUFFER_SIZE));
+        buffer.position(KV_SIZE_LEN);
     }
     
-    public DataBlock(final int totalSize, final List<KeyValuePair> keyValuePairs) {
+    private DataBlock(final int totalSize, final List<EncodedKeyValue> entries) {
         this.totalSize = totalSize;
-        this.keyValuePairs = keyValuePairs;
+        this.entries = entries;
         bloomFilter = new BloomFilter(BLOOM_FILTER_HASH_COUNT, BLOOM_FILTER_BITS_PER_KEY);
+        bufferPool = null;
     }
 
     /**
-     * add Key Value into block
+     * add Key Value into block, it's encoded into the block buffer once.
      * @param keyValuePair to append to data block.
      */
     public void append(final KeyValuePair keyValuePair) {
@@ -75,11 +107,107 @@ public final class DataBlock {
         keyValuePairs.add(keyValuePair);
         lastKv = keyValuePair;
         
-        // update checksum
-        byte[] buf = keyValuePair.toBytes();
-        crc32.update(buf, 0, buf.length);
+        // encode and update checksum over the encoded bytes
+        int size = keyValuePair.getSerializeSize();
+        ensureRemaining(size);
+        int start = buffer.position();
+        keyValuePair.writeTo(buffer);
+        crc32.update(buffer.array(), start, size);
         
-        totalSize += keyValuePair.getSerializeSize();
+        totalSize += size;
+    }
+
+    private void ensureRemaining(final int size) {
+        if (null == bufferPool || buffer.remaining() >= size) {
+            buffer = Bytes.ensureRemaining(buffer, size);
+            return;
+        }
+        int position = buffer.position();
+        byte[] array = bufferPool.acquire(Math.max(buffer.capacity() * 2, position + size));
+        System.arraycopy(buffer.array(), 0, array, 0, position);
+        bufferPool.release(buffer.array());
+        buffer = ByteBuffer.wrap(array);
+        buffer.position(position);
+    }
+
+    /**
+     * return the block buffer to pool, the block can't be appended or serialized after release.
+     */
+    public void release() {
+        if (null != bufferPool && null != buffer) {
+            bufferPool.release(buffer.array());
+        }
+        buffer = null;
+    }
+
+    /**
+     * clear the block to append key value pairs of the next block, the block buffer is reused.
+     */
+    public void reset() {
+        keyValuePairs = new ArrayList<>();
+        lastKv = null;
+        totalSize = 0;
+        crc32.reset();
+        buffer.clear();
+        buffer.position(KV_SIZE_LEN);
+    }
+
+    /**
+     * get the key value pairs, the key value pairs of a parsed block are decoded and copied on first call, read
+     * {@link #getEntry(int)} to visit them in place.
+     * @return key value pairs
+     */
+    public List<KeyValuePair> getKeyValuePairs() {
+        if (null == keyValuePairs && null != entries) {
+            List<KeyValuePair> result = new ArrayList<>(entries.size());
+            for (EncodedKeyValue each : entries) {
+                result.add(each.toKeyValuePair());
+            }
+            keyValuePairs = result;
+        }
+        return keyValuePairs;
+    }
+
+    /**
+     * get the view of the encoded key value pair of a parsed block.
+     * @param index index of key value pair
+     * @return view of encoded key value pair
+     */
+    public EncodedKeyValue getEntry(final int index) {
+        return entries.get(index);
+    }
+
+    /**
+     * find the smallest key value pair greater than or equals to the target in a parsed block, no key value pair
+     * is decoded.
+     * @param target key value pair to find
+     * @return index of the key value pair, the count of key value pairs if there is none
+     */
+    public int ceiling(final KeyValuePair target) {
+        int low = 0;
+        int high = entries.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (entries.get(middle).compareTo(target) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * find the newest version of the key of target in a parsed block, only the found key value pair is decoded.
+     * @param target seek target of the key, versions ordered before it are skipped
+     * @return key value pair, null if the key is not in the block
+     */
+    public KeyValuePair find(final KeyValuePair target) {
+        int found = ceiling(target);
+        if (found < entries.size() && 0 == entries.get(found).compareKey(target.getKey())) {
+            return entries.get(found).toKeyValuePair();
+        }
+        return null;
     }
 
     /**
@@ -94,6 +222,26 @@ public final class DataBlock {
         return bloomFilter.generate(bytes);
     }
 
+    /**
+     * generate bloom filter of key prefixes.
+     * @param prefixExtractor extract prefix of keys, null means no prefix bloom filter.
+     * @return byte array represent prefix bloom filter, empty if there is no prefix extractor.
+     */
+    public byte[] getPrefixBloomFilter(final PrefixExtractor prefixExtractor) {
+        if (null == prefixExtractor) {
+            return Bytes.EMPTY_BYTES;
+        }
+        List<byte[]> prefixes = new ArrayList<>();
+        for (KeyValuePair keyValuePair : keyValuePairs) {
+            byte[] prefix = prefixExtractor.extract(keyValuePair.getKey());
+            // keys are sorted, so the same prefixes are adjacent
+            if (null != prefix && (prefixes.isEmpty() || Bytes.compare(prefixes.get(prefixes.size() - 1), prefix) != 0)) {
+                prefixes.add(prefix);
+            }
+        }
+        return bloomFilter.generate(prefixes.toArray(new byte[0][]));
+    }
+
     /**
      * get checksum digest.
      * @return integer represent checksum digest.
@@ -115,7 +263,7 @@ public final class DataBlock {
      * @return integer represent count of Key Value.
      */
     public int getKeyValueCount() {
-        return keyValuePairs.size();
+        return null == entries ? keyValuePairs.size() : entries.size();
     }
 
     /**
@@ -123,7 +271,7 @@ public final class DataBlock {
      * @return true if there is no any key value pair.
      */
     public boolean isEmpty() {
-        return keyValuePairs.size() == 0;
+        return getKeyValueCount() == 0;
     }
 
     /**
@@ -131,24 +279,22 @@ public final class DataBlock {
      * @return byte array represent a data block
      */
     public byte[] serialize() {
-        BytesBuilder builder = new BytesBuilder(getSize());
-
-        // encode count
-        byte[] countBytes = Bytes.toBytes(keyValuePairs.size());
-        builder.append(countBytes);
-
-        // Append all the key value
-        for (KeyValuePair keyValuePair : keyValuePairs) {
-            byte[] kv = keyValuePair.toBytes();
-            builder.append(kv);
-        }
-
-        // Append checksum.
-        byte[] checksum = Bytes.toBytes(this.getChecksum());
-        builder.append(checksum);
+        ByteBuffer result = serializeToBuffer();
+        return Arrays.copyOfRange(result.array(), result.position(), result.limit());
+    }
 
-        assert builder.getPos() == getSize();
-        return builder.getBuffer();
+    /**
+     * serialize a data block without copying the encoded key value pairs, the result is a view of the block
+     * buffer, which is valid until the next append or reset.
+     * @return byte buffer represent a data block, from its position to its limit
+     */
+    public ByteBuffer serializeToBuffer() {
+        ensureRemaining(CHECKSUM_LEN);
+        // encode count at the head and checksum after the key value pairs, the position is not changed
+        buffer.putInt(0, keyValuePairs.size());
+        buffer.putInt(buffer.position(), getChecksum());
+        assert buffer.position() + CHECKSUM_LEN == getSize();
+        return ByteBuffer.wrap(buffer.array(), 0, getSize());
     }
 
     /**
@@ -160,23 +306,39 @@ public final class DataBlock {
      * @throws IOException error.
      */
     public static DataBlock parseFrom(final byte[] buffer, final int offset, final int size) throws IOException {
+        return parseFrom(buffer, offset, size, KeyValuePair.CURRENT_FORMAT);
+    }
+
+    /**
+     * construct Data Block from bytes, key value pairs are encoded in the format. Only the headers are decoded, the
+     * block keeps views of the bytes, so the bytes must not be reused while the block is in use.
+     * @param buffer byte array.
+     * @param offset block offset.
+     * @param size block size.
+     * @param formatVersion format version of key value pairs.
+     * @return Data Block.
+     * @throws IOException error.
+     */
+    public static DataBlock parseFrom(final byte[] buffer, final int offset, final int size, final int formatVersion) throws IOException {
+        // integers are read in place, keys and values are not copied
+        ByteSlice slice = ByteSlice.wrap(buffer, offset, size);
         int pos = 0;
         // Parse kv getSerializeSize
-        int count = Bytes.toInt(Bytes.slice(buffer, offset + pos, KV_SIZE_LEN));
+        int count = slice.getInt(pos);
         pos += KV_SIZE_LEN;
 
         // parse all key value
-        List<KeyValuePair> result = new ArrayList<>(count);
+        List<EncodedKeyValue> result = new ArrayList<>(count);
         Checksum crc32 = new CRC32();
         for (int i = 0; i < count; i++) {
-            KeyValuePair keyValuePair = KeyValuePair.parseFrom(buffer, offset + pos);
-            result.add(keyValuePair);
-            crc32.update(buffer, offset + pos, keyValuePair.getSerializeSize());
-            pos += keyValuePair.getSerializeSize();
+            EncodedKeyValue entry = EncodedKeyValue.decode(slice, pos, formatVersion);
+            result.add(entry);
+            crc32.update(buffer, offset + pos, entry.getSize());
+            pos += entry.getSize();
         }
 
         // parse checksum
-        int checksum = Bytes.toInt(Bytes.slice(buffer, offset + pos, CHECKSUM_LEN));
+        int checksum = slice.getInt(pos);
         pos += CHECKSUM_LEN;
 
         assert checksum == (int) (crc32.getValue());
@@ -18,9 +18,12 @@
 package org.apache.dkv.storage.block;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import org.apache.dkv.storage.bean.KeyValuePair;
+import org.apache.dkv.storage.bytes.ByteSlice;
 import org.apache.dkv.storage.bytes.Bytes;
 import org.apache.dkv.storage.bytes.BytesBuilder;
 import org.apache.dkv.storage.iterator.SeekIterator;
@@ -29,29 +32,56 @@ import org.apache.dkv.storage.iterator.SeekIterator;
 @Getter
 public final class IndexBlock implements Comparable<IndexBlock> {
 
+    private static final int KEY_LEN_SIZE = 4;
+    
     private static final int OFFSET_SIZE = 8;
     
     private static final int SIZE_SIZE = 8;
     
     private static final int BF_LEN_SIZE = 4;
     
-    private final KeyValuePair lastKv;
+    // the shortest key which is greater than or equals to all keys in the data block and less than all keys in the
+    // next data block, all versions of a key are in the same data block
+    private final byte[] separator;
     
     private final long blockOffset;
     
     private final long blockSize;
     
     private final byte[] bloomFilter;
+    
+    // bloom filter of key prefixes, empty if there is no prefix extractor
+    private final byte[] prefixBloomFilter;
+    
+    // the last key value pair of the data block in legacy files, whose key is taken as the separator, null if the
+    // separator is recorded
+    private final KeyValuePair lastKeyValuePair;
+    
+    public IndexBlock(final byte[] separator, final long blockOffset, final long blockSize, final byte[] bloomFilter, final byte[] prefixBloomFilter) {
+        this(separator, blockOffset, blockSize, bloomFilter, prefixBloomFilter, null);
+    }
 
     /**
-     * Only used for {@link SeekIterator} to seek a target index block. we only care about the lastKV, so
+     * Only used for {@link SeekIterator} to seek a target index block. we only care about the separator, so
      * the other fields can be anything.
      *
-     * @param lastKV the last key value to construct the dummy index block.
+     * @param target the target key value to construct the dummy index block.
      * @return the dummy index block.
      */
-    public static IndexBlock createSeekDummy(final KeyValuePair lastKV) {
-        return new IndexBlock(lastKV, 0L, 0L, Bytes.EMPTY_BYTES);
+    public static IndexBlock createSeekDummy(final KeyValuePair target) {
+        return new IndexBlock(target.getKey(), 0L, 0L, Bytes.EMPTY_BYTES, Bytes.EMPTY_BYTES);
+    }
+
+    /**
+     * create index block of a index partition in the top-level index, which has no bloom filter.
+     *
+     * @param separator separator of the last data block in the partition.
+     * @param offset offset of the partition.
+     * @param size size of the partition.
+     * @return index block of the partition.
+     */
+    public static IndexBlock createPartition(final byte[] separator, final long offset, final long size) {
+        return new IndexBlock(separator, offset, size, Bytes.EMPTY_BYTES, Bytes.EMPTY_BYTES);
     }
 
     /**
@@ -59,36 +89,46 @@ public final class IndexBlock implements Comparable<IndexBlock> {
      * @return size.
      */
     public int getSerializeSize() {
-        return lastKv.getSerializeSize() + OFFSET_SIZE + SIZE_SIZE + BF_LEN_SIZE + bloomFilter.length;
+        return getSerializeSize(KeyValuePair.CURRENT_FORMAT);
+    }
+
+    /**
+     * get serialize size in the format.
+     * @param formatVersion format version of SSTable file.
+     * @return size.
+     */
+    public int getSerializeSize(final int formatVersion) {
+        if (KeyValuePair.FIXED_LENGTH_FORMAT == formatVersion) {
+            return KEY_LEN_SIZE + separator.length + OFFSET_SIZE + SIZE_SIZE + BF_LEN_SIZE + bloomFilter.length + BF_LEN_SIZE + prefixBloomFilter.length;
+        }
+        return Bytes.varintSize(separator.length) + separator.length + Bytes.varintSize(blockOffset) + Bytes.varintSize(blockSize)
+                + Bytes.varintSize(bloomFilter.length) + bloomFilter.length + Bytes.varintSize(prefixBloomFilter.length) + prefixBloomFilter.length;
     }
 
     /**
-     * convert block to bytes.
+     * convert block to bytes, lengths, offset and size are encoded as varints.
      * @return byte array.
      * @throws IOException IO Exception.
      */
     public byte[] toBytes() throws IOException {
         BytesBuilder builder = new BytesBuilder(getSerializeSize());
         
-        // encode last kv
-        byte[] kvBytes = lastKv.toBytes();
-        builder.append(kvBytes);
-        
-        // encode blockOffset
-        byte[] offsetBytes = Bytes.toBytes(blockOffset);
-        builder.append(offsetBytes);
-
-        // encode blockSize
-        byte[] sizeBytes = Bytes.toBytes(blockSize);
-        builder.append(sizeBytes);
+        // encode length and bytes of separator
+        builder.appendVarint(separator.length);
+        builder.append(separator);
         
-        // encode length of bloom filter
-        byte[] bfLenBytes = Bytes.toBytes(bloomFilter.length);
-        builder.append(bfLenBytes);
+        // encode blockOffset and blockSize
+        builder.appendVarint(blockOffset);
+        builder.appendVarint(blockSize);
         
-        // encode bytes of bloom filter
+        // encode length and bytes of bloom filter
+        builder.appendVarint(bloomFilter.length);
         builder.append(bloomFilter);
         
+        // encode length and bytes of prefix bloom filter
+        builder.appendVarint(prefixBloomFilter.length);
+        builder.append(prefixBloomFilter);
+        
         if (builder.getPos() != builder.getBuffer().length) {
             throw new IOException("pos(" + builder.getPos() + ") should be equal to length of bytes (" + builder.getBuffer().length + ")");
         }
@@ -96,33 +136,158 @@ public final class IndexBlock implements Comparable<IndexBlock> {
     }
 
     public static IndexBlock parseFrom(final byte[] buf, final int offset) throws IOException {
+        return parseFrom(buf, offset, KeyValuePair.CURRENT_FORMAT);
+    }
+
+    /**
+     * parse index block in the format.
+     * @param buf byte array.
+     * @param offset offset of index block.
+     * @param formatVersion format version of SSTable file.
+     * @return index block.
+     * @throws IOException if the format is unknown.
+     */
+    public static IndexBlock parseFrom(final byte[] buf, final int offset, final int formatVersion) throws IOException {
+        return parseFrom(ByteSlice.wrap(buf), offset, formatVersion);
+    }
+
+    /**
+     * parse index block from a view of bytes in the format.
+     * @param slice view of bytes.
+     * @param offset offset of index block in the view.
+     * @param formatVersion format version of SSTable file.
+     * @return index block.
+     * @throws IOException if the format is unknown.
+     */
+    public static IndexBlock parseFrom(final ByteSlice slice, final int offset, final int formatVersion) throws IOException {
+        switch (formatVersion) {
+            case KeyValuePair.FIXED_LENGTH_FORMAT:
+                return parseFixedLength(slice, offset);
+            case KeyValuePair.VARINT_FORMAT:
+                return parseVarint(slice, offset);
+            default:
+                throw new IOException("Unknown format version: " + formatVersion);
+        }
+    }
+
+    /**
+     * parse all index blocks in a view of bytes in the format.
+     * @param slice view of bytes, which ends at the end of the last index block.
+     * @param formatVersion format version of SSTable file, see {@link TailerBlock}.
+     * @return index blocks in the order of bytes.
+     * @throws IOException if the format is unknown.
+     */
+    public static List<IndexBlock> parseAll(final ByteSlice slice, final int formatVersion) throws IOException {
+        List<IndexBlock> result = new ArrayList<>();
+        int pos = 0;
+        while (pos < slice.getLength()) {
+            if (formatVersion < KeyValuePair.FIXED_LENGTH_FORMAT) {
+                pos = parseLastKv(slice, pos, formatVersion >= TailerBlock.PREFIX_BLOOM_FORMAT, result);
+            } else {
+                IndexBlock indexBlock = parseFrom(slice, pos, formatVersion);
+                pos += indexBlock.getSerializeSize(formatVersion);
+                result.add(indexBlock);
+            }
+        }
+        return result;
+    }
+
+    // index blocks of legacy files record the last key value pair of data block instead of separator, whose key is
+    // taken as the separator, returns the position after the index block
+    private static int parseLastKv(final ByteSlice slice, final int offset, final boolean hasPrefixBloomFilter, final List<IndexBlock> result) throws IOException {
+        int pos = offset;
+        KeyValuePair lastKv = KeyValuePair.parseFrom(slice, pos, KeyValuePair.FIXED_LENGTH_FORMAT);
+        pos += lastKv.getSerializeSize(KeyValuePair.FIXED_LENGTH_FORMAT);
+        final long blockOffset = slice.getLong(pos);
+        pos += OFFSET_SIZE;
+        final long blockSize = slice.getLong(pos);
+        pos += SIZE_SIZE;
+        int bloomFilterSize = slice.getInt(pos);
+        pos += BF_LEN_SIZE;
+        final byte[] bloomFilter = slice.slice(pos, bloomFilterSize).toBytes();
+        pos += bloomFilterSize;
+        byte[] prefixBloomFilter = Bytes.EMPTY_BYTES;
+        if (hasPrefixBloomFilter) {
+            int prefixBloomFilterSize = slice.getInt(pos);
+            pos += BF_LEN_SIZE;
+            prefixBloomFilter = slice.slice(pos, prefixBloomFilterSize).toBytes();
+            pos += prefixBloomFilterSize;
+        }
+        result.add(new IndexBlock(lastKv.getKey(), blockOffset, blockSize, bloomFilter, prefixBloomFilter, lastKv));
+        return pos;
+    }
+
+    private static IndexBlock parseVarint(final ByteSlice slice, final int offset) {
+        int pos = offset;
+        int separatorSize = (int) slice.getVarint(pos);
+        pos += Bytes.varintSize(separatorSize);
+        final byte[] separator = slice.slice(pos, separatorSize).toBytes();
+        pos += separatorSize;
+        
+        final long blockOffset = slice.getVarint(pos);
+        pos += Bytes.varintSize(blockOffset);
+        final long blockSize = slice.getVarint(pos);
+        pos += Bytes.varintSize(blockSize);
+        
+        int bloomFilterSize = (int) slice.getVarint(pos);
+        pos += Bytes.varintSize(bloomFilterSize);
+        final byte[] bloomFilter = slice.slice(pos, bloomFilterSize).toBytes();
+        pos += bloomFilterSize;
+        
+        int prefixBloomFilterSize = (int) slice.getVarint(pos);
+        pos += Bytes.varintSize(prefixBloomFilterSize);
+        byte[] prefixBloomFilter = slice.slice(pos, prefixBloomFilterSize).toBytes();
+        return new IndexBlock(separator, blockOffset, blockSize, bloomFilter, prefixBloomFilter);
+    }
+
+    private static IndexBlock parseFixedLength(final ByteSlice slice, final int offset) {
         int pos = offset;
-        // Decode last key value.
-        KeyValuePair lastKV = KeyValuePair.parseFrom(buf, offset);
-        pos += lastKV.getSerializeSize();
+        // Decode separator.
+        int separatorSize = slice.getInt(pos);
+        pos += KEY_LEN_SIZE;
+        final byte[] separator = slice.slice(pos, separatorSize).toBytes();
+        pos += separatorSize;
 
         // Decode block blockOffset
-        final long blockOffset = Bytes.toLong(Bytes.slice(buf, pos, OFFSET_SIZE));
+        final long blockOffset = slice.getLong(pos);
         pos += OFFSET_SIZE;
 
         // Decode block blockSize
-        final long blockSize = Bytes.toLong(Bytes.slice(buf, pos, SIZE_SIZE));
+        final long blockSize = slice.getLong(pos);
         pos += SIZE_SIZE;
 
         // Decode blockSize of block bloom filter
-        int bloomFilterSize = Bytes.toInt(Bytes.slice(buf, pos, BF_LEN_SIZE));
+        int bloomFilterSize = slice.getInt(pos);
         pos += BF_LEN_SIZE;
 
         // Decode bytes of block bloom filter
-        byte[] bloomFilter = Bytes.slice(buf, pos, bloomFilterSize);
+        final byte[] bloomFilter = slice.slice(pos, bloomFilterSize).toBytes();
         pos += bloomFilterSize;
+        
+        // Decode prefix bloom filter
+        int prefixBloomFilterSize = slice.getInt(pos);
+        pos += BF_LEN_SIZE;
+        byte[] prefixBloomFilter = slice.slice(pos, prefixBloomFilterSize).toBytes();
+        pos += prefixBloomFilterSize;
 
-        assert pos <= buf.length;
-        return new IndexBlock(lastKV, blockOffset, blockSize, bloomFilter);
+        assert pos <= slice.getLength();
+        return new IndexBlock(separator, blockOffset, blockSize, bloomFilter, prefixBloomFilter);
+    }
+    
+    /**
+     * are all key value pairs of the data block less than the target. The versions of a key may span data blocks in
+     * legacy files, whose separators are the same, so they're told apart by the last key value pair.
+     * @param target target key value pair, whose key is not greater than the separator
+     * @return true if the data block of legacy file ends before the target
+     */
+    public boolean endsBefore(final KeyValuePair target) {
+        return null != lastKeyValuePair && lastKeyValuePair.compareTo(target) < 0;
     }
     
     @Override
     public int compareTo(final IndexBlock o) {
-        return this.getLastKv().compareTo(o.getLastKv());
+        int result = Bytes.compare(separator, o.separator);
+        // versions of a key may span data blocks in legacy files, whose separators are the same
+        return 0 != result ? result : Long.compare(blockOffset, o.blockOffset);
     }
 }
@@ -20,45 +20,83 @@ package org.apache.dkv.storage.block;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import org.apache.dkv.storage.bean.KeyValuePair;
+import org.apache.dkv.storage.bytes.BytesBuilder;
 
 /**
- * serialize index block into bytes.
+ * serialize index blocks into a two-level index. The index blocks are split into partitions of about
+ * {@link #PARTITION_SIZE} bytes by default, and the top-level index has an index block for each partition, which records the
+ * separator, offset and size of the partition.
  */
 public class IndexBlockBuilder {
     
+    public static final int PARTITION_SIZE = 256 * 1024;
+    
     private final List<IndexBlock> indexBlocks = new ArrayList<>();
     
+    private final List<IndexBlock> partitions = new ArrayList<>();
+    
+    private final int partitionSize;
+    
     private int totalBytes;
+    
+    public IndexBlockBuilder() {
+        this(PARTITION_SIZE);
+    }
+    
+    public IndexBlockBuilder(final int partitionSize) {
+        this.partitionSize = partitionSize;
+    }
 
     /**
      * append a index block into writer.
-     * @param lastKv lastKv of data block.
+     * @param separator separator of data block and the next data block.
      * @param offset offset in data block.
      * @param size size of data block.
      * @param bloomFilter bloom filter of data block.
+     * @param prefixBloomFilter prefix bloom filter of data block.
      */
-    public void append(final KeyValuePair lastKv, final long offset, final long size, final byte[] bloomFilter) {
-        IndexBlock indexBlock = new IndexBlock(lastKv, offset, size, bloomFilter);
+    public void append(final byte[] separator, final long offset, final long size, final byte[] bloomFilter, final byte[] prefixBloomFilter) {
+        IndexBlock indexBlock = new IndexBlock(separator, offset, size, bloomFilter, prefixBloomFilter);
         indexBlocks.add(indexBlock);
         totalBytes += indexBlock.getSerializeSize();
     }
 
     /**
-     * serialize index block into bytes.
+     * serialize index blocks into partitions, the top-level index blocks are recorded for
+     * {@link #serializeTopLevelIndex()}.
      * 
-     * @return byte array represent DataBlockMeta
+     * @param offset offset of the first partition in SSTable
+     * @return byte array of all partitions
      * @throws IOException IO Exception.
      */
-    public byte[] serialize() throws IOException {
+    public byte[] serializePartitions(final long offset) throws IOException {
         byte[] buffer = new byte[totalBytes];
         int pos = 0;
-        for (IndexBlock indexBlock : indexBlocks) {
-            byte[] bytes = indexBlock.toBytes();
+        int partitionStart = 0;
+        for (int i = 0; i < indexBlocks.size(); i++) {
+            byte[] bytes = indexBlocks.get(i).toBytes();
             System.arraycopy(bytes, 0, buffer, pos, bytes.length);
             pos += bytes.length;
+            if (pos - partitionStart >= partitionSize || i == indexBlocks.size() - 1) {
+                partitions.add(IndexBlock.createPartition(indexBlocks.get(i).getSeparator(), offset + partitionStart, pos - partitionStart));
+                partitionStart = pos;
+            }
         }
         assert pos == totalBytes;
         return buffer;
     }
+
+    /**
+     * serialize the top-level index, it must be called after {@link #serializePartitions(long)}.
+     * 
+     * @return byte array of the top-level index
+     * @throws IOException IO Exception.
+     */
+    public byte[] serializeTopLevelIndex() throws IOException {
+        BytesBuilder builder = new BytesBuilder(partitions.stream().mapToInt(IndexBlock::getSerializeSize).sum());
+        for (IndexBlock partition : partitions) {
+            builder.append(partition.toBytes());
+        }
+        return builder.getBuffer();
+    }
 }
@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dkv.storage.block;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.apache.dkv.storage.bytes.ByteSlice;
+import org.apache.dkv.storage.bytes.Bytes;
+import org.apache.dkv.storage.bytes.BytesBuilder;
+
+/**
+ * meta block in SSTable, It records the key range, the bloom filters and the properties of the SSTable. The bloom
+ * filter of keys, the properties and the position and span of range-del block are appended after the prefix bloom
+ * filter, so the meta blocks of old files are still readable.
+ */
+@Getter
+@AllArgsConstructor
+public final class MetaBlock {
+    
+    private static final int KEY_LEN_SIZE = 4;
+    
+    private final byte[] firstKey;
+    
+    private final byte[] lastKey;
+    
+    // bloom filter of key prefixes, empty if there is no prefix extractor
+    private final byte[] prefixBloomFilter;
+    
+    // bloom filter of all keys in SSTable, empty if the file is written before it's recorded
+    private final byte[] bloomFilter;
+    
+    // null if the file is written before properties are recorded
+    private final TableProperties properties;
+    
+    // range-del block is omitted if the SSTable has no range tombstone
+    private final long rangeDelBlockOffset;
+    
+    private final long rangeDelBlockSize;
+    
+    // span of range tombstones, reads skip the files whose tombstones can't cover the keys, empty stop means
+    // no upper limit
+    private final byte[] rangeDelStart;
+    
+    private final byte[] rangeDelStop;
+    
+    public MetaBlock(final byte[] firstKey, final byte[] lastKey) {
+        this(firstKey, lastKey, Bytes.EMPTY_BYTES);
+    }
+    
+    public MetaBlock(final byte[] firstKey, final byte[] lastKey, final byte[] prefixBloomFilter) {
+        this(firstKey, lastKey, prefixBloomFilter, Bytes.EMPTY_BYTES, null);
+    }
+    
+    public MetaBlock(final byte[] firstKey, final byte[] lastKey, final byte[] prefixBloomFilter, final byte[] bloomFilter, final TableProperties properties) {
+        this(firstKey, lastKey, prefixBloomFilter, bloomFilter, properties, 0, 0, Bytes.EMPTY_BYTES, Bytes.EMPTY_BYTES);
+    }
+
+    /**
+     * get serialize size.
+     * @return size.
+     */
+    public int getSerializeSize() {
+        int size = KEY_LEN_SIZE + firstKey.length + KEY_LEN_SIZE + lastKey.length + KEY_LEN_SIZE + prefixBloomFilter.length;
+        if (null != properties) {
+            size += KEY_LEN_SIZE + bloomFilter.length + properties.getSerializeSize();
+        }
+        if (null != properties && 0 != rangeDelBlockSize) {
+            size += Bytes.varintSize(rangeDelBlockOffset) + Bytes.varintSize(rangeDelBlockSize)
+                    + KEY_LEN_SIZE + rangeDelStart.length + KEY_LEN_SIZE + rangeDelStop.length;
+        }
+        return size;
+    }
+
+    /**
+     * serialize a meta block to byte array.
+     * @return byte array represent meta block.
+     */
+    public byte[] serialize() {
+        BytesBuilder builder = new BytesBuilder(getSerializeSize());
+        
+        // encode first key
+        builder.append(Bytes.toBytes(firstKey.length));
+        builder.append(firstKey);
+        
+        // encode last key
+        builder.append(Bytes.toBytes(lastKey.length));
+        builder.append(lastKey);
+        
+        // encode prefix bloom filter
+        builder.append(Bytes.toBytes(prefixBloomFilter.length));
+        builder.append(prefixBloomFilter);
+        
+        if (null != properties) {
+            // encode bloom filter of keys and properties
+            builder.append(Bytes.toBytes(bloomFilter.length));
+            builder.append(bloomFilter);
+            properties.writeTo(builder);
+        }
+        
+        if (null != properties && 0 != rangeDelBlockSize) {
+            // encode position and span of range-del block
+            builder.appendVarint(rangeDelBlockOffset);
+            builder.appendVarint(rangeDelBlockSize);
+            builder.append(Bytes.toBytes(rangeDelStart.length));
+            builder.append(rangeDelStart);
+            builder.append(Bytes.toBytes(rangeDelStop.length));
+            builder.append(rangeDelStop);
+        }
+        return builder.getBuffer();
+    }
+
+    /**
+     * parse meta block from byte array, the meta block ends at the end of buffer.
+     * @param buf byte buffer
+     * @param offset offset of meta block in buffer
+     * @return meta block object
+     */
+    public static MetaBlock parseFrom(final byte[] buf, final int offset) {
+        ByteSlice slice = ByteSlice.wrap(buf);
+        int pos = offset;
+        
+        // decode first key
+        int firstKeyLen = slice.getInt(pos);
+        pos += KEY_LEN_SIZE;
+        final byte[] firstKey = slice.slice(pos, firstKeyLen).toBytes();
+        pos += firstKeyLen;
+        
+        // decode last key
+        int lastKeyLen = slice.getInt(pos);
+        pos += KEY_LEN_SIZE;
+        byte[] lastKey = slice.slice(pos, lastKeyLen).toBytes();
+        pos += lastKeyLen;
+        if (pos >= buf.length) {
+            // legacy meta block has no prefix bloom filter
+            return new MetaBlock(firstKey, lastKey, Bytes.EMPTY_BYTES);
+        }
+        
+        // decode prefix bloom filter
+        int prefixBloomFilterLen = slice.getInt(pos);
+        pos += KEY_LEN_SIZE;
+        byte[] prefixBloomFilter = slice.slice(pos, prefixBloomFilterLen).toBytes();
+        pos += prefixBloomFilterLen;
+        if (pos >= buf.length) {
+            return new MetaBlock(firstKey, lastKey, prefixBloomFilter);
+        }
+        
+        // decode bloom filter of keys and properties
+        int bloomFilterLen = slice.getInt(pos);
+        pos += KEY_LEN_SIZE;
+        byte[] bloomFilter = slice.slice(pos, bloomFilterLen).toBytes();
+        pos += bloomFilterLen;
+        TableProperties properties = TableProperties.parseFrom(slice, pos);
+        pos += properties.getSerializeSize();
+        if (pos >= buf.length) {
+            return new MetaBlock(firstKey, lastKey, prefixBloomFilter, bloomFilter, properties);
+        }
+        
+        // decode position and span of range-del block
+        long rangeDelBlockOffset = slice.getVarint(pos);
+        pos += Bytes.varintSize(rangeDelBlockOffset);
+        long rangeDelBlockSize = slice.getVarint(pos);
+        pos += Bytes.varintSize(rangeDelBlockSize);
+        int rangeDelStartLen = slice.getInt(pos);
+        pos += KEY_LEN_SIZE;
+        byte[] rangeDelStart = slice.slice(pos, rangeDelStartLen).toBytes();
+        pos += rangeDelStartLen;
+        int rangeDelStopLen = slice.getInt(pos);
+        pos += KEY_LEN_SIZE;
+        byte[] rangeDelStop = slice.slice(pos, rangeDelStopLen).toBytes();
+        return new MetaBlock(firstKey, lastKey, prefixBloomFilter, bloomFilter, properties, rangeDelBlockOffset, rangeDelBlockSize, rangeDelStart, rangeDelStop);
+    }
+}
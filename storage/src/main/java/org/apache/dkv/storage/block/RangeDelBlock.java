@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dkv.storage.block;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.apache.dkv.storage.bean.KeyValuePair;
+import org.apache.dkv.storage.bytes.BytesBuilder;
+
+/**
+ * range-del block in SSTable, It keeps the range tombstones of the SSTable sorted by start key, the block is
+ * referred by the meta block and loaded when the file is opened.
+ */
+@Getter
+@AllArgsConstructor
+public final class RangeDelBlock {
+    
+    private final List<KeyValuePair> tombstones;
+
+    /**
+     * get serialize size.
+     * @return size.
+     */
+    public int getSerializeSize() {
+        int size = 0;
+        for (KeyValuePair each : tombstones) {
+            size += each.getSerializeSize();
+        }
+        return size;
+    }
+
+    /**
+     * serialize a range-del block to byte array, the tombstones are encoded one after another.
+     * @return byte array represent range-del block.
+     */
+    public byte[] serialize() {
+        BytesBuilder builder = new BytesBuilder(getSerializeSize());
+        for (KeyValuePair each : tombstones) {
+            builder.append(each.toBytes());
+        }
+        return builder.getBuffer();
+    }
+
+    /**
+     * parse range-del block from byte array, the block ends at the end of buffer.
+     * @param buf byte buffer
+     * @return range-del block object
+     * @throws IOException if the bytes are truncated
+     */
+    public static RangeDelBlock parseFrom(final byte[] buf) throws IOException {
+        List<KeyValuePair> tombstones = new ArrayList<>();
+        int pos = 0;
+        while (pos < buf.length) {
+            KeyValuePair tombstone = KeyValuePair.parseFrom(buf, pos);
+            tombstones.add(tombstone);
+            pos += tombstone.getSerializeSize();
+        }
+        return new RangeDelBlock(tombstones);
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dkv.storage.block;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.apache.dkv.storage.bytes.ByteSlice;
+import org.apache.dkv.storage.bytes.Bytes;
+import org.apache.dkv.storage.bytes.BytesBuilder;
+
+/**
+ * statistics of key value pairs in SSTable, recorded in the meta block.
+ */
+@Getter
+@AllArgsConstructor
+public final class TableProperties {
+    
+    private final long minSequenceId;
+    
+    private final long maxSequenceId;
+    
+    // count of key value pairs, including all versions and delete markers
+    private final long entryCount;
+    
+    // count of delete markers
+    private final long deleteCount;
+    
+    // bytes of encoded key value pairs
+    private final long rawSize;
+    
+    // bytes of data blocks in file, which would be the compressed size if blocks are compressed
+    private final long dataSize;
+
+    /**
+     * get serialize size.
+     * @return size.
+     */
+    public int getSerializeSize() {
+        return Bytes.varintSize(minSequenceId) + Bytes.varintSize(maxSequenceId) + Bytes.varintSize(entryCount)
+                + Bytes.varintSize(deleteCount) + Bytes.varintSize(rawSize) + Bytes.varintSize(dataSize);
+    }
+
+    /**
+     * serialize properties as varints.
+     * @param builder builder to append to
+     */
+    public void writeTo(final BytesBuilder builder) {
+        builder.appendVarint(minSequenceId);
+        builder.appendVarint(maxSequenceId);
+        builder.appendVarint(entryCount);
+        builder.appendVarint(deleteCount);
+        builder.appendVarint(rawSize);
+        builder.appendVarint(dataSize);
+    }
+
+    /**
+     * parse properties.
+     * @param slice byte slice
+     * @param offset offset of properties in slice
+     * @return properties object
+     */
+    public static TableProperties parseFrom(final ByteSlice slice, final int offset) {
+        int pos = offset;
+        long[] values = new long[6];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = slice.getVarint(pos);
+            pos += Bytes.varintSize(values[i]);
+        }
+        return new TableProperties(values[0], values[1], values[2], values[3], values[4], values[5]);
+    }
+}
@@ -19,6 +19,8 @@ package org.apache.dkv.storage.block;
 
 import lombok.AllArgsConstructor;
 import lombok.Getter;
+import org.apache.dkv.storage.bean.KeyValuePair;
+import org.apache.dkv.storage.bytes.ByteSlice;
 import org.apache.dkv.storage.bytes.Bytes;
 import org.apache.dkv.storage.bytes.BytesBuilder;
 
@@ -29,7 +31,26 @@ import org.apache.dkv.storage.bytes.BytesBuilder;
 @AllArgsConstructor
 public final class TailerBlock {
     
-    public static final long DISK_FILE_MAGIC = 0xFAC881234221FFA9L;
+    // magic number of tailer blocks with format version
+    public static final long DISK_FILE_MAGIC = 0xFAC881234221FFAAL;
+    
+    // magic number of tailer blocks written before format version is introduced, the format is fixed length
+    public static final long LEGACY_DISK_FILE_MAGIC = 0xFAC881234221FFA9L;
+    
+    // format versions of the files written before format version is introduced, from the oldest to the newest.
+    // They're never written into tailer blocks, the layout of legacy file tells them apart, see LegacyFormat
+    
+    // flat index of the last key value pairs of data blocks, there is no meta block
+    public static final int BASELINE_FORMAT = -3;
+    
+    // flat index of the last key value pairs of data blocks, the meta block only has the first key and the last key
+    public static final int META_BLOCK_FORMAT = -2;
+    
+    // flat index of the last key value pairs of data blocks, with prefix bloom filters
+    public static final int PREFIX_BLOOM_FORMAT = -1;
+    
+    // partitioned index of the last key value pairs of data blocks
+    public static final int PARTITIONED_INDEX_FORMAT = 0;
 
     private static final int FILE_SIZE = 8;
     
@@ -39,9 +60,16 @@ public final class TailerBlock {
     
     private static final int SIZE_SIZE = 8;
     
+    private static final int VERSION_SIZE = 4;
+    
     private static final int MAGIC_SIZE = 8;
     
-    public static final int TAILER_SIZE = FILE_SIZE + COUNT_SIZE + OFFSET_SIZE + SIZE_SIZE + MAGIC_SIZE;
+    public static final int LEGACY_TAILER_SIZE = FILE_SIZE + COUNT_SIZE + OFFSET_SIZE + SIZE_SIZE + OFFSET_SIZE + SIZE_SIZE + MAGIC_SIZE;
+    
+    public static final int TAILER_SIZE = LEGACY_TAILER_SIZE + VERSION_SIZE;
+    
+    // tailer block written before the meta block is introduced, which has the legacy magic number
+    private static final int BASELINE_TAILER_SIZE = FILE_SIZE + COUNT_SIZE + OFFSET_SIZE + SIZE_SIZE + MAGIC_SIZE;
     
     private final long fileSize;
     
@@ -51,13 +79,23 @@ public final class TailerBlock {
     
     private final long indexBlockSize;
     
+    private final long metaBlockOffset;
+    
+    private final long metaBlockSize;
+    
+    // format version of key value pairs and index blocks, see KeyValuePair#CURRENT_FORMAT
+    private final int formatVersion;
+    
     private final long magicNumber;
     
-    public TailerBlock(final long fileSize, final int blockCount, final long indexBlockOffset, final long indexBlockSize) {
+    public TailerBlock(final long fileSize, final int blockCount, final long indexBlockOffset, final long indexBlockSize, final long metaBlockOffset, final long metaBlockSize) {
         this.fileSize = fileSize;
         this.blockCount = blockCount;
         this.indexBlockOffset = indexBlockOffset;
         this.indexBlockSize = indexBlockSize;
+        this.metaBlockOffset = metaBlockOffset;
+        this.metaBlockSize = metaBlockSize;
+        this.formatVersion = KeyValuePair.CURRENT_FORMAT;
         this.magicNumber = DISK_FILE_MAGIC;
     }
 
@@ -84,6 +122,18 @@ public final class TailerBlock {
         bytes = Bytes.toBytes(indexBlockSize);
         builder.append(bytes);
         
+        // encode meta block offset(8 bytes)
+        bytes = Bytes.toBytes(metaBlockOffset);
+        builder.append(bytes);
+        
+        // encode meta block size(8 bytes)
+        bytes = Bytes.toBytes(metaBlockSize);
+        builder.append(bytes);
+        
+        // encode format version(4 bytes)
+        bytes = Bytes.toBytes(formatVersion);
+        builder.append(bytes);
+        
         // encode magic number(8 bytes)
         bytes = Bytes.toBytes(DISK_FILE_MAGIC);
         builder.append(bytes);
@@ -92,34 +142,83 @@ public final class TailerBlock {
     }
     
     /**
-     * parse tailer block from byte array.
-     * @param buf byte buffer
+     * is the tailer block written before format version is introduced, its format version is the newest legacy
+     * format {@link KeyValuePair#FIXED_LENGTH_FORMAT}, and the files of older formats have the same tailer block.
+     * @return true if the magic number is legacy
+     */
+    public boolean isLegacy() {
+        return LEGACY_DISK_FILE_MAGIC == magicNumber;
+    }
+    
+    /**
+     * parse tailer block from byte array, legacy tailer block is shorter and aligned to the end of the buffer.
+     * @param buf byte buffer of {@link #TAILER_SIZE} bytes
      * @param offset offset of tailer block in SSTable
      * @return tailer block object
      */
     public static TailerBlock parseFrom(final byte[] buf, final int offset) {
-        int pos = offset;
+        ByteSlice slice = ByteSlice.wrap(buf);
+        final boolean legacy = LEGACY_DISK_FILE_MAGIC == slice.getLong(offset + TAILER_SIZE - MAGIC_SIZE);
+        if (legacy && !hasMetaBlock(slice, offset + VERSION_SIZE)) {
+            return parseBaseline(slice, offset + TAILER_SIZE - BASELINE_TAILER_SIZE);
+        }
+        int pos = legacy ? offset + VERSION_SIZE : offset;
 
         // decode file size(8 bytes)
-        final long fileSize = Bytes.toLong(Bytes.slice(buf, pos, FILE_SIZE));
+        final long fileSize = slice.getLong(pos);
         pos += 8;
         
         // decode block count(4 bytes)
-        final int blockCount = Bytes.toInt(Bytes.slice(buf, pos, COUNT_SIZE));
+        final int blockCount = slice.getInt(pos);
         pos += 4;
         
         // decode index block offset(8 bytes)
-        final long dataBlockMetaOffset = Bytes.toLong(Bytes.slice(buf, pos, OFFSET_SIZE));
+        final long dataBlockMetaOffset = slice.getLong(pos);
         pos += 8;
         
         // decode index block size(8 bytes)
-        final long dataBlockMetaSize = Bytes.toLong(Bytes.slice(buf, pos, SIZE_SIZE));
+        final long dataBlockMetaSize = slice.getLong(pos);
+        pos += 8;
+        
+        // decode meta block offset(8 bytes)
+        final long metaBlockOffset = slice.getLong(pos);
         pos += 8;
         
+        // decode meta block size(8 bytes)
+        final long metaBlockSize = slice.getLong(pos);
+        pos += 8;
+        
+        // decode format version(4 bytes)
+        int formatVersion = KeyValuePair.FIXED_LENGTH_FORMAT;
+        if (!legacy) {
+            formatVersion = slice.getInt(pos);
+            pos += VERSION_SIZE;
+        }
+        
         // decode magic number(8 bytes)
-        final long magicNumber = Bytes.toLong(Bytes.slice(buf, pos, MAGIC_SIZE));
-        assert DISK_FILE_MAGIC == magicNumber;
+        final long magicNumber = slice.getLong(pos);
+        assert DISK_FILE_MAGIC == magicNumber || LEGACY_DISK_FILE_MAGIC == magicNumber;
 
-        return new TailerBlock(fileSize, blockCount, dataBlockMetaOffset, dataBlockMetaSize, magicNumber);
+        return new TailerBlock(fileSize, blockCount, dataBlockMetaOffset, dataBlockMetaSize, metaBlockOffset, metaBlockSize, formatVersion, magicNumber);
+    }
+    
+    // the meta block is written right before the legacy tailer block, which isn't the case if the bytes are read from
+    // a shorter baseline tailer block
+    private static boolean hasMetaBlock(final ByteSlice slice, final int offset) {
+        int metaBlockPos = offset + FILE_SIZE + COUNT_SIZE + OFFSET_SIZE + SIZE_SIZE;
+        return slice.getLong(offset) == slice.getLong(metaBlockPos) + slice.getLong(metaBlockPos + OFFSET_SIZE) + LEGACY_TAILER_SIZE;
     }
+    
+    private static TailerBlock parseBaseline(final ByteSlice slice, final int offset) {
+        int pos = offset;
+        final long fileSize = slice.getLong(pos);
+        pos += FILE_SIZE;
+        final int blockCount = slice.getInt(pos);
+        pos += COUNT_SIZE;
+        final long dataBlockMetaOffset = slice.getLong(pos);
+        pos += OFFSET_SIZE;
+        final long dataBlockMetaSize = slice.getLong(pos);
+        return new TailerBlock(fileSize, blockCount, dataBlockMetaOffset, dataBlockMetaSize, 0L, 0L, KeyValuePair.FIXED_LENGTH_FORMAT, LEGACY_DISK_FILE_MAGIC);
+    }
+
 }
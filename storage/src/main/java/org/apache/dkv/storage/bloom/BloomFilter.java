@@ -24,14 +24,28 @@ public final class BloomFilter {
      */
     public byte[] generate(final byte[][] keys) {
         assert keys != null;
-        bitLen = keys.length * bitsPerKey;
+        int[] keyHashes = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            assert keys[i] != null;
+            keyHashes[i] = Bytes.hash(keys[i]);
+        }
+        return generate(keyHashes, keyHashes.length);
+    }
+
+    /**
+     * generate bloom filter by hashes of keys, so the keys needn't be kept until the filter is generated.
+     * @param keyHashes hashes of keys computed by {@link Bytes#hash(byte[])}.
+     * @param count count of hashes in the array.
+     * @return a byte array representing bloom filters.
+     */
+    public byte[] generate(final int[] keyHashes, final int count) {
+        bitLen = count * bitsPerKey;
         // align the bitLen.
         bitLen = ((bitLen + 7) / 8) << 3;
         bitLen = Math.max(bitLen, 64);
         result = new byte[bitLen >> 3];
-        for (byte[] key : keys) {
-            assert key != null;
-            int h = Bytes.hash(key);
+        for (int i = 0; i < count; i++) {
+            int h = keyHashes[i];
             for (int t = 0; t < k; t++) {
                 int idx = (h % bitLen + bitLen) % bitLen;
                 result[idx / 8] |= 1 << (idx % 8);
@@ -49,10 +63,24 @@ public final class BloomFilter {
      */
     public boolean contains(final byte[] key) {
         assert result != null;
+        return contains(result, key);
+    }
+
+    /**
+     * check is key in storage by a generated bloom filter.
+     * @param filter byte array of bloom filter, empty means no filter.
+     * @param key to found.
+     * @return true if key may exist.
+     */
+    public boolean contains(final byte[] filter, final byte[] key) {
+        if (0 == filter.length) {
+            return true;
+        }
+        int filterBitLen = filter.length << 3;
         int h = Bytes.hash(key);
         for (int t = 0; t < k; t++) {
-            int idx = (h % bitLen + bitLen) % bitLen;
-            if ((result[idx / 8] & (1 << (idx % 8))) == 0) {
+            int idx = (h % filterBitLen + filterBitLen) % filterBitLen;
+            if ((filter[idx / 8] & (1 << (idx % 8))) == 0) {
                 return false;
             }
             int delta = (h >> 17) | (h << 15);
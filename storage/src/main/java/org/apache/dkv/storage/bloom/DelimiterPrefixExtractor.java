@@ -0,0 +1,47 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dkv.storage.bloom;
+
+import java.util.Arrays;
+
+/**
+ * prefix ends with the nth delimiter of key, e.g. the prefix of key tenant|entity|ts is tenant|entity| if the
+ * delimiter is '|' and the count of delimiters is 2.
+ */
+public final class DelimiterPrefixExtractor implements PrefixExtractor {
+    
+    private final byte delimiter;
+    
+    private final int count;
+    
+    public DelimiterPrefixExtractor(final byte delimiter, final int count) {
+        this.delimiter = delimiter;
+        this.count = count;
+    }
+    
+    @Override
+    public byte[] extract(final byte[] key) {
+        int found = 0;
+        for (int i = 0; i < key.length; i++) {
+            if (key[i] == delimiter && ++found == count) {
+                return Arrays.copyOf(key, i + 1);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dkv.storage.bloom;
+
+/**
+ * Extract prefix of keys to build prefix bloom filters, so a prefix scan can skip the SSTable files and blocks
+ * which have no key with the prefix. For any byte array p which has a prefix, every key starting with p must
+ * have the same prefix as p.
+ */
+public interface PrefixExtractor {
+
+    /**
+     * extract prefix of key.
+     * @param key byte array of key
+     * @return byte array of prefix, null if key has no prefix
+     */
+    byte[] extract(byte[] key);
+}
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dkv.storage.bytes;
+
+import com.google.common.base.Preconditions;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * pool of byte arrays in power of two size classes, so large I/O buffers are reused instead of allocated for each
+ * read. Arrays larger than the max size class are not pooled, and the pool keeps at most capacity bytes of free
+ * arrays.
+ */
+public final class BufferPool {
+    
+    // max size of pooled arrays by default, which covers a read-ahead window
+    public static final int DEFAULT_MAX_SIZE = 16 * 1024 * 1024;
+    
+    // max bytes of free arrays kept in pool by default
+    public static final long DEFAULT_CAPACITY = 64 * 1024 * 1024;
+    
+    private static final int MIN_SIZE_SHIFT = 12;
+    
+    private final int maxSizeShift;
+    
+    private final long capacity;
+    
+    // free arrays of size class 1 << (MIN_SIZE_SHIFT + i)
+    private final Queue<byte[]>[] freeLists;
+    
+    private final AtomicLong pooledBytes = new AtomicLong();
+
+    /**
+     * create buffer pool.
+     * @param maxSize max size of pooled arrays, rounded up to power of two
+     * @param capacity max bytes of free arrays kept in pool
+     */
+    public BufferPool(final int maxSize, final long capacity) {
+        Preconditions.checkArgument(maxSize > 0 && capacity >= 0, "Invalid maxSize: %s or capacity: %s", maxSize, capacity);
+        this.maxSizeShift = Math.max(MIN_SIZE_SHIFT, sizeShift(maxSize));
+        this.capacity = capacity;
+        freeLists = createFreeLists(maxSizeShift - MIN_SIZE_SHIFT + 1);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static <T> Queue<T>[] createFreeLists(final int count) {
+        Queue<T>[] result = new Queue[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = new ConcurrentLinkedQueue<>();
+        }
+        return result;
+    }
+    
+    private static int sizeShift(final int size) {
+        return size <= 1 ? 0 : Integer.SIZE - Integer.numberOfLeadingZeros(size - 1);
+    }
+
+    /**
+     * get an array from pool, release it after use.
+     * @param size min length of array
+     * @return array whose length is greater than or equals to size, only the first size bytes are meaningful
+     */
+    public byte[] acquire(final int size) {
+        int shift = Math.max(MIN_SIZE_SHIFT, sizeShift(size));
+        if (shift > maxSizeShift) {
+            return new byte[size];
+        }
+        byte[] result = freeLists[shift - MIN_SIZE_SHIFT].poll();
+        if (null == result) {
+            return new byte[1 << shift];
+        }
+        pooledBytes.addAndGet(-result.length);
+        return result;
+    }
+
+    /**
+     * return an array acquired from pool, the array must not be used after release.
+     * @param buffer array to return
+     */
+    public void release(final byte[] buffer) {
+        if (isPooled(buffer.length)) {
+            freeLists[sizeShift(buffer.length) - MIN_SIZE_SHIFT].offer(buffer);
+        }
+    }
+
+    // not pooled if it's not in any size class, or the pool is full
+    private boolean isPooled(final int length) {
+        int shift = sizeShift(length);
+        if (shift < MIN_SIZE_SHIFT || shift > maxSizeShift || length != 1 << shift) {
+            return false;
+        }
+        if (pooledBytes.addAndGet(length) > capacity) {
+            pooledBytes.addAndGet(-length);
+            return false;
+        }
+        return true;
+    }
+    
+    public long getPooledBytes() {
+        return pooledBytes.get();
+    }
+}
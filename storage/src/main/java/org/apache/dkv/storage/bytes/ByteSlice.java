@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dkv.storage.bytes;
+
+import com.google.common.base.Preconditions;
+import java.nio.ByteBuffer;
+import lombok.Getter;
+
+/**
+ * a read-only view of a range of byte array, integers are read in place, so decoding doesn't allocate for each
+ * field. Bytes are copied only by {@link #toBytes()}.
+ */
+@Getter
+public final class ByteSlice implements Comparable<ByteSlice> {
+    
+    private final byte[] array;
+    
+    private final int offset;
+    
+    private final int length;
+    
+    // absolute reads of the byte buffer don't change its position, so it's shared by sub slices
+    private final ByteBuffer buffer;
+    
+    private ByteSlice(final byte[] array, final int offset, final int length, final ByteBuffer buffer) {
+        Preconditions.checkArgument(offset >= 0 && length >= 0 && offset + length <= array.length,
+                "Invalid offset: %s or length: %s, array.length: %s", offset, length, array.length);
+        this.array = array;
+        this.offset = offset;
+        this.length = length;
+        this.buffer = buffer;
+    }
+    
+    /**
+     * create a view of the range of byte array.
+     * @param array byte array
+     * @param offset offset of the range
+     * @param length length of the range
+     * @return byte slice
+     */
+    public static ByteSlice wrap(final byte[] array, final int offset, final int length) {
+        return new ByteSlice(array, offset, length, ByteBuffer.wrap(array));
+    }
+    
+    /**
+     * create a view of the whole byte array.
+     * @param array byte array
+     * @return byte slice
+     */
+    public static ByteSlice wrap(final byte[] array) {
+        return wrap(array, 0, array.length);
+    }
+    
+    /**
+     * create a view of the range of this slice, the bytes are shared.
+     * @param index start index in this slice
+     * @param len length of the range
+     * @return byte slice
+     */
+    public ByteSlice slice(final int index, final int len) {
+        checkIndex(index, len);
+        return new ByteSlice(array, offset + index, len, buffer);
+    }
+    
+    private void checkIndex(final int index, final int len) {
+        if (index < 0 || len < 0 || index + len > length) {
+            throw new IndexOutOfBoundsException("index: " + index + ", len: " + len + ", length: " + length);
+        }
+    }
+    
+    public byte get(final int index) {
+        checkIndex(index, 1);
+        return array[offset + index];
+    }
+    
+    /**
+     * read big-endian integer in place.
+     * @param index index in this slice
+     * @return integer
+     */
+    public int getInt(final int index) {
+        checkIndex(index, Integer.BYTES);
+        return buffer.getInt(offset + index);
+    }
+    
+    /**
+     * read big-endian long in place.
+     * @param index index in this slice
+     * @return long
+     */
+    public long getLong(final int index) {
+        checkIndex(index, Long.BYTES);
+        return buffer.getLong(offset + index);
+    }
+    
+    /**
+     * read big-endian unsigned short in place.
+     * @param index index in this slice
+     * @return integer in [0, 0xFFFF]
+     */
+    public int getUnsignedShort(final int index) {
+        checkIndex(index, Short.BYTES);
+        return buffer.getShort(offset + index) & 0xFFFF;
+    }
+    
+    /**
+     * read varint in place, the size of it is {@link Bytes#varintSize(long)} of the result.
+     * @param index index in this slice
+     * @return decoded value
+     */
+    public long getVarint(final int index) {
+        checkIndex(index, 1);
+        return Bytes.readVarint(array, offset + index, offset + length);
+    }
+    
+    /**
+     * copy the bytes of the view.
+     * @return byte array
+     */
+    public byte[] toBytes() {
+        return Bytes.slice(array, offset, length);
+    }
+    
+    @Override
+    public int compareTo(final ByteSlice o) {
+        return Bytes.compare(array, offset, length, o.array, o.offset, o.length);
+    }
+    
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ByteSlice)) {
+            return false;
+        }
+        return compareTo((ByteSlice) o) == 0;
+    }
+    
+    @Override
+    public int hashCode() {
+        return Bytes.hash(array, offset, length);
+    }
+    
+    @Override
+    public String toString() {
+        return Bytes.toHex(array, offset, length);
+    }
+}
@@ -18,7 +18,9 @@
 package org.apache.dkv.storage.bytes;
 
 import com.google.common.base.Preconditions;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import org.apache.dkv.storage.wal.RecordType;
 
 public final class Bytes {
@@ -137,9 +139,20 @@ public final class Bytes {
         if (null == key) {
             return 0;
         }
+        return hash(key, 0, key.length);
+    }
+
+    /**
+     * hash the range of byte array, it equals to hash of the copy of the range.
+     * @param buf byte array
+     * @param offset offset of the range
+     * @param len length of the range
+     * @return hash code
+     */
+    public static int hash(final byte[] buf, final int offset, final int len) {
         int h = 1;
-        for (byte b : key) {
-            h = (h << 5) + h + b;
+        for (int i = offset; i < offset + len; i++) {
+            h = (h << 5) + h + buf[i];
         }
         return h;
     }
@@ -154,13 +167,175 @@ public final class Bytes {
         if (null == b) {
             return 1;
         }
-        for (int i = 0, j = 0; i < a.length && j < b.length; i++, j++) {
-            int x = a[i] & 0xFF;
-            int y = b[i] & 0xFF;
+        return compare(a, 0, a.length, b, 0, b.length);
+    }
+
+    /**
+     * compare ranges of byte arrays in lexicographical order of unsigned bytes.
+     * @param a the first byte array
+     * @param aOffset offset of the first range
+     * @param aLen length of the first range
+     * @param b the second byte array
+     * @param bOffset offset of the second range
+     * @param bLen length of the second range
+     * @return negative, zero or positive if the first range is less than, equals to or greater than the second
+     */
+    public static int compare(final byte[] a, final int aOffset, final int aLen, final byte[] b, final int bOffset, final int bLen) {
+        int len = Math.min(aLen, bLen);
+        for (int i = 0; i < len; i++) {
+            int x = a[aOffset + i] & 0xFF;
+            int y = b[bOffset + i] & 0xFF;
             if (x != y) {
                 return x - y;
             }
         }
-        return a.length - b.length;
+        return aLen - bLen;
+    }
+
+    /**
+     * does the byte array start with the prefix.
+     * @param buf byte array
+     * @param prefix prefix, every byte array starts with an empty prefix
+     * @return true if the first bytes of buf are the prefix
+     */
+    public static boolean startsWith(final byte[] buf, final byte[] prefix) {
+        return buf.length >= prefix.length && compare(buf, 0, prefix.length, prefix, 0, prefix.length) == 0;
+    }
+
+    /**
+     * get the smallest byte array which is greater than all byte arrays starting with the prefix.
+     * @param prefix prefix of byte arrays
+     * @return EMPTY_BYTES if there is no such byte array.
+     */
+    public static byte[] prefixEnd(final byte[] prefix) {
+        for (int i = prefix.length - 1; i >= 0; i--) {
+            if (prefix[i] != (byte) 0xFF) {
+                byte[] result = Arrays.copyOf(prefix, i + 1);
+                result[i]++;
+                return result;
+            }
+        }
+        return EMPTY_BYTES;
+    }
+
+    /**
+     * get the shortest byte array which separates two keys, it's greater than or equals to the smaller key and
+     * less than the larger key.
+     * @param key the smaller key
+     * @param nextKey the larger key
+     * @return separator, the smaller key itself if it can not be shortened
+     */
+    public static byte[] shortestSeparator(final byte[] key, final byte[] nextKey) {
+        if (compare(key, nextKey) >= 0) {
+            return key;
+        }
+        int commonLength = 0;
+        while (commonLength < key.length && commonLength < nextKey.length && key[commonLength] == nextKey[commonLength]) {
+            commonLength++;
+        }
+        // the prefix of nextKey up to the first different byte is greater than key, and less than nextKey if it's
+        // shorter than nextKey
+        if (commonLength + 1 < nextKey.length && commonLength + 1 < key.length) {
+            return Arrays.copyOf(nextKey, commonLength + 1);
+        }
+        return key;
+    }
+
+    /**
+     * get the size of unsigned LEB128 varint, 7 bits of the value are stored in each byte, and the highest bit of
+     * a byte is set if more bytes follow.
+     * @param value value to encode, negative value takes 10 bytes
+     * @return size of varint in bytes
+     */
+    public static int varintSize(final long value) {
+        int size = 1;
+        long remaining = value >>> 7;
+        while (0 != remaining) {
+            size++;
+            remaining >>>= 7;
+        }
+        return size;
+    }
+
+    /**
+     * encode value into buffer as varint.
+     * @param buf buffer to write
+     * @param offset offset to write at
+     * @param value value to encode
+     * @return the offset after the varint
+     */
+    public static int putVarint(final byte[] buf, final int offset, final long value) {
+        int pos = offset;
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            buf[pos++] = (byte) ((remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        buf[pos++] = (byte) remaining;
+        return pos;
+    }
+
+    /**
+     * encode value into byte buffer as varint.
+     * @param buffer buffer to write at its position
+     * @param value value to encode
+     */
+    public static void putVarint(final ByteBuffer buffer, final long value) {
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            buffer.put((byte) ((remaining & 0x7F) | 0x80));
+            remaining >>>= 7;
+        }
+        buffer.put((byte) remaining);
+    }
+
+    /**
+     * decode varint from buffer, the size of it is {@link #varintSize(long)} of the result.
+     * @param buf buffer to read
+     * @param offset offset of varint
+     * @return decoded value
+     */
+    public static long readVarint(final byte[] buf, final int offset) {
+        return readVarint(buf, offset, buf.length);
+    }
+
+    /**
+     * decode varint from buffer, the varint must end before the limit.
+     * @param buf buffer to read
+     * @param offset offset of varint
+     * @param limit end of readable range
+     * @return decoded value
+     */
+    public static long readVarint(final byte[] buf, final int offset, final int limit) {
+        long result = 0;
+        int pos = offset;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            Preconditions.checkArgument(pos < limit, "varint at %s is truncated", offset);
+            byte b = buf[pos++];
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("varint at " + offset + " is too long");
+    }
+
+    /**
+     * make sure the heap buffer has enough remaining bytes, the capacity is doubled until it's enough.
+     * @param buffer heap buffer in write mode
+     * @param size bytes to write
+     * @return the buffer itself, or a larger buffer with the same bytes and position
+     */
+    public static ByteBuffer ensureRemaining(final ByteBuffer buffer, final int size) {
+        if (buffer.remaining() >= size) {
+            return buffer;
+        }
+        int capacity = Math.max(buffer.capacity(), 1);
+        while (capacity - buffer.position() < size) {
+            capacity <<= 1;
+        }
+        ByteBuffer result = ByteBuffer.wrap(Arrays.copyOf(buffer.array(), capacity));
+        result.position(buffer.position());
+        return result;
     }
 }
@@ -39,4 +39,12 @@ public final class BytesBuilder {
         System.arraycopy(bytes, 0, buffer, pos, bytes.length);
         pos += bytes.length;
     }
+
+    /**
+     * append value to buffer as varint.
+     * @param value to write.
+     */
+    public void appendVarint(final long value) {
+        pos = Bytes.putVarint(buffer, pos, value);
+    }
 }
@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dkv.storage.cache;
+
+import com.google.common.base.Preconditions;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.apache.dkv.storage.bean.KeyValuePair;
+import org.apache.dkv.storage.bytes.Bytes;
+
+/**
+ * cache of the latest visible key value pair of hot keys, a put key value pair for an existing key, or a delete key
+ * value pair as the negative entry of a missing key. The cache is split into shards by hash of keys, each shard is
+ * a LRU map bounded by bytes and guarded by its own lock.
+ */
+public final class RowCache {
+    
+    private static final int SHARD_COUNT = 16;
+    
+    // estimated memory of an entry besides the key and the value
+    private static final int ENTRY_OVERHEAD = 96;
+    
+    private final Shard[] shards = new Shard[SHARD_COUNT];
+
+    /**
+     * create row cache.
+     * @param capacity max bytes of keys and values in cache
+     */
+    public RowCache(final long capacity) {
+        Preconditions.checkArgument(capacity > 0, "Invalid capacity: " + capacity);
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            shards[i] = new Shard(capacity / SHARD_COUNT);
+        }
+    }
+    
+    private Shard getShard(final byte[] key) {
+        return shards[Bytes.hash(key) & (SHARD_COUNT - 1)];
+    }
+
+    /**
+     * get the cached key value pair.
+     * @param key byte array of key
+     * @return put key value pair if the key exists, delete key value pair if it's missing, null if not cached
+     */
+    public KeyValuePair get(final byte[] key) {
+        return getShard(key).get(ByteBuffer.wrap(key));
+    }
+
+    /**
+     * cache the key value pair read at the sequence id, it's ignored if the key may have been written after that.
+     * @param keyValuePair put key value pair, or delete key value pair for missing key
+     * @param readSequenceId sequence id the key value pair is read at
+     */
+    public void put(final KeyValuePair keyValuePair, final long readSequenceId) {
+        getShard(keyValuePair.getKey()).put(keyValuePair, readSequenceId);
+    }
+
+    /**
+     * invalidate the key written at the sequence id, must be called before the sequence id is visible to readers.
+     * @param key byte array of key
+     * @param sequenceId sequence id of the write
+     */
+    public void invalidate(final byte[] key, final long sequenceId) {
+        getShard(key).invalidate(ByteBuffer.wrap(key), sequenceId);
+    }
+
+    /**
+     * invalidate all keys written at the sequence id, e.g. by a range deletion, must be called before the sequence
+     * id is visible to readers.
+     * @param sequenceId sequence id of the write
+     */
+    public void invalidateAll(final long sequenceId) {
+        for (Shard shard : shards) {
+            shard.invalidateAll(sequenceId);
+        }
+    }
+
+    /**
+     * get bytes used by cached entries.
+     * @return used bytes
+     */
+    public long getUsedBytes() {
+        long result = 0;
+        for (Shard shard : shards) {
+            result += shard.getUsedBytes();
+        }
+        return result;
+    }
+    
+    private static long sizeOf(final KeyValuePair keyValuePair) {
+        return ENTRY_OVERHEAD + keyValuePair.getKey().length + keyValuePair.getValue().length;
+    }
+    
+    private static final class Shard {
+        
+        private final long capacity;
+        
+        // access ordered, so the eldest entry is the least recently used one
+        private final Map<ByteBuffer, KeyValuePair> entries = new LinkedHashMap<>(16, 0.75f, true);
+        
+        private long usedBytes;
+        
+        // sequence id of the last write to keys in the shard, reads started before it may be stale
+        private long lastWriteSequenceId;
+        
+        Shard(final long capacity) {
+            this.capacity = capacity;
+        }
+        
+        synchronized KeyValuePair get(final ByteBuffer key) {
+            return entries.get(key);
+        }
+        
+        synchronized void put(final KeyValuePair keyValuePair, final long readSequenceId) {
+            long size = sizeOf(keyValuePair);
+            if (readSequenceId < lastWriteSequenceId || size > capacity) {
+                return;
+            }
+            KeyValuePair previous = entries.put(ByteBuffer.wrap(keyValuePair.getKey()), keyValuePair);
+            usedBytes += size - (null == previous ? 0 : sizeOf(previous));
+            java.util.Iterator<KeyValuePair> iterator = entries.values().iterator();
+            while (usedBytes > capacity) {
+                usedBytes -= sizeOf(iterator.next());
+                iterator.remove();
+            }
+        }
+        
+        synchronized void invalidate(final ByteBuffer key, final long sequenceId) {
+            lastWriteSequenceId = Math.max(lastWriteSequenceId, sequenceId);
+            KeyValuePair previous = entries.remove(key);
+            if (null != previous) {
+                usedBytes -= sizeOf(previous);
+            }
+        }
+        
+        synchronized void invalidateAll(final long sequenceId) {
+            lastWriteSequenceId = Math.max(lastWriteSequenceId, sequenceId);
+            entries.clear();
+            usedBytes = 0;
+        }
+        
+        synchronized long getUsedBytes() {
+            return usedBytes;
+        }
+    }
+}
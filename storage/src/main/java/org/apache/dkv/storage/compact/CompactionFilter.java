@@ -0,0 +1,35 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dkv.storage.compact;
+
+import org.apache.dkv.storage.bean.KeyValuePair;
+
+/**
+ * filter invoked for each put key value pair when SSTable files are merged by compaction. Delete key value
+ * pairs are never passed to the filter, so a deleted key can not be revived by filter.
+ */
+public interface CompactionFilter {
+
+    /**
+     * decide what to do with the key value pair.
+     * @param keyValuePair key value pair to write into the compacted SSTable.
+     * @return the key value pair itself to keep it, null to drop it, or a new key value pair with the same key
+     *         and sequence id to rewrite it.
+     */
+    KeyValuePair filter(KeyValuePair keyValuePair);
+}
@@ -0,0 +1,236 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dkv.storage.compact;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.NavigableSet;
+import org.apache.dkv.storage.bean.KeyValuePair;
+import org.apache.dkv.storage.bean.KeyValuePair.OperationType;
+import org.apache.dkv.storage.bean.RangeTombstones;
+import org.apache.dkv.storage.bytes.Bytes;
+import org.apache.dkv.storage.iterator.Iterator;
+import org.apache.dkv.storage.merge.MergeOperator;
+
+/**
+ * iterator to visit the key value pairs which should be written into the compacted or flushed SSTable. For each
+ * key, the newest version and the newest version visible to each live snapshot are kept, other obsolete versions
+ * are dropped, then the kept put key value pairs are passed to the compaction filter, a dropped put is replaced by
+ * a delete if an older version of the key is kept for snapshots. The key value pairs deleted by
+ * range tombstones are dropped too unless a live snapshot can still see them. The merge operands which no snapshot
+ * can see separately are merged into one key value pair, and range tombstones are returned as they are.
+ */
+public final class CompactionIterator implements Iterator<KeyValuePair> {
+    
+    private final Iterator<KeyValuePair> iterator;
+    
+    private final NavigableSet<Long> snapshots;
+    
+    private final CompactionFilter compactionFilter;
+    
+    private final RangeTombstones rangeTombstones;
+    
+    private final MergeOperator mergeOperator;
+    
+    private byte[] lastKey;
+    
+    private long newerSequenceId;
+    
+    // key value pairs ready to return
+    private final Deque<KeyValuePair> pendingKvs = new ArrayDeque<>();
+    
+    // the first key value pair of the next stripe which has been read ahead while merging
+    private KeyValuePair readAheadKv;
+    
+    // delete of the newer version dropped by the compaction filter, written only if an older version is kept
+    private KeyValuePair droppedKv;
+    
+    public CompactionIterator(final Iterator<KeyValuePair> iterator, final NavigableSet<Long> snapshots, final CompactionFilter compactionFilter) {
+        this(iterator, snapshots, compactionFilter, new RangeTombstones(), null);
+    }
+
+    /**
+     * create compaction iterator.
+     * @param iterator iterator to visit key value pairs in order
+     * @param snapshots sequence ids of live snapshots
+     * @param compactionFilter filter of put key value pairs, null means keep all
+     * @param rangeTombstones range tombstones deleting the key value pairs
+     * @param mergeOperator merge operator to merge operands, null means there is no merge operand
+     */
+    public CompactionIterator(final Iterator<KeyValuePair> iterator, final NavigableSet<Long> snapshots, final CompactionFilter compactionFilter, final RangeTombstones rangeTombstones,
+                              final MergeOperator mergeOperator) {
+        this.iterator = iterator;
+        this.snapshots = snapshots;
+        this.compactionFilter = compactionFilter;
+        this.rangeTombstones = rangeTombstones;
+        this.mergeOperator = mergeOperator;
+    }
+    
+    @Override
+    public boolean hasNext() throws IOException {
+        while (pendingKvs.isEmpty()) {
+            KeyValuePair keyValuePair = readNext();
+            if (null == keyValuePair) {
+                break;
+            }
+            if (isVisible(keyValuePair) && !isDeletedByRange(keyValuePair)) {
+                addDroppedKv(keyValuePair);
+                if (OperationType.Merge == keyValuePair.getOperationType()) {
+                    merge(keyValuePair);
+                } else {
+                    addFiltered(keyValuePair);
+                }
+            }
+        }
+        return !pendingKvs.isEmpty();
+    }
+    
+    @Override
+    public KeyValuePair next() throws IOException {
+        if (!hasNext()) {
+            return null;
+        }
+        return pendingKvs.poll();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        iterator.close();
+    }
+    
+    private KeyValuePair readNext() throws IOException {
+        KeyValuePair result = readAheadKv;
+        readAheadKv = null;
+        while (null == result && iterator.hasNext()) {
+            result = iterator.next();
+            // range tombstones are never versions of keys, and can be written in any order
+            if (OperationType.DeleteRange == result.getOperationType()) {
+                pendingKvs.add(result);
+                result = null;
+            }
+        }
+        return result;
+    }
+    
+    private void addDroppedKv(final KeyValuePair keyValuePair) {
+        // otherwise the older version kept for snapshots would be visible again
+        if (null != droppedKv && Bytes.compare(droppedKv.getKey(), keyValuePair.getKey()) == 0) {
+            pendingKvs.add(droppedKv);
+        }
+        droppedKv = null;
+    }
+    
+    private void addFiltered(final KeyValuePair keyValuePair) {
+        KeyValuePair result = filter(keyValuePair);
+        if (null == result) {
+            droppedKv = KeyValuePair.createDelete(keyValuePair.getKey(), keyValuePair.getSequenceId());
+        } else {
+            pendingKvs.add(result);
+        }
+    }
+    
+    private boolean isVisible(final KeyValuePair keyValuePair) {
+        boolean result = !isObsolete(keyValuePair);
+        advance(keyValuePair);
+        return result;
+    }
+    
+    // an older version of the last key, which is in the same stripe as the newer version, since no snapshot
+    // whose sequence id in [sequenceId, newerSequenceId) can see it
+    private boolean isObsolete(final KeyValuePair keyValuePair) {
+        if (null == lastKey || Bytes.compare(lastKey, keyValuePair.getKey()) != 0) {
+            return false;
+        }
+        Long snapshot = snapshots.ceiling(keyValuePair.getSequenceId());
+        return null == snapshot || snapshot >= newerSequenceId;
+    }
+    
+    private void advance(final KeyValuePair keyValuePair) {
+        lastKey = keyValuePair.getKey();
+        newerSequenceId = keyValuePair.getSequenceId();
+    }
+    
+    private boolean isDeletedByRange(final KeyValuePair keyValuePair) {
+        long tombstoneSequenceId = rangeTombstones.getSequenceId(keyValuePair.getKey());
+        if (tombstoneSequenceId <= keyValuePair.getSequenceId()) {
+            return false;
+        }
+        // invisible to the snapshots whose sequence id is larger than or equals to the tombstone
+        Long snapshot = snapshots.ceiling(keyValuePair.getSequenceId());
+        return null == snapshot || snapshot >= tombstoneSequenceId;
+    }
+    
+    /**
+     * merge the operands in the same stripe as the newest one. They are merged with the put or delete in the stripe
+     * into a put, otherwise the older versions are unknown, and the operands are combined into one operand.
+     * @param newest the newest operand of stripe
+     * @throws IOException if no merge operator is configured
+     */
+    private void merge(final KeyValuePair newest) throws IOException {
+        if (null == mergeOperator) {
+            throw new IOException("Merge operator is not configured.");
+        }
+        List<KeyValuePair> operands = new ArrayList<>();
+        operands.add(newest);
+        KeyValuePair current = readNext();
+        while (null != current && isObsolete(current)) {
+            advance(current);
+            if (isDeletedByRange(current) || OperationType.Delete == current.getOperationType()) {
+                addFiltered(fullMerge(operands, null));
+                return;
+            }
+            if (OperationType.Put == current.getOperationType()) {
+                addFiltered(fullMerge(operands, current.getValue()));
+                return;
+            }
+            operands.add(current);
+            current = readNext();
+        }
+        readAheadKv = current;
+        byte[] combined = operands.size() > 1 ? mergeOperator.partialMerge(newest.getKey(), getValues(operands)) : null;
+        if (null == combined) {
+            pendingKvs.addAll(operands);
+        } else {
+            pendingKvs.add(KeyValuePair.create(newest.getKey(), combined, OperationType.Merge, newest.getSequenceId()));
+        }
+    }
+    
+    private KeyValuePair fullMerge(final List<KeyValuePair> operands, final byte[] existingValue) {
+        KeyValuePair newest = operands.get(0);
+        return KeyValuePair.createPut(newest.getKey(), mergeOperator.fullMerge(newest.getKey(), existingValue, getValues(operands)), newest.getSequenceId());
+    }
+    
+    // values of operands from the oldest to the newest
+    private static List<byte[]> getValues(final List<KeyValuePair> operands) {
+        List<byte[]> result = new ArrayList<>(operands.size());
+        for (int i = operands.size() - 1; i >= 0; i--) {
+            result.add(operands.get(i).getValue());
+        }
+        return result;
+    }
+    
+    private KeyValuePair filter(final KeyValuePair keyValuePair) {
+        if (null == compactionFilter || OperationType.Put != keyValuePair.getOperationType()) {
+            return keyValuePair;
+        }
+        return compactionFilter.filter(keyValuePair);
+    }
+}
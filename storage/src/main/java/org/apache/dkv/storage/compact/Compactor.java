@@ -18,15 +18,32 @@
 package org.apache.dkv.storage.compact;
 
 import java.io.IOException;
+import java.util.List;
+import org.apache.dkv.storage.disk.SSTable;
 
 /**
  * interface for compactor
  */
-public interface Compactor extends Runnable {
+public interface Compactor {
 
     /**
-     * compact SSTable files.
+     * compact all SSTable files which are not being compacted by others.
      * @throws IOException IO Exception.
      */
     void compact() throws IOException;
+
+    /**
+     * compact the given SSTable files, which must be picked by {@link #pickCompaction()} before. A single
+     * SSTable file overlaps with no other file, so it's moved to the compacted level without rewriting.
+     * @param tables SSTable files to compact.
+     * @throws IOException IO Exception.
+     */
+    void compact(List<SSTable> tables) throws IOException;
+
+    /**
+     * pick SSTable files to compact if a compaction is needed. The picked files are claimed by the caller,
+     * and their key range never overlaps with other compactions, so the compactions can run concurrently.
+     * @return SSTable files to compact, empty if no compaction is needed.
+     */
+    List<SSTable> pickCompaction();
 }
@@ -19,14 +19,25 @@ package org.apache.dkv.storage.compact;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.dkv.storage.bean.KeyValuePair;
+import org.apache.dkv.storage.bean.RangeTombstones;
+import org.apache.dkv.storage.block.TableProperties;
+import org.apache.dkv.storage.bytes.Bytes;
 import org.apache.dkv.storage.config.Config;
 import org.apache.dkv.storage.disk.DiskStorage;
 import org.apache.dkv.storage.disk.SSTableBuilder;
 import org.apache.dkv.storage.disk.SSTable;
 import org.apache.dkv.storage.iterator.Iterator;
+import org.apache.dkv.storage.merge.MergeOperator;
+import org.apache.dkv.storage.snapshot.SnapshotManager;
 import org.apache.dkv.storage.util.FileUtil;
 
 @Slf4j
@@ -34,80 +45,244 @@ public final class DefaultCompactor implements Compactor {
     
     private final DiskStorage diskStorage;
     
-    private volatile boolean running = true;
+    private final int maxDiskFiles;
+    
+    private final CompactionFilter compactionFilter;
+    
+    private final SnapshotManager snapshotManager;
+    
+    private final MergeOperator mergeOperator;
+    
+    // SSTable files claimed by running compactions
+    private final Set<SSTable> compactingTables = ConcurrentHashMap.newKeySet();
     
     public DefaultCompactor(final DiskStorage diskStorage) {
+        this(diskStorage, Config.getDefault().getMaxDiskFiles());
+    }
+    
+    public DefaultCompactor(final DiskStorage diskStorage, final int maxDiskFiles) {
+        this(diskStorage, maxDiskFiles, null);
+    }
+    
+    public DefaultCompactor(final DiskStorage diskStorage, final int maxDiskFiles, final CompactionFilter compactionFilter) {
+        this(diskStorage, maxDiskFiles, compactionFilter, new SnapshotManager());
+    }
+    
+    public DefaultCompactor(final DiskStorage diskStorage, final int maxDiskFiles, final CompactionFilter compactionFilter, final SnapshotManager snapshotManager) {
+        this(diskStorage, maxDiskFiles, compactionFilter, snapshotManager, null);
+    }
+    
+    public DefaultCompactor(final DiskStorage diskStorage, final int maxDiskFiles, final CompactionFilter compactionFilter, final SnapshotManager snapshotManager,
+                            final MergeOperator mergeOperator) {
         this.diskStorage = diskStorage;
+        this.maxDiskFiles = maxDiskFiles;
+        this.compactionFilter = compactionFilter;
+        this.snapshotManager = snapshotManager;
+        this.mergeOperator = mergeOperator;
     }
     
     @Override
     public void compact() throws IOException {
-        List<SSTable> filesToCompact = diskStorage.getTables();
-        String fileName = diskStorage.getNexTableFileName();
-        String tempFileName = fileName + DiskStorage.FILE_NAME_TMP_SUFFIX;
-
-        try (SSTableBuilder builder = new SSTableBuilder(tempFileName)) {
-            for (Iterator<KeyValuePair> it = diskStorage.iterator(filesToCompact); it.hasNext();) {
-                builder.append(it.next());
+        List<SSTable> filesToCompact = claimAllTables();
+        try {
+            if (filesToCompact.size() >= 2) {
+                performCompact(filesToCompact);
             }
-            builder.appendIndex();
-            builder.appendTailer();
+        } finally {
+            compactingTables.removeAll(filesToCompact);
         }
+    }
+    
+    @Override
+    public void compact(final List<SSTable> filesToCompact) throws IOException {
         try {
-            // step 1 create new SSTable file
-            FileUtil.rename(tempFileName, fileName);
-            // step 2 archive history SSTable file
-            archiveHistoryFiles(filesToCompact);
-            // step 3 add newest SSTable file into DiskStorage
-            diskStorage.addTable(fileName);
+            if (1 == filesToCompact.size()) {
+                trivialMove(filesToCompact.get(0));
+            } else if (!filesToCompact.isEmpty()) {
+                performCompact(filesToCompact);
+            }
         } finally {
-            File f = new File(tempFileName);
-            if (f.exists()) {
-                f.delete();
+            compactingTables.removeAll(filesToCompact);
+        }
+    }
+    
+    @Override
+    public synchronized List<SSTable> pickCompaction() {
+        List<SSTable> tables = diskStorage.getTables();
+        long pendingCount = tables.stream().filter(each -> DiskStorage.FLUSHED_LEVEL == each.getLevel() && !compactingTables.contains(each)).count();
+        // perform compact if flushed SSTable file is too many
+        if (pendingCount <= maxDiskFiles) {
+            return Collections.emptyList();
+        }
+        for (List<SSTable> group : groupOverlappingTables(tables)) {
+            boolean hasFlushedTable = group.stream().anyMatch(each -> DiskStorage.FLUSHED_LEVEL == each.getLevel());
+            boolean isCompacting = group.stream().anyMatch(compactingTables::contains);
+            if (hasFlushedTable && !isCompacting) {
+                compactingTables.addAll(group);
+                return group;
             }
         }
+        return Collections.emptyList();
     }
     
-    private void archiveHistoryFiles(final List<SSTable> diskFiles) throws IOException {
-        for (SSTable table : diskFiles) {
-            table.close();
-            File f = new File(table.getFileName());
-            File archiveFile = new File(table.getFileName() + DiskStorage.FILE_NAME_ARCHIVE_SUFFIX);
-            if (!f.renameTo(archiveFile)) {
-                log.error("Rename " + table.getFileName() + " to " + archiveFile.getName() + " failed.");
+    private synchronized List<SSTable> claimAllTables() {
+        List<SSTable> result = new ArrayList<>();
+        for (SSTable table : diskStorage.getTables()) {
+            if (compactingTables.add(table)) {
+                result.add(table);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * group SSTable files into groups, any file only overlaps with files in the same group, so the key ranges
+     * of different groups never overlap and the groups can be compacted independently.
+     * @param tables SSTable files
+     * @return groups sorted by key range
+     */
+    private List<List<SSTable>> groupOverlappingTables(final List<SSTable> tables) {
+        List<SSTable> sortedTables = new ArrayList<>(tables);
+        sortedTables.sort((a, b) -> Bytes.compare(a.getFirstKey(), b.getFirstKey()));
+        List<List<SSTable>> result = new ArrayList<>();
+        List<SSTable> group = new ArrayList<>();
+        byte[] groupLastKey = null;
+        for (SSTable table : sortedTables) {
+            if (null != groupLastKey && Bytes.compare(table.getFirstKey(), groupLastKey) > 0) {
+                result.add(group);
+                group = new ArrayList<>();
+                groupLastKey = null;
             }
+            group.add(table);
+            if (null == groupLastKey || Bytes.compare(table.getLastKey(), groupLastKey) > 0) {
+                groupLastKey = table.getLastKey();
+            }
+        }
+        if (!group.isEmpty()) {
+            result.add(group);
         }
-        diskStorage.removeObsoleteTables(diskFiles);
+        return result;
+    }
+
+    /**
+     * The SSTable file overlaps with no other file, so there is nothing to merge, just move it into the
+     * compacted level without rewriting it.
+     * @param table SSTable file to move
+     */
+    private void trivialMove(final SSTable table) {
+        table.setLevel(DiskStorage.COMPACTED_LEVEL);
+        log.info("Trivial move {} to level {}", table.getFileName(), DiskStorage.COMPACTED_LEVEL);
     }
     
-    @Override
-    public void run() {
-        while (running) {
-            try {
-                boolean isCompacted = false;
-                // perform compact if SSTable file is too many
-                if (diskStorage.getTables().size() > Config.getDefault().getMaxDiskFiles()) {
-                    compact();
-                    isCompacted = true;
+    private void performCompact(final List<SSTable> filesToCompact) throws IOException {
+        NavigableSet<Long> snapshots = snapshotManager.getSequenceIds();
+        RangeTombstones rangeTombstones = new RangeTombstones();
+        // the files out of this compaction, including the files claimed by other running compactions
+        List<SSTable> otherTables = diskStorage.getTables().stream().filter(each -> !filesToCompact.contains(each)).collect(Collectors.toList());
+        List<KeyValuePair> keptTombstones = new ArrayList<>();
+        for (SSTable table : filesToCompact) {
+            for (KeyValuePair each : table.getRangeTombstones()) {
+                rangeTombstones.add(each);
+                if (shouldKeep(each, snapshots, otherTables)) {
+                    keptTombstones.add(each);
                 }
-                if (!isCompacted) {
-                    Thread.sleep(1000);
+            }
+        }
+        // the files whose keys are all deleted by range tombstones are dropped without being read
+        List<SSTable> inputs = filesToCompact.stream().filter(each -> !isDeletedByRange(each, rangeTombstones, snapshots)).collect(Collectors.toList());
+        if (inputs.size() < filesToCompact.size()) {
+            log.info("Drop {} SSTable files deleted by range tombstones", filesToCompact.size() - inputs.size());
+        }
+        List<String> fileNames = new ArrayList<>();
+        try {
+            writeTables(new CompactionIterator(diskStorage.iterator(inputs), snapshots, compactionFilter, rangeTombstones, mergeOperator), keptTombstones, fileNames);
+            // step 1 create new SSTable files, all key value pairs may be dropped by filter
+            List<SSTable> newTables = new ArrayList<>(fileNames.size());
+            for (String fileName : fileNames) {
+                FileUtil.rename(fileName + DiskStorage.FILE_NAME_TMP_SUFFIX, fileName);
+                newTables.add(diskStorage.createTable(fileName, DiskStorage.COMPACTED_LEVEL));
+            }
+            // step 2 replace history SSTable files with the new ones atomically, history files are archived
+            // after the last reader releases them
+            diskStorage.replaceTables(filesToCompact, newTables);
+        } finally {
+            for (String fileName : fileNames) {
+                File f = new File(fileName + DiskStorage.FILE_NAME_TMP_SUFFIX);
+                if (f.exists()) {
+                    f.delete();
                 }
-            } catch (IOException e) {
-                // only record compact failure
-                log.error("major compaction failed: {}", e);
-            } catch (InterruptedException ex) {
-                // stop running compact thread
-                log.error("Interrupted Exception, stop running: {}", ex);
-                break;
             }
         }
     }
 
     /**
-     * stop compact operation.
+     * is the range tombstone kept by the compaction. It's kept if a live snapshot is older than it, which may still
+     * see the keys it covers, or if it overlaps with files out of the compaction, whose keys it still deletes.
+     * @param tombstone range tombstone
+     * @param snapshots sequence ids of live snapshots
+     * @param otherTables SSTable files out of the compaction
+     * @return true if the tombstone is written into the new files
+     */
+    private static boolean shouldKeep(final KeyValuePair tombstone, final NavigableSet<Long> snapshots, final List<SSTable> otherTables) {
+        return null != snapshots.lower(tombstone.getSequenceId()) || otherTables.stream().anyMatch(each -> each.overlaps(tombstone.getKey(), tombstone.getValue()));
+    }
+
+    /**
+     * is the SSTable file deleted by newer range tombstones, which cover its whole key range, and no live snapshot
+     * can see its key value pairs. The files written before properties are recorded are never dropped.
+     * @param table SSTable file
+     * @param rangeTombstones range tombstones of the compacted files
+     * @param snapshots sequence ids of live snapshots
+     * @return true if the file can be dropped without being read
+     */
+    private static boolean isDeletedByRange(final SSTable table, final RangeTombstones rangeTombstones, final NavigableSet<Long> snapshots) {
+        TableProperties properties = table.getMetaBlock().getProperties();
+        if (null == properties || rangeTombstones.isEmpty()) {
+            return false;
+        }
+        long tombstoneSequenceId = rangeTombstones.getMinSequenceId(table.getFirstKey(), table.getLastKey());
+        Long snapshot = snapshots.ceiling(properties.getMinSequenceId());
+        return tombstoneSequenceId > properties.getMaxSequenceId() && (null == snapshot || snapshot >= tombstoneSequenceId);
+    }
+
+    /**
+     * write the merged key value pairs into temp files, a new file is started once the current one reaches
+     * the max table size.
+     * @param iterator iterator to merge the compacted files
+     * @param tombstones range tombstones to keep, which are written into the first file
+     * @param fileNames collect the names of new SSTable files, the temp file of each has the tmp suffix
+     * @throws IOException IO Exception
      */
-    public void stopRunning() {
-        this.running = false;
+    private void writeTables(final CompactionIterator iterator, final List<KeyValuePair> tombstones, final List<String> fileNames) throws IOException {
+        try (Iterator<KeyValuePair> it = iterator) {
+            KeyValuePair pendingKv = it.hasNext() ? it.next() : null;
+            List<KeyValuePair> pendingTombstones = tombstones;
+            while (null != pendingKv || !pendingTombstones.isEmpty()) {
+                String fileName = diskStorage.getNexTableFileName();
+                fileNames.add(fileName);
+                pendingKv = writeTable(fileName + DiskStorage.FILE_NAME_TMP_SUFFIX, pendingKv, pendingTombstones, it);
+                pendingTombstones = Collections.emptyList();
+            }
+        }
+    }
+
+    // returns the first key value pair of the next file, null if all key value pairs are written
+    private KeyValuePair writeTable(final String tempFileName, final KeyValuePair firstKv, final List<KeyValuePair> tombstones, final Iterator<KeyValuePair> it) throws IOException {
+        try (SSTableBuilder builder = diskStorage.createTableBuilder(tempFileName)) {
+            for (KeyValuePair each : tombstones) {
+                builder.append(each);
+            }
+            KeyValuePair pendingKv = firstKv;
+            while (null != pendingKv) {
+                builder.append(pendingKv);
+                pendingKv = it.hasNext() ? it.next() : null;
+                if (null != pendingKv && builder.shouldRoll(pendingKv, diskStorage.getMaxTableSize())) {
+                    break;
+                }
+            }
+            builder.appendIndex();
+            builder.appendTailer();
+            return pendingKv;
+        }
     }
 }
@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dkv.storage.compact;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongSupplier;
+import org.apache.dkv.storage.bean.KeyValuePair;
+import org.apache.dkv.storage.bytes.ByteSlice;
+import org.apache.dkv.storage.bytes.Bytes;
+
+/**
+ * compaction filter which drops the key value pairs written more than ttl milliseconds ago. Only the values of the
+ * keys with registered prefixes are written with timestamp, which is stored in the last 8 bytes of the value, see
+ * {@link #appendTimestamp(byte[], long)}. The other key value pairs are always kept.
+ */
+public final class TtlCompactionFilter implements CompactionFilter {
+    
+    public static final int TIMESTAMP_SIZE = 8;
+    
+    private final long ttl;
+    
+    // prefixes of the keys whose values are written with timestamp
+    private final List<byte[]> prefixes;
+    
+    private final LongSupplier clock;
+
+    /**
+     * create ttl compaction filter.
+     * @param ttl time to live in milliseconds
+     * @param prefixes prefixes of the keys whose values are written with timestamp, an empty prefix means all keys
+     */
+    public TtlCompactionFilter(final long ttl, final List<byte[]> prefixes) {
+        this(ttl, prefixes, System::currentTimeMillis);
+    }
+    
+    public TtlCompactionFilter(final long ttl, final List<byte[]> prefixes, final LongSupplier clock) {
+        this.ttl = ttl;
+        this.prefixes = new ArrayList<>(prefixes);
+        this.clock = clock;
+    }
+
+    /**
+     * append write timestamp to the value.
+     * @param value value to write.
+     * @param timestamp write timestamp in milliseconds.
+     * @return value with write timestamp.
+     */
+    public static byte[] appendTimestamp(final byte[] value, final long timestamp) {
+        return Bytes.toBytes(value, Bytes.toBytes(timestamp));
+    }
+
+    /**
+     * get write timestamp from the value.
+     * @param value value with write timestamp.
+     * @return write timestamp in milliseconds.
+     */
+    public static long getTimestamp(final byte[] value) {
+        return ByteSlice.wrap(value).getLong(value.length - TIMESTAMP_SIZE);
+    }
+
+    /**
+     * remove write timestamp from the value.
+     * @param value value with write timestamp.
+     * @return value written by user.
+     */
+    public static byte[] stripTimestamp(final byte[] value) {
+        return Bytes.slice(value, 0, value.length - TIMESTAMP_SIZE);
+    }
+    
+    @Override
+    public KeyValuePair filter(final KeyValuePair keyValuePair) {
+        byte[] value = keyValuePair.getValue();
+        // the value is not written with timestamp, e.g. the key isn't registered or it's a tombstone, keep it
+        if (!hasTimestamp(keyValuePair.getKey()) || value.length < TIMESTAMP_SIZE) {
+            return keyValuePair;
+        }
+        return clock.getAsLong() - getTimestamp(value) > ttl ? null : keyValuePair;
+    }
+    
+    private boolean hasTimestamp(final byte[] key) {
+        for (byte[] each : prefixes) {
+            if (Bytes.startsWith(key, each)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
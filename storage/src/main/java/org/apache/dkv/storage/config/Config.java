@@ -22,6 +22,10 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.apache.dkv.storage.bloom.PrefixExtractor;
+import org.apache.dkv.storage.bytes.BufferPool;
+import org.apache.dkv.storage.compact.CompactionFilter;
+import org.apache.dkv.storage.merge.MergeOperator;
 import org.apache.dkv.storage.wal.WriteOptions;
 
 @Builder
@@ -30,6 +34,12 @@ import org.apache.dkv.storage.wal.WriteOptions;
 @AllArgsConstructor
 public class Config {
 
+    // default target size of data blocks in SSTable files, a block may exceed it by the last key value pair
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+    
+    // default max count of SSTable files kept open
+    public static final int DEFAULT_MAX_OPEN_TABLES = 1000;
+    
     private static final Config DEFAULT = new Config();
 
     private long maxMemstoreSize = 16 * 1024 * 1024;
@@ -40,11 +50,64 @@ public class Config {
     
     private int maxDiskFiles = 10;
     
+    // max count of concurrent compaction threads
     private int maxThreadPoolSize = 5;
     
+    // count of dedicated flush threads
+    @Builder.Default
+    private int maxFlushThreadPoolSize = 1;
+    
     private WriteOptions writeOptions;
     
+    // filter key value pairs when compacting, null means keep all key value pairs
+    private CompactionFilter compactionFilter;
+    
+    // extract prefix of keys to build prefix bloom filters for prefix scan, null means no prefix bloom filter
+    private PrefixExtractor prefixExtractor;
+    
+    // resolve the operands written by merge, null means merge is not supported
+    private MergeOperator mergeOperator;
+    
+    // max bytes of the row cache of hot keys, 0 means no row cache
+    private long rowCacheSize;
+    
+    // target size of data blocks in SSTable files, small blocks make point lookups cheap
+    @Builder.Default
+    private int blockSize = DEFAULT_BLOCK_SIZE;
+    
+    // max size of SSTable files written by compaction, the output rolls to a new file once it's reached
+    @Builder.Default
+    private long maxTableSize = 64 * 1024 * 1024;
+    
+    // max count of SSTable files kept open, the least recently used files are closed once it's exceeded
+    @Builder.Default
+    private int maxOpenTables = DEFAULT_MAX_OPEN_TABLES;
+    
+    // threads to open the newest SSTable files in parallel at startup, 0 means open all files on first use
+    @Builder.Default
+    private int tableOpenThreads = 4;
+    
+    // threads of batched reads of multi get, reads run on the calling thread if it's 0
+    @Builder.Default
+    private int readThreads = 4;
+    
+    // threads of read-ahead of scans, read-ahead runs on the calling thread if it's 0
+    @Builder.Default
+    private int readAheadThreads = 4;
+    
+    // max bytes of free read buffers kept in the buffer pool of database
+    @Builder.Default
+    private long bufferPoolSize = BufferPool.DEFAULT_CAPACITY;
+    
     public static Config getDefault() {
         return DEFAULT;
     }
+
+    /**
+     * create the buffer pool of a database by the buffer settings.
+     * @return buffer pool
+     */
+    public BufferPool createBufferPool() {
+        return new BufferPool(BufferPool.DEFAULT_MAX_SIZE, bufferPoolSize);
+    }
 }
@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dkv.storage.disk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import lombok.Getter;
+import lombok.Setter;
+import org.apache.dkv.storage.bean.KeyValuePair;
+import org.apache.dkv.storage.block.DataBlock;
+import org.apache.dkv.storage.block.IndexBlock;
+import org.apache.dkv.storage.bytes.BufferPool;
+
+/**
+ * read blocks of a SSTable file by positional reads, which are thread safe, so iterators and background reads
+ * share the reader.
+ */
+final class BlockReader implements Closeable {
+    
+    private final String fileName;
+    
+    // buffers of the index and meta reads, which are returned to pool right after parsing
+    @Getter
+    private final BufferPool bufferPool;
+    
+    private final RandomAccessFile in;
+    
+    private final FileChannel channel;
+    
+    @Getter
+    private final long fileSize;
+    
+    // format version of the SSTable file, set once the tailer block is read
+    @Getter
+    @Setter
+    private int formatVersion = KeyValuePair.CURRENT_FORMAT;
+    
+    BlockReader(final String fileName, final BufferPool bufferPool) throws IOException {
+        this.fileName = fileName;
+        this.bufferPool = bufferPool;
+        this.in = new RandomAccessFile(fileName, "r");
+        this.channel = in.getChannel();
+        this.fileSize = channel.size();
+    }
+
+    /**
+     * read bytes at the position until the buffer is full.
+     * @param position position in file
+     * @param buffer buffer to fill
+     * @throws IOException IO Exception
+     */
+    void read(final long position, final byte[] buffer) throws IOException {
+        read(position, buffer, buffer.length);
+    }
+
+    /**
+     * read bytes at the position into the head of buffer.
+     * @param position position in file
+     * @param buffer buffer to fill, which may be longer than length
+     * @param length bytes to read
+     * @throws IOException IO Exception
+     */
+    void read(final long position, final byte[] buffer, final int length) throws IOException {
+        read(position, ByteBuffer.wrap(buffer, 0, length));
+    }
+    
+    private void read(final long position, final ByteBuffer byteBuffer) throws IOException {
+        while (byteBuffer.hasRemaining()) {
+            if (channel.read(byteBuffer, position + byteBuffer.position()) < 0) {
+                throw new IOException("Read " + fileName + " at " + position + " beyond the end of file");
+            }
+        }
+    }
+    
+    DataBlock load(final IndexBlock indexBlock) throws IOException {
+        return loadContiguous(Collections.singletonList(indexBlock)).get(0);
+    }
+
+    /**
+     * load data blocks, each run of contiguous data blocks is loaded by one read.
+     * @param indexBlocks index blocks of data blocks
+     * @return data blocks
+     * @throws IOException IO Exception
+     */
+    List<DataBlock> load(final List<IndexBlock> indexBlocks) throws IOException {
+        List<DataBlock> result = new ArrayList<>(indexBlocks.size());
+        int start = 0;
+        for (int i = 1; i <= indexBlocks.size(); i++) {
+            if (i == indexBlocks.size() || !isContiguous(indexBlocks.get(i - 1), indexBlocks.get(i))) {
+                result.addAll(loadContiguous(indexBlocks.subList(start, i)));
+                start = i;
+            }
+        }
+        return result;
+    }
+    
+    private boolean isContiguous(final IndexBlock previous, final IndexBlock next) {
+        return previous.getBlockOffset() + previous.getBlockSize() == next.getBlockOffset();
+    }
+    
+    private List<DataBlock> loadContiguous(final List<IndexBlock> indexBlocks) throws IOException {
+        IndexBlock first = indexBlocks.get(0);
+        IndexBlock last = indexBlocks.get(indexBlocks.size() - 1);
+        int size = (int) (last.getBlockOffset() + last.getBlockSize() - first.getBlockOffset());
+        // data blocks keep views of the bytes they are parsed from, so the bytes are not pooled, and the blocks read
+        // together share them
+        byte[] buffer = new byte[size];
+        read(first.getBlockOffset(), buffer, size);
+        List<DataBlock> result = new ArrayList<>(indexBlocks.size());
+        for (IndexBlock each : indexBlocks) {
+            result.add(DataBlock.parseFrom(buffer, (int) (each.getBlockOffset() - first.getBlockOffset()), (int) each.getBlockSize(), getKeyValueFormat()));
+        }
+        return result;
+    }
+    
+    // key value pairs of all legacy formats are in fixed length format
+    private int getKeyValueFormat() {
+        return Math.max(formatVersion, KeyValuePair.FIXED_LENGTH_FORMAT);
+    }
+    
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -21,14 +21,19 @@ import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.dkv.storage.bean.KeyValuePair;
+import org.apache.dkv.storage.bloom.PrefixExtractor;
+import org.apache.dkv.storage.bytes.BufferPool;
+import org.apache.dkv.storage.bytes.Bytes;
+import org.apache.dkv.storage.config.Config;
 import org.apache.dkv.storage.iterator.MultiIterator;
+import org.apache.dkv.storage.iterator.ScanFilter;
 import org.apache.dkv.storage.iterator.SeekIterator;
 
 /**
@@ -40,19 +45,90 @@ public final class DiskStorage implements Closeable {
     public static final String FILE_NAME_TMP_SUFFIX = ".tmp";
 
     public static final String FILE_NAME_ARCHIVE_SUFFIX = ".archive";
+    
+    // SSTable files flushed from MemStore, their key ranges may overlap with each other
+    public static final int FLUSHED_LEVEL = 0;
+    
+    // SSTable files produced by compaction, their key ranges never overlap with each other
+    public static final int COMPACTED_LEVEL = 1;
 
     // SSTable xx.sst
     private static final Pattern DATA_FILE_RE = Pattern.compile("SSTable([0-9]+)\\.sst");
 
     private final String dataDir;
     
-    private final List<SSTable> tables;
+    // current version of SSTable files, replaced by a new version on every change
+    private volatile Version current;
     
     private volatile AtomicInteger maxFileId;
     
-    public DiskStorage(final String dataDir, final int maxDiskFiles) {
+    // extract prefix of keys to build prefix bloom filters, null means no prefix bloom filter
+    @Getter
+    private final PrefixExtractor prefixExtractor;
+    
+    // target size of data blocks in new SSTable files
+    private final int blockSize;
+    
+    // max size of SSTable files written by compaction
+    @Getter
+    private final long maxTableSize;
+    
+    // SSTable files are opened on first use, and the least recently used ones are closed once too many are open
+    private final TableCache tableCache;
+    
+    // max sequence id of SSTable files
+    private final SequenceIdFile sequenceIdFile;
+    
+    public DiskStorage(final String dataDir, final int maxDiskFiles, final BufferPool bufferPool) {
+        this(dataDir, maxDiskFiles, null, bufferPool);
+    }
+    
+    public DiskStorage(final String dataDir, final int maxDiskFiles, final PrefixExtractor prefixExtractor, final BufferPool bufferPool) {
+        this(dataDir, maxDiskFiles, prefixExtractor, Config.DEFAULT_BLOCK_SIZE, Long.MAX_VALUE, Config.DEFAULT_MAX_OPEN_TABLES, bufferPool);
+    }
+
+    /**
+     * create disk storage.
+     * @param dataDir directory of SSTable files
+     * @param maxDiskFiles max count of flushed SSTable files before compaction
+     * @param prefixExtractor extract prefix of keys to build prefix bloom filters, null means no prefix bloom filter
+     * @param blockSize target size of data blocks in new SSTable files
+     * @param maxTableSize max size of SSTable files written by compaction
+     * @param maxOpenTables max count of SSTable files kept open
+     * @param bufferPool pool of the buffers to read and write SSTable files
+     */
+    public DiskStorage(final String dataDir, final int maxDiskFiles, final PrefixExtractor prefixExtractor, final int blockSize, final long maxTableSize, final int maxOpenTables,
+                       final BufferPool bufferPool) {
+        this(dataDir, maxDiskFiles, prefixExtractor, blockSize, maxTableSize, new TableCache(maxOpenTables, bufferPool));
+    }
+
+    /**
+     * create disk storage of a database, which has its own buffer pool and read threads.
+     * @param config config of database
+     */
+    public DiskStorage(final Config config) {
+        this(config.getDataDir(), config.getMaxDiskFiles(), config.getPrefixExtractor(), config.getBlockSize(), config.getMaxTableSize(),
+                new TableCache(config.getMaxOpenTables(), config.createBufferPool(), config.getReadThreads(), config.getReadAheadThreads()));
+    }
+    
+    private DiskStorage(final String dataDir, final int maxDiskFiles, final PrefixExtractor prefixExtractor, final int blockSize, final long maxTableSize, final TableCache tableCache) {
         this.dataDir = dataDir;
-        this.tables = new ArrayList<>(maxDiskFiles);
+        this.current = new Version(new ArrayList<>(maxDiskFiles));
+        this.prefixExtractor = prefixExtractor;
+        this.blockSize = blockSize;
+        this.maxTableSize = maxTableSize;
+        this.tableCache = tableCache;
+        this.sequenceIdFile = new SequenceIdFile(dataDir);
+    }
+    
+    /**
+     * create builder of new SSTable file with the options of disk storage.
+     * @param fileName file name of SSTable
+     * @return SSTable builder
+     * @throws IOException IO Exception
+     */
+    public SSTableBuilder createTableBuilder(final String fileName) throws IOException {
+        return new SSTableBuilder(fileName, prefixExtractor, blockSize, tableCache.getBufferPool());
     }
     
     private File[] getAllTableFiles() {
@@ -69,13 +145,15 @@ public final class DiskStorage implements Closeable {
         File[] files = getAllTableFiles();
         int maxFileId = -1;
         for (File f : files) {
-            Matcher matcher = DATA_FILE_RE.matcher(f.getName());
-            if (matcher.matches()) {
-                maxFileId = Math.max(Integer.parseInt(matcher.group(1)), maxFileId);
-            }
+            maxFileId = Math.max(getTableId(f), maxFileId);
         }
         return maxFileId;
     }
+    
+    private static int getTableId(final File file) {
+        // all file names match the pattern, which are filtered while listing
+        return Integer.parseInt(DATA_FILE_RE.matcher(file.getName()).replaceFirst("$1"));
+    }
 
     /**
      * get next table file id.
@@ -90,7 +168,7 @@ public final class DiskStorage implements Closeable {
      * @param table SSTable object.
      */
     public void addTable(final SSTable table) {
-        tables.add(table);
+        replaceTables(Collections.emptyList(), Collections.singletonList(table));
     }
 
     /**
@@ -99,7 +177,37 @@ public final class DiskStorage implements Closeable {
      * @throws IOException IO Exception
      */
     public synchronized void addTable(final String fileName) throws IOException {
-        addTable(new SSTable(fileName));
+        addTable(fileName, FLUSHED_LEVEL);
+    }
+
+    /**
+     * add disk file into specific level.
+     * @param fileName file name ready to read.
+     * @param level level of the file.
+     * @throws IOException IO Exception
+     */
+    public synchronized void addTable(final String fileName, final int level) throws IOException {
+        addTable(createTable(fileName, level));
+    }
+
+    /**
+     * create SSTable object of the file, the file is opened by table cache on first use.
+     * @param fileName file name ready to read.
+     * @param level level of the file.
+     * @return SSTable object
+     */
+    public SSTable createTable(final String fileName, final int level) {
+        SSTable table = new SSTable(fileName, tableCache);
+        table.setLevel(level);
+        return table;
+    }
+    
+    /**
+     * get count of opened SSTable files.
+     * @return count of opened files
+     */
+    long getOpenTableCount() {
+        return tableCache.size();
     }
 
     /**
@@ -111,48 +219,190 @@ public final class DiskStorage implements Closeable {
     }
 
     /**
-     * open a database, load all SSTable file
+     * open a database, load all SSTable file. All files are loaded into the flushed level, the files which
+     * overlap with no other file will be moved to the compacted level by compaction without rewriting. The files
+     * are not opened until they are read.
      * @throws IOException IO Exception
      */
     public void open() throws IOException {
-        File[] files = getAllTableFiles();
+        open(0);
+    }
+
+    /**
+     * open a database, and open the newest SSTable files in parallel to warm up the table cache. At most max open
+     * tables files are opened, the others are opened on first use.
+     * @param openThreads threads to open SSTable files, 0 means open all files on first use
+     * @throws IOException IO Exception
+     */
+    public void open(final int openThreads) throws IOException {
+        List<File> files = new ArrayList<>();
+        Collections.addAll(files, getAllTableFiles());
+        files.sort((a, b) -> Integer.compare(getTableId(a), getTableId(b)));
+        List<SSTable> tables = new ArrayList<>(files.size());
         for (File f: files) {
-            addTable(f.getAbsolutePath());
+            tables.add(createTable(f.getAbsolutePath(), FLUSHED_LEVEL));
         }
+        tableCache.preload(tables, openThreads);
+        replaceTables(Collections.emptyList(), tables);
         maxFileId = new AtomicInteger(getMaxTableId());
     }
     
+    /**
+     * get SSTable files of current version, the files may be closed by a later change, acquire a version to
+     * read them.
+     * @return immutable list of SSTable files
+     */
     public List<SSTable> getTables() {
-        synchronized (tables) {
-            return new ArrayList<>(tables);
+        return current.getTables();
+    }
+
+    /**
+     * acquire current version, close the version after use.
+     * @return current version
+     */
+    public Version acquireVersion() {
+        while (true) {
+            Version version = current;
+            // the version has been released by all holders only after it's replaced, so read the current again
+            if (version.tryRetain()) {
+                return version;
+            }
         }
     }
 
     /**
-     * remove SSTable table.
-     * @param tables SSTable file to remove
+     * get the last keys of the blocks in range [start, stop) in SSTable files of current version, which split the
+     * range into pieces of about one block each.
+     * @param start start key, EMPTY_BYTES means min infinity
+     * @param stop stop key, EMPTY_BYTES means max infinity
+     * @return keys in no particular order
+     * @throws IOException IO Exception
      */
-    public void removeObsoleteTables(final Collection<SSTable> tables) {
-        synchronized (this.tables) {
-            this.tables.removeAll(tables);
+    public List<byte[]> getSplitKeys(final byte[] start, final byte[] stop) throws IOException {
+        List<byte[]> result = new ArrayList<>();
+        try (Version version = acquireVersion()) {
+            for (SSTable table : version.getTables()) {
+                for (byte[] separator : table.getSeparators()) {
+                    if (Bytes.compare(separator, start) > 0 && (0 == stop.length || Bytes.compare(separator, stop) < 0)) {
+                        result.add(separator);
+                    }
+                }
+            }
         }
+        return result;
     }
-    
-    @Override
-    public void close() throws IOException {
-        IOException closedException = null;
-        for (SSTable table : tables) {
-            try {
-                table.close();
-            } catch (IOException e) {
-                closedException = e;
+
+    /**
+     * get the max sequence id of SSTable files, which is read from the sequence id file without opening any
+     * SSTable file.
+     * @return max sequence id, 0 if there is no SSTable file
+     * @throws IOException IO Exception
+     */
+    public synchronized long getMaxSequenceId() throws IOException {
+        if (sequenceIdFile.exists()) {
+            return sequenceIdFile.read();
+        }
+        // the data directory is written without the sequence id file, so the SSTable files are read once
+        long result = 0;
+        try (Version version = acquireVersion()) {
+            for (SSTable table : version.getTables()) {
+                result = Math.max(result, table.getMaxSequenceId());
+            }
+        }
+        sequenceIdFile.write(result);
+        return result;
+    }
+
+    /**
+     * record the max sequence id of a flushed SSTable file, call it before the file is visible.
+     * @param sequenceId max sequence id of SSTable file
+     * @throws IOException IO Exception
+     */
+    public synchronized void updateMaxSequenceId(final long sequenceId) throws IOException {
+        if (!sequenceIdFile.exists() || sequenceIdFile.read() < sequenceId) {
+            sequenceIdFile.write(sequenceId);
+        }
+    }
+
+    /**
+     * get range tombstones overlapping with the range [start, stop) from SSTable files of current version.
+     * @param start start of range, empty means no lower limit
+     * @param stop stop of range, which is excluded, empty means no upper limit
+     * @return range tombstones
+     * @throws IOException IO Exception
+     */
+    public List<KeyValuePair> getRangeTombstones(final byte[] start, final byte[] stop) throws IOException {
+        List<KeyValuePair> result = new ArrayList<>();
+        try (Version version = acquireVersion()) {
+            for (SSTable table : version.getTables()) {
+                if (table.mayContainRangeTombstones(start, stop)) {
+                    result.addAll(table.getRangeTombstones());
+                }
             }
         }
-        if (null != closedException) {
-            throw closedException;
+        return result;
+    }
+
+    /**
+     * get the newest visible versions of keys from SSTable files of current version, SSTable files are read
+     * concurrently.
+     * @param targets seek targets created by {@link KeyValuePair#createDelete(byte[], long)} with the max visible
+     *                sequence id, sorted in ascending order and not empty
+     * @return key value pairs in the order of targets, null if the key is not in any SSTable file
+     * @throws IOException IO Exception
+     */
+    public KeyValuePair[] multiGet(final List<KeyValuePair> targets) throws IOException {
+        try (Version version = acquireVersion()) {
+            return version.multiGet(targets);
         }
     }
 
+    /**
+     * remove SSTable table, the files are archived after the last reader releases them.
+     * @param tables SSTable file to remove
+     */
+    public void removeObsoleteTables(final List<SSTable> tables) {
+        replaceTables(tables, Collections.emptyList());
+    }
+
+    /**
+     * remove obsolete SSTable files and add new SSTable files in one version, so readers see either the old
+     * files or the new files.
+     * @param obsoleteTables SSTable files to remove
+     * @param newTables SSTable files to add
+     */
+    public synchronized void replaceTables(final List<SSTable> obsoleteTables, final List<SSTable> newTables) {
+        Version oldVersion = current;
+        List<SSTable> tables = new ArrayList<>(oldVersion.getTables().size() + newTables.size());
+        for (SSTable table : oldVersion.getTables()) {
+            if (obsoleteTables.contains(table)) {
+                table.markObsolete();
+            } else {
+                tables.add(table);
+            }
+        }
+        tables.addAll(newTables);
+        current = new Version(tables);
+        releaseVersion(oldVersion);
+    }
+    
+    private void releaseVersion(final Version version) {
+        try {
+            version.close();
+        } catch (IOException e) {
+            log.error("Release version failed.", e);
+        }
+    }
+    
+    @Override
+    public synchronized void close() throws IOException {
+        Version oldVersion = current;
+        current = new Version(Collections.emptyList());
+        // SSTable files held by readers are closed after the readers release them
+        oldVersion.close();
+        tableCache.close();
+    }
+
     /**
      * iterator multiple SSTable files.
      * @param tables SSTable files
@@ -165,7 +415,95 @@ public final class DiskStorage implements Closeable {
         return new MultiIterator(iterators);
     }
     
+    /**
+     * iterator SSTable files of current version, the version is released when the iterator is closed.
+     * @return iterator to traverse multiple SSTable.
+     * @throws IOException IO Exception
+     */
     public SeekIterator<KeyValuePair> iterator() throws IOException {
-        return iterator(getTables());
+        Version version = acquireVersion();
+        return new VersionIterator(version, iterator(version.getTables()));
+    }
+
+    /**
+     * iterator SSTable files of current version whose key ranges overlap with the range [start, stop), the others
+     * are skipped by the key ranges in their meta blocks.
+     * @param start start of range, empty means no lower limit
+     * @param stop stop of range, which is excluded, empty means no upper limit
+     * @return iterator to traverse multiple SSTable.
+     * @throws IOException IO Exception
+     */
+    public SeekIterator<KeyValuePair> rangeIterator(final byte[] start, final byte[] stop) throws IOException {
+        Version version = acquireVersion();
+        return new VersionIterator(version, iterator(getOverlappingTables(version, start, stop)));
+    }
+
+    /**
+     * scan SSTable files of current version whose key ranges overlap with the range [start, stop) forward, the key
+     * value pairs the scan would skip are skipped inside the data blocks, see {@link SSTable#iterator(long, ScanFilter)}.
+     * @param start start of range, empty means no lower limit
+     * @param stop stop of range, which is excluded, empty means no upper limit
+     * @param maxSequenceId key value pairs with larger sequence id are invisible
+     * @param filter filter of the scan, null means no filter. It must be null if there may be merge operands
+     * @return iterator to traverse multiple SSTable.
+     * @throws IOException IO Exception
+     */
+    public SeekIterator<KeyValuePair> rangeIterator(final byte[] start, final byte[] stop, final long maxSequenceId, final ScanFilter filter) throws IOException {
+        Version version = acquireVersion();
+        List<SeekIterator<KeyValuePair>> iterators = new ArrayList<>();
+        for (SSTable table : getOverlappingTables(version, start, stop)) {
+            iterators.add(table.iterator(maxSequenceId, filter));
+        }
+        return new VersionIterator(version, new MultiIterator(iterators));
+    }
+    
+    private static List<SSTable> getOverlappingTables(final Version version, final byte[] start, final byte[] stop) {
+        List<SSTable> result = new ArrayList<>(version.getTables().size());
+        for (SSTable table : version.getTables()) {
+            if (table.overlaps(start, stop)) {
+                result.add(table);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * iterator SSTable files of current version which may contain the key, the files excluded by key range or bloom
+     * filter are skipped without reading any block.
+     * @param key key to get
+     * @return iterator to traverse multiple SSTable.
+     * @throws IOException IO Exception
+     */
+    public SeekIterator<KeyValuePair> keyIterator(final byte[] key) throws IOException {
+        Version version = acquireVersion();
+        List<SSTable> tables = new ArrayList<>();
+        for (SSTable table : version.getTables()) {
+            if (table.mayContain(key)) {
+                tables.add(table);
+            }
+        }
+        return new VersionIterator(version, iterator(tables));
+    }
+
+    /**
+     * iterator SSTable files of current version which may contain keys with the prefix, the SSTable files and
+     * blocks ruled out by prefix bloom filters are skipped.
+     * @param prefix prefix of keys to scan
+     * @return iterator to traverse multiple SSTable.
+     * @throws IOException IO Exception
+     */
+    public SeekIterator<KeyValuePair> prefixIterator(final byte[] prefix) throws IOException {
+        byte[] bloomPrefix = null == prefixExtractor ? null : prefixExtractor.extract(prefix);
+        if (null == bloomPrefix) {
+            return iterator();
+        }
+        Version version = acquireVersion();
+        List<SeekIterator<KeyValuePair>> iterators = new ArrayList<>(version.getTables().size());
+        for (SSTable table : version.getTables()) {
+            if (table.mayContainPrefix(bloomPrefix)) {
+                iterators.add(table.iterator(bloomPrefix));
+            }
+        }
+        return new VersionIterator(version, new MultiIterator(iterators));
     }
 }
@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dkv.storage.disk;
+
+import java.io.IOException;
+import org.apache.dkv.storage.bean.KeyValuePair;
+import org.apache.dkv.storage.block.IndexBlock;
+import org.apache.dkv.storage.block.TailerBlock;
+import org.apache.dkv.storage.bytes.ByteSlice;
+
+/**
+ * detect the format version of SSTable files written before format version is introduced. The legacy formats have
+ * the same tailer block, so they're told apart by the index and the meta block, which are always read when the file
+ * is opened.
+ */
+final class LegacyFormat {
+    
+    private LegacyFormat() {
+    }
+
+    /**
+     * detect the format version of a legacy SSTable file.
+     * @param reader reader of SSTable file
+     * @param tailerBlock legacy tailer block of the file
+     * @return format version, see {@link TailerBlock}
+     * @throws IOException IO Exception
+     */
+    static int detect(final BlockReader reader, final TailerBlock tailerBlock) throws IOException {
+        if (0 == tailerBlock.getMetaBlockSize()) {
+            return TailerBlock.BASELINE_FORMAT;
+        }
+        byte[] buffer = new byte[(int) tailerBlock.getIndexBlockSize()];
+        reader.read(tailerBlock.getIndexBlockOffset(), buffer);
+        ByteSlice index = ByteSlice.wrap(buffer);
+        if (0 == buffer.length || isSeparatorIndex(index, tailerBlock.getIndexBlockOffset())) {
+            return KeyValuePair.FIXED_LENGTH_FORMAT;
+        }
+        if (!hasPrefixBloomFilter(reader, tailerBlock)) {
+            return TailerBlock.META_BLOCK_FORMAT;
+        }
+        // data blocks start at the head of file, and the partitions of index follow them
+        IndexBlock first = IndexBlock.parseAll(index, TailerBlock.PARTITIONED_INDEX_FORMAT).get(0);
+        return 0 == first.getBlockOffset() ? TailerBlock.PREFIX_BLOOM_FORMAT : TailerBlock.PARTITIONED_INDEX_FORMAT;
+    }
+    
+    // the top-level index of separators ends right after its partitions, which are contiguous, the index of the
+    // last key value pairs can't be parsed in this way
+    private static boolean isSeparatorIndex(final ByteSlice index, final long indexOffset) {
+        int pos = 0;
+        long nextOffset = -1;
+        while (pos < index.getLength()) {
+            pos = skipBytes(index, pos);
+            if (pos < 0 || pos + 2 * Long.BYTES > index.getLength()) {
+                return false;
+            }
+            long offset = index.getLong(pos);
+            if (-1 != nextOffset && offset != nextOffset) {
+                return false;
+            }
+            nextOffset = offset + index.getLong(pos + Long.BYTES);
+            // skip bloom filter and prefix bloom filter
+            pos = skipBytes(index, skipBytes(index, pos + 2 * Long.BYTES));
+        }
+        return pos == index.getLength() && nextOffset == indexOffset;
+    }
+    
+    // the meta block ends after the first key and the last key before prefix bloom filters are introduced
+    private static boolean hasPrefixBloomFilter(final BlockReader reader, final TailerBlock tailerBlock) throws IOException {
+        byte[] buffer = new byte[(int) tailerBlock.getMetaBlockSize()];
+        reader.read(tailerBlock.getMetaBlockOffset(), buffer);
+        ByteSlice meta = ByteSlice.wrap(buffer);
+        return skipBytes(meta, skipBytes(meta, 0)) != buffer.length;
+    }
+    
+    // skip the bytes prefixed by length, returns -1 if they're out of the index
+    private static int skipBytes(final ByteSlice index, final int pos) {
+        if (pos < 0 || pos + Integer.BYTES > index.getLength()) {
+            return -1;
+        }
+        int size = index.getInt(pos);
+        return size < 0 || pos + Integer.BYTES + size > index.getLength() ? -1 : pos + Integer.BYTES + size;
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dkv.storage.disk;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Iterators;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+import lombok.Getter;
+import org.apache.dkv.storage.bean.KeyValuePair;
+import org.apache.dkv.storage.block.IndexBlock;
+import org.apache.dkv.storage.block.TailerBlock;
+import org.apache.dkv.storage.bytes.ByteSlice;
+
+/**
+ * two-level index of a SSTable file. Only the top-level index of partitions is pinned in memory, the partitions of
+ * index blocks are loaded on demand and kept in a cache shared by all SSTable files.
+ * <p>
+ * The iterators load partitions lazily, and throw {@link UncheckedIOException} if a partition fails to load.
+ */
+public final class PartitionedIndex {
+    
+    // max bytes of cached partitions
+    private static final long PARTITION_CACHE_SIZE = 64 * 1024 * 1024;
+    
+    // keyed by the top-level index block, which is unique for each opened SSTable file
+    private static final Cache<IndexBlock, NavigableSet<IndexBlock>> PARTITION_CACHE = CacheBuilder.newBuilder()
+            .maximumWeight(PARTITION_CACHE_SIZE).weigher((IndexBlock partition, NavigableSet<IndexBlock> indexBlocks) -> (int) partition.getBlockSize()).build();
+    
+    private final BlockReader reader;
+    
+    private final NavigableSet<IndexBlock> partitions;
+    
+    // count of index blocks
+    @Getter
+    private final int size;
+    
+    PartitionedIndex(final BlockReader reader, final long offset, final long size, final int blockCount) throws IOException {
+        this.reader = reader;
+        // the index of legacy files isn't partitioned, so it's taken as a single partition
+        this.partitions = reader.getFormatVersion() < TailerBlock.PARTITIONED_INDEX_FORMAT ? readSinglePartition(offset, size) : read(offset, size);
+        this.size = blockCount;
+    }
+    
+    private NavigableSet<IndexBlock> read(final long offset, final long size) throws IOException {
+        byte[] buffer = reader.getBufferPool().acquire((int) size);
+        try {
+            reader.read(offset, buffer, (int) size);
+            return new TreeSet<>(IndexBlock.parseAll(ByteSlice.wrap(buffer, 0, (int) size), reader.getFormatVersion()));
+        } finally {
+            reader.getBufferPool().release(buffer);
+        }
+    }
+    
+    private NavigableSet<IndexBlock> readSinglePartition(final long offset, final long size) throws IOException {
+        NavigableSet<IndexBlock> indexBlocks = read(offset, size);
+        NavigableSet<IndexBlock> result = new TreeSet<>();
+        if (!indexBlocks.isEmpty()) {
+            IndexBlock partition = IndexBlock.createPartition(indexBlocks.last().getSeparator(), offset, size);
+            PARTITION_CACHE.put(partition, indexBlocks);
+            result.add(partition);
+        }
+        return result;
+    }
+    
+    private NavigableSet<IndexBlock> load(final IndexBlock partition) throws IOException {
+        try {
+            return PARTITION_CACHE.get(partition, () -> read(partition.getBlockOffset(), partition.getBlockSize()));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+    
+    private NavigableSet<IndexBlock> loadUnchecked(final IndexBlock partition) {
+        try {
+            return load(partition);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * get the smallest index block which has the separator greater than or equals to the target.
+     * @param target target key value pair
+     * @return index block, null if all key value pairs are less than the target
+     * @throws IOException IO Exception
+     */
+    public IndexBlock ceiling(final KeyValuePair target) throws IOException {
+        java.util.Iterator<IndexBlock> iterator = tailIterator(target);
+        try {
+            return iterator.hasNext() ? iterator.next() : null;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * get the first index block.
+     * @return the first index block
+     * @throws IOException IO Exception
+     */
+    public IndexBlock first() throws IOException {
+        return load(partitions.first()).first();
+    }
+
+    /**
+     * get the last index block.
+     * @return the last index block
+     * @throws IOException IO Exception
+     */
+    public IndexBlock last() throws IOException {
+        return load(partitions.last()).last();
+    }
+
+    /**
+     * iterate all index blocks in ascending order.
+     * @return iterator
+     */
+    public java.util.Iterator<IndexBlock> iterator() {
+        return concat(partitions.iterator(), NavigableSet::iterator);
+    }
+
+    /**
+     * iterate all index blocks in descending order.
+     * @return iterator
+     */
+    public java.util.Iterator<IndexBlock> descendingIterator() {
+        return concat(partitions.descendingIterator(), NavigableSet::descendingIterator);
+    }
+
+    /**
+     * iterate the index blocks which have the separator greater than or equals to the target in ascending order.
+     * @param target target key value pair
+     * @return iterator
+     */
+    public java.util.Iterator<IndexBlock> tailIterator(final KeyValuePair target) {
+        IndexBlock dummy = IndexBlock.createSeekDummy(target);
+        // the separator of a partition is the separator of its last index block, the data blocks of legacy files
+        // which end before the target are skipped
+        return Iterators.filter(concat(partitions.tailSet(dummy, true).iterator(), each -> each.tailSet(dummy, true).iterator()),
+            each -> !each.endsBefore(target));
+    }
+
+    /**
+     * iterate the index blocks before the given index block in descending order.
+     * @param indexBlock index block of this index
+     * @return iterator
+     */
+    public java.util.Iterator<IndexBlock> headDescendingIterator(final IndexBlock indexBlock) {
+        IndexBlock partition = partitions.ceiling(indexBlock);
+        return concat(partitions.headSet(partition, true).descendingIterator(), each -> each.headSet(indexBlock, false).descendingIterator());
+    }
+    
+    private java.util.Iterator<IndexBlock> concat(final java.util.Iterator<IndexBlock> partitionIterator,
+                                                  final Function<NavigableSet<IndexBlock>, java.util.Iterator<IndexBlock>> indexBlockIterator) {
+        // Iterators.transform is lazy, so a partition is loaded only when the iteration reaches it
+        return Iterators.concat(Iterators.transform(partitionIterator, each -> indexBlockIterator.apply(loadUnchecked(each))));
+    }
+
+    /**
+     * drop the cached partitions of this index.
+     */
+    void invalidate() {
+        PARTITION_CACHE.invalidateAll(partitions);
+    }
+}
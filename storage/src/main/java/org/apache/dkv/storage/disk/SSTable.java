@@ -17,93 +17,358 @@
 
 package org.apache.dkv.storage.disk;
 
+import com.google.common.collect.Iterators;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
 import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.dkv.storage.bean.KeyValuePair;
+import org.apache.dkv.storage.bean.RangeTombstones;
 import org.apache.dkv.storage.block.DataBlock;
 import org.apache.dkv.storage.block.IndexBlock;
+import org.apache.dkv.storage.block.MetaBlock;
 import org.apache.dkv.storage.block.TailerBlock;
+import org.apache.dkv.storage.bloom.BloomFilter;
+import org.apache.dkv.storage.bytes.BufferPool;
+import org.apache.dkv.storage.bytes.Bytes;
+import org.apache.dkv.storage.iterator.ScanFilter;
 import org.apache.dkv.storage.iterator.SeekIterator;
 
 /**
  * SSTable object, It's read a SSTable file.
  */
+@Slf4j
 public final class SSTable implements Closeable {
     
+    // start read-ahead after the iterator has read this many blocks sequentially
+    private static final int READ_AHEAD_TRIGGER_BLOCKS = 2;
+    
+    // upper limit of bytes read ahead at once
+    private static final long MAX_READ_AHEAD_SIZE = 8 * 1024 * 1024;
+    
+    // only used to check generated bloom filters, which is thread safe
+    private static final BloomFilter BLOOM_FILTER = new BloomFilter(DataBlock.BLOOM_FILTER_HASH_COUNT, DataBlock.BLOOM_FILTER_BITS_PER_KEY);
+    
     @Getter
     private final String fileName;
     
-    private final long fileSize;
+    // the file is opened on first use, iterators and background reads share the opened file
+    private final TableCache tableCache;
     
-    @Getter
-    private final TailerBlock tailerBlock;
+    // key range and prefix bloom filter are kept after the file is opened once, so picking compactions and
+    // filtering files by key range don't reopen evicted files
+    private volatile MetaBlock metaBlock;
     
-    private final RandomAccessFile in;
+    // range tombstones are few and checked by every read, so they are kept with the meta block
+    private volatile List<KeyValuePair> rangeTombstones;
     
     @Getter
-    private final SortedSet<IndexBlock> indexBlocks;
+    @Setter
+    private volatile int level = DiskStorage.FLUSHED_LEVEL;
+    
+    // count of versions containing the SSTable file
+    private final AtomicInteger refCount = new AtomicInteger();
+    
+    private volatile boolean obsolete;
 
     /**
-     * open a SSTable file, read it's tailer block and index blocks.
+     * create a SSTable file which is opened by its own table cache.
      * @param fileName file name ready to read
-     * @throws IOException IO Exception.
+     * @param bufferPool pool of the buffers to read the file
      */
-    public SSTable(final String fileName) throws IOException {
+    public SSTable(final String fileName, final BufferPool bufferPool) {
+        this(fileName, new TableCache(1, bufferPool));
+    }
+
+    /**
+     * create a SSTable file, the file isn't opened until it's read.
+     * @param fileName file name ready to read
+     * @param tableCache cache of opened SSTable files
+     */
+    SSTable(final String fileName, final TableCache tableCache) {
         this.fileName = fileName;
-        File f = new File(fileName);
-        this.fileSize = f.length();
-        this.in = new RandomAccessFile(f, "r");
-
-        // read tailer block from SSTable file
-        tailerBlock = readTailerBlock();
-        // read index blocks from SSTable file
-        indexBlocks = readIndexBlocks();
-    }
-    
-    private TailerBlock readTailerBlock() throws IOException {
-        assert this.fileSize > TailerBlock.TAILER_SIZE;
-        // seek to tailer block
-        in.seek(fileSize - TailerBlock.TAILER_SIZE);
-        // read tailer block
-        byte[] buffer = new byte[TailerBlock.TAILER_SIZE];
-        assert in.read(buffer) == TailerBlock.TAILER_SIZE;
-        return TailerBlock.parseFrom(buffer, 0);
-    }
-    
-    private SortedSet<IndexBlock> readIndexBlocks() throws IOException {
-        // TODO maybe a large memory, and overflow
-        byte[] buffer = new byte[(int) tailerBlock.getIndexBlockSize()];
-        in.seek(tailerBlock.getIndexBlockOffset());
-        assert in.read(buffer) == tailerBlock.getIndexBlockSize();
-        int offset = 0;
-        SortedSet<IndexBlock> indexBlocks = new TreeSet<>();
-        do {
-            IndexBlock indexBlock = IndexBlock.parseFrom(buffer, offset);
-            offset += indexBlock.getSerializeSize();
-            indexBlocks.add(indexBlock);
-        } while (offset < buffer.length);
-        assert indexBlocks.size() == tailerBlock.getBlockCount();
-        return indexBlocks;
-    }
-    
-    private DataBlock load(final IndexBlock indexBlock) throws IOException {
-        in.seek(indexBlock.getBlockOffset());
-        
-        // TODO maybe overflow
-        byte[] buffer = new byte[(int) indexBlock.getBlockSize()];
-        assert in.read(buffer) == buffer.length;
-        return DataBlock.parseFrom(buffer, 0, buffer.length);
+        this.tableCache = tableCache;
+    }
+
+    /**
+     * get the opened file from table cache, the file is opened if it's not cached. Close the reader after use.
+     * @return reader of SSTable file
+     * @throws IOException IO Exception
+     */
+    TableReader acquireReader() throws IOException {
+        TableReader reader = tableCache.acquire(this);
+        rangeTombstones = reader.getRangeTombstones();
+        metaBlock = reader.getMetaBlock();
+        return reader;
+    }
+
+    /**
+     * get tailer block of SSTable file.
+     * @return tailer block
+     * @throws IOException IO Exception
+     */
+    public TailerBlock getTailerBlock() throws IOException {
+        try (TableReader reader = acquireReader()) {
+            return reader.getTailerBlock();
+        }
+    }
+
+    /**
+     * get meta block of SSTable file, the file is opened if it's never opened.
+     * @return meta block
+     * @throws UncheckedIOException if the file fails to open
+     */
+    public MetaBlock getMetaBlock() {
+        MetaBlock result = metaBlock;
+        if (null != result) {
+            return result;
+        }
+        try (TableReader reader = acquireReader()) {
+            return reader.getMetaBlock();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * get range tombstones of SSTable file, the file is opened if it's never opened.
+     * @return range tombstones sorted by start key
+     * @throws UncheckedIOException if the file fails to open
+     */
+    public List<KeyValuePair> getRangeTombstones() {
+        List<KeyValuePair> result = rangeTombstones;
+        if (null != result) {
+            return result;
+        }
+        try (TableReader reader = acquireReader()) {
+            return reader.getRangeTombstones();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * get the smallest key in SSTable.
+     * @return byte array of the smallest key.
+     */
+    public byte[] getFirstKey() {
+        return getMetaBlock().getFirstKey();
+    }
+
+    /**
+     * get the largest key in SSTable.
+     * @return byte array of the largest key.
+     */
+    public byte[] getLastKey() {
+        return getMetaBlock().getLastKey();
+    }
+
+    /**
+     * get the separators of all data blocks in SSTable.
+     * @return separators in ascending order
+     * @throws IOException IO Exception
+     */
+    public List<byte[]> getSeparators() throws IOException {
+        try (TableReader reader = acquireReader()) {
+            List<byte[]> result = new ArrayList<>(reader.getTailerBlock().getBlockCount());
+            reader.getIndex().iterator().forEachRemaining(each -> result.add(each.getSeparator()));
+            return result;
+        } catch (UncheckedIOException e) {
+            // index partitions are loaded while iterating
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * may SSTable contain keys with the prefix, checked by the prefix bloom filter.
+     * @param prefix prefix extracted by prefix extractor
+     * @return false if there is no key with the prefix.
+     */
+    public boolean mayContainPrefix(final byte[] prefix) {
+        return mayContainPrefix(getMetaBlock().getPrefixBloomFilter(), prefix);
     }
     
+    private static boolean mayContainPrefix(final byte[] prefixBloomFilter, final byte[] prefix) {
+        return BLOOM_FILTER.contains(prefixBloomFilter, prefix);
+    }
+
+    /**
+     * may SSTable contain the key, checked by the key range and the bloom filter of the file, no block is read.
+     * @param key key to check
+     * @return false if the key is not in SSTable.
+     */
+    public boolean mayContain(final byte[] key) {
+        MetaBlock meta = getMetaBlock();
+        return Bytes.compare(meta.getFirstKey(), key) <= 0 && Bytes.compare(key, meta.getLastKey()) <= 0
+                && BLOOM_FILTER.contains(meta.getBloomFilter(), key);
+    }
+
+    /**
+     * may SSTable contain range tombstones overlapping with the range [start, stop), checked by the span of range
+     * tombstones in the meta block, so the files without range tombstone are skipped by reads.
+     * @param start start of range, empty means no lower limit
+     * @param stop stop of range, which is excluded, empty means no upper limit
+     * @return false if no range tombstone in SSTable overlaps with the range.
+     */
+    public boolean mayContainRangeTombstones(final byte[] start, final byte[] stop) {
+        MetaBlock meta = getMetaBlock();
+        return 0 != meta.getRangeDelBlockSize() && RangeTombstones.overlaps(meta.getRangeDelStart(), meta.getRangeDelStop(), start, stop);
+    }
+
+    /**
+     * get the max sequence id of key value pairs in SSTable, the files written before properties are recorded are
+     * scanned to find it.
+     * @return max sequence id
+     * @throws IOException IO Exception
+     */
+    public long getMaxSequenceId() throws IOException {
+        MetaBlock meta = getMetaBlock();
+        if (null != meta.getProperties()) {
+            return meta.getProperties().getMaxSequenceId();
+        }
+        long result = 0;
+        try (SeekIterator<KeyValuePair> it = iterator()) {
+            while (it.hasNext()) {
+                result = Math.max(result, it.next().getSequenceId());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * is the key range of this SSTable overlaps with the key range of the other SSTable.
+     * @param other the other SSTable.
+     * @return true if two key ranges have common keys.
+     */
+    public boolean overlaps(final SSTable other) {
+        return Bytes.compare(getFirstKey(), other.getLastKey()) <= 0 && Bytes.compare(other.getFirstKey(), getLastKey()) <= 0;
+    }
+
+    /**
+     * is the key range of this SSTable overlaps with the range [start, stop).
+     * @param start start of range, empty means no lower limit
+     * @param stop stop of range, which is excluded, empty means no upper limit
+     * @return true if the range may have keys in SSTable.
+     */
+    public boolean overlaps(final byte[] start, final byte[] stop) {
+        return (0 == start.length || Bytes.compare(start, getLastKey()) <= 0) && (0 == stop.length || Bytes.compare(getFirstKey(), stop) < 0);
+    }
+    
+    /**
+     * get the newest visible versions of keys asynchronously, each data block is read once no matter how many keys
+     * are in it, and the blocks whose bloom filter excludes the keys are not read.
+     * @param targets seek targets created by {@link KeyValuePair#createDelete(byte[], long)} with the max visible
+     *                sequence id, sorted in ascending order
+     * @return future of key value pairs in the order of targets, null if the key is not in SSTable
+     */
+    public CompletableFuture<KeyValuePair[]> multiGetAsync(final List<KeyValuePair> targets) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return multiGet(targets);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, tableCache.getReadPool());
+    }
+    
+    private KeyValuePair[] multiGet(final List<KeyValuePair> targets) throws IOException {
+        try (TableReader reader = acquireReader()) {
+            return multiGet(reader, targets);
+        }
+    }
+    
+    private static KeyValuePair[] multiGet(final TableReader reader, final List<KeyValuePair> targets) throws IOException {
+        // group targets by the data blocks containing them, targets are sorted, so are the blocks
+        List<IndexBlock> blocks = new ArrayList<>();
+        List<List<Integer>> groups = new ArrayList<>();
+        for (int i = 0; i < targets.size(); i++) {
+            KeyValuePair target = targets.get(i);
+            // the index isn't searched for the keys excluded by the bloom filter of file
+            if (!BLOOM_FILTER.contains(reader.getMetaBlock().getBloomFilter(), target.getKey())) {
+                continue;
+            }
+            // the newest visible version is the smallest key value pair greater than or equals to the target
+            IndexBlock indexBlock = reader.getIndex().ceiling(target);
+            if (null == indexBlock) {
+                break;
+            }
+            if (!BLOOM_FILTER.contains(indexBlock.getBloomFilter(), target.getKey())) {
+                continue;
+            }
+            if (blocks.isEmpty() || blocks.get(blocks.size() - 1) != indexBlock) {
+                blocks.add(indexBlock);
+                groups.add(new ArrayList<>());
+            }
+            groups.get(groups.size() - 1).add(i);
+        }
+        KeyValuePair[] result = new KeyValuePair[targets.size()];
+        List<DataBlock> dataBlocks = reader.getBlockReader().load(blocks);
+        find(targets, dataBlocks, groups, result);
+        return result;
+    }
+    
+    // find the targets in the data blocks containing them, the targets of the i-th block are in the i-th group
+    private static void find(final List<KeyValuePair> targets, final List<DataBlock> dataBlocks, final List<List<Integer>> groups, final KeyValuePair[] result) {
+        for (int i = 0; i < dataBlocks.size(); i++) {
+            for (int index : groups.get(i)) {
+                result[index] = dataBlocks.get(i).find(targets.get(index));
+            }
+        }
+    }
+    
+    /**
+     * drop the opened file from table cache, it's closed after the iterators using it are closed.
+     */
     @Override
-    public void close() throws IOException {
-        if (null != in) {
-            in.close();
+    public void close() {
+        tableCache.invalidate(this);
+    }
+
+    /**
+     * retain SSTable file by a version.
+     */
+    void retain() {
+        refCount.incrementAndGet();
+    }
+
+    /**
+     * release SSTable file by a version, close the file after the last version is released, and archive
+     * the file if it's obsolete.
+     * @throws IOException IO Exception
+     */
+    void release() throws IOException {
+        if (0 != refCount.decrementAndGet()) {
+            return;
+        }
+        close();
+        if (obsolete) {
+            archive();
+        }
+    }
+
+    /**
+     * mark SSTable file obsolete, it will be archived after the last reader releases it.
+     */
+    void markObsolete() {
+        obsolete = true;
+    }
+    
+    private void archive() {
+        File f = new File(fileName);
+        File archiveFile = new File(fileName + DiskStorage.FILE_NAME_ARCHIVE_SUFFIX);
+        if (!f.renameTo(archiveFile)) {
+            log.error("Rename " + fileName + " to " + archiveFile.getName() + " failed.");
         }
     }
 
@@ -113,7 +378,29 @@ public final class SSTable implements Closeable {
      * @return iterator
      */
     public SeekIterator<KeyValuePair> iterator() {
-        return new InternalIterator();
+        return iterator(null);
+    }
+
+    /**
+     * create a iterator to visit SSTable, skip the blocks which have no key with the prefix.
+     * 
+     * @param prefix prefix extracted by prefix extractor, null means visit all blocks
+     * @return iterator
+     */
+    public SeekIterator<KeyValuePair> iterator(final byte[] prefix) {
+        return new InternalIterator(prefix, null);
+    }
+
+    /**
+     * create a iterator to scan SSTable forward, the key value pairs which the scan would skip are skipped in place
+     * without being decoded, see {@link ScanPushdown}. Iterating backward visits all key value pairs.
+     * 
+     * @param maxSequenceId key value pairs with larger sequence id are invisible
+     * @param filter filter of the scan, null means no filter. It must be null if there may be merge operands
+     * @return iterator
+     */
+    public SeekIterator<KeyValuePair> iterator(final long maxSequenceId, final ScanFilter filter) {
+        return new InternalIterator(maxSequenceId, filter);
     }
     
     private final class InternalIterator implements SeekIterator<KeyValuePair> {
@@ -123,62 +410,258 @@ public final class SSTable implements Closeable {
         private DataBlock currentDataBlock;
         
         private java.util.Iterator<IndexBlock> indexBlockIterator;
+        
+        // index blocks are visited in descending order while iterating backward
+        private boolean reverse;
+        
+        // blocks read sequentially since the last seek
+        private int sequentialBlocks;
+        
+        // blocks read ahead last time, doubled while the iterator keeps reading sequentially
+        private int readAheadBlocks;
+        
+        private final Deque<DataBlock> readAheadQueue = new ArrayDeque<>();
+        
+        private CompletableFuture<List<DataBlock>> readAheadFuture;
+        
+        private final byte[] prefix;
+        
+        // null if all key value pairs are visited
+        private final ScanPushdown pushdown;
+        
+        // the next key value pair while iterating forward, which is found by hasNext
+        private KeyValuePair nextKv;
+        
+        // the file is opened on first read and released when the iterator is closed
+        private TableReader tableReader;
+        
+        // nothing is returned after the iterator is closed
+        private boolean closed;
     
-        InternalIterator() {
+        InternalIterator(final byte[] prefix, final ScanPushdown pushdown) {
+            this.prefix = prefix;
+            this.pushdown = pushdown;
             currentDataBlock = null;
-            indexBlockIterator = indexBlocks.iterator();
+        }
+        
+        InternalIterator(final long maxSequenceId, final ScanFilter filter) {
+            this(null, new ScanPushdown(maxSequenceId, filter));
+        }
+        
+        private TableReader open() throws IOException {
+            if (null == tableReader) {
+                tableReader = acquireReader();
+            }
+            return tableReader;
+        }
+        
+        private java.util.Iterator<IndexBlock> filter(final java.util.Iterator<IndexBlock> iterator) {
+            if (null == prefix) {
+                return iterator;
+            }
+            return Iterators.filter(iterator, each -> mayContainPrefix(each.getPrefixBloomFilter(), prefix));
         }
         
         private boolean nextDataBlock() throws IOException {
-            if (!indexBlockIterator.hasNext()) {
-                return false;
+            DataBlock dataBlock = pollReadAhead();
+            if (null == dataBlock) {
+                IndexBlock indexBlock = nextIndexBlock();
+                if (null == indexBlock) {
+                    return false;
+                }
+                dataBlock = tableReader.getBlockReader().load(indexBlock);
             }
-
-            currentDataBlock = load(indexBlockIterator.next());
-            currentKvIndex = 0;
+            currentDataBlock = dataBlock;
+            currentKvIndex = reverse ? currentDataBlock.getKeyValueCount() - 1 : 0;
+            sequentialBlocks++;
+            maybeReadAhead();
             return true;
         }
+        
+        private IndexBlock nextIndexBlock() throws IOException {
+            try {
+                return indexBlockIterator.hasNext() ? indexBlockIterator.next() : null;
+            } catch (UncheckedIOException e) {
+                // index partitions are loaded while iterating
+                throw e.getCause();
+            }
+        }
+        
+        private DataBlock pollReadAhead() throws IOException {
+            if (readAheadQueue.isEmpty() && null != readAheadFuture) {
+                try {
+                    readAheadQueue.addAll(readAheadFuture.join());
+                } catch (CompletionException e) {
+                    if (e.getCause() instanceof UncheckedIOException) {
+                        throw ((UncheckedIOException) e.getCause()).getCause();
+                    }
+                    throw new IOException(e.getCause());
+                } finally {
+                    readAheadFuture = null;
+                }
+            }
+            return readAheadQueue.poll();
+        }
+
+        /**
+         * read the next blocks in background once the iterator reads forward sequentially, the read-ahead size
+         * grows while the sequential access goes on.
+         */
+        private void maybeReadAhead() throws IOException {
+            if (reverse || sequentialBlocks < READ_AHEAD_TRIGGER_BLOCKS || null != readAheadFuture || !readAheadQueue.isEmpty()) {
+                return;
+            }
+            readAheadBlocks = Math.max(1, readAheadBlocks * 2);
+            List<IndexBlock> window = new ArrayList<>(readAheadBlocks);
+            long windowSize = 0;
+            // data blocks are written one after another, so the window is usually read by one contiguous read
+            while (window.size() < readAheadBlocks && windowSize < MAX_READ_AHEAD_SIZE) {
+                IndexBlock indexBlock = nextIndexBlock();
+                if (null == indexBlock) {
+                    break;
+                }
+                window.add(indexBlock);
+                windowSize += indexBlock.getBlockSize();
+            }
+            if (!window.isEmpty()) {
+                readAhead(window);
+            }
+        }
+        
+        private void readAhead(final List<IndexBlock> window) throws IOException {
+            // the read holds its own reference of the reader, so the file stays open even if the iterator is
+            // closed or repositioned while the read is running
+            if (!tableReader.tryRetain()) {
+                readAheadQueue.addAll(tableReader.getBlockReader().load(window));
+                return;
+            }
+            final TableReader reader = tableReader;
+            readAheadFuture = CompletableFuture.supplyAsync(() -> {
+                try (TableReader retained = reader) {
+                    return retained.getBlockReader().load(window);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, tableCache.getReadAheadPool());
+        }
+        
+        private void resetReadAhead() {
+            if (null != readAheadFuture) {
+                // a running read still completes, and releases the reader it holds
+                readAheadFuture.cancel(false);
+                readAheadFuture = null;
+            }
+            readAheadQueue.clear();
+            sequentialBlocks = 0;
+            readAheadBlocks = 0;
+        }
 
         @Override
         public boolean hasNext() throws IOException {
-            if (null == currentDataBlock) {
-                return nextDataBlock();
-            } else {
-                if (currentKvIndex < currentDataBlock.getKeyValuePairs().size()) {
-                    return true;
-                } else {
-                    return nextDataBlock();
+            if (reverse || closed) {
+                return false;
+            }
+            if (null == indexBlockIterator) {
+                indexBlockIterator = filter(open().getIndex().iterator());
+            }
+            while (null == nextKv) {
+                if (null == currentDataBlock || currentKvIndex >= currentDataBlock.getKeyValueCount()) {
+                    if (!nextDataBlock()) {
+                        return false;
+                    }
+                    continue;
                 }
+                nextKv = null == pushdown ? currentDataBlock.getEntry(currentKvIndex).toKeyValuePairWithValueView() : pushdown.apply(currentDataBlock.getEntry(currentKvIndex));
+                currentKvIndex++;
+            }
+            return true;
+        }
+
+        @Override
+        public KeyValuePair next() throws IOException {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
             }
+            KeyValuePair result = nextKv;
+            nextKv = null;
+            return result;
         }
 
         @Override
-        public KeyValuePair next() {
-            return currentDataBlock.getKeyValuePairs().get(currentKvIndex++);
+        public boolean hasPrev() throws IOException {
+            if (!reverse || closed) {
+                return false;
+            }
+            if (null != currentDataBlock && currentKvIndex >= 0) {
+                return true;
+            }
+            return nextDataBlock();
+        }
+
+        @Override
+        public KeyValuePair prev() {
+            return currentDataBlock.getEntry(currentKvIndex--).toKeyValuePairWithValueView();
         }
 
         @Override
         public void seekTo(final KeyValuePair target) throws IOException {
-            // Locate the smallest index block which has the lastKv >= target
-            indexBlockIterator = indexBlocks.tailSet(IndexBlock.createSeekDummy(target)).iterator();
-            currentDataBlock = null;
-            if (indexBlockIterator.hasNext()) {
-                currentDataBlock = load(indexBlockIterator.next());
+            reverse = false;
+            resetPosition();
+            // Locate the smallest index block which has the separator >= target
+            indexBlockIterator = filter(open().getIndex().tailIterator(target));
+            IndexBlock indexBlock = nextIndexBlock();
+            if (null != indexBlock) {
+                currentDataBlock = tableReader.getBlockReader().load(indexBlock);
                 // Locate the smallest Key Value pair which is greater than or equals to the given key value pair.
-                // We're sure that we can find the currentKvIndex, because lastKv of the block is greater than or equals
-                // to the target Key Value pair.
-                currentKvIndex = 0;
-                for (KeyValuePair keyValuePair : currentDataBlock.getKeyValuePairs()) {
-                    if (keyValuePair.compareTo(target) >= 0) {
-                        break;
-                    }
-                    currentKvIndex++;
-                }
+                // The target may fall between the last key of the block and the separator, then all Key Value pairs
+                // of the block are skipped and the iterator moves on to the next block.
+                currentKvIndex = currentDataBlock.ceiling(target);
+            }
+        }
+        
+        private void resetPosition() {
+            resetReadAhead();
+            currentDataBlock = null;
+            nextKv = null;
+            if (null != pushdown) {
+                pushdown.reset();
+            }
+        }
 
-                if (currentKvIndex >= currentDataBlock.getKeyValuePairs().size()) {
-                    throw new IOException("Data block mis-encoded, lastKV of the currentReader >= kv, but "
-                            + "we found all kv < target");
-                }
+        @Override
+        public void close() throws IOException {
+            resetPosition();
+            closed = true;
+            if (null != tableReader) {
+                tableReader.close();
+                tableReader = null;
+            }
+        }
+
+        @Override
+        public void seekToLast() throws IOException {
+            reverse = true;
+            resetPosition();
+            indexBlockIterator = filter(open().getIndex().descendingIterator());
+        }
+
+        @Override
+        public void seekForPrev(final KeyValuePair target) throws IOException {
+            // Locate the smallest index block which has the separator >= target, the largest Key Value pair which is
+            // less than or equals to the target is in this block or the previous block.
+            IndexBlock indexBlock = open().getIndex().ceiling(target);
+            if (null == indexBlock) {
+                // all Key Value pairs are less than the target
+                seekToLast();
+                return;
+            }
+            reverse = true;
+            resetPosition();
+            indexBlockIterator = filter(tableReader.getIndex().headDescendingIterator(indexBlock));
+            currentDataBlock = tableReader.getBlockReader().load(indexBlock);
+            currentKvIndex = currentDataBlock.getKeyValueCount() - 1;
+            while (currentKvIndex >= 0 && currentDataBlock.getEntry(currentKvIndex).compareTo(target) > 0) {
+                currentKvIndex--;
             }
         }
     }
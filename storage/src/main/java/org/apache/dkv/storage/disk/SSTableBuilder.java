@@ -23,18 +23,33 @@ import java.io.File;
 import java.io.FileDescriptor;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import lombok.Getter;
 import org.apache.dkv.storage.bean.KeyValuePair;
+import org.apache.dkv.storage.bean.KeyValuePair.OperationType;
+import org.apache.dkv.storage.bytes.BufferPool;
+import org.apache.dkv.storage.bytes.Bytes;
 import org.apache.dkv.storage.block.DataBlock;
 import org.apache.dkv.storage.block.IndexBlockBuilder;
+import org.apache.dkv.storage.block.MetaBlock;
+import org.apache.dkv.storage.block.RangeDelBlock;
+import org.apache.dkv.storage.block.TableProperties;
 import org.apache.dkv.storage.block.TailerBlock;
+import org.apache.dkv.storage.bloom.BloomFilter;
+import org.apache.dkv.storage.bloom.PrefixExtractor;
+import org.apache.dkv.storage.config.Config;
 
 /**
  * SSTable Builder
  */
 public final class SSTableBuilder implements Closeable {
 
-    private static final int BLOCK_SIZE_UP_LIMIT = 1024 * 1024 * 2;
+    private static final int INITIAL_KEY_HASHES = 1024;
+    
+    private final int blockSize;
 
     private long currentOffset;
     
@@ -59,18 +74,74 @@ public final class SSTableBuilder implements Closeable {
     
     private long dataBlockMetaSize;
     
-    public SSTableBuilder(final String fileName) throws IOException {
+    private byte[] firstKey = Bytes.EMPTY_BYTES;
+    
+    private byte[] lastKey = Bytes.EMPTY_BYTES;
+    
+    private final PrefixExtractor prefixExtractor;
+    
+    // distinct key prefixes of the SSTable file
+    private final List<byte[]> prefixes = new ArrayList<>();
+    
+    // hashes of distinct keys to build the bloom filter of the SSTable file, keys are not kept
+    private int[] keyHashes = new int[INITIAL_KEY_HASHES];
+    
+    private int keyCount;
+    
+    private long minSequenceId = Long.MAX_VALUE;
+    
+    @Getter
+    private long maxSequenceId;
+    
+    private long entryCount;
+    
+    private long deleteCount;
+    
+    private long rawSize;
+    
+    private long dataSize;
+    
+    // range tombstones are written into the range-del block instead of data blocks
+    private final List<KeyValuePair> rangeTombstones = new ArrayList<>();
+    
+    // span of range tombstones
+    private byte[] rangeDelStart = Bytes.EMPTY_BYTES;
+    
+    private byte[] rangeDelStop = Bytes.EMPTY_BYTES;
+    
+    /**
+     * create SSTable builder with the default block size and no prefix bloom filter.
+     * @param fileName file name of SSTable
+     * @param bufferPool pool of the buffers of data blocks
+     * @throws IOException IO Exception.
+     */
+    public SSTableBuilder(final String fileName, final BufferPool bufferPool) throws IOException {
+        this(fileName, null, Config.DEFAULT_BLOCK_SIZE, bufferPool);
+    }
+
+    /**
+     * create SSTable builder.
+     * @param fileName file name of SSTable
+     * @param prefixExtractor extract prefix of keys to build prefix bloom filters, null means no prefix bloom filter
+     * @param blockSize target size of data blocks
+     * @param bufferPool pool of the buffers of data blocks
+     * @throws IOException IO Exception.
+     */
+    public SSTableBuilder(final String fileName, final PrefixExtractor prefixExtractor, final int blockSize, final BufferPool bufferPool) throws IOException {
+        Preconditions.checkArgument(blockSize > 0, "Invalid block size: %s", blockSize);
+        this.prefixExtractor = prefixExtractor;
+        this.blockSize = blockSize;
         File f = new File(fileName);
         boolean isExists = f.createNewFile();
         Preconditions.checkState(isExists, "%s is exists.", fileName);
         outputStream = new FileOutputStream(f, true);
         currentOffset = 0;
         indexBlockBuilder = new IndexBlockBuilder();
-        currentDataBlock = new DataBlock();
+        currentDataBlock = new DataBlock(bufferPool);
     }
 
     /**
-     * append Key value pair into SSTable.
+     * append Key value pair into SSTable, range tombstones can be appended in any order.
      * @param keyValuePair to append to SSTable.
      * @throws IOException IO Exception.
      */
@@ -78,29 +149,88 @@ public final class SSTableBuilder implements Closeable {
         if (null == keyValuePair) {
             return;
         }
+        if (OperationType.DeleteRange == keyValuePair.getOperationType()) {
+            rangeTombstones.add(keyValuePair);
+            updateSequenceId(keyValuePair);
+            return;
+        }
         
-        assert keyValuePair.getSerializeSize() + DataBlock.KV_SIZE_LEN + DataBlock.CHECKSUM_LEN < BLOCK_SIZE_UP_LIMIT;
         if (!currentDataBlock.isEmpty()) {
-            if (keyValuePair.getSerializeSize() + currentDataBlock.getSize() >= BLOCK_SIZE_UP_LIMIT) {
-                switchNextDataBlock();        
+            // all versions of a key are kept in the same data block, so the index only needs the key
+            if (keyValuePair.getSerializeSize() + currentDataBlock.getSize() >= blockSize
+                    && Bytes.compare(lastKey, keyValuePair.getKey()) != 0) {
+                switchNextDataBlock(keyValuePair.getKey());
             }
+        } else if (0 == blockCount) {
+            firstKey = keyValuePair.getKey();
         }
         currentDataBlock.append(keyValuePair);
+        updateProperties(keyValuePair);
+        lastKey = keyValuePair.getKey();
+        appendPrefix(keyValuePair.getKey());
+    }
+    
+    private void updateProperties(final KeyValuePair keyValuePair) {
+        // keys are sorted, so versions of a key are adjacent
+        if (0 == entryCount || Bytes.compare(lastKey, keyValuePair.getKey()) != 0) {
+            if (keyCount == keyHashes.length) {
+                keyHashes = Arrays.copyOf(keyHashes, keyHashes.length * 2);
+            }
+            keyHashes[keyCount++] = Bytes.hash(keyValuePair.getKey());
+        }
+        updateSequenceId(keyValuePair);
+        entryCount++;
+        if (OperationType.Delete == keyValuePair.getOperationType()) {
+            deleteCount++;
+        }
+        rawSize += keyValuePair.getSerializeSize();
     }
     
-    private void switchNextDataBlock() throws IOException {
+    private void updateSequenceId(final KeyValuePair keyValuePair) {
+        minSequenceId = Math.min(minSequenceId, keyValuePair.getSequenceId());
+        maxSequenceId = Math.max(maxSequenceId, keyValuePair.getSequenceId());
+    }
+    
+    /**
+     * whether to roll to a new SSTable file before appending the key value pair. It's never true between versions
+     * of the same key, so all versions of a key are in the same file.
+     * @param keyValuePair the next key value pair to append
+     * @param maxFileSize max size of SSTable file
+     * @return true if the written data reaches max file size and the key value pair starts a new key
+     */
+    public boolean shouldRoll(final KeyValuePair keyValuePair, final long maxFileSize) {
+        return currentOffset + currentDataBlock.getSize() >= maxFileSize && Bytes.compare(lastKey, keyValuePair.getKey()) != 0;
+    }
+    
+    private void appendPrefix(final byte[] key) {
+        if (null == prefixExtractor) {
+            return;
+        }
+        byte[] prefix = prefixExtractor.extract(key);
+        // keys are sorted, so the same prefixes are adjacent
+        if (null != prefix && (prefixes.isEmpty() || Bytes.compare(prefixes.get(prefixes.size() - 1), prefix) != 0)) {
+            prefixes.add(prefix);
+        }
+    }
+    
+    private void switchNextDataBlock(final byte[] nextKey) throws IOException {
         assert null != currentDataBlock.getLastKv();
         
-        byte[] buffer = currentDataBlock.serialize();
-        outputStream.write(buffer);
-        // save index info into DataBlockMeta
-        indexBlockBuilder.append(currentDataBlock.getLastKv(), currentOffset, buffer.length, currentDataBlock.getBloomFilter());
+        // key value pairs are encoded while appending, so the block buffer is written as it is
+        ByteBuffer buffer = currentDataBlock.serializeToBuffer();
+        int size = buffer.remaining();
+        outputStream.write(buffer.array(), buffer.position(), size);
+        // save index info into DataBlockMeta, the separator of the last data block is its last key
+        byte[] separator = null == nextKey ? lastKey : Bytes.shortestSeparator(lastKey, nextKey);
+        indexBlockBuilder.append(separator, currentOffset, size, currentDataBlock.getBloomFilter(),
+                currentDataBlock.getPrefixBloomFilter(prefixExtractor));
         
-        currentOffset += buffer.length;
+        currentOffset += size;
+        dataSize += size;
         blockCount += 1;
         
-        // switch to the next block.
-        currentDataBlock = new DataBlock();
+        // switch to the next block, the block buffer is reused.
+        currentDataBlock.reset();
     }
 
     /**
@@ -110,10 +240,15 @@ public final class SSTableBuilder implements Closeable {
     public void appendIndex() throws IOException {
         // add last Data Block into index
         if (!currentDataBlock.isEmpty()) {
-            switchNextDataBlock();
+            switchNextDataBlock(null);
         }
         
-        byte[] buffer = indexBlockBuilder.serialize();
+        // index partitions are followed by the top-level index, which is referred by the tailer block
+        byte[] partitions = indexBlockBuilder.serializePartitions(currentOffset);
+        outputStream.write(partitions);
+        currentOffset += partitions.length;
+        
+        byte[] buffer = indexBlockBuilder.serializeTopLevelIndex();
         dataBlockMetaOffset = currentOffset;
         dataBlockMetaSize = buffer.length;
         outputStream.write(buffer);
@@ -123,17 +258,70 @@ public final class SSTableBuilder implements Closeable {
     }
 
     /**
-     * append tailer into SSTable.
+     * append meta block and tailer into SSTable.
      * @throws IOException IO Exception.
      */
     public void appendTailer() throws IOException {
+        BloomFilter bloomFilter = new BloomFilter(DataBlock.BLOOM_FILTER_HASH_COUNT, DataBlock.BLOOM_FILTER_BITS_PER_KEY);
+        byte[] prefixBloomFilter = Bytes.EMPTY_BYTES;
+        if (null != prefixExtractor) {
+            prefixBloomFilter = bloomFilter.generate(prefixes.toArray(new byte[0][]));
+        }
+        final long rangeDelBlockOffset = currentOffset;
+        appendRangeDelBlock();
+        TableProperties properties = new TableProperties(Long.MAX_VALUE == minSequenceId ? 0 : minSequenceId, maxSequenceId, entryCount, deleteCount, rawSize, dataSize);
+        byte[] buffer = new MetaBlock(firstKey, lastKey, prefixBloomFilter, bloomFilter.generate(keyHashes, keyCount), properties,
+                rangeDelBlockOffset, currentOffset - rangeDelBlockOffset, rangeDelStart, rangeDelStop).serialize();
+        final long metaBlockOffset = currentOffset;
+        outputStream.write(buffer);
+        currentOffset += buffer.length;
+        
         fileSize = currentOffset + TailerBlock.TAILER_SIZE;
-        tailerBlock = new TailerBlock(fileSize, blockCount, dataBlockMetaOffset, dataBlockMetaSize);
+        tailerBlock = new TailerBlock(fileSize, blockCount, dataBlockMetaOffset, dataBlockMetaSize, metaBlockOffset, buffer.length);
         outputStream.write(tailerBlock.serialize());
     }
     
+    private void appendRangeDelBlock() throws IOException {
+        if (rangeTombstones.isEmpty()) {
+            return;
+        }
+        rangeTombstones.sort(KeyValuePair::compareTo);
+        // the key range of SSTable covers its range tombstones, so the files they may delete keys from overlap
+        // with it, the stop key is excluded by tombstones, but taking it as the last key is harmless. A tombstone
+        // without upper limit only widens it to the start key, reads find it by the span in meta block
+        rangeDelStart = rangeTombstones.get(0).getKey();
+        if (0 == entryCount || Bytes.compare(rangeDelStart, firstKey) < 0) {
+            firstKey = rangeDelStart;
+        }
+        for (KeyValuePair each : rangeTombstones) {
+            byte[] end = 0 == each.getValue().length ? each.getKey() : each.getValue();
+            if (Bytes.compare(end, lastKey) > 0) {
+                lastKey = end;
+            }
+        }
+        rangeDelStop = getRangeDelStop();
+        byte[] buffer = new RangeDelBlock(rangeTombstones).serialize();
+        outputStream.write(buffer);
+        currentOffset += buffer.length;
+    }
+    
+    // the largest stop key of range tombstones, empty if any of them has no upper limit
+    private byte[] getRangeDelStop() {
+        byte[] result = rangeTombstones.get(0).getValue();
+        for (KeyValuePair each : rangeTombstones) {
+            if (0 == each.getValue().length) {
+                return Bytes.EMPTY_BYTES;
+            }
+            if (Bytes.compare(each.getValue(), result) > 0) {
+                result = each.getValue();
+            }
+        }
+        return result;
+    }
+    
     @Override
     public void close() throws IOException {
+        currentDataBlock.release();
         if (null != outputStream) {
             try {
                 outputStream.flush();
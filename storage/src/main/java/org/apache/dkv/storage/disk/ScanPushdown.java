@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dkv.storage.disk;
+
+import org.apache.dkv.storage.bean.EncodedKeyValue;
+import org.apache.dkv.storage.bean.KeyValuePair;
+import org.apache.dkv.storage.bean.KeyValuePair.OperationType;
+import org.apache.dkv.storage.iterator.ScanFilter;
+
+/**
+ * the part of a forward scan evaluated on the encoded key value pairs of a SSTable file, so the key value pairs
+ * the scan would skip anyway are never decoded: the versions invisible to the scan, the versions older than the
+ * newest visible put or delete of a key in the file, and the puts rejected by the filter. A rejected put is
+ * returned as a delete of its key, which still hides the older versions of the key in other files.
+ * <p>
+ * The filter can't be evaluated here if there may be merge operands, since a newer operand in another file needs
+ * the value of the rejected put.
+ */
+final class ScanPushdown {
+    
+    private final long maxSequenceId;
+    
+    // null means no filter
+    private final ScanFilter filter;
+    
+    // key of the last put or delete returned, its older versions are skipped
+    private byte[] lastKey;
+    
+    ScanPushdown(final long maxSequenceId, final ScanFilter filter) {
+        this.maxSequenceId = maxSequenceId;
+        this.filter = filter;
+    }
+    
+    /**
+     * evaluate the next key value pair of the file.
+     * @param entry encoded key value pair
+     * @return key value pair to return, the value is a view of the block, null if it's skipped
+     */
+    KeyValuePair apply(final EncodedKeyValue entry) {
+        if (entry.getSequenceId() > maxSequenceId || null != lastKey && 0 == entry.compareKey(lastKey)) {
+            return null;
+        }
+        KeyValuePair result;
+        if (null != filter && OperationType.Put == entry.getOperationType() && !filter.accept(entry)) {
+            result = KeyValuePair.createDelete(entry.getKey(), entry.getSequenceId());
+        } else {
+            result = entry.toKeyValuePairWithValueView();
+        }
+        // the older versions of a merge operand are resolved with it
+        lastKey = OperationType.Merge == result.getOperationType() ? null : result.getKey();
+        return result;
+    }
+    
+    /**
+     * forget the last key once the iterator is repositioned.
+     */
+    void reset() {
+        lastKey = null;
+    }
+}
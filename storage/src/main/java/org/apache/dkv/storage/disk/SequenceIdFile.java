@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dkv.storage.disk;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import org.apache.dkv.storage.bytes.Bytes;
+
+/**
+ * file recording the max sequence id of SSTable files, so opening database doesn't read every SSTable file. It's
+ * written before a flushed SSTable file is renamed to be visible, so it's never less than the sequence ids of
+ * SSTable files.
+ */
+final class SequenceIdFile {
+    
+    static final String FILE_NAME = "SEQUENCE_ID";
+    
+    private final File file;
+    
+    SequenceIdFile(final String dataDir) {
+        this.file = new File(dataDir, FILE_NAME);
+    }
+    
+    boolean exists() {
+        return file.exists();
+    }
+    
+    long read() throws IOException {
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        if (Long.BYTES != bytes.length) {
+            throw new IOException("Invalid sequence id file " + file + " of " + bytes.length + " bytes");
+        }
+        return Bytes.toLong(bytes);
+    }
+
+    /**
+     * replace the recorded sequence id by writing a temporary file and renaming it.
+     * @param sequenceId max sequence id
+     * @throws IOException IO Exception
+     */
+    void write(final long sequenceId) throws IOException {
+        File tempFile = new File(file.getPath() + DiskStorage.FILE_NAME_TMP_SUFFIX);
+        try (FileOutputStream out = new FileOutputStream(tempFile)) {
+            out.write(Bytes.toBytes(sequenceId));
+            out.getFD().sync();
+        }
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
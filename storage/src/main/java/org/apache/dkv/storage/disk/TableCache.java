@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dkv.storage.disk;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.dkv.storage.bytes.BufferPool;
+
+/**
+ * LRU cache of opened SSTable files, which bounds the count of open file handles. SSTable files are opened on
+ * first use, and an evicted file is closed after the readers using it release it.
+ */
+@Slf4j
+final class TableCache {
+    
+    private final Cache<SSTable, TableReader> cache;
+    
+    private final int maxOpenTables;
+    
+    // read buffers shared by the opened SSTable files
+    @Getter
+    private final BufferPool bufferPool;
+    
+    // batched reads of multi get
+    @Getter
+    private final ExecutorService readPool;
+    
+    // read-ahead of scans runs on its own threads, so long scans never delay point lookups
+    @Getter
+    private final ExecutorService readAheadPool;
+    
+    TableCache(final int maxOpenTables, final BufferPool bufferPool) {
+        this(maxOpenTables, bufferPool, 0, 0);
+    }
+
+    /**
+     * create table cache.
+     * @param maxOpenTables max count of SSTable files kept open
+     * @param bufferPool read buffers shared by the opened SSTable files
+     * @param readThreads threads of batched reads of multi get, reads run on the calling thread if it's 0
+     * @param readAheadThreads threads of read-ahead of scans, read-ahead runs on the calling thread if it's 0
+     */
+    TableCache(final int maxOpenTables, final BufferPool bufferPool, final int readThreads, final int readAheadThreads) {
+        Preconditions.checkArgument(maxOpenTables > 0, "Invalid max open tables: %s", maxOpenTables);
+        this.maxOpenTables = maxOpenTables;
+        this.bufferPool = bufferPool;
+        this.readPool = createPool(readThreads, "dkv-read-%d");
+        this.readAheadPool = createPool(readAheadThreads, "dkv-read-ahead-%d");
+        cache = CacheBuilder.newBuilder().maximumSize(maxOpenTables)
+                .removalListener((RemovalNotification<SSTable, TableReader> notification) -> release(notification.getValue())).build();
+    }
+    
+    private static ExecutorService createPool(final int threads, final String nameFormat) {
+        if (threads <= 0) {
+            return MoreExecutors.newDirectExecutorService();
+        }
+        return Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().setNameFormat(nameFormat).setDaemon(true).build());
+    }
+
+    /**
+     * get the reader of SSTable file, the file is opened if it's not cached. Close the reader after use.
+     * @param table SSTable file
+     * @return reader retained by caller
+     * @throws IOException IO Exception
+     */
+    TableReader acquire(final SSTable table) throws IOException {
+        while (true) {
+            TableReader reader = load(table);
+            // the reader may be evicted and closed by others after it's loaded, then load it again
+            if (reader.tryRetain()) {
+                return reader;
+            }
+        }
+    }
+    
+    private TableReader load(final SSTable table) throws IOException {
+        try {
+            return cache.get(table, () -> new TableReader(table.getFileName(), bufferPool));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * open SSTable files in parallel to warm up the cache, only the last max open tables files are opened, since
+     * the others would be evicted anyway.
+     * @param tables SSTable files sorted by file id
+     * @param threads threads to open files, nothing is opened if it's not positive
+     * @throws IOException IO Exception
+     */
+    void preload(final List<SSTable> tables, final int threads) throws IOException {
+        if (threads <= 0 || tables.isEmpty()) {
+            return;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().setNameFormat("dkv-open-%d").setDaemon(true).build());
+        try {
+            List<Future<TableReader>> futures = new ArrayList<>();
+            for (SSTable table : tables.subList(Math.max(0, tables.size() - maxOpenTables), tables.size())) {
+                futures.add(pool.submit(() -> {
+                    // the reader stays in cache after it's released
+                    try (TableReader reader = table.acquireReader()) {
+                        return reader;
+                    }
+                }));
+            }
+            for (Future<TableReader> future : futures) {
+                join(future);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+    
+    private static void join(final Future<TableReader> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while opening SSTable files");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * drop the reader of SSTable file, it's closed after the readers using it release it.
+     * @param table SSTable file
+     */
+    void invalidate(final SSTable table) {
+        cache.invalidate(table);
+    }
+    
+    /**
+     * get count of cached readers.
+     * @return count of readers
+     */
+    long size() {
+        return cache.size();
+    }
+    
+    /**
+     * stop the read threads, the running reads still complete and release the files they hold. The threads aren't
+     * interrupted, since an interrupted read closes the file channel shared by other reads.
+     */
+    void close() {
+        readPool.shutdown();
+        readAheadPool.shutdown();
+    }
+    
+    private static void release(final TableReader reader) {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            log.error("Close SSTable file failed.", e);
+        }
+    }
+}
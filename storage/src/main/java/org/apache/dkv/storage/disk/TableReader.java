@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dkv.storage.disk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.Getter;
+import org.apache.dkv.storage.bean.KeyValuePair;
+import org.apache.dkv.storage.block.MetaBlock;
+import org.apache.dkv.storage.block.RangeDelBlock;
+import org.apache.dkv.storage.block.TailerBlock;
+import org.apache.dkv.storage.bytes.BufferPool;
+import org.apache.dkv.storage.bytes.Bytes;
+
+/**
+ * Opened SSTable file, the tailer block, top-level index, meta block and range-del block are read when it's opened. The reader is
+ * shared by all readers of the SSTable file, and the file is closed after the table cache evicts it and the last
+ * reader releases it.
+ */
+final class TableReader implements Closeable {
+    
+    @Getter
+    private final BlockReader blockReader;
+    
+    @Getter
+    private final TailerBlock tailerBlock;
+    
+    // only the top-level index is in memory, index partitions are loaded on demand
+    @Getter
+    private final PartitionedIndex index;
+    
+    @Getter
+    private final MetaBlock metaBlock;
+    
+    // range tombstones sorted by start key
+    @Getter
+    private final List<KeyValuePair> rangeTombstones;
+    
+    // one reference is held by the table cache while the reader is cached
+    private final AtomicInteger refCount = new AtomicInteger(1);
+
+    /**
+     * open a SSTable file, read it's tailer block, top-level index, meta block and range-del block.
+     * @param fileName file name ready to read
+     * @param bufferPool pool of read buffers
+     * @throws IOException IO Exception.
+     */
+    TableReader(final String fileName, final BufferPool bufferPool) throws IOException {
+        this.blockReader = new BlockReader(fileName, bufferPool);
+        try {
+            // read tailer block from SSTable file
+            tailerBlock = readTailerBlock();
+            blockReader.setFormatVersion(tailerBlock.isLegacy() ? LegacyFormat.detect(blockReader, tailerBlock) : tailerBlock.getFormatVersion());
+            // read top-level index from SSTable file
+            index = new PartitionedIndex(blockReader, tailerBlock.getIndexBlockOffset(), tailerBlock.getIndexBlockSize(), tailerBlock.getBlockCount());
+            // read meta block from SSTable file
+            metaBlock = readMetaBlock();
+            rangeTombstones = readRangeTombstones();
+        } catch (IOException e) {
+            blockReader.close();
+            throw e;
+        }
+    }
+    
+    private TailerBlock readTailerBlock() throws IOException {
+        // read tailer block at the end of file, empty legacy files may be shorter than the tailer block, then the
+        // bytes are aligned to the end of buffer
+        int size = (int) Math.min(blockReader.getFileSize(), TailerBlock.TAILER_SIZE);
+        byte[] bytes = new byte[size];
+        blockReader.read(blockReader.getFileSize() - size, bytes);
+        byte[] buffer = new byte[TailerBlock.TAILER_SIZE];
+        System.arraycopy(bytes, 0, buffer, TailerBlock.TAILER_SIZE - size, size);
+        return TailerBlock.parseFrom(buffer, 0);
+    }
+    
+    private MetaBlock readMetaBlock() throws IOException {
+        if (0 == tailerBlock.getMetaBlockSize()) {
+            return createBaselineMetaBlock();
+        }
+        byte[] buffer = new byte[(int) tailerBlock.getMetaBlockSize()];
+        blockReader.read(tailerBlock.getMetaBlockOffset(), buffer);
+        return MetaBlock.parseFrom(buffer, 0);
+    }
+    
+    // files written before the meta block is introduced have the first key in the first data block, and the last key
+    // in the index
+    private MetaBlock createBaselineMetaBlock() throws IOException {
+        if (0 == tailerBlock.getBlockCount()) {
+            return new MetaBlock(Bytes.EMPTY_BYTES, Bytes.EMPTY_BYTES, Bytes.EMPTY_BYTES);
+        }
+        byte[] firstKey = blockReader.load(index.first()).getEntry(0).getKey();
+        return new MetaBlock(firstKey, index.last().getSeparator(), Bytes.EMPTY_BYTES);
+    }
+    
+    private List<KeyValuePair> readRangeTombstones() throws IOException {
+        if (0 == metaBlock.getRangeDelBlockSize()) {
+            return Collections.emptyList();
+        }
+        byte[] buffer = new byte[(int) metaBlock.getRangeDelBlockSize()];
+        blockReader.read(metaBlock.getRangeDelBlockOffset(), buffer);
+        return RangeDelBlock.parseFrom(buffer).getTombstones();
+    }
+
+    /**
+     * retain the reader unless it has been released by all holders.
+     * @return true if the reader is retained.
+     */
+    boolean tryRetain() {
+        int count;
+        do {
+            count = refCount.get();
+            if (count <= 0) {
+                return false;
+            }
+        } while (!refCount.compareAndSet(count, count + 1));
+        return true;
+    }
+
+    /**
+     * release the reader, the file is closed after the last holder releases it.
+     * @throws IOException IO Exception
+     */
+    @Override
+    public void close() throws IOException {
+        if (0 != refCount.decrementAndGet()) {
+            return;
+        }
+        index.invalidate();
+        blockReader.close();
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dkv.storage.disk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.Getter;
+import org.apache.dkv.storage.bean.KeyValuePair;
+import org.apache.dkv.storage.bytes.Bytes;
+import org.apache.dkv.storage.util.FutureUtil;
+
+/**
+ * Immutable set of SSTable files in DiskStorage. Any change of SSTable files installs a new version, so readers
+ * hold a version to see a consistent set of SSTable files without copying or locking. An SSTable file is closed
+ * after the last version containing it is released.
+ */
+public final class Version implements Closeable {
+    
+    @Getter
+    private final List<SSTable> tables;
+    
+    // one reference is held by DiskStorage while the version is current
+    private final AtomicInteger refCount = new AtomicInteger(1);
+    
+    Version(final List<SSTable> tables) {
+        this.tables = Collections.unmodifiableList(tables);
+        tables.forEach(SSTable::retain);
+    }
+
+    /**
+     * retain the version unless it has been released by all holders.
+     * @return true if the version is retained.
+     */
+    boolean tryRetain() {
+        int count;
+        do {
+            count = refCount.get();
+            if (count <= 0) {
+                return false;
+            }
+        } while (!refCount.compareAndSet(count, count + 1));
+        return true;
+    }
+
+    /**
+     * get the newest visible versions of keys from the SSTable files of this version, the files are read
+     * concurrently.
+     * @param targets seek targets sorted in ascending order and not empty, see {@link DiskStorage#multiGet(List)}
+     * @return key value pairs in the order of targets, null if the key is not in any SSTable file
+     * @throws IOException IO Exception
+     */
+    KeyValuePair[] multiGet(final List<KeyValuePair> targets) throws IOException {
+        byte[] firstKey = targets.get(0).getKey();
+        byte[] lastKey = targets.get(targets.size() - 1).getKey();
+        List<CompletableFuture<KeyValuePair[]>> futures = new ArrayList<>();
+        for (SSTable table : tables) {
+            if (Bytes.compare(table.getLastKey(), firstKey) >= 0 && Bytes.compare(table.getFirstKey(), lastKey) <= 0) {
+                futures.add(table.multiGetAsync(targets));
+            }
+        }
+        KeyValuePair[] result = new KeyValuePair[targets.size()];
+        for (CompletableFuture<KeyValuePair[]> future : futures) {
+            merge(FutureUtil.join(future), result);
+        }
+        return result;
+    }
+    
+    private static void merge(final KeyValuePair[] found, final KeyValuePair[] result) {
+        // SSTable files may overlap with each other, keep the newest version of each key
+        for (int i = 0; i < found.length; i++) {
+            if (null != found[i] && (null == result[i] || found[i].getSequenceId() > result[i].getSequenceId())) {
+                result[i] = found[i];
+            }
+        }
+    }
+
+    /**
+     * release the version, SSTable files are released after the last holder releases the version.
+     * @throws IOException IO Exception
+     */
+    @Override
+    public void close() throws IOException {
+        if (0 != refCount.decrementAndGet()) {
+            return;
+        }
+        IOException closedException = null;
+        for (SSTable table : tables) {
+            try {
+                table.release();
+            } catch (IOException e) {
+                closedException = e;
+            }
+        }
+        if (null != closedException) {
+            throw closedException;
+        }
+    }
+}
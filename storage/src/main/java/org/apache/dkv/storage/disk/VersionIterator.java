@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dkv.storage.disk;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.dkv.storage.bean.KeyValuePair;
+import org.apache.dkv.storage.iterator.SeekIterator;
+
+/**
+ * Iterator over the SSTable files of a version, release the version when it's closed.
+ */
+final class VersionIterator implements SeekIterator<KeyValuePair> {
+    
+    private final Version version;
+    
+    private final SeekIterator<KeyValuePair> iterator;
+    
+    private final AtomicBoolean closed = new AtomicBoolean();
+    
+    VersionIterator(final Version version, final SeekIterator<KeyValuePair> iterator) {
+        this.version = version;
+        this.iterator = iterator;
+    }
+
+    @Override
+    public void seekTo(final KeyValuePair kv) throws IOException {
+        iterator.seekTo(kv);
+    }
+
+    @Override
+    public void seekToLast() throws IOException {
+        iterator.seekToLast();
+    }
+
+    @Override
+    public void seekForPrev(final KeyValuePair kv) throws IOException {
+        iterator.seekForPrev(kv);
+    }
+
+    @Override
+    public boolean hasNext() throws IOException {
+        return iterator.hasNext();
+    }
+
+    @Override
+    public KeyValuePair next() throws IOException {
+        return iterator.next();
+    }
+
+    @Override
+    public boolean hasPrev() throws IOException {
+        return iterator.hasPrev();
+    }
+
+    @Override
+    public KeyValuePair prev() throws IOException {
+        return iterator.prev();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed.compareAndSet(false, true)) {
+            try {
+                iterator.close();
+            } finally {
+                version.close();
+            }
+        }
+    }
+}
@@ -19,25 +19,48 @@ package org.apache.dkv.storage.flush;
 
 import java.io.File;
 import java.io.IOException;
-import lombok.AllArgsConstructor;
 import org.apache.dkv.storage.bean.KeyValuePair;
+import org.apache.dkv.storage.bean.RangeTombstones;
+import org.apache.dkv.storage.compact.CompactionIterator;
 import org.apache.dkv.storage.disk.DiskStorage;
 import org.apache.dkv.storage.disk.SSTableBuilder;
 import org.apache.dkv.storage.iterator.Iterator;
+import org.apache.dkv.storage.merge.MergeOperator;
+import org.apache.dkv.storage.snapshot.SnapshotManager;
 import org.apache.dkv.storage.util.FileUtil;
 
-@AllArgsConstructor
 public final class DefaultFlusher implements Flusher {
 
     private final DiskStorage diskStorage;
     
+    private final MergeOperator mergeOperator;
+    
+    private final SnapshotManager snapshotManager;
+    
+    public DefaultFlusher(final DiskStorage diskStorage) {
+        this(diskStorage, null, new SnapshotManager());
+    }
+    
+    /**
+     * create flusher.
+     * @param diskStorage disk storage to add the flushed SSTable file
+     * @param mergeOperator merge operator to merge operands while flushing, null means there is no merge operand
+     * @param snapshotManager live snapshots whose visible versions are kept
+     */
+    public DefaultFlusher(final DiskStorage diskStorage, final MergeOperator mergeOperator, final SnapshotManager snapshotManager) {
+        this.diskStorage = diskStorage;
+        this.mergeOperator = mergeOperator;
+        this.snapshotManager = snapshotManager;
+    }
+    
     @Override
     public void flush(final Iterator<KeyValuePair> it) throws IOException {
         String fileName = diskStorage.getNexTableFileName();
         String tempFileName = fileName + DiskStorage.FILE_NAME_TMP_SUFFIX;
         
         try {
-            performFlush(it, fileName, tempFileName);    
+            // obsolete versions are dropped and merge operands are merged as compaction does
+            performFlush(new CompactionIterator(it, snapshotManager.getSequenceIds(), null, new RangeTombstones(), mergeOperator), fileName, tempFileName);
         } finally {
             File f = new File(tempFileName);
             if (f.exists()) {
@@ -47,12 +70,14 @@ public final class DefaultFlusher implements Flusher {
     }
     
     private void performFlush(final Iterator<KeyValuePair> iterator, final String fileName, final String tempFilename) throws IOException {
-        try (SSTableBuilder builder = new SSTableBuilder(tempFilename)) {
+        try (SSTableBuilder builder = diskStorage.createTableBuilder(tempFilename)) {
             while (iterator.hasNext()) {
                 builder.append(iterator.next());
             }
             builder.appendIndex();
             builder.appendTailer();
+            // recorded before the file is visible, so a new sequence id never reuses one in the file
+            diskStorage.updateMaxSequenceId(builder.getMaxSequenceId());
         }
         FileUtil.rename(tempFilename, fileName);
         diskStorage.addTable(fileName);
@@ -17,13 +17,14 @@
 
 package org.apache.dkv.storage.iterator;
 
+import java.io.Closeable;
 import java.io.IOException;
 
 /**
- * Iterator API.
+ * Iterator API. Close the iterator to release the resources it holds, such as the SSTable files it reads.
  * @param <T> Type
  */
-public interface Iterator<T> {
+public interface Iterator<T> extends Closeable {
 
     /**
      * 
@@ -38,4 +39,12 @@ public interface Iterator<T> {
      * @throws IOException IO Exception.
      */
     T next() throws IOException;
+
+    /**
+     * release resources held by iterator.
+     * @throws IOException IO Exception.
+     */
+    @Override
+    default void close() throws IOException {
+    }
 }
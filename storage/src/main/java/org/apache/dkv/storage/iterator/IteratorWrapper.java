@@ -1,22 +1,39 @@
 package org.apache.dkv.storage.iterator;
 
-import java.util.SortedMap;
+import java.util.Collections;
+import java.util.NavigableMap;
 import org.apache.dkv.storage.bean.KeyValuePair;
 
 public final class IteratorWrapper implements SeekIterator<KeyValuePair> {
 
-    private SortedMap<KeyValuePair, KeyValuePair> sortedMap;
+    private final NavigableMap<KeyValuePair, KeyValuePair> sortedMap;
     
     private java.util.Iterator<KeyValuePair> iterator;
     
-    public IteratorWrapper(final SortedMap<KeyValuePair, KeyValuePair> sortedMap) {
+    private java.util.Iterator<KeyValuePair> reverseIterator;
+    
+    public IteratorWrapper(final NavigableMap<KeyValuePair, KeyValuePair> sortedMap) {
         this.sortedMap = sortedMap;
         this.iterator = sortedMap.values().iterator();
+        this.reverseIterator = Collections.emptyIterator();
     }
 
     @Override
     public void seekTo(final KeyValuePair kv) {
-        iterator = sortedMap.tailMap(kv).values().iterator();
+        iterator = sortedMap.tailMap(kv, true).values().iterator();
+        reverseIterator = Collections.emptyIterator();
+    }
+
+    @Override
+    public void seekToLast() {
+        iterator = Collections.emptyIterator();
+        reverseIterator = sortedMap.descendingMap().values().iterator();
+    }
+
+    @Override
+    public void seekForPrev(final KeyValuePair kv) {
+        iterator = Collections.emptyIterator();
+        reverseIterator = sortedMap.headMap(kv, true).descendingMap().values().iterator();
     }
 
     @Override
@@ -28,4 +45,14 @@ public final class IteratorWrapper implements SeekIterator<KeyValuePair> {
     public KeyValuePair next() {
         return iterator.next();
     }
+
+    @Override
+    public boolean hasPrev() {
+        return reverseIterator.hasNext();
+    }
+
+    @Override
+    public KeyValuePair prev() {
+        return reverseIterator.next();
+    }
 }
@@ -4,7 +4,6 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
-import java.util.SortedMap;
 import java.util.concurrent.ConcurrentSkipListMap;
 import org.apache.dkv.storage.bean.KeyValuePair;
 import org.apache.dkv.storage.memory.MemStore;
@@ -26,7 +25,17 @@ public final class MemStoreIterator implements SeekIterator<KeyValuePair> {
     }
 
     @Override
-    public boolean hasNext() {
+    public void seekToLast() throws IOException {
+        iterator.seekToLast();
+    }
+
+    @Override
+    public void seekForPrev(final KeyValuePair kv) throws IOException {
+        iterator.seekForPrev(kv);
+    }
+
+    @Override
+    public boolean hasNext() throws IOException {
         return iterator.hasNext();
     }
 
@@ -35,6 +44,21 @@ public final class MemStoreIterator implements SeekIterator<KeyValuePair> {
         return iterator.next();
     }
 
+    @Override
+    public boolean hasPrev() throws IOException {
+        return iterator.hasPrev();
+    }
+
+    @Override
+    public KeyValuePair prev() throws IOException {
+        return iterator.prev();
+    }
+
+    @Override
+    public void close() throws IOException {
+        iterator.close();
+    }
+
     private Optional<IteratorWrapper> createIteratorWrapper(final ConcurrentSkipListMap<KeyValuePair, KeyValuePair> map) {
         if (null != map && !map.isEmpty()) {
             return Optional.of(new IteratorWrapper(map));
@@ -42,31 +66,4 @@ public final class MemStoreIterator implements SeekIterator<KeyValuePair> {
             return Optional.empty();
         }
     }
-
-    public static final class IteratorWrapper implements SeekIterator<KeyValuePair> {
-
-        private final SortedMap<KeyValuePair, KeyValuePair> sortedMap;
-
-        private java.util.Iterator<KeyValuePair> iterator;
-
-        public IteratorWrapper(final SortedMap<KeyValuePair, KeyValuePair> sortedMap) {
-            this.sortedMap = sortedMap;
-            this.iterator = sortedMap.values().iterator();
-        }
-
-        @Override
-        public void seekTo(final KeyValuePair kv) {
-            iterator = sortedMap.tailMap(kv).values().iterator();
-        }
-
-        @Override
-        public boolean hasNext() {
-            return iterator.hasNext();
-        }
-
-        @Override
-        public KeyValuePair next() {
-            return iterator.next();
-        }
-    }
 }
@@ -18,38 +18,112 @@
 package org.apache.dkv.storage.iterator;
 
 import java.io.IOException;
-import java.util.Comparator;
 import java.util.List;
-import java.util.PriorityQueue;
-import java.util.Queue;
-import lombok.AllArgsConstructor;
-import lombok.Getter;
 import org.apache.dkv.storage.bean.KeyValuePair;
 
 /**
- * iterator to visit multiple iterators.
+ * iterator to visit multiple iterators. Iterators are merged by a loser tree, the head of each iterator is kept
+ * in a slot, and advancing the winner replays only the path from its leaf to the root, which costs log(k)
+ * comparisons without allocating any object.
  */
 public class MultiIterator implements SeekIterator<KeyValuePair> {
     
     private final SeekIterator<KeyValuePair>[] iterators;
     
-    private final Queue<SortItem> queue;
+    // head key value pair of each iterator, null if the iterator is exhausted
+    private final KeyValuePair[] heads;
+    
+    // tree[0] is the index of winner, tree[1..k-1] are the indexes of losers of internal nodes
+    private final int[] tree;
+    
+    // the largest head wins while iterating backward
+    private boolean reverse;
     
     public MultiIterator(final SeekIterator<KeyValuePair>[] iterators) throws IOException {
         assert iterators != null;
         this.iterators = iterators;
-        this.queue = new PriorityQueue<>(Comparator.comparing(SortItem::getKeyValuePair));
-        for (SeekIterator<KeyValuePair> iterator : iterators) {
-            // Only add iterator into queue when this iterator is not empty
-            if (null != iterator && iterator.hasNext()) {
-                queue.add(new SortItem(iterator.next(), iterator));
+        this.heads = new KeyValuePair[iterators.length];
+        this.tree = new int[Math.max(1, iterators.length)];
+        // a single iterator is visited directly without merging
+        if (!isSingle()) {
+            for (int i = 0; i < iterators.length; i++) {
+                fill(i);
             }
+            rebuild();
         }
     }
     
     public MultiIterator(final List<SeekIterator<KeyValuePair>> iterators) throws IOException {
         this(iterators.toArray(new SeekIterator[0]));
     }
+    
+    private boolean isSingle() {
+        return 1 == iterators.length && null != iterators[0];
+    }
+    
+    private void fill(final int index) throws IOException {
+        SeekIterator<KeyValuePair> iterator = iterators[index];
+        // Only the iterator which has some elements takes part in the merging
+        if (null == iterator) {
+            heads[index] = null;
+        } else if (reverse) {
+            heads[index] = iterator.hasPrev() ? iterator.prev() : null;
+        } else {
+            heads[index] = iterator.hasNext() ? iterator.next() : null;
+        }
+    }
+
+    /**
+     * is the head of iterator a ordered before the head of iterator b in the direction of iteration, exhausted
+     * iterator is ordered last and the iterator with smaller index wins a tie.
+     */
+    private boolean beats(final int a, final int b) {
+        if (null == heads[a]) {
+            return false;
+        }
+        if (null == heads[b]) {
+            return true;
+        }
+        int ret = reverse ? heads[b].compareTo(heads[a]) : heads[a].compareTo(heads[b]);
+        return ret < 0 || 0 == ret && a < b;
+    }
+    
+    private void rebuild() {
+        if (iterators.length > 1) {
+            tree[0] = build(1);
+        }
+    }
+
+    /**
+     * build the sub-tree of node, internal nodes are 1..k-1 and leaf node k+i is the iterator i.
+     * @return the winner of sub-tree.
+     */
+    private int build(final int node) {
+        int size = iterators.length;
+        if (node >= size) {
+            return node - size;
+        }
+        int left = build(2 * node);
+        int right = build(2 * node + 1);
+        if (beats(left, right)) {
+            tree[node] = right;
+            return left;
+        }
+        tree[node] = left;
+        return right;
+    }
+    
+    private void replay(final int index) {
+        int winner = index;
+        for (int node = (index + iterators.length) >> 1; node > 0; node >>= 1) {
+            if (beats(tree[node], winner)) {
+                int loser = winner;
+                winner = tree[node];
+                tree[node] = loser;
+            }
+        }
+        tree[0] = winner;
+    }
 
     /**
      * 
@@ -58,23 +132,66 @@ public class MultiIterator implements SeekIterator<KeyValuePair> {
      */
     @Override
     public void seekTo(final KeyValuePair kv) throws IOException {
-        queue.clear();
-        for (SeekIterator<KeyValuePair> iter : iterators) {
-            iter.seekTo(kv);
-            if (iter.hasNext()) {
-                // Only the iterator which hash some elements should be enqueued.
-                queue.add(new SortItem(iter.next(), iter));
+        reverse = false;
+        if (isSingle()) {
+            iterators[0].seekTo(kv);
+            return;
+        }
+        for (int i = 0; i < iterators.length; i++) {
+            if (null != iterators[i]) {
+                iterators[i].seekTo(kv);
+            }
+            fill(i);
+        }
+        rebuild();
+    }
+
+    /**
+     * 
+     * @throws IOException IO Exception.
+     */
+    @Override
+    public void seekToLast() throws IOException {
+        seekForPrev(null);
+    }
+
+    /**
+     * 
+     * @param kv seek to specific element, null means the last element.
+     * @throws IOException IO Exception.
+     */
+    @Override
+    public void seekForPrev(final KeyValuePair kv) throws IOException {
+        reverse = true;
+        for (int i = 0; i < iterators.length; i++) {
+            if (null == iterators[i]) {
+                continue;
+            }
+            if (null == kv) {
+                iterators[i].seekToLast();
+            } else {
+                iterators[i].seekForPrev(kv);
             }
         }
+        if (!isSingle()) {
+            for (int i = 0; i < iterators.length; i++) {
+                fill(i);
+            }
+            rebuild();
+        }
     }
 
     /**
      * 
      * @return true if has next element.
+     * @throws IOException IO Exception.
      */
     @Override
-    public boolean hasNext() {
-        return !queue.isEmpty();
+    public boolean hasNext() throws IOException {
+        if (isSingle()) {
+            return iterators[0].hasNext();
+        }
+        return !reverse && hasHead();
     }
 
     /**
@@ -84,24 +201,73 @@ public class MultiIterator implements SeekIterator<KeyValuePair> {
      */
     @Override
     public KeyValuePair next() throws IOException {
-        while (!queue.isEmpty()) {
-            SortItem item = queue.poll();
-            if (null != item.getKeyValuePair() && null != item.getIter()) {
-                if (item.iter.hasNext()) {
-                    queue.add(new SortItem(item.getIter().next(), item.iter));
-                }
-                return item.keyValuePair;
-            }
+        if (isSingle()) {
+            return iterators[0].hasNext() ? iterators[0].next() : null;
         }
-        return null;
+        return reverse ? null : pollHead();
     }
 
-    @AllArgsConstructor
-    @Getter
-    private static class SortItem {
+    /**
+     * 
+     * @return true if has previous element.
+     * @throws IOException IO Exception.
+     */
+    @Override
+    public boolean hasPrev() throws IOException {
+        if (isSingle()) {
+            return iterators[0].hasPrev();
+        }
+        return reverse && hasHead();
+    }
 
-        private final KeyValuePair keyValuePair;
+    /**
+     * 
+     * @return previous element.
+     * @throws IOException IO Exception.
+     */
+    @Override
+    public KeyValuePair prev() throws IOException {
+        if (isSingle()) {
+            return iterators[0].hasPrev() ? iterators[0].prev() : null;
+        }
+        return reverse ? pollHead() : null;
+    }
+    
+    private boolean hasHead() {
+        return iterators.length > 0 && null != heads[tree[0]];
+    }
+    
+    private KeyValuePair pollHead() throws IOException {
+        if (0 == iterators.length) {
+            return null;
+        }
+        int winner = tree[0];
+        KeyValuePair result = heads[winner];
+        if (null != result) {
+            fill(winner);
+            replay(winner);
+        }
+        return result;
+    }
 
-        private final SeekIterator<KeyValuePair> iter;
+    /**
+     * close all iterators.
+     * @throws IOException IO Exception.
+     */
+    @Override
+    public void close() throws IOException {
+        IOException closedException = null;
+        for (SeekIterator<KeyValuePair> iterator : iterators) {
+            try {
+                if (null != iterator) {
+                    iterator.close();
+                }
+            } catch (IOException e) {
+                closedException = e;
+            }
+        }
+        if (null != closedException) {
+            throw closedException;
+        }
     }
 }
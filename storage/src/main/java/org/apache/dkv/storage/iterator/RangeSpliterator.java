@@ -0,0 +1,225 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dkv.storage.iterator;
+
+import com.google.common.base.Preconditions;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import org.apache.dkv.storage.bean.KeyValuePair;
+import org.apache.dkv.storage.bytes.Bytes;
+
+/**
+ * Spliterator over a key range. The range is split into sub-ranges by split keys, every sub-range is scanned
+ * independently, so sub-ranges can be consumed by fork-join workers concurrently.
+ */
+public final class RangeSpliterator implements Spliterator<KeyValuePair>, Closeable {
+    
+    // boundaries[i] and boundaries[i + 1] are the start and stop of the ith sub-range
+    private final List<byte[]> boundaries;
+    
+    private final RangeScanner scanner;
+    
+    // iterators in use by this spliterator and the spliterators split from it
+    private final Queue<Iterator<KeyValuePair>> openedIterators;
+    
+    private int index;
+    
+    private final int fence;
+    
+    private Iterator<KeyValuePair> current;
+
+    /**
+     * create spliterator over range [start, stop), the range is split at every split key.
+     * @param start start key, EMPTY_BYTES means min infinity
+     * @param stop stop key, EMPTY_BYTES means max infinity
+     * @param splitKeys keys to split the range, in any order, keys out of the range are ignored
+     * @param scanner scanner to scan a sub-range
+     */
+    public RangeSpliterator(final byte[] start, final byte[] stop, final List<byte[]> splitKeys, final RangeScanner scanner) {
+        this(start, stop, splitKeys, Integer.MAX_VALUE, scanner);
+    }
+
+    /**
+     * create spliterator over range [start, stop), the split keys are coalesced to at most max ranges, by taking
+     * every Nth of them, so the sub-ranges stay of similar size if the split keys are evenly spaced.
+     * @param start start key, EMPTY_BYTES means min infinity
+     * @param stop stop key, EMPTY_BYTES means max infinity
+     * @param splitKeys keys to split the range, in any order, keys out of the range are ignored
+     * @param maxRanges max count of sub-ranges
+     * @param scanner scanner to scan a sub-range
+     */
+    public RangeSpliterator(final byte[] start, final byte[] stop, final List<byte[]> splitKeys, final int maxRanges, final RangeScanner scanner) {
+        this(createBoundaries(start, stop, splitKeys, maxRanges), scanner, new ConcurrentLinkedQueue<>(), 0);
+    }
+    
+    private RangeSpliterator(final List<byte[]> boundaries, final RangeScanner scanner, final Queue<Iterator<KeyValuePair>> openedIterators, final int index) {
+        this(boundaries, scanner, openedIterators, index, boundaries.size() - 1);
+    }
+    
+    private RangeSpliterator(final List<byte[]> boundaries, final RangeScanner scanner, final Queue<Iterator<KeyValuePair>> openedIterators, final int index, final int fence) {
+        this.boundaries = boundaries;
+        this.scanner = scanner;
+        this.openedIterators = openedIterators;
+        this.index = index;
+        this.fence = fence;
+    }
+    
+    private static List<byte[]> createBoundaries(final byte[] start, final byte[] stop, final List<byte[]> splitKeys, final int maxRanges) {
+        Preconditions.checkArgument(maxRanges > 0, "Invalid max ranges: %s", maxRanges);
+        List<byte[]> sortedKeys = new ArrayList<>(splitKeys);
+        sortedKeys.sort(Bytes::compare);
+        // distinct keys inside the range
+        List<byte[]> candidates = new ArrayList<>(sortedKeys.size());
+        byte[] last = start;
+        for (byte[] key : sortedKeys) {
+            boolean afterLast = Bytes.compare(key, last) > 0;
+            boolean beforeStop = 0 == stop.length || Bytes.compare(key, stop) < 0;
+            if (afterLast && beforeStop) {
+                candidates.add(key);
+                last = key;
+            }
+        }
+        // take every step-th key, which leaves at most max ranges - 1 split keys
+        int step = (int) ((candidates.size() + (long) maxRanges) / maxRanges);
+        List<byte[]> result = new ArrayList<>(candidates.size() / step + 2);
+        result.add(start);
+        for (int i = step - 1; i < candidates.size(); i += step) {
+            result.add(candidates.get(i));
+        }
+        result.add(stop);
+        return result;
+    }
+
+    @Override
+    public boolean tryAdvance(final Consumer<? super KeyValuePair> action) {
+        try {
+            while (true) {
+                if (null == current) {
+                    if (index >= fence) {
+                        return false;
+                    }
+                    current = scanner.scan(boundaries.get(index), boundaries.get(index + 1));
+                    openedIterators.add(current);
+                    index++;
+                }
+                if (current.hasNext()) {
+                    action.accept(current.next());
+                    return true;
+                }
+                // close the exhausted iterator now, only the iterators in use are left to close on abort
+                Iterator<KeyValuePair> exhausted = current;
+                current = null;
+                // whoever removes the iterator from the queue closes it, so it's closed once even if the stream is
+                // closed concurrently
+                if (openedIterators.remove(exhausted)) {
+                    exhausted.close();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Spliterator<KeyValuePair> trySplit() {
+        if (null != current || fence - index < 2) {
+            return null;
+        }
+        int middle = (index + fence) >>> 1;
+        Spliterator<KeyValuePair> prefix = new RangeSpliterator(boundaries, scanner, openedIterators, index, middle);
+        index = middle;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        // the count of key value pairs is unknown
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | SORTED | DISTINCT | NONNULL;
+    }
+
+    @Override
+    public Comparator<? super KeyValuePair> getComparator() {
+        // sorted in natural order
+        return null;
+    }
+
+    /**
+     * create parallel stream over the spliterator, closing the stream closes the spliterator.
+     * @return parallel stream
+     */
+    public Stream<KeyValuePair> parallelStream() {
+        return StreamSupport.stream(this, true).onClose(() -> {
+            try {
+                close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * close the iterators in use by the spliterator and the spliterators split from it, exhausted iterators are
+     * already closed.
+     * @throws IOException IO Exception
+     */
+    @Override
+    public void close() throws IOException {
+        IOException closedException = null;
+        Iterator<KeyValuePair> iterator;
+        while (null != (iterator = openedIterators.poll())) {
+            try {
+                iterator.close();
+            } catch (IOException e) {
+                closedException = e;
+            }
+        }
+        if (null != closedException) {
+            throw closedException;
+        }
+    }
+
+    /**
+     * scan a sub-range.
+     */
+    public interface RangeScanner {
+
+        /**
+         * scan range [start, stop).
+         * @param start start key, EMPTY_BYTES means min infinity
+         * @param stop stop key, EMPTY_BYTES means max infinity
+         * @return iterator to traverse the range
+         * @throws IOException IO Exception
+         */
+        Iterator<KeyValuePair> scan(byte[] start, byte[] stop) throws IOException;
+    }
+}
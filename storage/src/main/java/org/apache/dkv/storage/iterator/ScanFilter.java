@@ -0,0 +1,36 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dkv.storage.iterator;
+
+import org.apache.dkv.storage.bean.KeyValueView;
+
+/**
+ * filter evaluated by {@link ScanIterator} on the newest visible version of each key, the rejected key value pairs
+ * are skipped inside the iterator and never returned to the caller. The filter is evaluated on views of the
+ * encoded key value pairs in data blocks, so the rejected ones are never copied. It may be evaluated more than
+ * once for a key value pair, so it must not have side effects.
+ */
+public interface ScanFilter {
+
+    /**
+     * decide whether to return the key value pair.
+     * @param keyValuePair newest visible put key value pair of a key, which is valid only during the call
+     * @return true to return it, false to skip it
+     */
+    boolean accept(KeyValueView keyValuePair);
+}
@@ -1,26 +1,101 @@
 package org.apache.dkv.storage.iterator;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import org.apache.dkv.storage.bean.KeyValuePair;
 import org.apache.dkv.storage.bean.KeyValuePair.OperationType;
+import org.apache.dkv.storage.bean.KeyValueView;
+import org.apache.dkv.storage.bean.RangeTombstones;
 import org.apache.dkv.storage.bytes.Bytes;
+import org.apache.dkv.storage.merge.MergeOperator;
 
 /**
- * iterator to scan elements.
+ * iterator to scan elements, the newest visible version of each key is returned in ascending order of keys, or in
+ * descending order of keys if the scan is reverse. If the newest visible version is a merge operand, it's resolved
+ * with the older versions into a put key value pair.
  */
 public final class ScanIterator implements Iterator<KeyValuePair> {
 
     private final KeyValuePair stopKv;
 
-    private final Iterator<KeyValuePair> iterator;
+    private final SeekIterator<KeyValuePair> iterator;
+
+    private final long maxSequenceId;
+    
+    private final boolean reverse;
+    
+    private final ScanFilter filter;
+    
+    private final RangeTombstones rangeTombstones;
+    
+    private final MergeOperator mergeOperator;
 
     private KeyValuePair lastKv;
 
     private KeyValuePair pendingKv;
+    
+    // the first key value pair of the next key which has been read ahead
+    private KeyValuePair readAheadKv;
+    
+    // visible versions of the current key from the newest to the oldest, reused for each key
+    private final List<KeyValuePair> versions = new ArrayList<>();
 
     public ScanIterator(final KeyValuePair stopKv, final SeekIterator<KeyValuePair> iterator) {
+        this(stopKv, iterator, Long.MAX_VALUE);
+    }
+
+    public ScanIterator(final KeyValuePair stopKv, final SeekIterator<KeyValuePair> iterator, final long maxSequenceId) {
+        this(stopKv, iterator, maxSequenceId, false);
+    }
+
+    /**
+     * create scan iterator.
+     * @param stopKv the scan stops at the key of stopKv, which is excluded while scanning forward and included
+     *               while scanning backward. null means no limit.
+     * @param iterator iterator positioned at the start of scan
+     * @param maxSequenceId key value pairs with larger sequence id are invisible
+     * @param reverse scan backward by {@link SeekIterator#prev()}
+     */
+    public ScanIterator(final KeyValuePair stopKv, final SeekIterator<KeyValuePair> iterator, final long maxSequenceId, final boolean reverse) {
+        this(stopKv, iterator, maxSequenceId, reverse, null);
+    }
+
+    /**
+     * create scan iterator with filter.
+     * @param stopKv the scan stops at the key of stopKv, which is excluded while scanning forward and included
+     *               while scanning backward. null means no limit.
+     * @param iterator iterator positioned at the start of scan
+     * @param maxSequenceId key value pairs with larger sequence id are invisible
+     * @param reverse scan backward by {@link SeekIterator#prev()}
+     * @param filter skip the keys whose newest visible version is rejected by filter, null means no filter
+     */
+    public ScanIterator(final KeyValuePair stopKv, final SeekIterator<KeyValuePair> iterator, final long maxSequenceId, final boolean reverse, final ScanFilter filter) {
+        this(stopKv, iterator, maxSequenceId, reverse, filter, null, null);
+    }
+
+    /**
+     * create scan iterator with range tombstones and merge operator.
+     * @param stopKv the scan stops at the key of stopKv, which is excluded while scanning forward and included
+     *               while scanning backward. null means no limit.
+     * @param iterator iterator positioned at the start of scan
+     * @param maxSequenceId key value pairs with larger sequence id are invisible
+     * @param reverse scan backward by {@link SeekIterator#prev()}
+     * @param filter skip the keys whose newest visible version is rejected by filter, null means no filter
+     * @param rangeTombstones the versions older than the range tombstones covering them are deleted, null means
+     *                        no range tombstone
+     * @param mergeOperator resolve merge operands, null means there is no merge operand
+     */
+    public ScanIterator(final KeyValuePair stopKv, final SeekIterator<KeyValuePair> iterator, final long maxSequenceId, final boolean reverse, final ScanFilter filter,
+                        final RangeTombstones rangeTombstones, final MergeOperator mergeOperator) {
         this.stopKv = stopKv;
         this.iterator = iterator;
+        this.maxSequenceId = maxSequenceId;
+        this.reverse = reverse;
+        this.filter = filter;
+        this.rangeTombstones = rangeTombstones;
+        this.mergeOperator = mergeOperator;
     }
 
     @Override
@@ -28,49 +103,223 @@ public final class ScanIterator implements Iterator<KeyValuePair> {
         if (null == pendingKv) {
             switchToNewKey();
         }
-        return null != pendingKv;
+        if (null == pendingKv) {
+            // release resources as soon as the scan finishes
+            close();
+            return false;
+        }
+        return true;
     }
 
     private boolean shouldStop(final KeyValuePair keyValuePair) {
         return null != stopKv && Bytes.compare(stopKv.getKey(), keyValuePair.getKey()) <= 0;
     }
 
+    private boolean shouldStopReverse(final KeyValuePair keyValuePair) {
+        return null != stopKv && Bytes.compare(keyValuePair.getKey(), stopKv.getKey()) < 0;
+    }
+
+    private boolean accept(final KeyValuePair keyValuePair) {
+        return !isDeleted(keyValuePair) && (null == filter || filter.accept(keyValuePair));
+    }
+    
+    private boolean isDeleted(final KeyValuePair keyValuePair) {
+        return null != rangeTombstones && rangeTombstones.isDeleted(keyValuePair);
+    }
+    
+    private boolean isNewKey(final KeyValuePair keyValuePair) {
+        return null == lastKv || Bytes.compare(lastKv.getKey(), keyValuePair.getKey()) < 0;
+    }
+
     private void switchToNewKey() throws IOException {
+        if (reverse) {
+            findPrevElement();
+            return;
+        }
         if (null != lastKv && shouldStop(lastKv)) {
             return;
         }
         findNextElement();
     }
 
+    private KeyValuePair readNext() throws IOException {
+        KeyValuePair result = readAheadKv;
+        readAheadKv = null;
+        if (null == result && iterator.hasNext()) {
+            result = iterator.next();
+        }
+        return result;
+    }
+
     private void findNextElement() throws IOException {
-        KeyValuePair currentKeyValuePair;
-        while (iterator.hasNext()) {
-            currentKeyValuePair = iterator.next();
+        for (KeyValuePair currentKeyValuePair = readNext(); null != currentKeyValuePair; currentKeyValuePair = readNext()) {
             // if we reach the stop key-value 
             if (shouldStop(currentKeyValuePair)) {
                 return;
             }
-            // found valid data
-            if (currentKeyValuePair.getOperationType() == OperationType.Put) {
-                // lastKv is infinity or currentKeyValuePair less than lastKv
-                if (null == lastKv || Bytes.compare(lastKv.getKey(), currentKeyValuePair.getKey()) < 0) {
-                    lastKv = currentKeyValuePair;
-                    pendingKv = currentKeyValuePair;
-                    return;
+            // skip the versions invisible to the snapshot
+            if (currentKeyValuePair.getSequenceId() <= maxSequenceId && switchTo(currentKeyValuePair)) {
+                return;
+            }
+        }
+    }
+    
+    // returns true if a key value pair to return is found
+    private boolean switchTo(final KeyValuePair keyValuePair) throws IOException {
+        switch (keyValuePair.getOperationType()) {
+            case Put:
+                return switchToPut(keyValuePair);
+            case Delete:
+                if (isNewKey(keyValuePair)) {
+                    lastKv = keyValuePair;
                 }
-                // found obsolete data, just skip
-            } else if (currentKeyValuePair.getOperationType() == OperationType.Delete) {
-                if (null == lastKv || Bytes.compare(lastKv.getKey(), currentKeyValuePair.getKey()) != 0) {
-                    lastKv = currentKeyValuePair;
+                return false;
+            case Merge:
+                return isNewKey(keyValuePair) && switchToMerge(keyValuePair);
+            default:
+                throw new IOException("Unknown op code: " + keyValuePair.getOperationType());
+        }
+    }
+
+    private boolean switchToPut(final KeyValuePair keyValuePair) {
+        // lastKv is infinity or keyValuePair less than lastKv, otherwise it's obsolete data, just skip
+        if (isNewKey(keyValuePair)) {
+            // the older versions of a rejected key are skipped too, since lastKv is updated
+            lastKv = keyValuePair;
+            if (accept(keyValuePair)) {
+                pendingKv = keyValuePair;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean switchToMerge(final KeyValuePair keyValuePair) throws IOException {
+        // read the older versions until a put or delete of the key, the first key value pair of the next key is
+        // read ahead
+        versions.clear();
+        versions.add(keyValuePair);
+        KeyValuePair current = keyValuePair;
+        while (OperationType.Merge == current.getOperationType()) {
+            current = readNext();
+            if (null == current || Bytes.compare(current.getKey(), keyValuePair.getKey()) != 0) {
+                readAheadKv = current;
+                break;
+            }
+            versions.add(current);
+        }
+        // the older versions of the key are skipped, since lastKv is updated
+        lastKv = keyValuePair;
+        KeyValuePair merged = merge();
+        if (null != merged && accept(merged)) {
+            pendingKv = merged;
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * resolve the merge operands in versions, until a put or delete of the key, or a version deleted by range
+     * tombstone.
+     * @return put key value pair with the merged value and the sequence id of the newest operand, null if the
+     *         newest operand is deleted
+     * @throws IOException if no merge operator is configured
+     */
+    private KeyValuePair merge() throws IOException {
+        if (null == mergeOperator) {
+            throw new IOException("Merge operator is not configured.");
+        }
+        List<byte[]> operands = new ArrayList<>();
+        byte[] existingValue = null;
+        for (KeyValuePair each : versions) {
+            if (isDeleted(each) || OperationType.Delete == each.getOperationType()) {
+                break;
+            }
+            if (OperationType.Put == each.getOperationType()) {
+                existingValue = each.getValue();
+                break;
+            }
+            operands.add(each.getValue());
+        }
+        if (operands.isEmpty()) {
+            return null;
+        }
+        Collections.reverse(operands);
+        KeyValuePair newest = versions.get(0);
+        return KeyValuePair.createPut(newest.getKey(), mergeOperator.fullMerge(newest.getKey(), existingValue, operands), newest.getSequenceId());
+    }
+
+    private KeyValuePair readPrev() throws IOException {
+        KeyValuePair result = readAheadKv;
+        readAheadKv = null;
+        if (null == result && iterator.hasPrev()) {
+            result = iterator.prev();
+        }
+        return result;
+    }
+
+    private void findPrevElement() throws IOException {
+        KeyValuePair currentKeyValuePair = readPrev();
+        while (null != currentKeyValuePair && !shouldStopReverse(currentKeyValuePair)) {
+            // versions of a key are visited from the oldest to the newest, so the last visible one is the newest
+            byte[] key = currentKeyValuePair.getKey();
+            versions.clear();
+            while (null != currentKeyValuePair && Bytes.compare(key, currentKeyValuePair.getKey()) == 0) {
+                if (currentKeyValuePair.getSequenceId() <= maxSequenceId) {
+                    versions.add(currentKeyValuePair);
                 }
-            } else {
-                throw new IOException("Unknown op code: " + currentKeyValuePair.getOperationType());
+                currentKeyValuePair = readPrev();
+            }
+            KeyValuePair newestKv = resolvePrev();
+            if (null != newestKv && accept(newestKv)) {
+                readAheadKv = currentKeyValuePair;
+                pendingKv = newestKv;
+                return;
             }
         }
+        readAheadKv = currentKeyValuePair;
+    }
+    
+    // resolve the visible versions of a key read backward, returns null if the key is deleted
+    private KeyValuePair resolvePrev() throws IOException {
+        if (versions.isEmpty()) {
+            return null;
+        }
+        Collections.reverse(versions);
+        KeyValuePair newestKv = versions.get(0);
+        if (OperationType.Merge == newestKv.getOperationType()) {
+            return merge();
+        }
+        return OperationType.Put == newestKv.getOperationType() ? newestKv : null;
     }
 
+    @Override
+    public void close() throws IOException {
+        iterator.close();
+    }
+
+    /**
+     * get the next key value pair, its value is copied out of the data block, so it stays valid after the scan.
+     * @return next key value pair
+     * @throws IOException IO Exception
+     */
     @Override
     public KeyValuePair next() throws IOException {
+        KeyValuePair result = advance();
+        return null == result ? null : result.materialize();
+    }
+
+    /**
+     * get the next key value pair without copying it, the value may be a view of the data block, e.g. to aggregate
+     * the key value pairs.
+     * @return view of next key value pair
+     * @throws IOException IO Exception
+     */
+    public KeyValueView nextView() throws IOException {
+        return advance();
+    }
+
+    private KeyValuePair advance() throws IOException {
         if (null == pendingKv) {
             switchToNewKey();
         }
@@ -20,7 +20,9 @@ package org.apache.dkv.storage.iterator;
 import java.io.IOException;
 
 /**
- * Seek Iterator API.
+ * Seek Iterator API. The direction of iteration is decided by the last seek, the iterator moves forward with
+ * {@link #next()} after {@link #seekTo(Object)}, and moves backward with {@link #prev()} after
+ * {@link #seekToLast()} or {@link #seekForPrev(Object)}. A new iterator moves forward from the first element.
  * @param <T> type
  */
 public interface SeekIterator<T> extends Iterator<T> {
@@ -32,4 +34,33 @@ public interface SeekIterator<T> extends Iterator<T> {
      * @throws IOException IO Exception.
      */
     void seekTo(T kv) throws IOException;
+
+    /**
+     * Seek to the last element, and iterate backward.
+     *
+     * @throws IOException IO Exception.
+     */
+    void seekToLast() throws IOException;
+
+    /**
+     * Seek to the largest element which is less than or equals to the given element, and iterate backward.
+     *
+     * @param kv seek to specific element.
+     * @throws IOException IO Exception.
+     */
+    void seekForPrev(T kv) throws IOException;
+
+    /**
+     * 
+     * @return true if has previous element.
+     * @throws IOException IO Exception.
+     */
+    boolean hasPrev() throws IOException;
+
+    /**
+     * 
+     * @return previous element.
+     * @throws IOException IO Exception.
+     */
+    T prev() throws IOException;
 }
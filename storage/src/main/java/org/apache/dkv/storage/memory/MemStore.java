@@ -19,6 +19,9 @@ package org.apache.dkv.storage.memory;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -27,10 +30,14 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.dkv.storage.bean.KeyValuePair;
+import org.apache.dkv.storage.bean.KeyValuePair.OperationType;
+import org.apache.dkv.storage.bean.RangeTombstones;
+import org.apache.dkv.storage.bytes.Bytes;
 import org.apache.dkv.storage.config.Config;
 import org.apache.dkv.storage.flush.Flusher;
 import org.apache.dkv.storage.iterator.IteratorWrapper;
 import org.apache.dkv.storage.iterator.MemStoreIterator;
+import org.apache.dkv.storage.iterator.MultiIterator;
 import org.apache.dkv.storage.iterator.SeekIterator;
 import org.apache.dkv.storage.wal.WALWriter;
 
@@ -46,6 +53,11 @@ public final class MemStore implements Closeable {
     @Getter
     private volatile ConcurrentSkipListMap<KeyValuePair, KeyValuePair> snapshot;
     
+    // range tombstones are kept apart from kvMap, so iterators never visit them, and they are flushed with kvMap
+    private volatile ConcurrentSkipListMap<KeyValuePair, KeyValuePair> rangeDelMap;
+    
+    private volatile ConcurrentSkipListMap<KeyValuePair, KeyValuePair> rangeDelSnapshot;
+    
     private final ReentrantReadWriteLock updateLock = new ReentrantReadWriteLock();
     
     private final AtomicBoolean isSnapshotFlushing = new AtomicBoolean(false);
@@ -64,6 +76,7 @@ public final class MemStore implements Closeable {
         this.pool = pool;
         dataSize.set(0);
         kvMap = new ConcurrentSkipListMap<>();
+        rangeDelMap = new ConcurrentSkipListMap<>();
         this.snapshot = null;
         this.walWriter = new WALWriter(conf);
     }
@@ -74,9 +87,10 @@ public final class MemStore implements Closeable {
             updateLock.readLock().lock();
             KeyValuePair prevKeyValuePair;
             // write wal log
-            walWriter.addRecord(kv.toBytes());
+            walWriter.addRecord(kv);
             walWriter.sync();
-            if ((prevKeyValuePair = kvMap.put(kv, kv)) == null) {
+            ConcurrentSkipListMap<KeyValuePair, KeyValuePair> map = OperationType.DeleteRange == kv.getOperationType() ? rangeDelMap : kvMap;
+            if ((prevKeyValuePair = map.put(kv, kv)) == null) {
                 dataSize.addAndGet(kv.getSerializeSize());
             } else {
                 // delete previous element if this is update operation
@@ -97,6 +111,86 @@ public final class MemStore implements Closeable {
         return new MemStoreIterator(this);
     }
     
+    /**
+     * get the newest visible version of a key.
+     * @param target seek target created by {@link KeyValuePair#createDelete(byte[], long)} with the max visible
+     *               sequence id
+     * @return the newest visible put or delete key value pair, null if the key is not in MemStore
+     */
+    public KeyValuePair get(final KeyValuePair target) {
+        // read kvMap before snapshot, a key value pair moved from kvMap to snapshot by flush is still visible
+        KeyValuePair result = ceiling(kvMap, target);
+        KeyValuePair snapshotResult = ceiling(snapshot, target);
+        if (null == result || null != snapshotResult && snapshotResult.getSequenceId() > result.getSequenceId()) {
+            result = snapshotResult;
+        }
+        return result;
+    }
+    
+    private static KeyValuePair ceiling(final NavigableMap<KeyValuePair, KeyValuePair> map, final KeyValuePair target) {
+        if (null == map) {
+            return null;
+        }
+        KeyValuePair result = map.ceilingKey(target);
+        return null != result && Bytes.compare(result.getKey(), target.getKey()) == 0 ? result : null;
+    }
+    
+    /**
+     * get range tombstones overlapping with the range [start, stop).
+     * @param start start of range, empty means no lower limit
+     * @param stop stop of range, which is excluded, empty means no upper limit
+     * @return range tombstones
+     */
+    public List<KeyValuePair> getRangeTombstones(final byte[] start, final byte[] stop) {
+        List<KeyValuePair> result = new ArrayList<>();
+        // read rangeDelMap before rangeDelSnapshot, the same as reading kvMap
+        getRangeTombstones(rangeDelMap, start, stop, result);
+        getRangeTombstones(rangeDelSnapshot, start, stop, result);
+        return result;
+    }
+    
+    private static void getRangeTombstones(final NavigableMap<KeyValuePair, KeyValuePair> map, final byte[] start, final byte[] stop, final List<KeyValuePair> result) {
+        if (null == map || map.isEmpty()) {
+            return;
+        }
+        // tombstones are sorted by start key, only the ones starting before stop may overlap with the range
+        NavigableMap<KeyValuePair, KeyValuePair> candidates = 0 == stop.length ? map : map.headMap(KeyValuePair.createDelete(stop, Long.MAX_VALUE), false);
+        for (KeyValuePair each : candidates.keySet()) {
+            if (RangeTombstones.overlaps(each, start, stop)) {
+                result.add(each);
+            }
+        }
+    }
+    
+    /**
+     * sample keys in range [start, stop) to split the range.
+     * @param start start key, EMPTY_BYTES means min infinity
+     * @param stop stop key, EMPTY_BYTES means max infinity
+     * @param interval take one key from every interval key value pairs
+     * @return sampled keys
+     */
+    public List<byte[]> sampleKeys(final byte[] start, final byte[] stop, final int interval) {
+        List<byte[]> result = new ArrayList<>();
+        sampleKeys(kvMap, start, stop, interval, result);
+        sampleKeys(snapshot, start, stop, interval, result);
+        return result;
+    }
+    
+    private static void sampleKeys(final NavigableMap<KeyValuePair, KeyValuePair> map, final byte[] start, final byte[] stop, final int interval, final List<byte[]> result) {
+        if (null == map) {
+            return;
+        }
+        int count = 0;
+        for (KeyValuePair keyValuePair : map.tailMap(KeyValuePair.createDelete(start, Long.MAX_VALUE), true).keySet()) {
+            if (0 != stop.length && Bytes.compare(keyValuePair.getKey(), stop) >= 0) {
+                break;
+            }
+            if (++count % interval == 0) {
+                result.add(keyValuePair.getKey());
+            }
+        }
+    }
+    
     private void flushIfNeeded(final boolean shouldBlockingUpdate) throws IOException {
         if (dataSize.get() > conf.getMaxMemstoreSize()) {
             if (isSnapshotFlushing.get() && shouldBlockingUpdate) {
@@ -121,6 +215,8 @@ public final class MemStore implements Closeable {
                 updateLock.writeLock().lock();
                 snapshot = kvMap;
                 kvMap = new ConcurrentSkipListMap<>();
+                rangeDelSnapshot = rangeDelMap;
+                rangeDelMap = new ConcurrentSkipListMap<>();
                 dataSize.set(0);
                 // switch to next wal file
                 walWriter.switchNewFile();
@@ -136,7 +232,7 @@ public final class MemStore implements Closeable {
             boolean isSuccess = false;
             for (int i = 0; i < conf.getFlushMaxRetries(); i++) {
                 try {
-                    flusher.flush(new IteratorWrapper(snapshot));
+                    flusher.flush(new MultiIterator(new IteratorWrapper[] {new IteratorWrapper(snapshot), new IteratorWrapper(rangeDelSnapshot)}));
                     isSuccess = true;
                 } catch (Exception e) {
                     log.error("Failed to flush memstore, retries= {} , maxFlushRetries= {}, {}", i, conf.getFlushMaxRetries(), e);
@@ -148,6 +244,7 @@ public final class MemStore implements Closeable {
             // clean the snapshot
             if (isSuccess) {
                 snapshot = null;
+                rangeDelSnapshot = null;
                 isSnapshotFlushing.compareAndSet(true, false);
             }
         }
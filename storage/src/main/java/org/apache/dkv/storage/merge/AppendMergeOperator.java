@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dkv.storage.merge;
+
+import java.util.List;
+import org.apache.dkv.storage.bytes.BytesBuilder;
+
+/**
+ * merge operator which appends the operands to the value, separated by the delimiter, e.g. lists of events.
+ */
+public final class AppendMergeOperator implements MergeOperator {
+    
+    private final byte[] delimiter;
+    
+    public AppendMergeOperator(final byte[] delimiter) {
+        this.delimiter = delimiter;
+    }
+    
+    @Override
+    public byte[] fullMerge(final byte[] key, final byte[] existingValue, final List<byte[]> operands) {
+        int size = null == existingValue ? -delimiter.length : existingValue.length;
+        for (byte[] each : operands) {
+            size += delimiter.length + each.length;
+        }
+        BytesBuilder builder = new BytesBuilder(size);
+        boolean first = null == existingValue;
+        if (!first) {
+            builder.append(existingValue);
+        }
+        for (byte[] each : operands) {
+            if (!first) {
+                builder.append(delimiter);
+            }
+            builder.append(each);
+            first = false;
+        }
+        return builder.getBuffer();
+    }
+    
+    @Override
+    public byte[] partialMerge(final byte[] key, final List<byte[]> operands) {
+        return fullMerge(key, null, operands);
+    }
+}
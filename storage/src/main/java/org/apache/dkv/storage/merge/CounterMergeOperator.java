@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dkv.storage.merge;
+
+import java.util.List;
+import org.apache.dkv.storage.bytes.Bytes;
+
+/**
+ * merge operator which adds up 8 bytes long values, e.g. metric counters, a missing key counts as 0.
+ */
+public final class CounterMergeOperator implements MergeOperator {
+    
+    @Override
+    public byte[] fullMerge(final byte[] key, final byte[] existingValue, final List<byte[]> operands) {
+        long result = null == existingValue ? 0 : Bytes.toLong(existingValue);
+        for (byte[] each : operands) {
+            result += Bytes.toLong(each);
+        }
+        return Bytes.toBytes(result);
+    }
+    
+    @Override
+    public byte[] partialMerge(final byte[] key, final List<byte[]> operands) {
+        return fullMerge(key, null, operands);
+    }
+}
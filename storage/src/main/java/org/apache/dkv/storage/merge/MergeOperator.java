@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dkv.storage.merge;
+
+import java.util.List;
+
+/**
+ * merge operator to resolve the operands written by {@link org.apache.dkv.storage.DKV#merge(byte[], byte[])}. The
+ * operands are kept as they are when written, and resolved when the key is read. Flush and compaction combine the
+ * operands which no snapshot can see separately, so a key never accumulates too many operands.
+ */
+public interface MergeOperator {
+
+    /**
+     * merge the operands into the existing value.
+     * @param key key of operands
+     * @param existingValue value of the newest put before the operands, null if the key doesn't exist or is deleted
+     * @param operands operands from the oldest to the newest, at least one
+     * @return merged value
+     */
+    byte[] fullMerge(byte[] key, byte[] existingValue, List<byte[]> operands);
+
+    /**
+     * combine the operands into one operand, the existing value is unknown.
+     * @param key key of operands
+     * @param operands operands from the oldest to the newest, at least two
+     * @return combined operand, null if the operands can't be combined
+     */
+    byte[] partialMerge(byte[] key, List<byte[]> operands);
+}
@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dkv.storage.scheduler;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.dkv.storage.compact.Compactor;
+import org.apache.dkv.storage.config.Config;
+import org.apache.dkv.storage.disk.SSTable;
+
+/**
+ * Background job scheduler. Flushes run on dedicated high priority threads, so they are never starved by
+ * compactions, which run on a separate low priority pool. Compactions are triggered by events (a flush
+ * completing, a compaction completing, or the database being opened) instead of polling.
+ */
+@Slf4j
+public final class BackgroundScheduler implements Closeable {
+    
+    @Getter
+    private final ExecutorService flushPool;
+    
+    private final ExecutorService compactPool;
+    
+    private final Compactor compactor;
+    
+    private final int maxCompactions;
+    
+    private final AtomicInteger runningCompactions = new AtomicInteger();
+    
+    private volatile boolean closed;
+    
+    public BackgroundScheduler(final Config config, final Compactor compactor) {
+        this.compactor = compactor;
+        int flushThreads = Math.max(1, config.getMaxFlushThreadPoolSize());
+        this.flushPool = new FlushThreadPool(flushThreads, createThreadFactory("dkv-flush-%d", Thread.MAX_PRIORITY));
+        this.maxCompactions = Math.max(1, config.getMaxThreadPoolSize());
+        this.compactPool = Executors.newFixedThreadPool(maxCompactions, createThreadFactory("dkv-compact-%d", Thread.MIN_PRIORITY));
+    }
+    
+    private static ThreadFactory createThreadFactory(final String nameFormat, final int priority) {
+        return new ThreadFactoryBuilder().setNameFormat(nameFormat).setPriority(priority).setDaemon(true).build();
+    }
+
+    /**
+     * schedule compactions while there are SSTable files to compact and idle compaction threads. Each
+     * compaction claims its own SSTable files, so the scheduled compactions never overlap.
+     */
+    public void maybeScheduleCompaction() {
+        while (!closed) {
+            int running = runningCompactions.get();
+            if (running >= maxCompactions) {
+                return;
+            }
+            if (!runningCompactions.compareAndSet(running, running + 1)) {
+                continue;
+            }
+            List<SSTable> tables;
+            try {
+                tables = compactor.pickCompaction();
+            } catch (RuntimeException e) {
+                runningCompactions.decrementAndGet();
+                throw e;
+            }
+            if (tables.isEmpty()) {
+                runningCompactions.decrementAndGet();
+                return;
+            }
+            try {
+                compactPool.execute(() -> runCompaction(tables));
+            } catch (RejectedExecutionException e) {
+                // the scheduler is closing, the claimed files are never compacted any more
+                runningCompactions.decrementAndGet();
+                return;
+            }
+        }
+    }
+    
+    private void runCompaction(final List<SSTable> tables) {
+        try {
+            compactor.compact(tables);
+        } catch (IOException e) {
+            // only record compact failure
+            log.error("major compaction failed: {}", e);
+        } finally {
+            runningCompactions.decrementAndGet();
+        }
+        // the compaction may leave more files to compact
+        maybeScheduleCompactionQuietly();
+    }
+    
+    // picking files may fail to open an SSTable file, which must not kill the background thread
+    private void maybeScheduleCompactionQuietly() {
+        try {
+            maybeScheduleCompaction();
+        } catch (RuntimeException e) {
+            log.error("scheduling compaction failed: {}", e);
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        try {
+            // pending flushes may still schedule compactions
+            flushPool.shutdown();
+            flushPool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            closed = true;
+            compactPool.shutdown();
+            compactPool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for background jobs");
+        }
+    }
+    
+    private final class FlushThreadPool extends ThreadPoolExecutor {
+        
+        FlushThreadPool(final int threads, final ThreadFactory threadFactory) {
+            super(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), threadFactory);
+        }
+        
+        @Override
+        protected void afterExecute(final Runnable r, final Throwable t) {
+            super.afterExecute(r, t);
+            // a finished flush adds a new SSTable file
+            maybeScheduleCompactionQuietly();
+        }
+    }
+}
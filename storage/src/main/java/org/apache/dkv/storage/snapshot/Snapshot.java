@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dkv.storage.snapshot;
+
+import java.io.Closeable;
+import java.util.concurrent.atomic.AtomicBoolean;
+import lombok.Getter;
+
+/**
+ * Point-in-time view of database, reads with the snapshot ignore the key value pairs whose sequence id
+ * is greater than the sequence id of snapshot. Each holder gets its own handle, close it to release.
+ */
+public final class Snapshot implements Closeable {
+    
+    @Getter
+    private final long sequenceId;
+    
+    private final SnapshotManager manager;
+    
+    private final AtomicBoolean closed = new AtomicBoolean();
+    
+    Snapshot(final long sequenceId, final SnapshotManager manager) {
+        this.sequenceId = sequenceId;
+        this.manager = manager;
+    }
+
+    /**
+     * release the snapshot, closing it again does nothing.
+     */
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            manager.release(sequenceId);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dkv.storage.snapshot;
+
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * track live snapshots, compaction keeps the key value pairs which live snapshots need.
+ */
+public final class SnapshotManager {
+    
+    // holder count of each live sequence id
+    private final NavigableMap<Long, Integer> snapshots = new TreeMap<>();
+
+    /**
+     * acquire a snapshot at specific sequence id, each caller gets its own handle.
+     * @param sequenceId sequence id of snapshot.
+     * @return snapshot
+     */
+    public synchronized Snapshot acquire(final long sequenceId) {
+        snapshots.merge(sequenceId, 1, Integer::sum);
+        return new Snapshot(sequenceId, this);
+    }
+    
+    synchronized void release(final long sequenceId) {
+        Integer count = snapshots.get(sequenceId);
+        if (null == count) {
+            throw new IllegalStateException("Snapshot " + sequenceId + " is already released");
+        }
+        if (1 == count) {
+            snapshots.remove(sequenceId);
+        } else {
+            snapshots.put(sequenceId, count - 1);
+        }
+    }
+
+    /**
+     * get sequence ids of live snapshots.
+     * @return sorted sequence ids.
+     */
+    public synchronized NavigableSet<Long> getSequenceIds() {
+        return new TreeSet<>(snapshots.keySet());
+    }
+}
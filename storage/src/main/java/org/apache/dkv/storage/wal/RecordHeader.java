@@ -19,6 +19,7 @@ package org.apache.dkv.storage.wal;
 
 import lombok.AllArgsConstructor;
 import lombok.Getter;
+import org.apache.dkv.storage.bytes.ByteSlice;
 import org.apache.dkv.storage.bytes.Bytes;
 import org.apache.dkv.storage.bytes.BytesBuilder;
 
@@ -61,18 +62,19 @@ public class RecordHeader {
      * @return record header object
      */
     public static RecordHeader parseFrom(final byte[] buf, final int offset) {
+        ByteSlice slice = ByteSlice.wrap(buf);
         int pos = offset;
 
         // decode checksum(4 bytes)
-        final int checksum = Bytes.toInt(Bytes.slice(buf, pos, 4));
+        final int checksum = slice.getInt(pos);
         pos += 4;
 
         // decode record type(1 bytes)
-        final RecordType recordType = RecordType.convertCodeToRecordType(buf[pos]);
+        final RecordType recordType = RecordType.convertCodeToRecordType(slice.get(pos));
         pos += 1;
 
         // decode length(2 bytes)
-        final int length = Bytes.twoBytesToInt(Bytes.slice(buf, pos, 2));
+        final int length = slice.getUnsignedShort(pos);
         
         return new RecordHeader(checksum, recordType, length);
     }
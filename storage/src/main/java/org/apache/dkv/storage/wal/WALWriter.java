@@ -20,10 +20,13 @@ package org.apache.dkv.storage.wal;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import lombok.Getter;
+import org.apache.dkv.storage.bean.KeyValuePair;
+import org.apache.dkv.storage.bytes.Bytes;
 import org.apache.dkv.storage.config.Config;
 
 /**
@@ -40,6 +43,8 @@ public final class WALWriter {
     @Getter
     private static final int HEADER_SIZE = 4 + 2 + 1;
     
+    private static final int INITIAL_RECORD_BUFFER_SIZE = 4096;
+    
     private FileOutputStream out;
 
     private int blockOffset;
@@ -50,6 +55,9 @@ public final class WALWriter {
     
     private final WriteOptions writeOptions;
     
+    // reused to encode key value pairs
+    private ByteBuffer recordBuffer = ByteBuffer.allocate(INITIAL_RECORD_BUFFER_SIZE);
+    
     public WALWriter(final Config config) throws IOException {
         this.dataDir = config.getDataDir();
         this.writeOptions = config.getWriteOptions();
@@ -99,9 +107,25 @@ public final class WALWriter {
      * @param record log record.
      * @throws IOException IO Exception.
      */
-    public void addRecord(final byte[] record) throws IOException {
-        int left = record.length;
-        int pos = 0;
+    public synchronized void addRecord(final byte[] record) throws IOException {
+        addRecord(record, 0, record.length);
+    }
+
+    /**
+     * append a key value pair into wal file, it's encoded into a reused buffer.
+     * @param keyValuePair key value pair.
+     * @throws IOException IO Exception.
+     */
+    public synchronized void addRecord(final KeyValuePair keyValuePair) throws IOException {
+        recordBuffer.clear();
+        recordBuffer = Bytes.ensureRemaining(recordBuffer, keyValuePair.getSerializeSize());
+        keyValuePair.writeTo(recordBuffer);
+        addRecord(recordBuffer.array(), 0, recordBuffer.position());
+    }
+    
+    private void addRecord(final byte[] record, final int offset, final int length) throws IOException {
+        int left = length;
+        int pos = offset;
         boolean begin = true;
         do {
             int leftover = MAX_BLOCK_SIZE - blockOffset;
@@ -115,6 +139,7 @@ public final class WALWriter {
             int fragmentLength = Math.min(left, avail);
             RecordType type = getRecordType(begin, left == fragmentLength);
             writePhysicalRecord(type, record, pos, fragmentLength);
+            pos += fragmentLength;
             left -= fragmentLength;
             begin = false;
         } while (left > 0);
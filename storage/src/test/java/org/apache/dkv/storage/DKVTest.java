@@ -18,20 +18,31 @@
 package org.apache.dkv.storage;
 
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
 import lombok.AllArgsConstructor;
+import org.apache.dkv.storage.aggregate.CountAggregator;
+import org.apache.dkv.storage.aggregate.MaxKeyAggregator;
+import org.apache.dkv.storage.aggregate.MinKeyAggregator;
+import org.apache.dkv.storage.aggregate.SumAggregator;
 import org.apache.dkv.storage.bean.KeyValuePair;
 import org.apache.dkv.storage.bean.KeyValuePair.OperationType;
+import org.apache.dkv.storage.bloom.DelimiterPrefixExtractor;
 import org.apache.dkv.storage.bytes.Bytes;
 import org.apache.dkv.storage.config.Config;
 import org.apache.dkv.storage.iterator.Iterator;
+import org.apache.dkv.storage.iterator.ScanFilter;
+import org.apache.dkv.storage.merge.CounterMergeOperator;
+import org.apache.dkv.storage.snapshot.Snapshot;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -136,6 +147,324 @@ public class DKVTest {
         assertThat(countElements(iterator), equalTo(10));
     }
     
+    @Test
+    public void testSnapshot() throws IOException {
+        final byte[] bytesA = Bytes.toBytes("A");
+        final byte[] bytesB = Bytes.toBytes("B");
+        db.put(bytesA, bytesA);
+        final Snapshot snapshot = db.getSnapshot();
+        db.put(bytesA, bytesB);
+        db.put(bytesB, bytesB);
+        
+        assertThat(db.get(bytesA).getValue(), equalTo(bytesB));
+        assertThat(db.get(bytesA, snapshot).getValue(), equalTo(bytesA));
+        Assert.assertNull(db.get(bytesB, snapshot));
+        assertThat(countElements(db.scan()), equalTo(2));
+        assertThat(countElements(db.scan(Bytes.EMPTY_BYTES, Bytes.EMPTY_BYTES, snapshot)), equalTo(1));
+        snapshot.close();
+    }
+    
+    @Test
+    public void testReverseScan() throws IOException {
+        for (int i = 1; i <= 100; i++) {
+            db.put(Bytes.toBytes(i), Bytes.toBytes(i));
+        }
+        db.put(Bytes.toBytes(50), Bytes.toBytes(500));
+        db.delete(Bytes.toBytes(40));
+        
+        Iterator<KeyValuePair> iterator = db.reverseScan(Bytes.EMPTY_BYTES, Bytes.EMPTY_BYTES);
+        assertThat(iterator.next().getKey(), equalTo(Bytes.toBytes(100)));
+        assertThat(countElements(iterator), equalTo(98));
+        
+        iterator = db.reverseScan(Bytes.toBytes(35), Bytes.toBytes(51));
+        assertThat(iterator.next().getValue(), equalTo(Bytes.toBytes(500)));
+        for (int i = 49; i >= 35; i--) {
+            if (40 != i) {
+                assertThat(iterator.next().getKey(), equalTo(Bytes.toBytes(i)));
+            }
+        }
+        assertThat(iterator.hasNext(), equalTo(false));
+    }
+    
+    @Test
+    public void testMultiGet() throws IOException {
+        for (int i = 1; i <= 100; i++) {
+            db.put(Bytes.toBytes(i), Bytes.toBytes(i));
+        }
+        db.delete(Bytes.toBytes(20));
+        final Snapshot snapshot = db.getSnapshot();
+        db.put(Bytes.toBytes(30), Bytes.toBytes(-30));
+        List<byte[]> keys = Stream.of(50, 10, 20, 200, 10, 30).map(Bytes::toBytes).collect(Collectors.toList());
+        List<KeyValuePair> result = db.multiGet(keys);
+        assertThat(result.size(), equalTo(6));
+        assertThat(Bytes.toInt(result.get(0).getValue()), equalTo(50));
+        assertThat(Bytes.toInt(result.get(1).getValue()), equalTo(10));
+        assertThat(result.get(2), nullValue());
+        assertThat(result.get(3), nullValue());
+        assertThat(Bytes.toInt(result.get(4).getValue()), equalTo(10));
+        assertThat(Bytes.toInt(result.get(5).getValue()), equalTo(-30));
+        assertThat(Bytes.toInt(db.multiGet(keys, snapshot).get(5).getValue()), equalTo(30));
+        snapshot.close();
+    }
+    
+    @Test
+    public void testAggregate() throws IOException {
+        for (int i = 1; i <= 100; i++) {
+            db.put(Bytes.toBytes(i), Bytes.toBytes(i));
+        }
+        // the newest version is rejected by the filter, the older one must not be returned
+        db.put(Bytes.toBytes(50), Bytes.toBytes(-50));
+        db.delete(Bytes.toBytes(60));
+        ScanFilter positive = each -> Bytes.toInt(each.getValue()) > 0;
+        assertThat(db.aggregate(Bytes.EMPTY_BYTES, Bytes.EMPTY_BYTES, null, new CountAggregator()), equalTo(99L));
+        assertThat(db.aggregate(Bytes.EMPTY_BYTES, Bytes.EMPTY_BYTES, positive, new CountAggregator()), equalTo(98L));
+        assertThat(db.aggregate(Bytes.toBytes(11), Bytes.toBytes(21), positive, new SumAggregator(Bytes::toInt)), equalTo(155L));
+        assertThat(db.aggregate(Bytes.EMPTY_BYTES, Bytes.EMPTY_BYTES, positive, new SumAggregator(Bytes::toInt)), equalTo(5050L - 50 - 60));
+        ScanFilter even = each -> Bytes.toInt(each.getValue()) % 2 == 0;
+        assertThat(Bytes.toInt(db.aggregate(Bytes.EMPTY_BYTES, Bytes.EMPTY_BYTES, even, new MinKeyAggregator())), equalTo(2));
+        assertThat(Bytes.toInt(db.aggregate(Bytes.EMPTY_BYTES, Bytes.toBytes(99), even, new MaxKeyAggregator())), equalTo(98));
+        assertThat(db.aggregate(Bytes.toBytes(200), Bytes.EMPTY_BYTES, null, new MinKeyAggregator()), nullValue());
+        assertThat(countElements(db.scan(Bytes.EMPTY_BYTES, Bytes.EMPTY_BYTES, even)), equalTo(49));
+    }
+    
+    @Test
+    public void testAggregateSSTables() throws IOException {
+        db.close();
+        // each put is flushed into its own SSTable file, the newest version of key 5 is rejected by the filter
+        Config config = Config.builder().dataDir(folder.getRoot().getAbsolutePath()).maxMemstoreSize(1).flushMaxRetries(1).maxDiskFiles(10).maxThreadPoolSize(5).build();
+        for (int each : new int[]{4, 5, -5}) {
+            db = DKV.create(config).open();
+            db.put(Bytes.toBytes(Math.abs(each)), Bytes.toBytes(each));
+            db.close();
+        }
+        
+        db = DKV.create(config).open();
+        ScanFilter positive = each -> Bytes.toInt(each.getValue()) > 0;
+        assertThat(db.aggregate(Bytes.EMPTY_BYTES, Bytes.EMPTY_BYTES, positive, new CountAggregator()), equalTo(1L));
+        assertThat(db.aggregate(Bytes.EMPTY_BYTES, Bytes.EMPTY_BYTES, null, new SumAggregator(Bytes::toInt)), equalTo(-1L));
+        List<KeyValuePair> result = new ArrayList<>();
+        try (Iterator<KeyValuePair> iterator = db.scan(Bytes.EMPTY_BYTES, Bytes.EMPTY_BYTES, positive)) {
+            while (iterator.hasNext()) {
+                result.add(iterator.next());
+            }
+        }
+        // the returned key value pairs own their values after the scan is closed
+        assertThat(result.size(), equalTo(1));
+        assertThat(Bytes.toInt(result.get(0).getKey()), equalTo(4));
+        assertThat(Bytes.toInt(result.get(0).getValue()), equalTo(4));
+    }
+    
+    @Test
+    public void testParallelScan() throws IOException {
+        int totalElements = 5000;
+        for (int i = 1; i <= totalElements; i++) {
+            db.put(Bytes.toBytes(i), Bytes.toBytes(i));
+        }
+        db.delete(Bytes.toBytes(100));
+        try (Stream<KeyValuePair> stream = db.parallelScan(Bytes.EMPTY_BYTES, Bytes.EMPTY_BYTES)) {
+            List<Integer> keys = stream.map(each -> Bytes.toInt(each.getKey())).collect(Collectors.toList());
+            assertThat(keys.size(), equalTo(totalElements - 1));
+            for (int i = 1; i < keys.size(); i++) {
+                assertTrue(keys.get(i - 1) < keys.get(i));
+            }
+        }
+        try (Stream<KeyValuePair> stream = db.parallelScan(Bytes.toBytes(22), Bytes.toBytes(3022))) {
+            assertThat(stream.count(), equalTo(2999L));
+        }
+    }
+    
+    @Test
+    public void testRowCache() throws IOException {
+        db.close();
+        Config config = Config.builder().dataDir(folder.getRoot().getAbsolutePath()).maxMemstoreSize(2 * 1024 * 1024).flushMaxRetries(1).maxDiskFiles(10).maxThreadPoolSize(5)
+                .rowCacheSize(1024 * 1024).build();
+        db = DKV.create(config).open();
+        byte[] key = Bytes.toBytes("key");
+        assertThat(db.get(key), nullValue());
+        db.put(key, Bytes.toBytes(1));
+        assertThat(Bytes.toInt(db.get(key).getValue()), equalTo(1));
+        assertThat(Bytes.toInt(db.get(key).getValue()), equalTo(1));
+        db.put(key, Bytes.toBytes(2));
+        assertThat(Bytes.toInt(db.get(key).getValue()), equalTo(2));
+        db.delete(key);
+        assertThat(db.get(key), nullValue());
+        assertThat(db.get(key), nullValue());
+    }
+    
+    @Test
+    public void testScanPrefix() throws IOException {
+        db.close();
+        Config config = Config.builder().dataDir(folder.getRoot().getAbsolutePath()).maxMemstoreSize(2 * 1024 * 1024).flushMaxRetries(1).maxDiskFiles(10).maxThreadPoolSize(5)
+                .prefixExtractor(new DelimiterPrefixExtractor((byte) '|', 1)).build();
+        db = DKV.create(config).open();
+        for (String tenant : new String[] {"a", "b", "c"}) {
+            for (int i = 0; i < 10; i++) {
+                db.put(Bytes.toBytes(tenant + "|" + i), Bytes.toBytes(i));
+            }
+        }
+        db.delete(Bytes.toBytes("b|5"));
+        assertThat(countElements(db.scanPrefix(Bytes.toBytes("b|"))), equalTo(9));
+        assertThat(countElements(db.scanPrefix(Bytes.toBytes("b|1"))), equalTo(1));
+        assertThat(countElements(db.scanPrefix(Bytes.toBytes("d|"))), equalTo(0));
+        assertThat(countElements(db.scanPrefix(Bytes.toBytes("b"))), equalTo(9));
+    }
+    
+    @Test
+    public void testReopen() throws IOException {
+        final byte[] key = Bytes.toBytes("key");
+        db.put(key, Bytes.toBytes(1));
+        db.close();
+        // flush MemStore into a SSTable file, the database continues after its sequence id when it's reopened
+        Config config = Config.builder().dataDir(folder.getRoot().getAbsolutePath()).maxMemstoreSize(1).flushMaxRetries(1).maxDiskFiles(10).maxThreadPoolSize(5).build();
+        db = DKV.create(config).open();
+        db.put(key, Bytes.toBytes(2));
+        db.close();
+        
+        db = DKV.create(config).open();
+        db.put(key, Bytes.toBytes(3));
+        assertThat(Bytes.toInt(db.get(key).getValue()), equalTo(3));
+        assertThat(Bytes.toInt(db.multiGet(Collections.singletonList(key)).get(0).getValue()), equalTo(3));
+    }
+    
+    @Test
+    public void testDeleteRange() throws IOException {
+        for (int i = 0; i < 100; i++) {
+            db.put(Bytes.toBytes(i), Bytes.toBytes(i));
+        }
+        final Snapshot snapshot = db.getSnapshot();
+        db.deleteRange(Bytes.toBytes(10), Bytes.toBytes(90));
+        db.put(Bytes.toBytes(50), Bytes.toBytes(50));
+        
+        assertThat(db.get(Bytes.toBytes(10)), nullValue());
+        assertThat(db.get(Bytes.toBytes(9)).getValue(), equalTo(Bytes.toBytes(9)));
+        assertThat(db.get(Bytes.toBytes(90)).getValue(), equalTo(Bytes.toBytes(90)));
+        // put after the range deletion is visible
+        assertThat(db.get(Bytes.toBytes(50)).getValue(), equalTo(Bytes.toBytes(50)));
+        assertThat(countElements(db.scan()), equalTo(21));
+        assertThat(countElements(db.reverseScan(Bytes.EMPTY_BYTES, Bytes.EMPTY_BYTES)), equalTo(21));
+        List<KeyValuePair> result = db.multiGet(Stream.of(5, 20, 50).map(Bytes::toBytes).collect(Collectors.toList()));
+        assertThat(result.get(0).getValue(), equalTo(Bytes.toBytes(5)));
+        assertThat(result.get(1), nullValue());
+        assertThat(result.get(2).getValue(), equalTo(Bytes.toBytes(50)));
+        // the snapshot before the range deletion still sees the keys
+        assertThat(countElements(db.scan(Bytes.EMPTY_BYTES, Bytes.EMPTY_BYTES, snapshot)), equalTo(100));
+        snapshot.close();
+        
+        // the key and the range tombstone are flushed into different SSTable files
+        db.close();
+        Config config = Config.builder().dataDir(folder.getRoot().getAbsolutePath()).maxMemstoreSize(1).flushMaxRetries(1).maxDiskFiles(10).maxThreadPoolSize(5).build();
+        db = DKV.create(config).open();
+        db.put(Bytes.toBytes(20), Bytes.toBytes(20));
+        db.close();
+        db = DKV.create(config).open();
+        db.deleteRange(Bytes.toBytes(10), Bytes.toBytes(90));
+        db.close();
+        
+        db = DKV.create(config).open();
+        assertThat(db.get(Bytes.toBytes(20)), nullValue());
+        assertThat(countElements(db.scan()), equalTo(0));
+        db.put(Bytes.toBytes(20), Bytes.toBytes(21));
+        assertThat(db.get(Bytes.toBytes(20)).getValue(), equalTo(Bytes.toBytes(21)));
+    }
+    
+    @Test
+    public void testDeleteRangeWithoutStop() throws IOException {
+        for (int i = 0; i < 100; i++) {
+            db.put(Bytes.toBytes(i), Bytes.toBytes(i));
+        }
+        db.deleteRange(Bytes.toBytes(90), Bytes.EMPTY_BYTES);
+        assertThat(db.get(Bytes.toBytes(99)), nullValue());
+        assertThat(countElements(db.scan()), equalTo(90));
+        
+        // the range tombstone is flushed into a file whose key range ends at its start key
+        db.close();
+        Config config = Config.builder().dataDir(folder.getRoot().getAbsolutePath()).maxMemstoreSize(1).flushMaxRetries(1).maxDiskFiles(10).maxThreadPoolSize(5).build();
+        db = DKV.create(config).open();
+        db.put(Bytes.toBytes(40), Bytes.toBytes(40));
+        db.close();
+        db = DKV.create(config).open();
+        db.put(Bytes.toBytes(60), Bytes.toBytes(60));
+        db.close();
+        db = DKV.create(config).open();
+        db.deleteRange(Bytes.toBytes(50), Bytes.EMPTY_BYTES);
+        db.close();
+        
+        db = DKV.create(config).open();
+        assertThat(db.get(Bytes.toBytes(60)), nullValue());
+        assertThat(db.get(Bytes.toBytes(40)).getValue(), equalTo(Bytes.toBytes(40)));
+        assertThat(countElements(db.scan(Bytes.toBytes(55), Bytes.EMPTY_BYTES)), equalTo(0));
+        assertThat(countElements(db.scan()), equalTo(1));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testDeleteEmptyRange() throws IOException {
+        db.deleteRange(Bytes.toBytes(2), Bytes.toBytes(1));
+    }
+    
+    @Test(expected = IllegalStateException.class)
+    public void testMergeWithoutMergeOperator() throws IOException {
+        db.merge(Bytes.toBytes(1), Bytes.toBytes(1L));
+    }
+    
+    @Test
+    public void testMerge() throws IOException {
+        db.close();
+        Config config = Config.builder().dataDir(folder.getRoot().getAbsolutePath()).maxMemstoreSize(2 * 1024 * 1024).flushMaxRetries(1).maxDiskFiles(10).maxThreadPoolSize(5)
+                .mergeOperator(new CounterMergeOperator()).build();
+        db = DKV.create(config).open();
+        for (int i = 0; i < 10; i++) {
+            if (i % 2 == 0) {
+                db.put(Bytes.toBytes(i), Bytes.toBytes(100L));
+            }
+            db.merge(Bytes.toBytes(i), Bytes.toBytes(1L));
+            db.merge(Bytes.toBytes(i), Bytes.toBytes(2L));
+        }
+        final Snapshot snapshot = db.getSnapshot();
+        for (int i = 0; i < 10; i++) {
+            db.merge(Bytes.toBytes(i), Bytes.toBytes(4L));
+        }
+        db.delete(Bytes.toBytes(1));
+        db.merge(Bytes.toBytes(1), Bytes.toBytes(8L));
+        db.deleteRange(Bytes.toBytes(5), Bytes.toBytes(7));
+        db.merge(Bytes.toBytes(6), Bytes.toBytes(16L));
+        
+        assertThat(db.get(Bytes.toBytes(0)).getValue(), equalTo(Bytes.toBytes(107L)));
+        assertThat(db.get(Bytes.toBytes(3)).getValue(), equalTo(Bytes.toBytes(7L)));
+        // operands older than the delete or range tombstone are discarded
+        assertThat(db.get(Bytes.toBytes(1)).getValue(), equalTo(Bytes.toBytes(8L)));
+        assertThat(db.get(Bytes.toBytes(5)), nullValue());
+        assertThat(db.get(Bytes.toBytes(6)).getValue(), equalTo(Bytes.toBytes(16L)));
+        List<KeyValuePair> result = db.multiGet(Stream.of(0, 5, 9).map(Bytes::toBytes).collect(Collectors.toList()));
+        assertThat(result.get(0).getValue(), equalTo(Bytes.toBytes(107L)));
+        assertThat(result.get(1), nullValue());
+        assertThat(result.get(2).getValue(), equalTo(Bytes.toBytes(7L)));
+        assertThat(countElements(db.scan()), equalTo(9));
+        Iterator<KeyValuePair> iterator = db.reverseScan(Bytes.EMPTY_BYTES, Bytes.EMPTY_BYTES);
+        assertThat(iterator.next().getValue(), equalTo(Bytes.toBytes(7L)));
+        assertThat(countElements(iterator), equalTo(8));
+        // the snapshot sees the operands merged before it
+        assertThat(db.get(Bytes.toBytes(0), snapshot).getValue(), equalTo(Bytes.toBytes(103L)));
+        assertThat(db.get(Bytes.toBytes(1), snapshot).getValue(), equalTo(Bytes.toBytes(3L)));
+        snapshot.close();
+        
+        // the put and the operands are flushed into different SSTable files, and merged while reading
+        db.close();
+        config = Config.builder().dataDir(folder.getRoot().getAbsolutePath()).maxMemstoreSize(1).flushMaxRetries(1).maxDiskFiles(10).maxThreadPoolSize(5)
+                .mergeOperator(new CounterMergeOperator()).build();
+        db = DKV.create(config).open();
+        db.put(Bytes.toBytes(20), Bytes.toBytes(100L));
+        db.close();
+        for (long operand = 1; operand <= 2; operand++) {
+            db = DKV.create(config).open();
+            db.merge(Bytes.toBytes(20), Bytes.toBytes(operand));
+            db.close();
+        }
+        db = DKV.create(config).open();
+        assertThat(db.get(Bytes.toBytes(20)).getValue(), equalTo(Bytes.toBytes(103L)));
+        db.merge(Bytes.toBytes(20), Bytes.toBytes(4L));
+        assertThat(db.get(Bytes.toBytes(20)).getValue(), equalTo(Bytes.toBytes(107L)));
+    }
+    
     private int countElements(final Iterator<KeyValuePair> iterator) throws IOException {
         int count = 0;
         while (iterator.hasNext()) {
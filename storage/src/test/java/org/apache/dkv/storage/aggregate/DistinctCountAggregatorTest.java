@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dkv.storage.aggregate;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import org.apache.dkv.storage.bean.KeyValuePair;
+import org.apache.dkv.storage.bean.KeyValuePair.OperationType;
+import org.apache.dkv.storage.bytes.Bytes;
+import org.junit.Test;
+
+public class DistinctCountAggregatorTest {
+    
+    @Test
+    public void testEmpty() {
+        assertThat(new DistinctCountAggregator().getResult(), equalTo(0L));
+    }
+    
+    @Test
+    public void testSmallCardinality() {
+        DistinctCountAggregator aggregator = new DistinctCountAggregator();
+        for (int i = 0; i < 1000; i++) {
+            aggregator.add(KeyValuePair.create(Bytes.toBytes(i), Bytes.toBytes(i % 100), OperationType.Put, i));
+        }
+        assertThat(aggregator.getResult().doubleValue(), closeTo(100, 2));
+    }
+    
+    @Test
+    public void testLargeCardinality() {
+        DistinctCountAggregator aggregator = new DistinctCountAggregator();
+        for (int i = 0; i < 200000; i++) {
+            aggregator.add(KeyValuePair.create(Bytes.toBytes(i), Bytes.toBytes(i), OperationType.Put, i));
+        }
+        // the standard error is about 0.8% with the default precision
+        assertThat(aggregator.getResult().doubleValue(), closeTo(200000, 200000 * 0.04));
+    }
+}
@@ -20,9 +20,11 @@ package org.apache.dkv.storage.bean;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.MatcherAssert.assertThat;
 import java.io.IOException;
 import org.apache.dkv.storage.bean.KeyValuePair.OperationType;
+import org.apache.dkv.storage.bytes.ByteSlice;
 import org.apache.dkv.storage.bytes.Bytes;
 import org.junit.Test;
 
@@ -61,6 +63,52 @@ public class KeyValuePairTest {
     @Test
     public void testGetSerializeSize() {
         KeyValuePair keyValuePair = KeyValuePair.create(Bytes.toBytes(1), Bytes.toBytes(1), OperationType.Put, 1);
-        assertThat(keyValuePair.getSerializeSize(), equalTo(4 + 4 + 8 + 1 + 4 + 4));
+        assertThat(keyValuePair.getSerializeSize(), equalTo(1 + 1 + 1 + 4 + 4));
+        assertThat(keyValuePair.getSerializeSize(KeyValuePair.FIXED_LENGTH_FORMAT), equalTo(4 + 4 + 8 + 1 + 4 + 4));
+    }
+    
+    @Test
+    public void testParseFixedLengthFormat() throws IOException {
+        byte[] key = Bytes.toBytes("name");
+        byte[] value = Bytes.toBytes("dkv");
+        byte[] bytes = Bytes.toBytes(Bytes.toBytes(key.length + 1 + 8), Bytes.toBytes(value.length));
+        bytes = Bytes.toBytes(bytes, key);
+        bytes = Bytes.toBytes(bytes, new byte[]{OperationType.Delete.getCode()});
+        bytes = Bytes.toBytes(Bytes.toBytes(bytes, Bytes.toBytes(10L)), value);
+        KeyValuePair actual = KeyValuePair.parseFrom(bytes, 0, KeyValuePair.FIXED_LENGTH_FORMAT);
+        assertThat(actual.getKey(), equalTo(key));
+        assertThat(actual.getValue(), equalTo(value));
+        assertThat(actual.getOperationType(), equalTo(OperationType.Delete));
+        assertThat(actual.getSequenceId(), equalTo(10L));
+        assertThat(actual.getSerializeSize(KeyValuePair.FIXED_LENGTH_FORMAT), equalTo(bytes.length));
+    }
+    
+    @Test
+    public void testToBytesWithLargeSequenceId() throws IOException {
+        KeyValuePair keyValuePair = KeyValuePair.createDelete(Bytes.toBytes("name"), 1L << 60);
+        KeyValuePair actual = KeyValuePair.parseFrom(keyValuePair.toBytes());
+        assertThat(actual.getOperationType(), equalTo(OperationType.Delete));
+        assertThat(actual.getSequenceId(), equalTo(1L << 60));
+    }
+    
+    @Test
+    public void testEncodedKeyValue() throws IOException {
+        KeyValuePair keyValuePair = KeyValuePair.createPut(Bytes.toBytes("name"), Bytes.toBytes("dkv"), 10);
+        byte[] bytes = Bytes.toBytes(Bytes.toBytes(1), keyValuePair.toBytes());
+        EncodedKeyValue actual = EncodedKeyValue.decode(ByteSlice.wrap(bytes), 4, KeyValuePair.CURRENT_FORMAT);
+        assertThat(actual.getSize(), equalTo(keyValuePair.getSerializeSize()));
+        assertThat(actual.getKeySlice(), equalTo(ByteSlice.wrap(Bytes.toBytes("name"))));
+        assertThat(actual.getOperationType(), equalTo(OperationType.Put));
+        assertThat(actual.getSequenceId(), equalTo(10L));
+        assertThat(actual.compareKey(Bytes.toBytes("name")), equalTo(0));
+        assertThat(actual.compareTo(keyValuePair), equalTo(0));
+        assertThat(actual.compareTo(KeyValuePair.createPut(Bytes.toBytes("name"), Bytes.EMPTY_BYTES, 9)) < 0, equalTo(true));
+        // the value stays a view of the encoded bytes until it's materialized
+        KeyValuePair view = actual.toKeyValuePairWithValueView();
+        assertThat(view.getValueSlice().getArray(), sameInstance(bytes));
+        assertThat(view.getValue(), equalTo(Bytes.toBytes("dkv")));
+        assertThat(view.materialize().getValueSlice().getArray(), not(sameInstance(bytes)));
+        assertThat(view.materialize(), equalTo(keyValuePair));
+        assertThat(actual.toKeyValuePair().getValue(), equalTo(Bytes.toBytes("dkv")));
     }
 }
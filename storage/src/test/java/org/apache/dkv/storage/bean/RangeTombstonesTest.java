@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dkv.storage.bean;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import org.apache.dkv.storage.bytes.Bytes;
+import org.junit.Test;
+
+public class RangeTombstonesTest {
+    
+    @Test
+    public void testOverlappingTombstones() {
+        RangeTombstones tombstones = new RangeTombstones();
+        assertThat(tombstones.isEmpty(), equalTo(true));
+        tombstones.add(KeyValuePair.createDeleteRange(Bytes.toBytes("b"), Bytes.toBytes("f"), 10));
+        tombstones.add(KeyValuePair.createDeleteRange(Bytes.toBytes("d"), Bytes.toBytes("h"), 20));
+        tombstones.add(KeyValuePair.createDeleteRange(Bytes.toBytes("c"), Bytes.toBytes("e"), 5));
+        assertThat(tombstones.getSequenceId(Bytes.toBytes("a")), equalTo(0L));
+        assertThat(tombstones.getSequenceId(Bytes.toBytes("b")), equalTo(10L));
+        assertThat(tombstones.getSequenceId(Bytes.toBytes("c")), equalTo(10L));
+        assertThat(tombstones.getSequenceId(Bytes.toBytes("d")), equalTo(20L));
+        assertThat(tombstones.getSequenceId(Bytes.toBytes("g")), equalTo(20L));
+        // the stop key is excluded
+        assertThat(tombstones.getSequenceId(Bytes.toBytes("h")), equalTo(0L));
+        
+        assertThat(tombstones.isDeleted(KeyValuePair.createPut(Bytes.toBytes("e"), Bytes.toBytes("e"), 15)), equalTo(true));
+        assertThat(tombstones.isDeleted(KeyValuePair.createPut(Bytes.toBytes("c"), Bytes.toBytes("c"), 15)), equalTo(false));
+        assertThat(tombstones.getMinSequenceId(Bytes.toBytes("b"), Bytes.toBytes("g")), equalTo(10L));
+        assertThat(tombstones.getMinSequenceId(Bytes.toBytes("a"), Bytes.toBytes("g")), equalTo(0L));
+        assertThat(tombstones.getMinSequenceId(Bytes.toBytes("d"), Bytes.toBytes("h")), equalTo(0L));
+    }
+    
+    @Test
+    public void testUnboundedTombstone() {
+        RangeTombstones tombstones = new RangeTombstones();
+        tombstones.add(KeyValuePair.createDeleteRange(Bytes.toBytes("b"), Bytes.toBytes("f"), 10));
+        tombstones.add(KeyValuePair.createDeleteRange(Bytes.toBytes("d"), Bytes.EMPTY_BYTES, 20));
+        assertThat(tombstones.getSequenceId(Bytes.toBytes("a")), equalTo(0L));
+        assertThat(tombstones.getSequenceId(Bytes.toBytes("c")), equalTo(10L));
+        assertThat(tombstones.getSequenceId(Bytes.toBytes("e")), equalTo(20L));
+        assertThat(tombstones.getSequenceId(Bytes.toBytes("zzz")), equalTo(20L));
+        assertThat(tombstones.isDeleted(KeyValuePair.createPut(Bytes.toBytes("z"), Bytes.toBytes("z"), 15)), equalTo(true));
+        assertThat(tombstones.getMinSequenceId(Bytes.toBytes("b"), Bytes.toBytes("z")), equalTo(10L));
+        
+        KeyValuePair tombstone = KeyValuePair.createDeleteRange(Bytes.toBytes("b"), Bytes.EMPTY_BYTES, 1);
+        assertThat(RangeTombstones.overlaps(tombstone, Bytes.toBytes("z"), Bytes.EMPTY_BYTES), equalTo(true));
+        assertThat(RangeTombstones.overlaps(tombstone, Bytes.toBytes("a"), Bytes.toBytes("b")), equalTo(false));
+    }
+    
+    @Test
+    public void testOverlaps() {
+        KeyValuePair tombstone = KeyValuePair.createDeleteRange(Bytes.toBytes("b"), Bytes.toBytes("d"), 1);
+        assertThat(RangeTombstones.overlaps(tombstone, Bytes.EMPTY_BYTES, Bytes.EMPTY_BYTES), equalTo(true));
+        assertThat(RangeTombstones.overlaps(tombstone, Bytes.toBytes("c"), Bytes.toBytes("z")), equalTo(true));
+        assertThat(RangeTombstones.overlaps(tombstone, Bytes.toBytes("d"), Bytes.EMPTY_BYTES), equalTo(false));
+        assertThat(RangeTombstones.overlaps(tombstone, Bytes.toBytes("a"), Bytes.toBytes("b")), equalTo(false));
+    }
+}
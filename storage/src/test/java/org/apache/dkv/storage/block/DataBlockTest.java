@@ -46,4 +46,21 @@ public class DataBlockTest {
         BloomFilter bloom = new BloomFilter(DataBlock.BLOOM_FILTER_HASH_COUNT, DataBlock.BLOOM_FILTER_BITS_PER_KEY);
         assertThat(bloom.generate(bytes), equalTo(dataBlockFromByte.getBloomFilter()));
     }
+    
+    @Test
+    public void testResetAndGrow() throws IOException {
+        DataBlock dataBlock = new DataBlock();
+        dataBlock.append(KeyValuePair.createPut(Bytes.toBytes(0), new byte[100 * 1024], 1L));
+        byte[] buffer = dataBlock.serialize();
+        assertThat(buffer.length, equalTo(dataBlock.getSize()));
+        assertThat(DataBlock.parseFrom(buffer, 0, buffer.length).getKeyValueCount(), equalTo(1));
+        
+        // the block buffer is reused by the next block
+        dataBlock.reset();
+        assertThat(dataBlock.isEmpty(), equalTo(true));
+        dataBlock.append(KeyValuePair.createPut(Bytes.toBytes(1), Bytes.toBytes(1), 2L));
+        buffer = dataBlock.serialize();
+        DataBlock dataBlockFromByte = DataBlock.parseFrom(buffer, 0, buffer.length);
+        assertThat(dataBlockFromByte.getKeyValuePairs().get(0), equalTo(KeyValuePair.createPut(Bytes.toBytes(1), Bytes.toBytes(1), 2L)));
+    }
 }
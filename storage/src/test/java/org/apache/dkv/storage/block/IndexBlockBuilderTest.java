@@ -20,7 +20,6 @@ package org.apache.dkv.storage.block;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.MatcherAssert.assertThat;
 import java.io.IOException;
-import org.apache.dkv.storage.bean.KeyValuePair;
 import org.apache.dkv.storage.bytes.Bytes;
 import org.junit.Test;
 
@@ -29,17 +28,40 @@ public class IndexBlockBuilderTest {
     @Test
     public void testDataBlockMetaBuilder() throws IOException {
         IndexBlockBuilder builder = new IndexBlockBuilder();
-        builder.append(KeyValuePair.createPut(Bytes.toBytes(1), Bytes.toBytes(1), 1), 100, 100, Bytes.EMPTY_BYTES);
-        builder.append(KeyValuePair.createPut(Bytes.toBytes(2), Bytes.toBytes(2), 2), 200, 101, Bytes.EMPTY_BYTES);
+        builder.append(Bytes.toBytes(1), 100, 100, Bytes.EMPTY_BYTES, Bytes.EMPTY_BYTES);
+        builder.append(Bytes.toBytes(2), 200, 101, Bytes.EMPTY_BYTES, Bytes.EMPTY_BYTES);
     
-        byte[] result = builder.serialize();
+        byte[] result = builder.serializePartitions(1000);
         IndexBlock indexBlock1 = IndexBlock.parseFrom(result, 0);
         assertThat(indexBlock1.getBlockOffset(), equalTo(100L));
         assertThat(indexBlock1.getBlockSize(), equalTo(100L));
-        assertThat(indexBlock1.getLastKv(), equalTo(KeyValuePair.createPut(Bytes.toBytes(1), Bytes.toBytes(1), 1)));
-        IndexBlock indexBlock2 = IndexBlock.parseFrom(result, result.length / 2);
+        assertThat(indexBlock1.getSeparator(), equalTo(Bytes.toBytes(1)));
+        IndexBlock indexBlock2 = IndexBlock.parseFrom(result, indexBlock1.getSerializeSize());
         assertThat(indexBlock2.getBlockOffset(), equalTo(200L));
         assertThat(indexBlock2.getBlockSize(), equalTo(101L));
-        assertThat(indexBlock2.getLastKv(), equalTo(KeyValuePair.createPut(Bytes.toBytes(2), Bytes.toBytes(2), 2)));
+        assertThat(indexBlock2.getSeparator(), equalTo(Bytes.toBytes(2)));
+        
+        // all index blocks fit in one partition
+        byte[] topLevelIndex = builder.serializeTopLevelIndex();
+        IndexBlock partition = IndexBlock.parseFrom(topLevelIndex, 0);
+        assertThat(partition.getSerializeSize(), equalTo(topLevelIndex.length));
+        assertThat(partition.getBlockOffset(), equalTo(1000L));
+        assertThat(partition.getBlockSize(), equalTo((long) result.length));
+        assertThat(partition.getSeparator(), equalTo(indexBlock2.getSeparator()));
+    }
+    
+    @Test
+    public void testPartitions() throws IOException {
+        IndexBlockBuilder builder = new IndexBlockBuilder(1);
+        builder.append(Bytes.toBytes(1), 100, 100, Bytes.EMPTY_BYTES, Bytes.EMPTY_BYTES);
+        builder.append(Bytes.toBytes(2), 200, 101, Bytes.EMPTY_BYTES, Bytes.EMPTY_BYTES);
+        byte[] result = builder.serializePartitions(0);
+        byte[] topLevelIndex = builder.serializeTopLevelIndex();
+        IndexBlock partition1 = IndexBlock.parseFrom(topLevelIndex, 0);
+        IndexBlock partition2 = IndexBlock.parseFrom(topLevelIndex, partition1.getSerializeSize());
+        assertThat(partition1.getBlockOffset(), equalTo(0L));
+        assertThat(partition2.getBlockOffset(), equalTo(partition1.getBlockSize()));
+        assertThat(partition1.getBlockSize() + partition2.getBlockSize(), equalTo((long) result.length));
+        assertThat(partition2.getSeparator(), equalTo(Bytes.toBytes(2)));
     }
 }
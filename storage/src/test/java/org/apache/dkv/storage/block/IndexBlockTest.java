@@ -20,7 +20,6 @@ package org.apache.dkv.storage.block;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.MatcherAssert.assertThat;
 import java.io.IOException;
-import org.apache.dkv.storage.bean.KeyValuePair;
 import org.apache.dkv.storage.bytes.Bytes;
 import org.junit.Test;
 
@@ -28,16 +27,18 @@ public class IndexBlockTest {
     
     @Test
     public void testDataBlockMeta() throws IOException {
-        KeyValuePair lastKv = KeyValuePair.createPut(Bytes.toBytes("abc"), Bytes.toBytes("abc"), 1L);
+        byte[] separator = Bytes.toBytes("abc");
         long offset = 1024;
         long size = 1024;
         byte[] bloomFilter = Bytes.toBytes("bloomFilter");
-        IndexBlock indexBlock = new IndexBlock(lastKv, offset, size, bloomFilter);
+        byte[] prefixBloomFilter = Bytes.toBytes("prefixBloomFilter");
+        IndexBlock indexBlock = new IndexBlock(separator, offset, size, bloomFilter, prefixBloomFilter);
         byte[] buffer = indexBlock.toBytes();
         IndexBlock indexBlockFromBytes = IndexBlock.parseFrom(buffer, 0);
-        assertThat(indexBlockFromBytes.getLastKv(), equalTo(lastKv));
+        assertThat(indexBlockFromBytes.getSeparator(), equalTo(separator));
         assertThat(indexBlockFromBytes.getBlockOffset(), equalTo(offset));
         assertThat(indexBlockFromBytes.getBlockSize(), equalTo(size));
         assertThat(indexBlockFromBytes.getBloomFilter(), equalTo(bloomFilter));
+        assertThat(indexBlockFromBytes.getPrefixBloomFilter(), equalTo(prefixBloomFilter));
     }
 }
@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dkv.storage.block;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import org.apache.dkv.storage.bytes.Bytes;
+import org.junit.Test;
+
+public class MetaBlockTest {
+
+    @Test
+    public void testMetaBlock() {
+        MetaBlock metaBlock = new MetaBlock(Bytes.toBytes("abc"), Bytes.toBytes("xyz"));
+        byte[] buffer = metaBlock.serialize();
+        assertThat(buffer.length, equalTo(metaBlock.getSerializeSize()));
+        
+        MetaBlock metaBlockFromBytes = MetaBlock.parseFrom(buffer, 0);
+        assertThat(metaBlockFromBytes.getFirstKey(), equalTo(metaBlock.getFirstKey()));
+        assertThat(metaBlockFromBytes.getLastKey(), equalTo(metaBlock.getLastKey()));
+        assertThat(metaBlockFromBytes.getPrefixBloomFilter(), equalTo(Bytes.EMPTY_BYTES));
+    }
+    
+    @Test
+    public void testMetaBlockWithPrefixBloomFilter() {
+        MetaBlock metaBlock = new MetaBlock(Bytes.toBytes("abc"), Bytes.toBytes("xyz"), Bytes.toBytes("bloom"));
+        MetaBlock metaBlockFromBytes = MetaBlock.parseFrom(metaBlock.serialize(), 0);
+        assertThat(metaBlockFromBytes.getPrefixBloomFilter(), equalTo(Bytes.toBytes("bloom")));
+    }
+    
+    @Test
+    public void testMetaBlockWithProperties() {
+        TableProperties properties = new TableProperties(3, 300, 10, 2, 1000, 1024);
+        MetaBlock metaBlock = new MetaBlock(Bytes.toBytes("abc"), Bytes.toBytes("xyz"), Bytes.EMPTY_BYTES, Bytes.toBytes("bloom"), properties);
+        byte[] buffer = metaBlock.serialize();
+        assertThat(buffer.length, equalTo(metaBlock.getSerializeSize()));
+        
+        MetaBlock metaBlockFromBytes = MetaBlock.parseFrom(buffer, 0);
+        assertThat(metaBlockFromBytes.getLastKey(), equalTo(Bytes.toBytes("xyz")));
+        assertThat(metaBlockFromBytes.getBloomFilter(), equalTo(Bytes.toBytes("bloom")));
+        assertThat(metaBlockFromBytes.getProperties().getMinSequenceId(), equalTo(3L));
+        assertThat(metaBlockFromBytes.getProperties().getMaxSequenceId(), equalTo(300L));
+        assertThat(metaBlockFromBytes.getProperties().getEntryCount(), equalTo(10L));
+        assertThat(metaBlockFromBytes.getProperties().getDeleteCount(), equalTo(2L));
+        assertThat(metaBlockFromBytes.getProperties().getRawSize(), equalTo(1000L));
+        assertThat(metaBlockFromBytes.getProperties().getDataSize(), equalTo(1024L));
+    }
+    
+    @Test
+    public void testMetaBlockWithRangeDelBlock() {
+        TableProperties properties = new TableProperties(3, 300, 10, 2, 1000, 1024);
+        MetaBlock metaBlock = new MetaBlock(Bytes.toBytes("abc"), Bytes.toBytes("xyz"), Bytes.EMPTY_BYTES, Bytes.toBytes("bloom"), properties, 2048, 64, Bytes.toBytes("b"), Bytes.toBytes("x"));
+        byte[] buffer = metaBlock.serialize();
+        assertThat(buffer.length, equalTo(metaBlock.getSerializeSize()));
+        
+        MetaBlock metaBlockFromBytes = MetaBlock.parseFrom(buffer, 0);
+        assertThat(metaBlockFromBytes.getProperties().getDataSize(), equalTo(1024L));
+        assertThat(metaBlockFromBytes.getRangeDelBlockOffset(), equalTo(2048L));
+        assertThat(metaBlockFromBytes.getRangeDelBlockSize(), equalTo(64L));
+        assertThat(metaBlockFromBytes.getRangeDelStart(), equalTo(Bytes.toBytes("b")));
+        assertThat(metaBlockFromBytes.getRangeDelStop(), equalTo(Bytes.toBytes("x")));
+        // no range-del block
+        assertThat(MetaBlock.parseFrom(new MetaBlock(Bytes.toBytes("abc"), Bytes.toBytes("xyz"), Bytes.EMPTY_BYTES, Bytes.toBytes("bloom"), properties).serialize(), 0).getRangeDelBlockSize(), equalTo(0L));
+    }
+    
+    @Test
+    public void testLegacyMetaBlock() {
+        // meta blocks of old files end after the prefix bloom filter
+        MetaBlock metaBlockFromBytes = MetaBlock.parseFrom(new MetaBlock(Bytes.toBytes("abc"), Bytes.toBytes("xyz")).serialize(), 0);
+        assertThat(metaBlockFromBytes.getBloomFilter(), equalTo(Bytes.EMPTY_BYTES));
+        assertThat(metaBlockFromBytes.getProperties(), nullValue());
+    }
+}
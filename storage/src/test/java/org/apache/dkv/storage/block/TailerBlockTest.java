@@ -19,19 +19,54 @@ package org.apache.dkv.storage.block;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.MatcherAssert.assertThat;
+import org.apache.dkv.storage.bean.KeyValuePair;
+import org.apache.dkv.storage.bytes.Bytes;
 import org.junit.Test;
 
 public class TailerBlockTest {
 
     @Test
     public void testTailerBlock() {
-        TailerBlock tailerBlock1 = new TailerBlock(100, 4, 50, 50);
+        TailerBlock tailerBlock1 = new TailerBlock(100, 4, 50, 30, 80, 20);
         TailerBlock tailerBlock2 = TailerBlock.parseFrom(tailerBlock1.serialize(), 0);
         
         assertThat(tailerBlock2.getFileSize(), equalTo(tailerBlock1.getFileSize()));
         assertThat(tailerBlock2.getBlockCount(), equalTo(tailerBlock1.getBlockCount()));
         assertThat(tailerBlock2.getIndexBlockOffset(), equalTo(tailerBlock1.getIndexBlockOffset()));
         assertThat(tailerBlock2.getIndexBlockSize(), equalTo(tailerBlock1.getIndexBlockSize()));
+        assertThat(tailerBlock2.getMetaBlockOffset(), equalTo(tailerBlock1.getMetaBlockOffset()));
+        assertThat(tailerBlock2.getMetaBlockSize(), equalTo(tailerBlock1.getMetaBlockSize()));
         assertThat(tailerBlock2.getMagicNumber(), equalTo(tailerBlock1.getMagicNumber()));
+        assertThat(tailerBlock2.getFormatVersion(), equalTo(KeyValuePair.CURRENT_FORMAT));
+    }
+    
+    @Test
+    public void testLegacyTailerBlock() {
+        // the meta block is right before the legacy tailer block
+        byte[] buffer = new TailerBlock(152, 4, 50, 30, 80, 20).serialize();
+        // legacy tailer block has no format version, and is read with the 4 bytes before it
+        byte[] legacy = Bytes.toBytes(Bytes.toBytes(-1), Bytes.slice(buffer, 0, TailerBlock.LEGACY_TAILER_SIZE - 8));
+        legacy = Bytes.toBytes(legacy, Bytes.toBytes(TailerBlock.LEGACY_DISK_FILE_MAGIC));
+        TailerBlock tailerBlock = TailerBlock.parseFrom(legacy, 0);
+        assertThat(tailerBlock.getFileSize(), equalTo(152L));
+        assertThat(tailerBlock.getMetaBlockSize(), equalTo(20L));
+        assertThat(tailerBlock.getFormatVersion(), equalTo(KeyValuePair.FIXED_LENGTH_FORMAT));
+    }
+    
+    @Test
+    public void testBaselineTailerBlock() {
+        // baseline tailer block has no meta block, and is read with the 20 bytes of index before it
+        byte[] baseline = Bytes.toBytes(new byte[20], Bytes.toBytes(116L));
+        baseline = Bytes.toBytes(baseline, Bytes.toBytes(4));
+        baseline = Bytes.toBytes(baseline, Bytes.toBytes(50L));
+        baseline = Bytes.toBytes(baseline, Bytes.toBytes(30L));
+        baseline = Bytes.toBytes(baseline, Bytes.toBytes(TailerBlock.LEGACY_DISK_FILE_MAGIC));
+        TailerBlock tailerBlock = TailerBlock.parseFrom(baseline, 0);
+        assertThat(tailerBlock.getFileSize(), equalTo(116L));
+        assertThat(tailerBlock.getBlockCount(), equalTo(4));
+        assertThat(tailerBlock.getIndexBlockOffset(), equalTo(50L));
+        assertThat(tailerBlock.getIndexBlockSize(), equalTo(30L));
+        assertThat(tailerBlock.getMetaBlockSize(), equalTo(0L));
+        assertThat(tailerBlock.isLegacy(), equalTo(true));
     }
 }
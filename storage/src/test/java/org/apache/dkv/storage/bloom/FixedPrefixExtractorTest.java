@@ -0,0 +1,35 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dkv.storage.bloom;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import org.apache.dkv.storage.bytes.Bytes;
+import org.junit.Test;
+
+public class FixedPrefixExtractorTest {
+
+    @Test
+    public void testExtract() {
+        PrefixExtractor extractor = new FixedPrefixExtractor(3);
+        assertThat(extractor.extract(Bytes.toBytes("abcdef")), equalTo(Bytes.toBytes("abc")));
+        assertThat(extractor.extract(Bytes.toBytes("abc")), equalTo(Bytes.toBytes("abc")));
+        assertThat(extractor.extract(Bytes.toBytes("ab")), nullValue());
+    }
+}
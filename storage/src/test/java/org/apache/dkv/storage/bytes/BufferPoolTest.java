@@ -0,0 +1,58 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dkv.storage.bytes;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import org.junit.Test;
+
+public class BufferPoolTest {
+    
+    @Test
+    public void testAcquireAndRelease() {
+        BufferPool pool = new BufferPool(1024 * 1024, 1024 * 1024);
+        byte[] buffer = pool.acquire(5000);
+        assertThat(buffer.length, equalTo(8192));
+        pool.release(buffer);
+        assertThat(pool.getPooledBytes(), equalTo(8192L));
+        // the same size class reuses the array
+        assertThat(pool.acquire(8000), sameInstance(buffer));
+        assertThat(pool.getPooledBytes(), equalTo(0L));
+        assertThat(pool.acquire(100).length, equalTo(4096));
+    }
+    
+    @Test
+    public void testNotPooled() {
+        BufferPool pool = new BufferPool(1024 * 1024, 16 * 1024);
+        // larger than the max size class
+        byte[] large = pool.acquire(1024 * 1024 + 1);
+        assertThat(large.length, equalTo(1024 * 1024 + 1));
+        pool.release(large);
+        assertThat(pool.getPooledBytes(), equalTo(0L));
+        // the pool is full
+        byte[] first = pool.acquire(16 * 1024);
+        byte[] second = pool.acquire(16 * 1024);
+        pool.release(first);
+        pool.release(second);
+        assertThat(pool.getPooledBytes(), equalTo(16 * 1024L));
+        assertThat(pool.acquire(16 * 1024), sameInstance(first));
+        assertThat(pool.acquire(16 * 1024), not(sameInstance(second)));
+    }
+}
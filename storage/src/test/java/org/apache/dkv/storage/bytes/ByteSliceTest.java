@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dkv.storage.bytes;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+import org.junit.Test;
+
+public class ByteSliceTest {
+    
+    @Test
+    public void testGetInteger() {
+        byte[] buffer = Bytes.toBytes(Bytes.toBytes(Bytes.toBytes(123456), Bytes.toBytes(-1L)), Bytes.toTwoBytes(0xFFFE));
+        ByteSlice slice = ByteSlice.wrap(buffer, 4, buffer.length - 4);
+        assertThat(ByteSlice.wrap(buffer).getInt(0), equalTo(123456));
+        assertThat(slice.getLong(0), equalTo(-1L));
+        assertThat(slice.getUnsignedShort(8), equalTo(0xFFFE));
+        assertThat(slice.slice(8, 2).getUnsignedShort(0), equalTo(0xFFFE));
+    }
+    
+    @Test
+    public void testGetVarint() {
+        byte[] buffer = new byte[12];
+        int pos = Bytes.putVarint(buffer, 2, 300);
+        ByteSlice slice = ByteSlice.wrap(buffer, 2, pos - 2);
+        assertThat(slice.getVarint(0), equalTo(300L));
+    }
+    
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testOutOfBounds() {
+        ByteSlice.wrap(new byte[8], 2, 4).getInt(1);
+    }
+    
+    @Test
+    public void testCompare() {
+        byte[] buffer = Bytes.toBytes("xabcabd");
+        ByteSlice abc = ByteSlice.wrap(buffer, 1, 3);
+        ByteSlice abd = ByteSlice.wrap(buffer, 4, 3);
+        assertThat(abc.compareTo(abd) < 0, equalTo(true));
+        assertThat(abc.slice(0, 2), equalTo(abd.slice(0, 2)));
+        assertThat(abc.slice(0, 2).hashCode(), equalTo(Bytes.hash(Bytes.toBytes("ab"))));
+        assertThat(abc, not(equalTo(abd)));
+        assertThat(abc.toBytes(), equalTo(Bytes.toBytes("abc")));
+    }
+}
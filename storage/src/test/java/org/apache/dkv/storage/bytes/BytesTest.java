@@ -63,6 +63,27 @@ public final class BytesTest {
         assertThat(Bytes.compare(new byte[]{0x00}, new byte[]{0x01}), equalTo(-1));
     }
     
+    @Test
+    public void testShortestSeparator() {
+        assertThat(Bytes.shortestSeparator(Bytes.toBytes("abcdef"), Bytes.toBytes("abzzz")), equalTo(Bytes.toBytes("abz")));
+        assertThat(Bytes.shortestSeparator(Bytes.toBytes("abc"), Bytes.toBytes("abd")), equalTo(Bytes.toBytes("abc")));
+        assertThat(Bytes.shortestSeparator(Bytes.toBytes("ab"), Bytes.toBytes("abcd")), equalTo(Bytes.toBytes("ab")));
+        assertThat(Bytes.shortestSeparator(Bytes.toBytes("b"), Bytes.toBytes("a")), equalTo(Bytes.toBytes("b")));
+    }
+    
+    @Test
+    public void testVarint() {
+        long[] values = {0, 1, 127, 128, 300, Integer.MAX_VALUE, Long.MAX_VALUE, -1};
+        for (long each : values) {
+            byte[] buffer = new byte[Bytes.varintSize(each)];
+            assertThat(Bytes.putVarint(buffer, 0, each), equalTo(buffer.length));
+            assertThat(Bytes.readVarint(buffer, 0), equalTo(each));
+        }
+        assertThat(Bytes.varintSize(127), equalTo(1));
+        assertThat(Bytes.varintSize(128), equalTo(2));
+        assertThat(Bytes.varintSize(-1), equalTo(10));
+    }
+    
     @Test
     public void testTwoBytesToInt() {
         int max = 1 << 15;
@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dkv.storage.cache;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import org.apache.dkv.storage.bean.KeyValuePair;
+import org.apache.dkv.storage.bytes.Bytes;
+import org.junit.Test;
+
+public class RowCacheTest {
+    
+    @Test
+    public void testPutAndGet() {
+        RowCache rowCache = new RowCache(1024 * 1024);
+        rowCache.put(KeyValuePair.createPut(Bytes.toBytes("a"), Bytes.toBytes("1"), 1), 1);
+        rowCache.put(KeyValuePair.createDelete(Bytes.toBytes("b"), 1), 1);
+        assertThat(rowCache.get(Bytes.toBytes("a")).getValue(), equalTo(Bytes.toBytes("1")));
+        assertThat(rowCache.get(Bytes.toBytes("b")).getOperationType(), equalTo(KeyValuePair.OperationType.Delete));
+        assertThat(rowCache.get(Bytes.toBytes("c")), nullValue());
+    }
+    
+    @Test
+    public void testInvalidate() {
+        RowCache rowCache = new RowCache(1024 * 1024);
+        rowCache.put(KeyValuePair.createPut(Bytes.toBytes("a"), Bytes.toBytes("1"), 1), 1);
+        rowCache.invalidate(Bytes.toBytes("a"), 2);
+        assertThat(rowCache.get(Bytes.toBytes("a")), nullValue());
+        assertThat(rowCache.getUsedBytes(), equalTo(0L));
+        // read before the write may be stale, so it's not cached
+        rowCache.put(KeyValuePair.createPut(Bytes.toBytes("a"), Bytes.toBytes("1"), 1), 1);
+        assertThat(rowCache.get(Bytes.toBytes("a")), nullValue());
+        rowCache.put(KeyValuePair.createPut(Bytes.toBytes("a"), Bytes.toBytes("2"), 2), 2);
+        assertThat(rowCache.get(Bytes.toBytes("a")).getValue(), equalTo(Bytes.toBytes("2")));
+    }
+    
+    @Test
+    public void testEvict() {
+        // 16 shards of 1KB
+        RowCache rowCache = new RowCache(16 * 1024);
+        for (int i = 0; i < 10000; i++) {
+            rowCache.put(KeyValuePair.createPut(Bytes.toBytes(i), new byte[100], i), i);
+        }
+        assertThat(rowCache.getUsedBytes() <= 16 * 1024, equalTo(true));
+        assertThat(rowCache.get(Bytes.toBytes(9999)).getSequenceId(), equalTo(9999L));
+        assertThat(rowCache.get(Bytes.toBytes(0)), nullValue());
+        // entry larger than a shard is never cached
+        rowCache.put(KeyValuePair.createPut(Bytes.toBytes("large"), new byte[2048], 10000), 10000);
+        assertThat(rowCache.get(Bytes.toBytes("large")), nullValue());
+    }
+}
@@ -0,0 +1,112 @@
+package org.apache.dkv.storage.compact;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+import org.apache.dkv.storage.bean.KeyValuePair;
+import org.apache.dkv.storage.bean.KeyValuePair.OperationType;
+import org.apache.dkv.storage.bean.RangeTombstones;
+import org.apache.dkv.storage.bytes.Bytes;
+import org.apache.dkv.storage.iterator.IteratorWrapper;
+import org.apache.dkv.storage.merge.CounterMergeOperator;
+import org.junit.Test;
+
+public class CompactionIteratorTest {
+
+    @Test
+    public void testDropObsoleteVersions() throws IOException {
+        List<KeyValuePair> result = compact(new TreeSet<>(), null);
+        assertThat(result, equalTo(Arrays.asList(
+                KeyValuePair.createPut(Bytes.toBytes("a"), Bytes.toBytes("a5"), 5L),
+                KeyValuePair.createDelete(Bytes.toBytes("b"), 6L))));
+    }
+
+    @Test
+    public void testKeepVersionsForSnapshots() throws IOException {
+        List<KeyValuePair> result = compact(new TreeSet<>(Arrays.asList(2L, 4L)), null);
+        assertThat(result, equalTo(Arrays.asList(
+                KeyValuePair.createPut(Bytes.toBytes("a"), Bytes.toBytes("a5"), 5L),
+                KeyValuePair.createPut(Bytes.toBytes("a"), Bytes.toBytes("a3"), 3L),
+                KeyValuePair.createPut(Bytes.toBytes("a"), Bytes.toBytes("a1"), 1L),
+                KeyValuePair.createDelete(Bytes.toBytes("b"), 6L),
+                KeyValuePair.createPut(Bytes.toBytes("b"), Bytes.toBytes("b4"), 4L),
+                KeyValuePair.createPut(Bytes.toBytes("b"), Bytes.toBytes("b2"), 2L))));
+    }
+
+    @Test
+    public void testFilterPutOnly() throws IOException {
+        List<KeyValuePair> result = compact(new TreeSet<>(), each -> null);
+        assertThat(result, equalTo(Arrays.asList(KeyValuePair.createDelete(Bytes.toBytes("b"), 6L))));
+    }
+
+    @Test
+    public void testFilterNewestVersionWithSnapshots() throws IOException {
+        CompactionFilter filter = each -> Bytes.compare(each.getValue(), Bytes.toBytes("a5")) == 0 ? null : each;
+        assertThat(compact(new TreeSet<>(), filter), equalTo(Collections.singletonList(KeyValuePair.createDelete(Bytes.toBytes("b"), 6L))));
+        // the dropped version is replaced by a delete, so the older version kept for the snapshots isn't visible again
+        assertThat(compact(new TreeSet<>(Arrays.asList(2L, 4L)), filter), equalTo(Arrays.asList(
+                KeyValuePair.createDelete(Bytes.toBytes("a"), 5L),
+                KeyValuePair.createPut(Bytes.toBytes("a"), Bytes.toBytes("a3"), 3L),
+                KeyValuePair.createPut(Bytes.toBytes("a"), Bytes.toBytes("a1"), 1L),
+                KeyValuePair.createDelete(Bytes.toBytes("b"), 6L),
+                KeyValuePair.createPut(Bytes.toBytes("b"), Bytes.toBytes("b4"), 4L),
+                KeyValuePair.createPut(Bytes.toBytes("b"), Bytes.toBytes("b2"), 2L))));
+    }
+
+    @Test
+    public void testMergeOperands() throws IOException {
+        assertThat(compactMergeOperands(new TreeSet<>()), equalTo(Arrays.asList(
+                KeyValuePair.createPut(Bytes.toBytes("c"), Bytes.toBytes(17L), 4L),
+                KeyValuePair.create(Bytes.toBytes("d"), Bytes.toBytes(3L), OperationType.Merge, 6L))));
+        // operands visible to the snapshot are merged separately
+        assertThat(compactMergeOperands(new TreeSet<>(Collections.singletonList(2L))), equalTo(Arrays.asList(
+                KeyValuePair.create(Bytes.toBytes("c"), Bytes.toBytes(6L), OperationType.Merge, 4L),
+                KeyValuePair.createPut(Bytes.toBytes("c"), Bytes.toBytes(11L), 2L),
+                KeyValuePair.create(Bytes.toBytes("d"), Bytes.toBytes(3L), OperationType.Merge, 6L))));
+    }
+
+    private List<KeyValuePair> compactMergeOperands(final NavigableSet<Long> snapshots) throws IOException {
+        ConcurrentSkipListMap<KeyValuePair, KeyValuePair> map = new ConcurrentSkipListMap<>();
+        for (KeyValuePair each : Arrays.asList(
+                KeyValuePair.createPut(Bytes.toBytes("c"), Bytes.toBytes(10L), 1L),
+                KeyValuePair.create(Bytes.toBytes("c"), Bytes.toBytes(1L), OperationType.Merge, 2L),
+                KeyValuePair.create(Bytes.toBytes("c"), Bytes.toBytes(2L), OperationType.Merge, 3L),
+                KeyValuePair.create(Bytes.toBytes("c"), Bytes.toBytes(4L), OperationType.Merge, 4L),
+                KeyValuePair.create(Bytes.toBytes("d"), Bytes.toBytes(1L), OperationType.Merge, 5L),
+                KeyValuePair.create(Bytes.toBytes("d"), Bytes.toBytes(2L), OperationType.Merge, 6L))) {
+            map.put(each, each);
+        }
+        CompactionIterator iterator = new CompactionIterator(new IteratorWrapper(map), snapshots, null, new RangeTombstones(), new CounterMergeOperator());
+        List<KeyValuePair> result = new ArrayList<>();
+        while (iterator.hasNext()) {
+            result.add(iterator.next());
+        }
+        return result;
+    }
+
+    private List<KeyValuePair> compact(final NavigableSet<Long> snapshots, final CompactionFilter filter) throws IOException {
+        ConcurrentSkipListMap<KeyValuePair, KeyValuePair> map = new ConcurrentSkipListMap<>();
+        for (KeyValuePair each : Arrays.asList(
+                KeyValuePair.createPut(Bytes.toBytes("a"), Bytes.toBytes("a1"), 1L),
+                KeyValuePair.createPut(Bytes.toBytes("a"), Bytes.toBytes("a3"), 3L),
+                KeyValuePair.createPut(Bytes.toBytes("a"), Bytes.toBytes("a5"), 5L),
+                KeyValuePair.createPut(Bytes.toBytes("b"), Bytes.toBytes("b2"), 2L),
+                KeyValuePair.createPut(Bytes.toBytes("b"), Bytes.toBytes("b4"), 4L),
+                KeyValuePair.createDelete(Bytes.toBytes("b"), 6L))) {
+            map.put(each, each);
+        }
+        CompactionIterator iterator = new CompactionIterator(new IteratorWrapper(map), snapshots, filter);
+        List<KeyValuePair> result = new ArrayList<>();
+        while (iterator.hasNext()) {
+            result.add(iterator.next());
+        }
+        return result;
+    }
+}
@@ -2,10 +2,24 @@ package org.apache.dkv.storage.compact;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import org.apache.dkv.storage.bean.KeyValuePair;
+import org.apache.dkv.storage.bytes.Bytes;
+import org.apache.dkv.storage.config.Config;
 import org.apache.dkv.storage.disk.DiskStorage;
+import org.apache.dkv.storage.disk.SSTable;
+import org.apache.dkv.storage.flush.DefaultFlusher;
+import org.apache.dkv.storage.iterator.Iterator;
+import org.apache.dkv.storage.iterator.IteratorWrapper;
+import org.apache.dkv.storage.snapshot.Snapshot;
+import org.apache.dkv.storage.snapshot.SnapshotManager;
 import org.apache.dkv.storage.util.TestUtil;
 import org.junit.Before;
 import org.junit.Test;
@@ -21,7 +35,7 @@ public class DefaultCompactorTest {
     public void setUp() {
         try {
             folder.create();
-            diskStorage = new DiskStorage(folder.getRoot().getAbsolutePath(), 10);
+            diskStorage = new DiskStorage(folder.getRoot().getAbsolutePath(), 10, Config.getDefault().createBufferPool());
         } catch (IOException ioe) {
             System.err.println("error creating temporary test file in " + this.getClass().getSimpleName());
         }
@@ -44,4 +58,145 @@ public class DefaultCompactorTest {
         assertThat(diskStorage.getMaxTableId(), equalTo(2));
         assertThat(diskStorage.getTables().size(), equalTo(1));
     }
+    
+    @Test
+    public void testPickCompaction() throws IOException {
+        diskStorage.open();
+        TestUtil.createSSTables(diskStorage);
+        TestUtil.createSSTable(diskStorage, Arrays.asList("3", "4"));
+        
+        // three SSTable files do not exceed the limit
+        assertThat(new DefaultCompactor(diskStorage, 3).pickCompaction(), equalTo(Collections.emptyList()));
+        
+        Compactor compactor = new DefaultCompactor(diskStorage, 0);
+        List<SSTable> tables = compactor.pickCompaction();
+        assertThat(tables.size(), equalTo(2));
+        // the picked SSTable files are claimed until the compaction finishes
+        List<SSTable> otherTables = compactor.pickCompaction();
+        assertThat(otherTables.size(), equalTo(1));
+        assertThat(compactor.pickCompaction(), equalTo(Collections.emptyList()));
+        
+        // overlapping files are merged into a new file
+        compactor.compact(tables);
+        assertThat(diskStorage.getMaxTableId(), equalTo(3));
+        // file overlaps with no other file is moved without rewriting
+        compactor.compact(otherTables);
+        assertThat(diskStorage.getMaxTableId(), equalTo(3));
+        assertThat(diskStorage.getTables().size(), equalTo(2));
+        diskStorage.getTables().forEach(each -> assertThat(each.getLevel(), equalTo(DiskStorage.COMPACTED_LEVEL)));
+        assertThat(compactor.pickCompaction(), equalTo(Collections.emptyList()));
+    }
+    
+    @Test
+    public void testCompactWithFilter() throws IOException {
+        diskStorage.open();
+        TestUtil.createSSTables(diskStorage);
+        
+        // drop digits and rewrite letters
+        Compactor compactor = new DefaultCompactor(diskStorage, 10, each -> Character.isDigit(each.getKey()[0])
+                ? null : KeyValuePair.createPut(each.getKey(), Bytes.toBytes("x"), each.getSequenceId()));
+        compactor.compact();
+        assertThat(diskStorage.getTables().size(), equalTo(1));
+        
+        List<KeyValuePair> result = new ArrayList<>();
+        for (Iterator<KeyValuePair> it = diskStorage.iterator(); it.hasNext();) {
+            result.add(it.next());
+        }
+        assertThat(result.size(), equalTo(6));
+        result.forEach(each -> assertThat(each.getValue(), equalTo(Bytes.toBytes("x"))));
+        
+        // all key value pairs are dropped
+        TestUtil.createSSTables(diskStorage);
+        new DefaultCompactor(diskStorage, 10, each -> null).compact();
+        assertThat(diskStorage.getTables().size(), equalTo(0));
+    }
+    
+    @Test
+    public void testCompactIntoMultipleTables() throws IOException {
+        diskStorage = new DiskStorage(folder.getRoot().getAbsolutePath(), 10, null, 32, 48, Config.DEFAULT_MAX_OPEN_TABLES, Config.getDefault().createBufferPool());
+        diskStorage.open();
+        TestUtil.createSSTables(diskStorage);
+        new DefaultCompactor(diskStorage).compact();
+        
+        // the output rolls to new files, and the key ranges of them never overlap
+        List<SSTable> tables = new ArrayList<>(diskStorage.getTables());
+        assertTrue(tables.size() > 1);
+        tables.sort((a, b) -> Bytes.compare(a.getFirstKey(), b.getFirstKey()));
+        for (int i = 1; i < tables.size(); i++) {
+            assertTrue(Bytes.compare(tables.get(i - 1).getLastKey(), tables.get(i).getFirstKey()) < 0);
+        }
+        int count = 0;
+        for (Iterator<KeyValuePair> it = diskStorage.iterator(); it.hasNext(); it.next()) {
+            count++;
+        }
+        assertThat(count, equalTo(12));
+    }
+    
+    @Test
+    public void testCompactWithRangeTombstones() throws IOException {
+        diskStorage.open();
+        TestUtil.createSSTables(diskStorage);
+        deleteRange("1", "7", 2);
+        SnapshotManager snapshotManager = new SnapshotManager();
+        final Snapshot snapshot = snapshotManager.acquire(1);
+        Compactor compactor = new DefaultCompactor(diskStorage, 10, null, snapshotManager);
+        
+        // the snapshot older than the range tombstone still sees the deleted keys
+        compactor.compact();
+        assertThat(diskStorage.getTables().size(), equalTo(1));
+        assertThat(diskStorage.getTables().get(0).getRangeTombstones().size(), equalTo(1));
+        assertThat(countKeyValuePairs(), equalTo(12));
+        
+        // the deleted keys and the range tombstone are dropped after the snapshot is released
+        snapshot.close();
+        TestUtil.createSSTable(diskStorage, Collections.singletonList("x"));
+        compactor.compact();
+        assertThat(diskStorage.getTables().size(), equalTo(1));
+        assertThat(diskStorage.getTables().get(0).getRangeTombstones().size(), equalTo(0));
+        assertThat(countKeyValuePairs(), equalTo(7));
+        
+        // the file covered by a range tombstone is dropped without being read
+        deleteRange("a", "y", 3);
+        compactor.compact();
+        assertThat(diskStorage.getTables().size(), equalTo(0));
+    }
+    
+    @Test
+    public void testCompactWithClaimedTables() throws IOException {
+        diskStorage.open();
+        TestUtil.createSSTable(diskStorage, Arrays.asList("a", "b"));
+        Compactor compactor = new DefaultCompactor(diskStorage, 0);
+        List<SSTable> claimedTables = compactor.pickCompaction();
+        assertThat(claimedTables.size(), equalTo(1));
+        
+        // the range tombstone is kept while the file it covers is claimed by another compaction
+        TestUtil.createSSTable(diskStorage, Arrays.asList("x", "y"));
+        deleteRange("a", "c", 2);
+        compactor.compact();
+        assertThat(diskStorage.getTables().size(), equalTo(2));
+        assertThat(diskStorage.getTables().stream().mapToInt(each -> each.getRangeTombstones().size()).sum(), equalTo(1));
+        assertThat(countKeyValuePairs(), equalTo(4));
+        
+        // the range tombstone and the keys it covers are dropped together
+        compactor.compact(claimedTables);
+        compactor.compact();
+        assertThat(diskStorage.getTables().size(), equalTo(1));
+        assertThat(diskStorage.getTables().get(0).getRangeTombstones().size(), equalTo(0));
+        assertThat(countKeyValuePairs(), equalTo(2));
+    }
+    
+    private void deleteRange(final String start, final String stop, final long sequenceId) throws IOException {
+        ConcurrentSkipListMap<KeyValuePair, KeyValuePair> map = new ConcurrentSkipListMap<>();
+        KeyValuePair tombstone = KeyValuePair.createDeleteRange(Bytes.toBytes(start), Bytes.toBytes(stop), sequenceId);
+        map.put(tombstone, tombstone);
+        new DefaultFlusher(diskStorage).flush(new IteratorWrapper(map));
+    }
+    
+    private int countKeyValuePairs() throws IOException {
+        int count = 0;
+        for (Iterator<KeyValuePair> it = diskStorage.iterator(); it.hasNext(); it.next()) {
+            count++;
+        }
+        return count;
+    }
 }
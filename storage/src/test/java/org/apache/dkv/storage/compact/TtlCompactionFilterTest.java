@@ -0,0 +1,48 @@
+package org.apache.dkv.storage.compact;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import java.util.Arrays;
+import java.util.Collections;
+import org.apache.dkv.storage.bean.KeyValuePair;
+import org.apache.dkv.storage.bytes.Bytes;
+import org.junit.Test;
+
+public class TtlCompactionFilterTest {
+
+    @Test
+    public void testTimestamp() {
+        byte[] value = TtlCompactionFilter.appendTimestamp(Bytes.toBytes("dkv"), 1000L);
+        assertThat(value.length, equalTo(3 + TtlCompactionFilter.TIMESTAMP_SIZE));
+        assertThat(TtlCompactionFilter.getTimestamp(value), equalTo(1000L));
+        assertThat(TtlCompactionFilter.stripTimestamp(value), equalTo(Bytes.toBytes("dkv")));
+    }
+
+    @Test
+    public void testFilter() {
+        CompactionFilter filter = new TtlCompactionFilter(100L, Collections.singletonList(Bytes.EMPTY_BYTES), () -> 1200L);
+        KeyValuePair expired = KeyValuePair.createPut(Bytes.toBytes("a"), TtlCompactionFilter.appendTimestamp(Bytes.toBytes("a"), 1000L), 1L);
+        assertThat(filter.filter(expired), nullValue());
+        
+        KeyValuePair alive = KeyValuePair.createPut(Bytes.toBytes("b"), TtlCompactionFilter.appendTimestamp(Bytes.toBytes("b"), 1150L), 2L);
+        assertThat(filter.filter(alive), equalTo(alive));
+        
+        KeyValuePair withoutTimestamp = KeyValuePair.createPut(Bytes.toBytes("c"), Bytes.toBytes("c"), 3L);
+        assertThat(filter.filter(withoutTimestamp), equalTo(withoutTimestamp));
+    }
+    
+    @Test
+    public void testFilterRegisteredPrefixes() {
+        CompactionFilter filter = new TtlCompactionFilter(100L, Arrays.asList(Bytes.toBytes("session:"), Bytes.toBytes("token:")), () -> 1200L);
+        KeyValuePair expired = KeyValuePair.createPut(Bytes.toBytes("token:a"), TtlCompactionFilter.appendTimestamp(Bytes.toBytes("a"), 1000L), 1L);
+        assertThat(filter.filter(expired), nullValue());
+        
+        // values of other keys are kept, even if they're long enough to end with a timestamp
+        KeyValuePair unregistered = KeyValuePair.createPut(Bytes.toBytes("user:a"), Bytes.toBytes("0123456789"), 2L);
+        assertThat(filter.filter(unregistered), equalTo(unregistered));
+        
+        KeyValuePair tombstone = KeyValuePair.createDelete(Bytes.toBytes("session:a"), 3L);
+        assertThat(filter.filter(tombstone), equalTo(tombstone));
+    }
+}
@@ -18,6 +18,7 @@
 package org.apache.dkv.storage.disk;
 
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.Mockito.mock;
 import java.io.File;
@@ -25,7 +26,12 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.apache.dkv.storage.bean.KeyValuePair;
+import org.apache.dkv.storage.bloom.FixedPrefixExtractor;
+import org.apache.dkv.storage.bytes.Bytes;
+import org.apache.dkv.storage.config.Config;
 import org.apache.dkv.storage.iterator.SeekIterator;
 import org.apache.dkv.storage.util.TestUtil;
 import org.junit.After;
@@ -43,7 +49,7 @@ public class DiskStorageTest {
     public void setUp() {
         try {
             folder.create();
-            diskStorage = new DiskStorage(folder.getRoot().getAbsolutePath(), 10);
+            diskStorage = new DiskStorage(folder.getRoot().getAbsolutePath(), 10, Config.getDefault().createBufferPool());
         } catch (IOException ioe) {
             System.err.println("error creating temporary test file in " + this.getClass().getSimpleName());
         }
@@ -92,6 +98,21 @@ public class DiskStorageTest {
         assertThat(diskStorage.getTables().size(), equalTo(2));
     }
     
+    @Test
+    public void testArchiveAfterVersionReleased() throws IOException {
+        diskStorage.open();
+        TestUtil.createSSTable(diskStorage, Arrays.asList("1", "2"));
+        SSTable table = diskStorage.getTables().get(0);
+        Version version = diskStorage.acquireVersion();
+        diskStorage.removeObsoleteTables(Collections.singletonList(table));
+        assertThat(diskStorage.getTables().size(), equalTo(0));
+        assertThat(version.getTables().size(), equalTo(1));
+        assertThat(new File(table.getFileName()).exists(), equalTo(true));
+        version.close();
+        assertThat(new File(table.getFileName()).exists(), equalTo(false));
+        assertThat(new File(table.getFileName() + DiskStorage.FILE_NAME_ARCHIVE_SUFFIX).exists(), equalTo(true));
+    }
+    
     @Test
     public void testIterator() throws IOException {
         diskStorage.open();
@@ -105,6 +126,41 @@ public class DiskStorageTest {
         assertThat(count, equalTo(12));
     }
 
+    @Test
+    public void testPrefixIterator() throws IOException {
+        diskStorage = new DiskStorage(folder.getRoot().getAbsolutePath(), 10, new FixedPrefixExtractor(2), Config.getDefault().createBufferPool());
+        diskStorage.open();
+        TestUtil.createSSTable(diskStorage, Arrays.asList("aa1", "aa2", "ab1"));
+        TestUtil.createSSTable(diskStorage, Arrays.asList("ba1", "bb1", "bb2"));
+        assertThat(diskStorage.getTables().get(0).mayContainPrefix(Bytes.toBytes("bb")), equalTo(false));
+        assertThat(diskStorage.getTables().get(1).mayContainPrefix(Bytes.toBytes("bb")), equalTo(true));
+        int count = 0;
+        SeekIterator<KeyValuePair> iterator = diskStorage.prefixIterator(Bytes.toBytes("bb"));
+        while (iterator.hasNext()) {
+            iterator.next();
+            count++;
+        }
+        // prefix iterator only skips the SSTable files and blocks without the prefix
+        assertThat(count, equalTo(3));
+        iterator.close();
+    }
+    
+    @Test
+    public void testMultiGet() throws IOException {
+        diskStorage.open();
+        TestUtil.createSSTables(diskStorage);
+        List<KeyValuePair> targets = Stream.of("0", "2", "5", "b", "z").map(each -> KeyValuePair.createDelete(Bytes.toBytes(each), Long.MAX_VALUE)).collect(Collectors.toList());
+        KeyValuePair[] result = diskStorage.multiGet(targets);
+        assertThat(result.length, equalTo(5));
+        assertThat(result[0], nullValue());
+        assertThat(Bytes.toHex(result[1].getKey()), equalTo(Bytes.toHex(Bytes.toBytes("2"))));
+        assertThat(Bytes.toHex(result[2].getKey()), equalTo(Bytes.toHex(Bytes.toBytes("5"))));
+        assertThat(Bytes.toHex(result[3].getKey()), equalTo(Bytes.toHex(Bytes.toBytes("b"))));
+        assertThat(result[4], nullValue());
+        // versions newer than the target are invisible
+        assertThat(diskStorage.multiGet(Collections.singletonList(KeyValuePair.createDelete(Bytes.toBytes("2"), 0)))[0], nullValue());
+    }
+    
     @Test
     public void testIteratorWithArgs() throws IOException {
         diskStorage.open();
@@ -118,6 +174,79 @@ public class DiskStorageTest {
         assertThat(count, equalTo(12));
     }
     
+    @Test
+    public void testTableCache() throws IOException {
+        diskStorage.open();
+        TestUtil.createSSTables(diskStorage);
+        TestUtil.createSSTable(diskStorage, Arrays.asList("x", "y"));
+        diskStorage.close();
+        
+        // SSTable files are not opened until they are read
+        diskStorage = new DiskStorage(folder.getRoot().getAbsolutePath(), 10, null, Config.DEFAULT_BLOCK_SIZE, Long.MAX_VALUE, 1, Config.getDefault().createBufferPool());
+        diskStorage.open();
+        assertThat(diskStorage.getTables().size(), equalTo(3));
+        assertThat(diskStorage.getOpenTableCount(), equalTo(0L));
+        
+        int count = 0;
+        try (SeekIterator<KeyValuePair> iterator = diskStorage.iterator()) {
+            while (iterator.hasNext()) {
+                iterator.next();
+                count++;
+            }
+        }
+        assertThat(count, equalTo(14));
+        // evicted files are closed, and reopened on demand
+        assertThat(diskStorage.getOpenTableCount(), equalTo(1L));
+        assertThat(diskStorage.multiGet(Collections.singletonList(KeyValuePair.createDelete(Bytes.toBytes("a"), Long.MAX_VALUE)))[0].getKey(), equalTo(Bytes.toBytes("a")));
+        assertThat(diskStorage.getOpenTableCount(), equalTo(1L));
+        diskStorage.close();
+        assertThat(diskStorage.getOpenTableCount(), equalTo(0L));
+    }
+    
+    @Test
+    public void testParallelOpen() throws IOException {
+        diskStorage.open();
+        TestUtil.createSSTables(diskStorage);
+        TestUtil.createSSTable(diskStorage, Arrays.asList("x", "y"));
+        diskStorage.close();
+        
+        // only the newest files are opened at startup, and the tables are sorted by file id
+        diskStorage = new DiskStorage(folder.getRoot().getAbsolutePath(), 10, null, Config.DEFAULT_BLOCK_SIZE, Long.MAX_VALUE, 2, Config.getDefault().createBufferPool());
+        diskStorage.open(4);
+        assertThat(diskStorage.getOpenTableCount(), equalTo(2L));
+        List<String> fileNames = diskStorage.getTables().stream().map(each -> new File(each.getFileName()).getName()).collect(Collectors.toList());
+        assertThat(fileNames, equalTo(Arrays.asList("SSTable00.sst", "SSTable01.sst", "SSTable02.sst")));
+        assertThat(diskStorage.getTables().get(2).getFirstKey(), equalTo(Bytes.toBytes("x")));
+        assertThat(diskStorage.getMaxTableId(), equalTo(2));
+        diskStorage.close();
+    }
+    
+    @Test
+    public void testMaxSequenceId() throws IOException {
+        diskStorage.open();
+        TestUtil.createSSTables(diskStorage);
+        long expected = 0;
+        for (SSTable table : diskStorage.getTables()) {
+            expected = Math.max(expected, table.getMaxSequenceId());
+        }
+        diskStorage.close();
+        
+        // the SSTable files are read once if there is no sequence id file
+        diskStorage = new DiskStorage(folder.getRoot().getAbsolutePath(), 10, Config.getDefault().createBufferPool());
+        diskStorage.open(0);
+        assertThat(diskStorage.getMaxSequenceId(), equalTo(expected));
+        diskStorage.close();
+        
+        diskStorage = new DiskStorage(folder.getRoot().getAbsolutePath(), 10, Config.getDefault().createBufferPool());
+        diskStorage.open(0);
+        assertThat(diskStorage.getMaxSequenceId(), equalTo(expected));
+        assertThat(diskStorage.getOpenTableCount(), equalTo(0L));
+        diskStorage.updateMaxSequenceId(expected + 100);
+        diskStorage.updateMaxSequenceId(expected + 1);
+        assertThat(diskStorage.getMaxSequenceId(), equalTo(expected + 100));
+        diskStorage.close();
+    }
+    
     @After
     public void tearDown() {
         folder.delete();
@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dkv.storage.disk;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.dkv.storage.bean.KeyValuePair;
+import org.apache.dkv.storage.bytes.Bytes;
+import org.apache.dkv.storage.config.Config;
+import org.apache.dkv.storage.iterator.SeekIterator;
+import org.junit.Test;
+
+/**
+ * the files under test resources are written by the former formats, whose data blocks are small enough to have
+ * the versions of key05 span data blocks, and their index is partitioned if it's supported.
+ */
+public class LegacyFormatTest {
+    
+    @Test
+    public void testBaselineFormat() throws IOException {
+        assertLegacyTable("baseline.sst");
+    }
+    
+    @Test
+    public void testMetaBlockFormat() throws IOException {
+        assertLegacyTable("meta-block.sst");
+    }
+    
+    @Test
+    public void testPrefixBloomFormat() throws IOException {
+        assertLegacyTable("prefix-bloom.sst");
+    }
+    
+    @Test
+    public void testPartitionedIndexFormat() throws IOException {
+        assertLegacyTable("partitioned-index.sst");
+    }
+    
+    @Test
+    public void testSeparatorFormat() throws IOException {
+        assertLegacyTable("separator.sst");
+    }
+    
+    private void assertLegacyTable(final String name) throws IOException {
+        SSTable table = new SSTable(getClass().getResource("/sstable/" + name).getPath(), Config.getDefault().createBufferPool());
+        try {
+            List<KeyValuePair> expected = createKeyValuePairs();
+            assertThat(readAll(table), equalTo(expected));
+            assertThat(table.getFirstKey(), equalTo(Bytes.toBytes("key00")));
+            assertThat(table.getLastKey(), equalTo(Bytes.toBytes("key19")));
+            assertThat(table.mayContain(Bytes.toBytes("key07")), equalTo(true));
+            KeyValuePair[] found = table.multiGetAsync(Arrays.asList(KeyValuePair.createDelete(Bytes.toBytes("key05"), 3L),
+                KeyValuePair.createDelete(Bytes.toBytes("key10"), 150L))).join();
+            assertThat(found[0], equalTo(KeyValuePair.createPut(Bytes.toBytes("key05"), Bytes.toBytes("old03"), 3L)));
+            assertThat(found[1], equalTo(KeyValuePair.createPut(Bytes.toBytes("key10"), Bytes.toBytes("value10"), 110L)));
+            try (SeekIterator<KeyValuePair> iterator = table.iterator()) {
+                iterator.seekTo(KeyValuePair.createSeekKey(Bytes.toBytes("key05"), 3L));
+                assertThat(iterator.hasNext(), equalTo(true));
+                assertThat(iterator.next(), equalTo(KeyValuePair.createPut(Bytes.toBytes("key05"), Bytes.toBytes("old03"), 3L)));
+                assertThat(iterator.hasNext(), equalTo(true));
+                assertThat(iterator.next(), equalTo(KeyValuePair.createPut(Bytes.toBytes("key05"), Bytes.toBytes("old02"), 2L)));
+                iterator.seekForPrev(KeyValuePair.createSeekKey(Bytes.toBytes("key10"), 150L));
+                assertThat(iterator.hasPrev(), equalTo(true));
+                assertThat(iterator.prev(), equalTo(KeyValuePair.createDelete(Bytes.toBytes("key10"), 200L)));
+                iterator.seekToLast();
+                for (int i = expected.size() - 1; i >= 0; i--) {
+                    assertThat(iterator.hasPrev(), equalTo(true));
+                    assertThat(iterator.prev(), equalTo(expected.get(i)));
+                }
+                assertThat(iterator.hasPrev(), equalTo(false));
+            }
+        } finally {
+            table.close();
+        }
+    }
+    
+    private List<KeyValuePair> readAll(final SSTable table) throws IOException {
+        List<KeyValuePair> result = new ArrayList<>();
+        try (SeekIterator<KeyValuePair> iterator = table.iterator()) {
+            while (iterator.hasNext()) {
+                result.add(iterator.next());
+            }
+        }
+        return result;
+    }
+    
+    private List<KeyValuePair> createKeyValuePairs() {
+        List<KeyValuePair> result = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            byte[] key = Bytes.toBytes(String.format("key%02d", i));
+            if (10 == i) {
+                result.add(KeyValuePair.createDelete(key, 200L));
+            }
+            result.add(KeyValuePair.createPut(key, Bytes.toBytes(String.format("value%02d", i)), 100L + i));
+            for (int j = 5 == i ? 4 : 0; j > 0; j--) {
+                result.add(KeyValuePair.createPut(key, Bytes.toBytes(String.format("old%02d", j)), j));
+            }
+        }
+        return result;
+    }
+}
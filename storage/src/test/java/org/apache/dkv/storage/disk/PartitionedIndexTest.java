@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dkv.storage.disk;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import org.apache.dkv.storage.bean.KeyValuePair;
+import org.apache.dkv.storage.block.IndexBlock;
+import org.apache.dkv.storage.block.IndexBlockBuilder;
+import org.apache.dkv.storage.bytes.Bytes;
+import org.apache.dkv.storage.config.Config;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PartitionedIndexTest {
+    
+    private static final int BLOCK_COUNT = 100;
+    
+    private final TemporaryFolder folder = new TemporaryFolder();
+    
+    private BlockReader reader;
+    
+    private PartitionedIndex index;
+    
+    @Before
+    public void setUp() throws IOException {
+        folder.create();
+        File file = new File(folder.getRoot(), "index");
+        // about 10 index blocks in a partition
+        IndexBlockBuilder builder = new IndexBlockBuilder(500);
+        for (int i = 0; i < BLOCK_COUNT; i++) {
+            builder.append(Bytes.toBytes(i * 2), i * 100, 100, Bytes.EMPTY_BYTES, Bytes.EMPTY_BYTES);
+        }
+        byte[] partitions = builder.serializePartitions(0);
+        byte[] topLevelIndex = builder.serializeTopLevelIndex();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(partitions);
+            out.write(topLevelIndex);
+        }
+        reader = new BlockReader(file.getAbsolutePath(), Config.getDefault().createBufferPool());
+        index = new PartitionedIndex(reader, partitions.length, topLevelIndex.length, BLOCK_COUNT);
+    }
+    
+    @Test
+    public void testCeiling() throws IOException {
+        assertThat(index.ceiling(createKeyValuePair(0)).getBlockOffset(), equalTo(0L));
+        assertThat(index.ceiling(createKeyValuePair(101)).getBlockOffset(), equalTo(5100L));
+        assertThat(index.ceiling(createKeyValuePair(198)).getBlockOffset(), equalTo(9900L));
+        assertThat(index.ceiling(createKeyValuePair(199)), nullValue());
+        assertThat(index.last().getBlockOffset(), equalTo(9900L));
+        assertThat(index.getSize(), equalTo(BLOCK_COUNT));
+    }
+    
+    @Test
+    public void testIterator() throws IOException {
+        assertOffsets(index.iterator(), 0, 1, BLOCK_COUNT);
+        assertOffsets(index.descendingIterator(), BLOCK_COUNT - 1, -1, BLOCK_COUNT);
+        assertOffsets(index.tailIterator(createKeyValuePair(101)), 51, 1, BLOCK_COUNT - 51);
+        IndexBlock indexBlock = index.ceiling(createKeyValuePair(101));
+        assertOffsets(index.headDescendingIterator(indexBlock), 50, -1, 51);
+    }
+    
+    private void assertOffsets(final Iterator<IndexBlock> iterator, final int first, final int step, final int count) {
+        int expected = first;
+        int actualCount = 0;
+        while (iterator.hasNext()) {
+            assertThat(iterator.next().getBlockOffset(), equalTo(expected * 100L));
+            expected += step;
+            actualCount++;
+        }
+        assertThat(actualCount, equalTo(count));
+    }
+    
+    private static KeyValuePair createKeyValuePair(final int key) {
+        return KeyValuePair.createPut(Bytes.toBytes(key), Bytes.toBytes(key), 1L);
+    }
+    
+    @After
+    public void tearDown() throws IOException {
+        index.invalidate();
+        reader.close();
+        folder.delete();
+    }
+}
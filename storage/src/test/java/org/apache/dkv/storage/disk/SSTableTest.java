@@ -19,13 +19,21 @@ package org.apache.dkv.storage.disk;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ThreadLocalRandom;
 import org.apache.dkv.storage.bean.KeyValuePair;
+import org.apache.dkv.storage.bean.KeyValuePair.OperationType;
+import org.apache.dkv.storage.block.TableProperties;
 import org.apache.dkv.storage.block.TailerBlock;
+import org.apache.dkv.storage.bytes.BufferPool;
 import org.apache.dkv.storage.bytes.Bytes;
+import org.apache.dkv.storage.config.Config;
+import org.apache.dkv.storage.iterator.ScanFilter;
 import org.apache.dkv.storage.iterator.SeekIterator;
 import org.junit.After;
 import org.junit.Before;
@@ -35,6 +43,8 @@ import org.junit.rules.TemporaryFolder;
 public class SSTableTest {
 
     private final TemporaryFolder folder = new TemporaryFolder();
+    
+    private final BufferPool bufferPool = Config.getDefault().createBufferPool();
 
     private String fileName;
     
@@ -45,7 +55,7 @@ public class SSTableTest {
         try {
             folder.create();
             fileName = folder.getRoot().getAbsolutePath() + File.separator + "SSTable01.sst";
-            builder = new SSTableBuilder(fileName);
+            builder = new SSTableBuilder(fileName, bufferPool);
         } catch (IOException ioe) {
             System.err.println("error creating temporary test file in " + this.getClass().getSimpleName());
         }
@@ -69,7 +79,7 @@ public class SSTableTest {
     @Test
     public void testSSTable() throws IOException {
         SSTableBuilder builder = initSSTable();
-        SSTable table = new SSTable(fileName);
+        SSTable table = new SSTable(fileName, bufferPool);
         assertTailerBlock(table.getTailerBlock(), builder.getTailerBlock());
         SeekIterator<KeyValuePair> iterator = table.iterator();
         int count = 0;
@@ -80,8 +90,21 @@ public class SSTableTest {
         }
         // how many elements.
         assertThat(count, equalTo(10000));
-        assertThat(table.getTailerBlock().getBlockCount(), equalTo(table.getIndexBlocks().size()));
-        assertThat(table.getIndexBlocks().last().getLastKv(), equalTo(lastKeyValuePair));
+        try (TableReader reader = table.acquireReader()) {
+            assertThat(table.getTailerBlock().getBlockCount(), equalTo(reader.getIndex().getSize()));
+            // the separator of the last data block is greater than or equals to its last key
+            assertThat(Bytes.compare(reader.getIndex().last().getSeparator(), lastKeyValuePair.getKey()) >= 0, equalTo(true));
+        }
+        
+        iterator.seekToLast();
+        assertThat(iterator.hasPrev(), equalTo(true));
+        assertThat(iterator.prev(), equalTo(lastKeyValuePair));
+        count = 1;
+        while (iterator.hasPrev()) {
+            iterator.prev();
+            count++;
+        }
+        assertThat(count, equalTo(10000));
     }
     
     @Test
@@ -93,7 +116,7 @@ public class SSTableTest {
         builder.appendIndex();
         builder.appendTailer();
 
-        SSTable table = new SSTable(fileName);
+        SSTable table = new SSTable(fileName, bufferPool);
         SeekIterator<KeyValuePair> iterator = table.iterator();
         iterator.seekTo(KeyValuePair.createPut(Bytes.toBytes(49), Bytes.toBytes(49), 1L));
         // 40
@@ -108,6 +131,169 @@ public class SSTableTest {
         }
         assertThat(count, equalTo(51));
         assertThat(actual, equalTo(KeyValuePair.createPut(Bytes.toBytes(50), Bytes.toBytes(50), 1L)));
+        assertThat(table.getFirstKey(), equalTo(Bytes.toBytes(0)));
+        assertThat(table.getLastKey(), equalTo(Bytes.toBytes(99)));
+    }
+    
+    @Test
+    public void testSSTableScanPushdown() throws IOException {
+        for (int i = 0; i < 10; i++) {
+            builder.append(KeyValuePair.createPut(Bytes.toBytes(i), Bytes.toBytes(i), 20L));
+            builder.append(KeyValuePair.createPut(Bytes.toBytes(i), Bytes.toBytes(100 + i), 5L));
+        }
+        builder.appendIndex();
+        builder.appendTailer();
+        
+        SSTable table = new SSTable(fileName, bufferPool);
+        ScanFilter even = each -> Bytes.toInt(each.getValue()) % 2 == 0;
+        // only the newest visible version of each key is returned, a rejected put is returned as a delete
+        List<KeyValuePair> result = new ArrayList<>();
+        try (SeekIterator<KeyValuePair> iterator = table.iterator(10L, even)) {
+            while (iterator.hasNext()) {
+                result.add(iterator.next());
+            }
+        }
+        assertThat(result.size(), equalTo(10));
+        for (int i = 0; i < 10; i++) {
+            assertThat(result.get(i).getSequenceId(), equalTo(5L));
+            assertThat(result.get(i).getOperationType(), equalTo(0 == i % 2 ? OperationType.Put : OperationType.Delete));
+        }
+        assertThat(Bytes.toInt(result.get(4).getValue()), equalTo(104));
+        
+        try (SeekIterator<KeyValuePair> iterator = table.iterator(Long.MAX_VALUE, even)) {
+            iterator.seekTo(KeyValuePair.createSeekKey(Bytes.toBytes(3), Long.MAX_VALUE));
+            KeyValuePair actual = iterator.next();
+            assertThat(actual.getOperationType(), equalTo(OperationType.Delete));
+            assertThat(actual.getSequenceId(), equalTo(20L));
+            assertThat(Bytes.toInt(iterator.next().getValue()), equalTo(4));
+        }
+    }
+    
+    @Test
+    public void testSSTableReadAhead() throws IOException {
+        byte[] value = new byte[512];
+        for (int i = 0; i < 40000; i++) {
+            builder.append(KeyValuePair.createPut(Bytes.toBytes(i), value, 1L));
+        }
+        builder.appendIndex();
+        builder.appendTailer();
+
+        SSTable table = new SSTable(fileName, bufferPool);
+        try (TableReader reader = table.acquireReader()) {
+            assertTrue(reader.getIndex().getSize() > 8);
+        }
+        SeekIterator<KeyValuePair> iterator = table.iterator();
+        int count = 0;
+        while (iterator.hasNext()) {
+            assertThat(iterator.next().getKey(), equalTo(Bytes.toBytes(count)));
+            count++;
+        }
+        assertThat(count, equalTo(40000));
+        iterator.seekTo(KeyValuePair.createPut(Bytes.toBytes(100), value, 1L));
+        assertThat(iterator.hasNext(), equalTo(true));
+        assertThat(iterator.next().getKey(), equalTo(Bytes.toBytes(100)));
+        iterator.close();
+    }
+    
+    @Test
+    public void testBlockSize() throws IOException {
+        SSTableBuilder smallBlockBuilder = new SSTableBuilder(folder.getRoot().getAbsolutePath() + File.separator + "SSTable02.sst", null, 256, bufferPool);
+        for (int i = 0; i < 100; i++) {
+            builder.append(KeyValuePair.createPut(Bytes.toBytes(i), Bytes.toBytes(i), 1L));
+            smallBlockBuilder.append(KeyValuePair.createPut(Bytes.toBytes(i), Bytes.toBytes(i), 1L));
+        }
+        builder.appendIndex();
+        builder.appendTailer();
+        smallBlockBuilder.appendIndex();
+        smallBlockBuilder.appendTailer();
+        smallBlockBuilder.close();
+        assertThat(builder.getBlockCount(), equalTo(1));
+        assertTrue(smallBlockBuilder.getBlockCount() > 1);
+        // a new file is rolled only at a new key once the data reaches the limit
+        assertThat(smallBlockBuilder.shouldRoll(KeyValuePair.createPut(Bytes.toBytes(100), Bytes.toBytes(100), 1L), 256), equalTo(true));
+        assertThat(smallBlockBuilder.shouldRoll(KeyValuePair.createPut(Bytes.toBytes(99), Bytes.toBytes(99), 0L), 256), equalTo(false));
+        assertThat(builder.shouldRoll(KeyValuePair.createPut(Bytes.toBytes(100), Bytes.toBytes(100), 1L), Long.MAX_VALUE), equalTo(false));
+    }
+    
+    @Test
+    public void testProperties() throws IOException {
+        for (int i = 0; i < 100; i++) {
+            builder.append(KeyValuePair.createPut(Bytes.toBytes(i * 2), Bytes.toBytes(i), i + 10L));
+            builder.append(KeyValuePair.createDelete(Bytes.toBytes(i * 2), 5L));
+        }
+        builder.appendIndex();
+        builder.appendTailer();
+        
+        SSTable table = new SSTable(fileName, bufferPool);
+        TableProperties properties = table.getMetaBlock().getProperties();
+        assertThat(properties.getMinSequenceId(), equalTo(5L));
+        assertThat(properties.getMaxSequenceId(), equalTo(109L));
+        assertThat(table.getMaxSequenceId(), equalTo(109L));
+        assertThat(properties.getEntryCount(), equalTo(200L));
+        assertThat(properties.getDeleteCount(), equalTo(100L));
+        assertTrue(properties.getRawSize() > 0 && properties.getRawSize() < properties.getDataSize());
+        // keys out of range or excluded by the bloom filter are checked without reading blocks
+        assertThat(table.mayContain(Bytes.toBytes(100)), equalTo(true));
+        assertThat(table.mayContain(Bytes.toBytes(1000)), equalTo(false));
+        int excluded = 0;
+        for (int i = 0; i < 100; i++) {
+            excluded += table.mayContain(Bytes.toBytes(i * 2 + 1)) ? 0 : 1;
+        }
+        assertTrue(excluded > 80);
+        assertThat(table.overlaps(Bytes.toBytes(198), Bytes.EMPTY_BYTES), equalTo(true));
+        assertThat(table.overlaps(Bytes.toBytes(199), Bytes.EMPTY_BYTES), equalTo(false));
+        assertThat(table.overlaps(Bytes.EMPTY_BYTES, Bytes.toBytes(0)), equalTo(false));
+    }
+    
+    @Test
+    public void testRangeTombstones() throws IOException {
+        for (int i = 0; i < 100; i++) {
+            builder.append(KeyValuePair.createPut(Bytes.toBytes(i), Bytes.toBytes(i), i + 10L));
+        }
+        builder.append(KeyValuePair.createDeleteRange(Bytes.toBytes(50), Bytes.toBytes(60), 200L));
+        builder.append(KeyValuePair.createDeleteRange(Bytes.toBytes(20), Bytes.toBytes(30), 201L));
+        builder.appendIndex();
+        builder.appendTailer();
+        
+        SSTable table = new SSTable(fileName, bufferPool);
+        assertThat(table.getRangeTombstones().size(), equalTo(2));
+        // the span of range tombstones is [20, 60)
+        assertThat(table.mayContainRangeTombstones(Bytes.toBytes(25), Bytes.toBytes(26)), equalTo(true));
+        assertThat(table.mayContainRangeTombstones(Bytes.toBytes(59), Bytes.EMPTY_BYTES), equalTo(true));
+        assertThat(table.mayContainRangeTombstones(Bytes.toBytes(60), Bytes.EMPTY_BYTES), equalTo(false));
+        assertThat(table.mayContainRangeTombstones(Bytes.EMPTY_BYTES, Bytes.toBytes(20)), equalTo(false));
+    }
+    
+    @Test
+    public void testNoRangeTombstone() throws IOException {
+        builder.append(KeyValuePair.createPut(Bytes.toBytes(1), Bytes.toBytes(1), 1L));
+        builder.appendIndex();
+        builder.appendTailer();
+        
+        SSTable table = new SSTable(fileName, bufferPool);
+        assertThat(table.mayContainRangeTombstones(Bytes.EMPTY_BYTES, Bytes.EMPTY_BYTES), equalTo(false));
+    }
+    
+    @Test
+    public void testSSTableSeekForPrev() throws IOException {
+        for (int i = 0; i < 100; i++) {
+            builder.append(KeyValuePair.createPut(Bytes.toBytes(i * 2), Bytes.toBytes(i), 1L));
+        }
+        builder.appendIndex();
+        builder.appendTailer();
+
+        SSTable table = new SSTable(fileName, bufferPool);
+        SeekIterator<KeyValuePair> iterator = table.iterator();
+        iterator.seekForPrev(KeyValuePair.createPut(Bytes.toBytes(99), Bytes.EMPTY_BYTES, 1L));
+        assertThat(iterator.hasNext(), equalTo(false));
+        for (int i = 49; i >= 0; i--) {
+            assertThat(iterator.hasPrev(), equalTo(true));
+            assertThat(iterator.prev().getKey(), equalTo(Bytes.toBytes(i * 2)));
+        }
+        assertThat(iterator.hasPrev(), equalTo(false));
+        iterator.seekForPrev(KeyValuePair.createPut(Bytes.toBytes(1000), Bytes.EMPTY_BYTES, 1L));
+        assertThat(iterator.hasPrev(), equalTo(true));
+        assertThat(iterator.prev().getKey(), equalTo(Bytes.toBytes(198)));
     }
     
     private void assertTailerBlock(final TailerBlock actual, final TailerBlock expected) {
@@ -119,10 +305,14 @@ public class SSTableTest {
     }
     
     private SSTableBuilder initSSTable() throws IOException {
-        KeyValuePair lastKv;
+        // SSTable builder requires key value pairs in ascending order
+        List<byte[]> keys = new ArrayList<>(10000);
         for (int i = 0; i < 10000; i++) {
-            lastKv = KeyValuePair.createPut(generateRandomBytes(), generateRandomBytes(), 1L);
-            builder.append(lastKv);
+            keys.add(generateRandomBytes());
+        }
+        keys.sort(Bytes::compare);
+        for (byte[] each : keys) {
+            builder.append(KeyValuePair.createPut(each, generateRandomBytes(), 1L));
         }
         builder.appendIndex();
         builder.appendTailer();
@@ -27,6 +27,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collections;
+import org.apache.dkv.storage.config.Config;
 import org.apache.dkv.storage.disk.DiskStorage;
 import org.apache.dkv.storage.iterator.MemStoreIterator;
 import org.apache.dkv.storage.memory.MemStore;
@@ -47,7 +48,7 @@ public class DefaultFlusherTest {
     public void setUp() {
         try {
             folder.create();
-            diskStorage = new DiskStorage(folder.getRoot().getAbsolutePath(), 10);
+            diskStorage = new DiskStorage(folder.getRoot().getAbsolutePath(), 10, Config.getDefault().createBufferPool());
             when(memStore.getKvMap()).thenReturn(TestUtil.createKeyValuePairMap(Arrays.asList("1", "3", "5")));
             when(memStore.getSnapshot()).thenReturn(TestUtil.createKeyValuePairMap(Arrays.asList("2", "4", "6")));
         } catch (IOException ioe) {
@@ -117,11 +117,67 @@ public class MultiIteratorTest {
         Assert.assertEquals(count, 4);
     }
     
+    @Test
+    public void testMergeManyIterators() throws IOException {
+        SeekIterator[] iterators = new SeekIterator[] {
+            new MockIterator(new int[] {1, 6, 11}), new MockIterator(new int[] {2, 7}), null,
+            new MockIterator(new int[] {3, 8, 12, 13}), new MockIterator(new int[] {}), new MockIterator(new int[] {4, 9, 14}),
+            new MockIterator(new int[] {5, 10}), };
+        MultiIterator multiIter = new MultiIterator(iterators);
+        for (int i = 1; i <= 14; i++) {
+            assertTrue(multiIter.hasNext());
+            assertThat(multiIter.next().getKey(), equalTo(Bytes.toBytes(String.format("%05d", i))));
+        }
+        assertFalse(multiIter.hasNext());
+    }
+    
+    @Test
+    public void testSeekTo() throws IOException {
+        SeekIterator[] iterators = new SeekIterator[] {new MockIterator(new int[] {1, 4, 7}), new MockIterator(new int[] {2, 5}), new MockIterator(new int[] {3, 6})};
+        MultiIterator multiIter = new MultiIterator(iterators);
+        multiIter.seekTo(KeyValuePair.createPut(Bytes.toBytes("00004"), Bytes.EMPTY_BYTES, 1L));
+        for (int i = 4; i <= 7; i++) {
+            assertThat(multiIter.next().getKey(), equalTo(Bytes.toBytes(String.format("%05d", i))));
+        }
+        assertFalse(multiIter.hasNext());
+    }
+    
+    @Test
+    public void testSingleIterator() throws IOException {
+        MultiIterator multiIter = new MultiIterator(new SeekIterator[] {new MockIterator(new int[] {1, 2})});
+        assertThat(multiIter.next(), equalTo(EXPECTED_KEY_VALUE_PAIR));
+        multiIter.seekTo(EXPECTED_KEY_VALUE_PAIR);
+        assertThat(multiIter.next(), equalTo(EXPECTED_KEY_VALUE_PAIR));
+        assertTrue(multiIter.hasNext());
+        multiIter.next();
+        assertFalse(multiIter.hasNext());
+    }
+    
+    @Test
+    public void testReverse() throws IOException {
+        SeekIterator[] iterators = new SeekIterator[] {new MockIterator(new int[] {1, 4, 7}), new MockIterator(new int[] {2, 5}), new MockIterator(new int[] {3, 6})};
+        MultiIterator multiIter = new MultiIterator(iterators);
+        multiIter.seekToLast();
+        assertFalse(multiIter.hasNext());
+        for (int i = 7; i >= 1; i--) {
+            assertTrue(multiIter.hasPrev());
+            assertThat(multiIter.prev().getKey(), equalTo(Bytes.toBytes(String.format("%05d", i))));
+        }
+        assertFalse(multiIter.hasPrev());
+        multiIter.seekForPrev(KeyValuePair.createPut(Bytes.toBytes("00004"), Bytes.EMPTY_BYTES, 1L));
+        for (int i = 4; i >= 1; i--) {
+            assertThat(multiIter.prev().getKey(), equalTo(Bytes.toBytes(String.format("%05d", i))));
+        }
+        assertFalse(multiIter.hasPrev());
+    }
+    
     public static class MockIterator implements SeekIterator<KeyValuePair> {
 
         private int cur;
 
         private final KeyValuePair[] kvs;
+        
+        private boolean reverse;
 
         public MockIterator(final int[] array) {
             assert array != null;
@@ -139,7 +195,7 @@ public class MultiIteratorTest {
          */
         @Override
         public boolean hasNext() {
-            return cur < kvs.length;
+            return !reverse && cur < kvs.length;
         }
 
         /**
@@ -157,11 +213,53 @@ public class MultiIteratorTest {
          */
         @Override
         public void seekTo(final KeyValuePair kv) {
+            reverse = false;
             for (cur = 0; cur < kvs.length; cur++) {
                 if (kvs[cur].compareTo(kv) >= 0) {
                     break;
                 }
             }
         }
+
+        /**
+         * 
+         */
+        @Override
+        public void seekToLast() {
+            reverse = true;
+            cur = kvs.length - 1;
+        }
+
+        /**
+         * 
+         * @param kv seek to specific element.
+         */
+        @Override
+        public void seekForPrev(final KeyValuePair kv) {
+            reverse = true;
+            for (cur = kvs.length - 1; cur >= 0; cur--) {
+                if (kvs[cur].compareTo(kv) <= 0) {
+                    break;
+                }
+            }
+        }
+
+        /**
+         * 
+         * @return true if has previous element.
+         */
+        @Override
+        public boolean hasPrev() {
+            return reverse && cur >= 0;
+        }
+
+        /**
+         * 
+         * @return previous element.
+         */
+        @Override
+        public KeyValuePair prev() {
+            return kvs[cur--];
+        }
     }
 }
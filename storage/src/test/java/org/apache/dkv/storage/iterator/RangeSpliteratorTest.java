@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dkv.storage.iterator;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.apache.dkv.storage.bean.KeyValuePair;
+import org.apache.dkv.storage.bean.KeyValuePair.OperationType;
+import org.apache.dkv.storage.bytes.Bytes;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RangeSpliteratorTest {
+    
+    private final ConcurrentSkipListMap<KeyValuePair, KeyValuePair> data = new ConcurrentSkipListMap<>();
+    
+    private final RangeSpliterator.RangeScanner scanner = (start, stop) -> {
+        IteratorWrapper iterator = new IteratorWrapper(data);
+        iterator.seekTo(KeyValuePair.createDelete(start, Long.MAX_VALUE));
+        KeyValuePair stopKv = 0 == stop.length ? null : KeyValuePair.createDelete(stop, Long.MAX_VALUE);
+        return new ScanIterator(stopKv, iterator);
+    };
+    
+    @Before
+    public void setUp() {
+        for (int i = 0; i < 100; i++) {
+            KeyValuePair keyValuePair = KeyValuePair.create(Bytes.toBytes(i), Bytes.toBytes(i), OperationType.Put, i);
+            data.put(keyValuePair, keyValuePair);
+        }
+    }
+    
+    @Test
+    public void testTrySplit() throws IOException {
+        List<byte[]> splitKeys = Arrays.asList(Bytes.toBytes(50), Bytes.toBytes(25), Bytes.toBytes(75), Bytes.toBytes(25), Bytes.toBytes(200));
+        RangeSpliterator spliterator = new RangeSpliterator(Bytes.toBytes(10), Bytes.toBytes(90), splitKeys, scanner);
+        Spliterator<KeyValuePair> prefix = spliterator.trySplit();
+        assertThat(countElements(prefix.trySplit()), equalTo(15));
+        assertThat(prefix.trySplit(), nullValue());
+        assertThat(countElements(prefix), equalTo(25));
+        assertThat(countElements(spliterator), equalTo(40));
+        spliterator.close();
+    }
+    
+    @Test
+    public void testParallelStream() throws IOException {
+        List<byte[]> splitKeys = IntStream.range(0, 100).filter(i -> i % 7 == 0).mapToObj(Bytes::toBytes).collect(Collectors.toList());
+        try (Stream<KeyValuePair> stream = new RangeSpliterator(Bytes.EMPTY_BYTES, Bytes.EMPTY_BYTES, splitKeys, scanner).parallelStream()) {
+            List<Integer> keys = stream.map(each -> Bytes.toInt(each.getKey())).collect(Collectors.toList());
+            assertThat(keys, equalTo(IntStream.range(0, 100).boxed().collect(Collectors.toList())));
+        }
+    }
+    
+    @Test
+    public void testCoalesceSplitKeys() throws IOException {
+        List<byte[]> splitKeys = IntStream.range(1, 100).mapToObj(Bytes::toBytes).collect(Collectors.toList());
+        // 99 split keys are coalesced to every 25th key, which leaves 4 ranges
+        RangeSpliterator spliterator = new RangeSpliterator(Bytes.EMPTY_BYTES, Bytes.EMPTY_BYTES, splitKeys, 4, scanner);
+        Spliterator<KeyValuePair> prefix = spliterator.trySplit();
+        Spliterator<KeyValuePair> first = prefix.trySplit();
+        assertThat(first.trySplit(), nullValue());
+        assertThat(countElements(first), equalTo(25));
+        assertThat(countElements(prefix), equalTo(25));
+        Spliterator<KeyValuePair> third = spliterator.trySplit();
+        assertThat(spliterator.trySplit(), nullValue());
+        assertThat(countElements(third), equalTo(25));
+        assertThat(countElements(spliterator), equalTo(25));
+        spliterator.close();
+    }
+    
+    @Test
+    public void testCloseExhaustedIterators() throws IOException {
+        List<Iterator<KeyValuePair>> opened = new ArrayList<>();
+        RangeSpliterator.RangeScanner trackingScanner = (start, stop) -> {
+            Iterator<KeyValuePair> result = spy(scanner.scan(start, stop));
+            opened.add(result);
+            return result;
+        };
+        List<byte[]> splitKeys = Arrays.asList(Bytes.toBytes(25), Bytes.toBytes(50));
+        RangeSpliterator spliterator = new RangeSpliterator(Bytes.EMPTY_BYTES, Bytes.EMPTY_BYTES, splitKeys, trackingScanner);
+        for (int i = 0; i < 30; i++) {
+            spliterator.tryAdvance(each -> { });
+        }
+        // the first sub-range is exhausted and closed, the second is in use
+        assertThat(opened.size(), equalTo(2));
+        verify(opened.get(0), atLeastOnce()).close();
+        verify(opened.get(1), never()).close();
+        clearInvocations(opened.get(0));
+        // only the iterator in use is left to close
+        spliterator.close();
+        verify(opened.get(0), never()).close();
+        verify(opened.get(1)).close();
+    }
+    
+    private static int countElements(final Spliterator<KeyValuePair> spliterator) {
+        int[] count = new int[1];
+        spliterator.forEachRemaining(each -> count[0]++);
+        return count[0];
+    }
+}
@@ -51,7 +51,7 @@ public class MemStoreTest {
     @Test
     public void testMemStoreAdd() throws IOException {
         MemStore memStore = createMemStore();
-        assertThat(memStore.getDataSize().get(), equalTo(100L));
+        assertThat(memStore.getDataSize().get(), equalTo(44L));
         assertThat(memStore.getSnapshot(), equalTo(null));
     }
     
@@ -78,9 +78,9 @@ public class MemStoreTest {
         ExecutorService executorService = mock(ExecutorService.class);
         when(executorService.submit(any(Runnable.class))).thenReturn(null);
         Flusher flusher = mock(Flusher.class);
-        MemStore memStore = new MemStore(Config.builder().dataDir(folder.getRoot().getAbsolutePath()).maxMemstoreSize(100).build(), flusher, executorService);
+        MemStore memStore = new MemStore(Config.builder().dataDir(folder.getRoot().getAbsolutePath()).maxMemstoreSize(44).build(), flusher, executorService);
         memStore.add(KeyValuePair.create(Bytes.toBytes(1), Bytes.toBytes(1), OperationType.Put, 1));
-        assertThat(memStore.getDataSize().get(), equalTo(25L));
+        assertThat(memStore.getDataSize().get(), equalTo(11L));
         memStore.add(KeyValuePair.create(Bytes.toBytes(2), Bytes.toBytes(2), OperationType.Put, 2));
         memStore.add(KeyValuePair.create(Bytes.toBytes(3), Bytes.toBytes(3), OperationType.Put, 3));
         memStore.add(KeyValuePair.create(Bytes.toBytes(4), Bytes.toBytes(4), OperationType.Put, 4));
@@ -0,0 +1,43 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dkv.storage.merge;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import java.util.Arrays;
+import java.util.Collections;
+import org.apache.dkv.storage.bytes.Bytes;
+import org.junit.Test;
+
+public class AppendMergeOperatorTest {
+    
+    private final AppendMergeOperator mergeOperator = new AppendMergeOperator(Bytes.toBytes(","));
+    
+    @Test
+    public void testFullMerge() {
+        byte[] key = Bytes.toBytes("list");
+        assertThat(mergeOperator.fullMerge(key, null, Collections.singletonList(Bytes.toBytes("a"))), equalTo(Bytes.toBytes("a")));
+        assertThat(mergeOperator.fullMerge(key, null, Arrays.asList(Bytes.toBytes("a"), Bytes.toBytes("b"))), equalTo(Bytes.toBytes("a,b")));
+        assertThat(mergeOperator.fullMerge(key, Bytes.toBytes("x"), Arrays.asList(Bytes.toBytes("a"), Bytes.toBytes("b"))), equalTo(Bytes.toBytes("x,a,b")));
+    }
+    
+    @Test
+    public void testPartialMerge() {
+        assertThat(mergeOperator.partialMerge(Bytes.toBytes("list"), Arrays.asList(Bytes.toBytes("a"), Bytes.toBytes("b"))), equalTo(Bytes.toBytes("a,b")));
+    }
+}
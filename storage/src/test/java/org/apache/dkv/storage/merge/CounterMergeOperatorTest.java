@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.dkv.storage.merge;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import java.util.Arrays;
+import org.apache.dkv.storage.bytes.Bytes;
+import org.junit.Test;
+
+public class CounterMergeOperatorTest {
+    
+    private final CounterMergeOperator mergeOperator = new CounterMergeOperator();
+    
+    @Test
+    public void testFullMerge() {
+        byte[] key = Bytes.toBytes("counter");
+        assertThat(mergeOperator.fullMerge(key, null, Arrays.asList(Bytes.toBytes(1L), Bytes.toBytes(2L))), equalTo(Bytes.toBytes(3L)));
+        assertThat(mergeOperator.fullMerge(key, Bytes.toBytes(10L), Arrays.asList(Bytes.toBytes(1L), Bytes.toBytes(-2L))), equalTo(Bytes.toBytes(9L)));
+    }
+    
+    @Test
+    public void testPartialMerge() {
+        assertThat(mergeOperator.partialMerge(Bytes.toBytes("counter"), Arrays.asList(Bytes.toBytes(1L), Bytes.toBytes(2L))), equalTo(Bytes.toBytes(3L)));
+    }
+}
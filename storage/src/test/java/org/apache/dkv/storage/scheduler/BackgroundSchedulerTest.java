@@ -0,0 +1,81 @@
+package org.apache.dkv.storage.scheduler;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.apache.dkv.storage.compact.Compactor;
+import org.apache.dkv.storage.compact.DefaultCompactor;
+import org.apache.dkv.storage.config.Config;
+import org.apache.dkv.storage.disk.DiskStorage;
+import org.apache.dkv.storage.util.TestUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BackgroundSchedulerTest {
+
+    private final TemporaryFolder folder = new TemporaryFolder();
+
+    private DiskStorage diskStorage;
+
+    @Before
+    public void setUp() throws IOException {
+        folder.create();
+        diskStorage = new DiskStorage(folder.getRoot().getAbsolutePath(), 10, Config.getDefault().createBufferPool());
+        diskStorage.open();
+        TestUtil.createSSTables(diskStorage);
+        TestUtil.createSSTable(diskStorage, Arrays.asList("3", "4"));
+    }
+
+    @Test
+    public void testCompactAfterFlush() throws IOException {
+        Config config = Config.builder().maxThreadPoolSize(2).build();
+        BackgroundScheduler scheduler = new BackgroundScheduler(config, new DefaultCompactor(diskStorage, 0));
+        assertThat(diskStorage.getTables().size(), equalTo(3));
+        // a finished flush triggers compaction, close waits for it
+        scheduler.getFlushPool().submit(() -> { });
+        scheduler.close();
+        assertThat(diskStorage.getTables().size(), equalTo(2));
+        diskStorage.getTables().forEach(each -> assertThat(each.getLevel(), equalTo(DiskStorage.COMPACTED_LEVEL)));
+    }
+
+    @Test
+    public void testNoCompactionUnderLimit() throws IOException {
+        Config config = Config.builder().maxThreadPoolSize(2).build();
+        BackgroundScheduler scheduler = new BackgroundScheduler(config, new DefaultCompactor(diskStorage, 3));
+        scheduler.maybeScheduleCompaction();
+        scheduler.close();
+        assertThat(diskStorage.getTables().size(), equalTo(3));
+    }
+
+    @Test
+    public void testFlushThreadSurvivesCompactionFailure() throws Exception {
+        Config config = Config.builder().maxThreadPoolSize(1).maxFlushThreadPoolSize(1).build();
+        Compactor compactor = mock(Compactor.class);
+        when(compactor.pickCompaction()).thenThrow(new UncheckedIOException(new IOException("open failed"))).thenReturn(Collections.emptyList());
+        BackgroundScheduler scheduler = new BackgroundScheduler(config, compactor);
+        List<String> threadNames = new CopyOnWriteArrayList<>();
+        scheduler.getFlushPool().submit(() -> threadNames.add(Thread.currentThread().getName())).get();
+        scheduler.getFlushPool().submit(() -> threadNames.add(Thread.currentThread().getName())).get();
+        scheduler.close();
+        // the flush thread is reused, and the failed pick doesn't leak the running compaction count
+        assertThat(threadNames.get(1), equalTo(threadNames.get(0)));
+        verify(compactor, times(2)).pickCompaction();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        diskStorage.close();
+        folder.delete();
+    }
+}
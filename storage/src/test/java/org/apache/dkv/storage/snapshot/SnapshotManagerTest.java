@@ -0,0 +1,43 @@
+package org.apache.dkv.storage.snapshot;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import java.util.Arrays;
+import java.util.TreeSet;
+import org.junit.Test;
+
+public class SnapshotManagerTest {
+
+    @Test
+    public void testAcquireAndRelease() {
+        SnapshotManager manager = new SnapshotManager();
+        Snapshot snapshot1 = manager.acquire(10L);
+        Snapshot snapshot2 = manager.acquire(10L);
+        Snapshot snapshot3 = manager.acquire(20L);
+        assertThat(snapshot1, not(sameInstance(snapshot2)));
+        assertThat(snapshot3.getSequenceId(), equalTo(20L));
+        assertThat(manager.getSequenceIds(), equalTo(new TreeSet<>(Arrays.asList(10L, 20L))));
+        
+        snapshot1.close();
+        assertThat(manager.getSequenceIds(), equalTo(new TreeSet<>(Arrays.asList(10L, 20L))));
+        snapshot2.close();
+        assertThat(manager.getSequenceIds(), equalTo(new TreeSet<>(Arrays.asList(20L))));
+        snapshot3.close();
+        assertThat(manager.getSequenceIds().isEmpty(), equalTo(true));
+    }
+
+    @Test
+    public void testCloseTwice() {
+        SnapshotManager manager = new SnapshotManager();
+        Snapshot snapshot1 = manager.acquire(10L);
+        final Snapshot snapshot2 = manager.acquire(10L);
+        snapshot1.close();
+        snapshot1.close();
+        // closing a handle twice never releases the snapshot of others
+        assertThat(manager.getSequenceIds(), equalTo(new TreeSet<>(Arrays.asList(10L))));
+        snapshot2.close();
+        assertThat(manager.getSequenceIds().isEmpty(), equalTo(true));
+    }
+}
@@ -22,6 +22,7 @@ import static org.mockito.Mockito.when;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.stream.Collectors;
@@ -66,6 +67,16 @@ public class TestUtil {
         flusher.flush(memStoreIterator);
     }
 
+    /**
+     * create a SSTable with the given keys
+     * @param diskStorage disk storage
+     * @param data key list
+     * @throws IOException IO Exception
+     */
+    public static void createSSTable(final DiskStorage diskStorage, final List<String> data) throws IOException {
+        new DefaultFlusher(diskStorage).flush(createNewMemStore(data, Collections.emptyList()));
+    }
+
     private static MemStoreIterator createNewMemStore(final List<String> data, final List<String> snapshot) throws IOException {
         final MemStore memStore = mock(MemStore.class);
         when(memStore.getKvMap()).thenReturn(TestUtil.createKeyValuePairMap(data));
@@ -8,6 +8,7 @@ import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.file.Files;
 import org.apache.dkv.storage.bean.KeyValuePair;
 import org.apache.dkv.storage.bytes.Bytes;
 import org.apache.dkv.storage.config.Config;
@@ -77,6 +78,26 @@ public class WALWriterTest {
         assertThat(f.length(), equalTo(size + WALWriter.getHEADER_SIZE() * 3L));
     }
     
+    @Test
+    public void testAddKeyValuePair() throws IOException {
+        Config config = mock(Config.class);
+        when(config.getDataDir()).thenReturn(folder.getRoot().getAbsolutePath());
+        when(config.getWriteOptions()).thenReturn(WriteOptions.flush);
+        WALWriter wal = new WALWriter(config);
+        KeyValuePair a = KeyValuePair.createPut(Bytes.toBytes("A"), Bytes.toBytes(repeat("a", WALWriter.getMAX_BLOCK_SIZE())), 1);
+        KeyValuePair b = KeyValuePair.createPut(Bytes.toBytes("B"), Bytes.toBytes("B"), 2);
+        wal.addRecord(a);
+        wal.addRecord(b);
+        wal.sync();
+        File f = new File(folder.getRoot().getAbsoluteFile() + File.separator + "dkv00.wal");
+        byte[] content = Files.readAllBytes(f.toPath());
+        // b is the last record, which is written right after its header
+        byte[] expected = b.toBytes();
+        assertThat(Bytes.slice(content, content.length - expected.length, expected.length), equalTo(expected));
+        // a is split into two fragments
+        assertThat(f.length(), equalTo(a.getSerializeSize() + b.getSerializeSize() + WALWriter.getHEADER_SIZE() * 3L));
+    }
+    
     @Test
     public void testAddRecordWithSwitchBlock() throws IOException {
         Config config = mock(Config.class);